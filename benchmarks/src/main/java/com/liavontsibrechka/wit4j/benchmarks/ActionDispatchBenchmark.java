@@ -0,0 +1,67 @@
+/*
+ * Copyright 2016 Liavontsi Brechka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.liavontsibrechka.wit4j.benchmarks;
+
+import com.liavontsibrechka.wit4j.action.Actions;
+import com.liavontsibrechka.wit4j.action.IAction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures lookup of the action requested by a bot response, from a single thread and from several threads
+ * sharing the registry.
+ *
+ * @author Liavontsi Brechka
+ * @since 1.0-SNAPSHOT
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ActionDispatchBenchmark {
+    private Actions actions;
+
+    @Setup
+    public void setUp() {
+        actions = new Actions(BenchmarkSupport.actions());
+    }
+
+    @Benchmark
+    public IAction getAction() {
+        return actions.getAction("fetchForecast");
+    }
+
+    @Benchmark
+    @Threads(4)
+    public IAction getActionContended() {
+        return actions.getAction("fetchForecast");
+    }
+}
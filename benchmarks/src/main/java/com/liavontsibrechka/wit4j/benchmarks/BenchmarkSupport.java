@@ -0,0 +1,118 @@
+/*
+ * Copyright 2016 Liavontsi Brechka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.liavontsibrechka.wit4j.benchmarks;
+
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.liavontsibrechka.wit4j.Wit;
+import com.liavontsibrechka.wit4j.action.IAction;
+import com.liavontsibrechka.wit4j.action.ResponseAction;
+import com.liavontsibrechka.wit4j.communication.EntityValue;
+import com.liavontsibrechka.wit4j.communication.transport.HttpRequest;
+import com.liavontsibrechka.wit4j.communication.transport.HttpResponse;
+import com.liavontsibrechka.wit4j.communication.transport.HttpTransport;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Shared fixtures of the benchmarks: actions of a weather bot, realistic <em>converse</em> payloads and a
+ * transport that answers without network.
+ *
+ * @author Liavontsi Brechka
+ * @since 1.0-SNAPSHOT
+ */
+final class BenchmarkSupport {
+    static final String MESSAGE = "What's the weather in Minsk tomorrow?";
+
+    static final String MERGE_RESPONSE = "{\"type\":\"merge\",\"confidence\":0.98,"
+            + "\"quickreplies\":null,"
+            + "\"entities\":{"
+            + "\"location\":[{\"confidence\":0.91,\"type\":\"value\",\"value\":\"Minsk\",\"suggested\":true}],"
+            + "\"datetime\":[{\"confidence\":0.99,\"type\":\"value\",\"value\":\"2016-07-02T00:00:00.000-07:00\","
+            + "\"grain\":\"day\",\"values\":[{\"type\":\"value\",\"value\":\"2016-07-02T00:00:00.000-07:00\","
+            + "\"grain\":\"day\"}]}],"
+            + "\"intent\":[{\"confidence\":0.97,\"value\":\"weather\"}]}}";
+    static final String ACTION_RESPONSE = "{\"type\":\"action\",\"action\":\"fetchForecast\",\"confidence\":0.95,"
+            + "\"entities\":{}}";
+    static final String MSG_RESPONSE = "{\"type\":\"msg\",\"msg\":\"It's going to be sunny in Minsk\","
+            + "\"confidence\":0.96,\"quickreplies\":[\"thanks\",\"and on Monday?\"],\"entities\":{}}";
+    static final String STOP_RESPONSE = "{\"type\":\"stop\",\"confidence\":0.99,\"entities\":{}}";
+
+    /**
+     * Responses of a single turn of the weather bot in the order the bot sends them.
+     */
+    static final String[] TURN = {MERGE_RESPONSE, ACTION_RESPONSE, MSG_RESPONSE, STOP_RESPONSE};
+
+    private BenchmarkSupport() {
+    }
+
+    /**
+     * Creates client of the weather bot that sends requests with {@code transport}.
+     */
+    static Wit wit(HttpTransport transport) {
+        return Wit.builder("benchmark-token").actions(actions()).transport(transport).build();
+    }
+
+    static Map<String, IAction> actions() {
+        Map<String, IAction> actions = new HashMap<>();
+        actions.put("merge", (ResponseAction) (sessionId, context, response) -> {
+            ObjectNode entities = new ObjectNode(JsonNodeFactory.instance);
+            for (Map.Entry<String, List<EntityValue>> entity : response.getEntities().entrySet()) {
+                if (!entity.getValue().isEmpty()) {
+                    entities.set(entity.getKey(), entity.getValue().get(0).getResolvedValue());
+                }
+            }
+            context.updateContext(entities);
+        });
+        actions.put("say", (ResponseAction) (sessionId, context, response) -> {
+        });
+        actions.put("fetchForecast", (ResponseAction) (sessionId, context, response) ->
+                context.put("forecast", "sunny"));
+        return actions;
+    }
+
+    static byte[] bytes(String json) {
+        return json.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Transport that answers every request with the same response without touching network, so only the work
+     * done by the library is measured.
+     */
+    static final class CannedTransport implements HttpTransport {
+        private final HttpResponse response;
+
+        CannedTransport(String body) {
+            Map<String, String> headers = Collections.singletonMap("content-type", "application/json");
+            response = new HttpResponse(200, headers, bytes(body));
+        }
+
+        @Override
+        public HttpResponse execute(HttpRequest request) {
+            return response;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
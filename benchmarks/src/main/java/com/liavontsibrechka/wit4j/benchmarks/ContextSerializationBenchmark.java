@@ -0,0 +1,73 @@
+/*
+ * Copyright 2016 Liavontsi Brechka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.liavontsibrechka.wit4j.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.liavontsibrechka.wit4j.Context;
+import com.liavontsibrechka.wit4j.util.ByteArrayBuffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures serialization of a session context sent with every <em>converse</em> request, both when the context
+ * was modified since the previous request and when the cached form is reused.
+ *
+ * @author Liavontsi Brechka
+ * @since 1.0-SNAPSHOT
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ContextSerializationBenchmark {
+    private final ObjectMapper jsonMapper = new ObjectMapper();
+    private Context context;
+
+    @Setup
+    public void setUp() {
+        context = new Context();
+        context.put("location", "Minsk");
+        context.put("datetime", "2016-07-02T00:00:00.000-07:00");
+        context.put("intent", "weather");
+        context.put("forecast", "sunny");
+    }
+
+    @Benchmark
+    public ByteArrayBuffer serializeModified() throws IOException {
+        context.markModified();
+        return context.getSerializedContext(jsonMapper);
+    }
+
+    @Benchmark
+    public ByteArrayBuffer serializeUnmodified() throws IOException {
+        return context.getSerializedContext(jsonMapper);
+    }
+}
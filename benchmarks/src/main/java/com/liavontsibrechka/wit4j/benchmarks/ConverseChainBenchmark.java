@@ -0,0 +1,95 @@
+/*
+ * Copyright 2016 Liavontsi Brechka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.liavontsibrechka.wit4j.benchmarks;
+
+import com.liavontsibrechka.wit4j.Wit;
+import com.liavontsibrechka.wit4j.communication.Converse;
+import com.liavontsibrechka.wit4j.communication.ConverseResult;
+import com.liavontsibrechka.wit4j.communication.transport.TransportConfig;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures a whole conversation turn (<em>merge</em>, <em>action</em>, <em>msg</em> and <em>stop</em> steps)
+ * through {@code Converse.converse} against {@code StubWitServer} over pooled loopback connections.
+ * Throughput and latency distribution are reported; run with {@code -prof gc} for allocation rate.
+ *
+ * @author Liavontsi Brechka
+ * @since 1.0-SNAPSHOT
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ConverseChainBenchmark {
+    private final AtomicLong sessions = new AtomicLong();
+    private StubWitServer server;
+    private Wit wit;
+    private Converse converse;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        server = new StubWitServer();
+        wit = BenchmarkSupport.wit(server.transport(TransportConfig.builder().build()));
+        converse = wit.createConverse();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        wit.close();
+        wit.getTransport().close();
+        server.close();
+    }
+
+    @Benchmark
+    public ConverseResult converse() throws IOException {
+        return turn();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public ConverseResult converseConcurrent() throws IOException {
+        return turn();
+    }
+
+    private ConverseResult turn() throws IOException {
+        String sessionId = "benchmark-" + sessions.incrementAndGet();
+        try {
+            return converse.converse(sessionId, BenchmarkSupport.MESSAGE);
+        } finally {
+            wit.getContextStore().remove(sessionId);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2016 Liavontsi Brechka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.liavontsibrechka.wit4j.benchmarks;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.liavontsibrechka.wit4j.Wit;
+import com.liavontsibrechka.wit4j.communication.Converse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures building of a <em>converse</em> request: encoding of the query parameters alone and a whole
+ * {@code sendHttpRequest} call (query string, headers, serialized context and response parsing) against a
+ * transport that answers without network, for a request with a message and a follow-up request without one.
+ * Run with {@code -prof gc} to see bytes allocated per request ({@code gc.alloc.rate.norm}).
+ *
+ * @author Liavontsi Brechka
+ * @since 1.0-SNAPSHOT
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RequestBenchmark {
+    private Wit wit;
+    private Converse converse;
+    private String sessionId;
+
+    @Setup
+    public void setUp() {
+        wit = BenchmarkSupport.wit(new BenchmarkSupport.CannedTransport(BenchmarkSupport.STOP_RESPONSE));
+        converse = wit.createConverse();
+        sessionId = "benchmark-session";
+        wit.getContextStore().getContext(sessionId).put("location", "Minsk");
+    }
+
+    @TearDown
+    public void tearDown() {
+        wit.close();
+    }
+
+    @Benchmark
+    public String encodeMessage() throws UnsupportedEncodingException {
+        return URLEncoder.encode(BenchmarkSupport.MESSAGE, "UTF-8");
+    }
+
+    @Benchmark
+    public JsonNode sendHttpRequest() throws IOException {
+        return converse.sendHttpRequest(sessionId, BenchmarkSupport.MESSAGE);
+    }
+
+    @Benchmark
+    public JsonNode sendFollowUpRequest() throws IOException {
+        return converse.sendHttpRequest(sessionId, null);
+    }
+}
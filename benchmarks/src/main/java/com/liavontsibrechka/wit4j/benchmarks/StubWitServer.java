@@ -0,0 +1,119 @@
+/*
+ * Copyright 2016 Liavontsi Brechka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.liavontsibrechka.wit4j.benchmarks;
+
+import com.liavontsibrechka.wit4j.communication.transport.HttpRequest;
+import com.liavontsibrechka.wit4j.communication.transport.HttpResponse;
+import com.liavontsibrechka.wit4j.communication.transport.HttpTransport;
+import com.liavontsibrechka.wit4j.communication.transport.PooledHttpTransport;
+import com.liavontsibrechka.wit4j.communication.transport.TransportConfig;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * In-process <em>converse</em> endpoint that plays {@code BenchmarkSupport.TURN} for every session, so the whole
+ * multi-step chain (including sockets and the connection pool) can be measured without <b>Wit.ai</b>.
+ *
+ * @author Liavontsi Brechka
+ * @since 1.0-SNAPSHOT
+ */
+final class StubWitServer implements AutoCloseable {
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final Map<String, Integer> steps = new ConcurrentHashMap<>();
+    private final byte[][] responses;
+
+    StubWitServer() throws IOException {
+        responses = new byte[BenchmarkSupport.TURN.length][];
+        for (int i = 0; i < responses.length; i++) {
+            responses[i] = BenchmarkSupport.bytes(BenchmarkSupport.TURN[i]);
+        }
+
+        // the server writes headers and body separately; without this Nagle's algorithm and delayed ACK of the
+        // client add ~40 ms to every response
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 128);
+        server.createContext("/converse", exchange -> {
+            try (InputStream body = exchange.getRequestBody()) {
+                byte[] buffer = new byte[4096];
+                while (body.read(buffer) != -1) {
+                    // request body (context) is not needed by the stub
+                }
+            }
+
+            String sessionId = sessionId(exchange.getRequestURI().getRawQuery());
+            int step = steps.merge(sessionId, 1, Integer::sum) - 1;
+            byte[] response = responses[Math.min(step, responses.length - 1)];
+            if (step >= responses.length - 1) {
+                steps.remove(sessionId);
+            }
+
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, response.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(response);
+            }
+        });
+        executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    /**
+     * Creates pooled transport that sends requests addressed to <b>Wit.ai</b> to this server instead.
+     */
+    HttpTransport transport(TransportConfig config) {
+        PooledHttpTransport pooled = new PooledHttpTransport(config);
+        int port = server.getAddress().getPort();
+        return new HttpTransport() {
+            @Override
+            public HttpResponse execute(HttpRequest request) throws IOException {
+                URI uri = request.getUri();
+                URI local = URI.create("http://127.0.0.1:" + port + uri.getRawPath() + "?" + uri.getRawQuery());
+                return pooled.execute(new HttpRequest(request.getMethod(), local, request.getHeaders(),
+                        request.getBody(), request.getBodyLength(), request.getTimeoutMillis()));
+            }
+
+            @Override
+            public void close() {
+                pooled.close();
+            }
+        };
+    }
+
+    private static String sessionId(String query) {
+        int start = query.indexOf("session_id=") + "session_id=".length();
+        int end = query.indexOf('&', start);
+        return end < 0 ? query.substring(start) : query.substring(start, end);
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
@@ -17,37 +17,46 @@
 
 package com.liavontsibrechka.wit4j;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.JsonNodeFactory;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.liavontsibrechka.wit4j.util.ByteArrayBuffer;
+
+import java.io.IOException;
 
 /**
- * Singleton class that contains reference to context ({@code ObjectNode}) object that represents the current session
- * state of an application.
+ * Class that contains reference to context ({@code ObjectNode}) object that represents the state of a single
+ * conversation session.
+ * <p>
+ * Instances are created and owned by {@code ContextStore}. A context is confined to its session and must not be
+ * modified by two turns of the same session at the same time.
+ * <p>
+ * The serialized form of the context is cached and reused by every request of the session until the context
+ * changes. Changes are tracked by the modifying methods of this class; since the node returned by
+ * {@code getContext} may be modified by the caller, that method invalidates the cache as well, so read-only
+ * callers should prefer {@code get}.
  *
  * @author Liavontsi Brechka
  * @see ObjectNode
+ * @see ContextStore
  * @since 1.0-SNAPSHOT
  */
 public class Context {
-    private static Context instance;
-    private volatile static boolean instanceCreated = false;
-
-    private ObjectNode context;
+    private final ObjectNode context;
+    private final ByteArrayBuffer serialized = new ByteArrayBuffer(256);
+    /**
+     * Number of modifications of the context and the modification count the cached serialized form belongs to.
+     */
+    private long version;
+    private long serializedVersion = -1;
 
-    private Context() {
-        context = new ObjectNode(JsonNodeFactory.instance);
+    public Context() {
+        this(new ObjectNode(JsonNodeFactory.instance));
     }
 
-    public static Context getInstance() {
-        if (!instanceCreated) {
-            synchronized (Context.class) {
-                if (!instanceCreated) {
-                    instance = new Context();
-                    instanceCreated = true;
-                }
-            }
-        }
-        return instance;
+    public Context(ObjectNode context) {
+        this.context = context;
     }
 
     /**
@@ -57,9 +66,122 @@ public class Context {
      */
     public void updateContext(ObjectNode entities) {
         context.setAll(entities);
+        version++;
+    }
+
+    /**
+     * Sets field of the context.
+     *
+     * @param field field name.
+     * @param value field value.
+     */
+    public void put(String field, String value) {
+        context.put(field, value);
+        version++;
+    }
+
+    /**
+     * Sets field of the context.
+     *
+     * @param field field name.
+     * @param value field value.
+     */
+    public void put(String field, JsonNode value) {
+        context.set(field, value);
+        version++;
+    }
+
+    /**
+     * Removes field of the context.
+     *
+     * @param field field name.
+     */
+    public void remove(String field) {
+        if (context.remove(field) != null) {
+            version++;
+        }
+    }
+
+    /**
+     * @return independent deep copy of the context.
+     */
+    public Context copy() {
+        return new Context(context.deepCopy());
+    }
+
+    /**
+     * Replaces all fields of the context with the fields of {@code other} (e.g. of a copy modified elsewhere);
+     * nothing changes, and the cached serialized form stays valid, if the fields are equal already.
+     *
+     * @param other context whose fields to take.
+     */
+    public void replaceWith(Context other) {
+        if (context.equals(other.context)) {
+            return;
+        }
+        context.removeAll();
+        context.setAll(other.context);
+        version++;
+    }
+
+    /**
+     * Reads field of the context without invalidating the cached serialized form.
+     *
+     * @param field field name.
+     * @return field value or null if the context has no such field.
+     */
+    public JsonNode get(String field) {
+        return context.get(field);
     }
 
+    /**
+     * Returns the context object for reading and modification. The cached serialized form is invalidated,
+     * because the caller may modify the returned object.
+     *
+     * @return context object.
+     */
     public ObjectNode getContext() {
+        version++;
+        return context;
+    }
+
+    /**
+     * @return the context object without invalidating the cached serialized form, for readers of this package
+     * that only serialize it.
+     */
+    ObjectNode getNode() {
         return context;
     }
+
+    /**
+     * Marks the context as modified. Needed only when a node obtained from {@code get} was modified in place.
+     */
+    public void markModified() {
+        version++;
+    }
+
+    /**
+     * @return true if the context was modified since it was serialized last time.
+     */
+    public boolean isModified() {
+        return version != serializedVersion;
+    }
+
+    /**
+     * Returns JSON form of the context. The context is serialized again only if it was modified since the last
+     * call; otherwise the cached bytes are returned as is.
+     *
+     * @param jsonMapper mapper to serialize the context with.
+     * @return buffer whose first {@code size()} bytes are the JSON form of the context; it must not be modified
+     * and stays valid until the context is serialized again.
+     * @throws IOException if the context cannot be serialized.
+     */
+    public ByteArrayBuffer getSerializedContext(ObjectMapper jsonMapper) throws IOException {
+        if (version != serializedVersion) {
+            serialized.reset();
+            jsonMapper.writeValue(serialized, context);
+            serializedVersion = version;
+        }
+        return serialized;
+    }
 }
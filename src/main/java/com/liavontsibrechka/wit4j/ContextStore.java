@@ -0,0 +1,421 @@
+/*
+ * Copyright 2016 Liavontsi Brechka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.liavontsibrechka.wit4j;
+
+import com.liavontsibrechka.wit4j.util.ThreadPools;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.ResourceBundle;
+import java.util.Set;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Thread-safe store of conversation contexts keyed by session id.
+ * <p>
+ * Sessions are spread over independently locked segments, so concurrent conversations rarely contend for the
+ * same lock. Each segment keeps its sessions in access order: when the store is full the least recently used
+ * session of the segment is dropped, and sessions that were not accessed for {@code idleTimeoutMillis} expire
+ * and are removed by a background sweeper.
+ * <p>
+ * With a {@code MappedContextSpill} such sessions are not lost: they are written to the spill file and read back
+ * on the next access, so only active sessions stay on the heap and spilled sessions survive restarts (the
+ * sessions still in memory are spilled on {@code close}). A session that cannot be spilled is dropped as without
+ * a spill.
+ * <p>
+ * A session in the middle of a turn is pinned with {@code acquire} until {@code release}: pinned sessions are
+ * neither dropped nor spilled, because their context is being read and modified by the turn, and a context
+ * evicted at that moment would either be spilled half-updated or lose the rest of the turn.
+ *
+ * @author Liavontsi Brechka
+ * @see Context
+ * @see MappedContextSpill
+ * @since 1.0-SNAPSHOT
+ */
+public class ContextStore implements Closeable {
+    public static final int DEFAULT_MAX_SESSIONS = 10_000;
+    public static final long DEFAULT_IDLE_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(30);
+
+    private static final int SEGMENTS = 16;
+
+    private final Segment[] segments;
+    private final long idleTimeoutMillis;
+    private final MappedContextSpill spill;
+    private final ScheduledFuture<?> sweeper;
+
+    public ContextStore() {
+        this(DEFAULT_MAX_SESSIONS, DEFAULT_IDLE_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * Creates store of session contexts.
+     *
+     * @param maxSessions       maximum number of sessions kept in memory.
+     * @param idleTimeoutMillis time after which a session that was not accessed is removed
+     *                          ({@code 0} disables expiration).
+     */
+    public ContextStore(int maxSessions, long idleTimeoutMillis) {
+        this(maxSessions, idleTimeoutMillis, null);
+    }
+
+    /**
+     * Creates store of session contexts that spills sessions it does not keep in memory.
+     *
+     * @param maxSessions       maximum number of sessions kept in memory.
+     * @param idleTimeoutMillis time after which a session that was not accessed is spilled
+     *                          ({@code 0} disables expiration).
+     * @param spill             spill of sessions (May be null to drop them); it is closed with the store.
+     */
+    public ContextStore(int maxSessions, long idleTimeoutMillis, MappedContextSpill spill) {
+        if (maxSessions < 1) {
+            throw new IllegalArgumentException("maxSessions must be positive: " + maxSessions);
+        }
+
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.spill = spill;
+        this.segments = new Segment[SEGMENTS];
+        int segmentCapacity = Math.max(1, (maxSessions + SEGMENTS - 1) / SEGMENTS);
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = new Segment(segmentCapacity, spill);
+        }
+
+        if (idleTimeoutMillis > 0) {
+            long period = Math.max(idleTimeoutMillis / 2, 100);
+            sweeper = ThreadPools.sharedScheduler().scheduleWithFixedDelay(this::evictExpired, period, period,
+                    TimeUnit.MILLISECONDS);
+        } else {
+            sweeper = null;
+        }
+    }
+
+    /**
+     * Creates store from {@code context.*} keys of {@code bundle}. Missing keys fall back to defaults; sessions
+     * are spilled only if {@code context.spill_file} is set.
+     *
+     * @param bundle application properties.
+     * @return context store.
+     * @throws UncheckedIOException if the spill file cannot be opened.
+     */
+    public static ContextStore fromBundle(ResourceBundle bundle) {
+        int maxSessions = bundle.containsKey("context.max_sessions")
+                ? Integer.parseInt(bundle.getString("context.max_sessions")) : DEFAULT_MAX_SESSIONS;
+        long idleTimeoutMillis = bundle.containsKey("context.idle_timeout_millis")
+                ? Long.parseLong(bundle.getString("context.idle_timeout_millis")) : DEFAULT_IDLE_TIMEOUT_MILLIS;
+        MappedContextSpill spill = null;
+        if (bundle.containsKey("context.spill_file")) {
+            int capacityBytes = bundle.containsKey("context.spill_capacity_bytes")
+                    ? Integer.parseInt(bundle.getString("context.spill_capacity_bytes"))
+                    : MappedContextSpill.DEFAULT_CAPACITY_BYTES;
+            try {
+                spill = MappedContextSpill.open(Paths.get(bundle.getString("context.spill_file").trim()),
+                        capacityBytes);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return new ContextStore(maxSessions, idleTimeoutMillis, spill);
+    }
+
+    /**
+     * Returns context of the session, reading it from the spill or creating an empty one for a new (or expired)
+     * session.
+     *
+     * @param sessionId session identifier.
+     * @return context of the session.
+     */
+    public Context getContext(String sessionId) {
+        return getContext(sessionId, false);
+    }
+
+    /**
+     * Returns context of the session like {@code getContext} and pins the session until {@code release}, so the
+     * context is not evicted while a turn works with it. A session may be pinned by several callers at once.
+     *
+     * @param sessionId session identifier.
+     * @return context of the session.
+     */
+    public Context acquire(String sessionId) {
+        return getContext(sessionId, true);
+    }
+
+    /**
+     * Unpins the session pinned by {@code acquire}; the session counts as accessed now.
+     *
+     * @param sessionId session identifier.
+     * @param context   context returned by {@code acquire} (nothing is released if the session was removed and
+     *                  created again since then).
+     */
+    public void release(String sessionId, Context context) {
+        Segment segment = segmentFor(sessionId);
+        synchronized (segment) {
+            SessionEntry entry = segment.get(sessionId);
+            if (entry != null && entry.context == context && entry.pins > 0) {
+                entry.pins--;
+                entry.lastAccessMillis = System.currentTimeMillis();
+            }
+        }
+    }
+
+    private Context getContext(String sessionId, boolean pin) {
+        Segment segment = segmentFor(sessionId);
+        long now = System.currentTimeMillis();
+        synchronized (segment) {
+            SessionEntry entry = segment.get(sessionId);
+            if (entry == null || isExpired(entry, now)) {
+                // a spilled session does not expire in memory, the sweeper just has not spilled it yet
+                Context spilled = entry != null && spill != null ? entry.context : rehydrate(sessionId);
+                entry = new SessionEntry(spilled != null ? spilled : new Context());
+                segment.put(sessionId, entry);
+            }
+            entry.lastAccessMillis = now;
+            if (pin) {
+                entry.pins++;
+            }
+            return entry.context;
+        }
+    }
+
+    /**
+     * Returns context of the session without creating a new one.
+     *
+     * @param sessionId session identifier.
+     * @return context of the session or null if the session is unknown or expired.
+     */
+    public Context findContext(String sessionId) {
+        Segment segment = segmentFor(sessionId);
+        long now = System.currentTimeMillis();
+        synchronized (segment) {
+            SessionEntry entry = segment.get(sessionId);
+            if (entry == null || isExpired(entry, now)) {
+                // a spilled session does not expire in memory, the sweeper just has not spilled it yet
+                Context spilled = entry != null && spill != null ? entry.context : rehydrate(sessionId);
+                if (spilled == null) {
+                    return null;
+                }
+                entry = new SessionEntry(spilled);
+                segment.put(sessionId, entry);
+            }
+            entry.lastAccessMillis = now;
+            return entry.context;
+        }
+    }
+
+    /**
+     * Removes the session and its context, including the spilled one.
+     *
+     * @param sessionId session identifier.
+     * @return removed context or null if the session is unknown.
+     */
+    public Context remove(String sessionId) {
+        Segment segment = segmentFor(sessionId);
+        synchronized (segment) {
+            SessionEntry entry = segment.remove(sessionId);
+            Context removed = entry == null ? rehydrate(sessionId) : entry.context;
+            if (spill != null) {
+                try {
+                    spill.delete(sessionId);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            return removed;
+        }
+    }
+
+    /**
+     * Removes all sessions that were not accessed for {@code idleTimeoutMillis}, spilling them if the store has
+     * a spill. Pinned sessions are kept.
+     */
+    public void evictExpired() {
+        if (idleTimeoutMillis <= 0) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                Iterator<Map.Entry<String, SessionEntry>> entries = segment.entrySet().iterator();
+                // entries are in access order, so the first live entry ends the sweep
+                while (entries.hasNext()) {
+                    Map.Entry<String, SessionEntry> entry = entries.next();
+                    if (entry.getValue().pins > 0) {
+                        continue;
+                    }
+                    if (!isExpired(entry.getValue(), now)) {
+                        break;
+                    }
+                    segment.spill(entry.getKey(), entry.getValue());
+                    entries.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * @return number of sessions currently kept in memory.
+     */
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * @return snapshot of identifiers of the sessions kept in memory or spilled.
+     */
+    public Set<String> sessionIds() {
+        Set<String> sessionIds = new LinkedHashSet<>();
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                sessionIds.addAll(segment.keySet());
+            }
+        }
+        if (spill != null) {
+            sessionIds.addAll(spill.sessionIds());
+        }
+        return sessionIds;
+    }
+
+    /**
+     * @return spill of the store or null if sessions are dropped.
+     */
+    public MappedContextSpill getSpill() {
+        return spill;
+    }
+
+    /**
+     * Stops the sweeper; with a spill, spills sessions kept in memory and closes the spill. Turns must be over
+     * by then, pinned sessions are spilled as they are.
+     *
+     * @throws UncheckedIOException if the spill cannot be closed.
+     */
+    @Override
+    public void close() {
+        if (sweeper != null) {
+            sweeper.cancel(false);
+        }
+        if (spill == null) {
+            return;
+        }
+
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                for (Map.Entry<String, SessionEntry> entry : segment.entrySet()) {
+                    segment.spill(entry.getKey(), entry.getValue());
+                }
+                segment.clear();
+            }
+        }
+        try {
+            spill.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Context rehydrate(String sessionId) {
+        if (spill == null) {
+            return null;
+        }
+        try {
+            return spill.read(sessionId);
+        } catch (IOException e) {
+            // a context that cannot be read back is dropped like an expired one
+            return null;
+        }
+    }
+
+    private boolean isExpired(SessionEntry entry, long nowMillis) {
+        return idleTimeoutMillis > 0 && entry.pins == 0 && nowMillis - entry.lastAccessMillis >= idleTimeoutMillis;
+    }
+
+    private Segment segmentFor(String sessionId) {
+        int hash = sessionId.hashCode();
+        return segments[(hash ^ (hash >>> 16)) & (SEGMENTS - 1)];
+    }
+
+    private static final class SessionEntry {
+        private final Context context;
+        private long lastAccessMillis;
+        /**
+         * Number of turns working with the context (see {@code acquire}).
+         */
+        private int pins;
+
+        private SessionEntry(Context context) {
+            this.context = context;
+        }
+    }
+
+    /**
+     * Access ordered map that drops (or spills) its least recently used unpinned session when it grows over
+     * capacity. The session just added is never evicted, so a segment whose other sessions are all pinned
+     * grows over capacity until they are released.
+     */
+    private static final class Segment extends LinkedHashMap<String, SessionEntry> {
+        private static final long serialVersionUID = 1L;
+
+        private final int capacity;
+        private final MappedContextSpill spill;
+
+        private Segment(int capacity, MappedContextSpill spill) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+            this.spill = spill;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, SessionEntry> eldest) {
+            if (size() <= capacity) {
+                return false;
+            }
+            Iterator<Map.Entry<String, SessionEntry>> entries = entrySet().iterator();
+            for (int candidates = size() - 1; candidates > 0 && size() > capacity; candidates--) {
+                Map.Entry<String, SessionEntry> entry = entries.next();
+                if (entry.getValue().pins == 0) {
+                    spill(entry.getKey(), entry.getValue());
+                    entries.remove();
+                }
+            }
+            // the map was trimmed above, as removeEldestEntry allows when it returns false
+            return false;
+        }
+
+        private void spill(String sessionId, SessionEntry entry) {
+            if (spill == null) {
+                return;
+            }
+            try {
+                spill.write(sessionId, entry.context);
+            } catch (IOException e) {
+                // the session is dropped as it would be without a spill
+            }
+        }
+    }
+}
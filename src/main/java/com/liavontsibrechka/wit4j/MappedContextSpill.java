@@ -0,0 +1,333 @@
+/*
+ * Copyright 2016 Liavontsi Brechka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.liavontsibrechka.wit4j;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.liavontsibrechka.wit4j.util.ByteArrayBuffer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Off-heap store of idle session contexts: an append-only, memory-mapped file with an in-memory index of the
+ * latest record of every session. {@code ContextStore} spills sessions here instead of dropping them and reads
+ * them back on the next message of the session; since the file survives restarts, so do the sessions.
+ * <p>
+ * A record is {@code [int length][short id length][session id][int context length][context]}, where the
+ * context is the cached JSON form of {@code Context} (a length of {@code -1} marks a removed session) and a zero
+ * length ends the data. Records replaced by newer ones are garbage: once it makes up most of the file, the live
+ * records are copied into a fresh file in the background, and synchronously when the file is full, so the file
+ * never grows over its capacity.
+ *
+ * @author Liavontsi Brechka
+ * @see ContextStore
+ * @since 1.0-SNAPSHOT
+ */
+public class MappedContextSpill implements Closeable {
+    public static final int DEFAULT_CAPACITY_BYTES = 64 * 1024 * 1024;
+
+    private static final int TOMBSTONE = -1;
+    private static final ObjectMapper JSON_MAPPER = new ObjectMapper();
+
+    private final Path path;
+    private final int capacity;
+    /**
+     * Offset of the latest record of every spilled session.
+     */
+    private final Map<String, Integer> index = new HashMap<>();
+    /**
+     * Buffer contexts are serialized into before they are written.
+     */
+    private final ByteArrayBuffer serialized = new ByteArrayBuffer(256);
+
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private int position;
+    private long liveBytes;
+    private boolean compactionScheduled;
+    private boolean closed;
+
+    private MappedContextSpill(Path path, int capacity) throws IOException {
+        this.path = path;
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        this.capacity = (int) Math.max(capacity, Math.min(channel.size(), Integer.MAX_VALUE));
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, this.capacity);
+        load();
+    }
+
+    /**
+     * Opens spill file, reading the sessions spilled to it earlier.
+     *
+     * @param path          spill file; created if it does not exist.
+     * @param capacityBytes maximum size of the file.
+     * @return spill.
+     * @throws IOException if the file cannot be opened or mapped.
+     */
+    public static MappedContextSpill open(Path path, int capacityBytes) throws IOException {
+        if (capacityBytes < 64) {
+            throw new IllegalArgumentException("Spill capacity is too small: " + capacityBytes);
+        }
+        return new MappedContextSpill(path, capacityBytes);
+    }
+
+    private void load() {
+        while (position + 4 <= capacity) {
+            int length = buffer.getInt(position);
+            if (length <= 0 || position + 4 + length > capacity) {
+                break;
+            }
+            String sessionId = sessionIdAt(buffer, position);
+            if (contextLengthAt(buffer, position) == TOMBSTONE) {
+                unindex(sessionId);
+            } else {
+                index(sessionId, position);
+            }
+            position += 4 + length;
+        }
+    }
+
+    /**
+     * Writes context of the session, replacing the one spilled before.
+     *
+     * @param sessionId session identifier.
+     * @param context   context of the session; it must not be modified concurrently (see
+     *                  {@code ContextStore.acquire}).
+     * @return false if the context does not fit into the file even after compaction.
+     * @throws IOException if the context cannot be serialized or the file cannot be compacted.
+     */
+    public synchronized boolean write(String sessionId, Context context) throws IOException {
+        // the cached serialized form of the context may be the body of a request being sent, so it is not used
+        serialized.reset();
+        JSON_MAPPER.writeValue(serialized, context.getNode());
+        return append(sessionId, serialized.getBuffer(), serialized.size());
+    }
+
+    /**
+     * Reads context of the session.
+     *
+     * @param sessionId session identifier.
+     * @return context or null if the session was not spilled.
+     * @throws IOException if the spilled context cannot be parsed.
+     */
+    public Context read(String sessionId) throws IOException {
+        byte[] json;
+        synchronized (this) {
+            Integer offset = index.get(sessionId);
+            if (offset == null) {
+                return null;
+            }
+            int idLength = buffer.getShort(offset + 4);
+            int contextOffset = offset + 4 + 2 + idLength + 4;
+            json = new byte[buffer.getInt(contextOffset - 4)];
+            ByteBuffer view = buffer.duplicate();
+            view.position(contextOffset);
+            view.get(json);
+        }
+        JsonNode node = JSON_MAPPER.readTree(json);
+        if (node == null || !node.isObject()) {
+            throw new IOException("Spilled context of session " + sessionId + " is not an object");
+        }
+        return new Context((ObjectNode) node);
+    }
+
+    /**
+     * Removes the session from the spill.
+     *
+     * @param sessionId session identifier.
+     * @throws IOException if the file cannot be compacted.
+     */
+    public synchronized void delete(String sessionId) throws IOException {
+        if (index.containsKey(sessionId)) {
+            append(sessionId, null, TOMBSTONE);
+        }
+    }
+
+    private boolean append(String sessionId, byte[] context, int contextLength) throws IOException {
+        if (closed) {
+            throw new IOException("Spill is closed");
+        }
+        byte[] id = sessionId.getBytes(StandardCharsets.UTF_8);
+        if (id.length > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("Session id is too long to spill: " + id.length + " bytes");
+        }
+        int length = 2 + id.length + 4 + Math.max(contextLength, 0);
+        if (position + 4 + length + 4 > capacity) {
+            compact();
+            if (position + 4 + length + 4 > capacity) {
+                return false;
+            }
+        }
+
+        int offset = position;
+        buffer.putShort(offset + 4, (short) id.length);
+        ByteBuffer view = buffer.duplicate();
+        view.position(offset + 4 + 2);
+        view.put(id);
+        view.putInt(contextLength);
+        if (contextLength > 0) {
+            view.put(context, 0, contextLength);
+        }
+        // the length is written last, so a torn record ends the data on the next load
+        buffer.putInt(offset, length);
+        position += 4 + length;
+
+        if (contextLength == TOMBSTONE) {
+            unindex(sessionId);
+        } else {
+            index(sessionId, offset);
+        }
+        scheduleCompactionIfWasteful();
+        return true;
+    }
+
+    private void index(String sessionId, int offset) {
+        unindex(sessionId);
+        index.put(sessionId, offset);
+        liveBytes += 4 + buffer.getInt(offset);
+    }
+
+    private void unindex(String sessionId) {
+        Integer previous = index.remove(sessionId);
+        if (previous != null) {
+            liveBytes -= 4 + buffer.getInt(previous);
+        }
+    }
+
+    private void scheduleCompactionIfWasteful() {
+        if (!compactionScheduled && position > capacity / 4 && liveBytes * 2 < position) {
+            compactionScheduled = true;
+            ForkJoinPool.commonPool().execute(() -> {
+                try {
+                    compact();
+                } catch (IOException e) {
+                    // retried when the file is full
+                }
+            });
+        }
+    }
+
+    /**
+     * Copies live records into a fresh file, dropping replaced and removed ones. Spills and reads wait while the
+     * file is compacted.
+     *
+     * @throws IOException if the fresh file cannot be written.
+     */
+    public synchronized void compact() throws IOException {
+        compactionScheduled = false;
+        if (closed) {
+            return;
+        }
+
+        Path compacted = path.resolveSibling(path.getFileName() + ".compact");
+        Files.deleteIfExists(compacted);
+        try (FileChannel target = FileChannel.open(compacted, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer targetBuffer = target.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+            int targetPosition = 0;
+            for (Map.Entry<String, Integer> entry : index.entrySet()) {
+                int offset = entry.getValue();
+                int recordLength = 4 + buffer.getInt(offset);
+                ByteBuffer record = buffer.duplicate();
+                record.position(offset).limit(offset + recordLength);
+                targetBuffer.position(targetPosition);
+                targetBuffer.put(record);
+                entry.setValue(targetPosition);
+                targetPosition += recordLength;
+            }
+            targetBuffer.force();
+
+            Files.move(compacted, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            channel.close();
+            channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            buffer = targetBuffer;
+            position = targetPosition;
+            liveBytes = targetPosition;
+        }
+    }
+
+    private static String sessionIdAt(ByteBuffer buffer, int offset) {
+        byte[] id = new byte[buffer.getShort(offset + 4)];
+        ByteBuffer view = buffer.duplicate();
+        view.position(offset + 4 + 2);
+        view.get(id);
+        return new String(id, StandardCharsets.UTF_8);
+    }
+
+    private static int contextLengthAt(ByteBuffer buffer, int offset) {
+        return buffer.getInt(offset + 4 + 2 + buffer.getShort(offset + 4));
+    }
+
+    /**
+     * @return number of spilled sessions.
+     */
+    public synchronized int size() {
+        return index.size();
+    }
+
+    /**
+     * @return snapshot of identifiers of spilled sessions.
+     */
+    public synchronized Set<String> sessionIds() {
+        return new HashSet<>(index.keySet());
+    }
+
+    public synchronized boolean contains(String sessionId) {
+        return index.containsKey(sessionId);
+    }
+
+    /**
+     * @return bytes of the file in use, including garbage.
+     */
+    public synchronized int getUsedBytes() {
+        return position;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * Writes the mapped file to disk and closes it.
+     *
+     * @throws IOException if the file cannot be closed.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (!closed) {
+            closed = true;
+            buffer.force();
+            channel.close();
+        }
+    }
+}
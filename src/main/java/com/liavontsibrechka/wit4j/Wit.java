@@ -19,13 +19,32 @@ package com.liavontsibrechka.wit4j;
 
 import com.liavontsibrechka.wit4j.action.Actions;
 import com.liavontsibrechka.wit4j.action.IAction;
+import com.liavontsibrechka.wit4j.capture.RecordingTransport;
+import com.liavontsibrechka.wit4j.capture.TrafficRecorder;
+import com.liavontsibrechka.wit4j.communication.Converse;
+import com.liavontsibrechka.wit4j.communication.HttpCommunication;
+import com.liavontsibrechka.wit4j.communication.HttpCommunicationFactory;
 import com.liavontsibrechka.wit4j.communication.HttpCommunicationType;
+import com.liavontsibrechka.wit4j.communication.Message;
+import com.liavontsibrechka.wit4j.communication.Speech;
+import com.liavontsibrechka.wit4j.communication.transport.HttpTransport;
+import com.liavontsibrechka.wit4j.communication.transport.PooledHttpTransport;
+import com.liavontsibrechka.wit4j.communication.transport.RateLimitedTransport;
+import com.liavontsibrechka.wit4j.communication.transport.TransportConfig;
 import com.liavontsibrechka.wit4j.interaction.InteractionFactory;
+import com.liavontsibrechka.wit4j.metrics.Instrumentation;
+import com.liavontsibrechka.wit4j.util.Lazy;
+import com.liavontsibrechka.wit4j.util.ResourceBundleEnum;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.net.URI;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.util.Map;
+import java.util.ResourceBundle;
 
 /**
  * The {@code Wit} class should be considered as a starting point of using <b>wit4j</b>
@@ -33,6 +52,16 @@ import java.util.Map;
  * and communicate continuously with <em>Wit.ai</em> bot. The ways of interaction with user and bot communication
  * may be easily added by extending {@code Interaction} and {@code HttpCommunication} classes.
  * <p>
+ * An instance is a client of a single <b>Wit.ai</b> application: it owns the access token, base url and version
+ * of the API, the registry of actions, the store of session contexts and the transport requests are sent with.
+ * Clients are independent of each other, so bots of many applications may be served by one process. Clients may
+ * also share a transport and its connection pool (see {@code Builder.transport}); the per-token rate limits of
+ * {@code RateLimitedTransport} keep tenants of a shared transport apart.
+ * <p>
+ * Creating a client does no I/O: it is configured by {@code Builder} (application properties are an optional
+ * fallback, see {@code Builder.properties}) and its transport and context store are created on first use.
+ * {@code prewarm} creates them and opens connections ahead of the first requests.
+ * <p>
  * This class has two instance methods for establishing console interaction ({@code interactByConsole} method)
  * and custom interaction ({@code interact} method).
  *
@@ -41,31 +70,130 @@ import java.util.Map;
  * @see com.liavontsibrechka.wit4j.communication.HttpCommunication
  * @since 1.0-SNAPSHOT
  */
-// TODO: 2016-06-26 consider singleton implementation
-public class Wit {
+public class Wit implements Closeable {
+    public static final String DEFAULT_BASE_URL = "https://api.wit.ai";
+    public static final String DEFAULT_VERSION = "20160516";
+
     /**
      * Access token value in order to establish <em>OAuth2</em> connection with <b>Wit.ai HTTP API</b>
      */
-    private static String token;
+    private final String token;
+    /**
+     * Base url of <b>Wit.ai HTTP API</b>.
+     */
+    private final String baseUrl;
+    /**
+     * <b>Wit.ai HTTP API</b> versioning parameter.
+     */
+    private final String version;
+    private final Actions actions;
+    private final Lazy<ContextStore> contextStore;
+    private final Lazy<HttpTransport> transport;
+    /**
+     * Whether the context store and the transport were created by this client and are closed with it.
+     */
+    private final boolean ownsContextStore;
+    private final boolean ownsTransport;
+    private volatile Instrumentation instrumentation;
 
     /**
-     * Creates an instance of {@code Wit} class ans saves its {@code token} for later use.
-     * {@code actions} argument is stored in {@code Actions} singleton class that represents available actions
-     * for a particular application.
+     * Creates an instance of {@code Wit} class with its own registry of {@code actions} and settings of
+     * application properties ({@code mainAppProperties}).
      *
      * @param token   access token for establishing <em>OAuth2</em> connection
      * @param actions map ({@code Map<String, IAction>}) that contains action name
      *                as a {@code String} key and action implementation as an {@code IAction}
      *                instance in order to handle appropriate actions triggered by bot.
-     * @throws IllegalAccessException is thrown if attempt was made to assign a new object to
-     *                                {@code Map<String, IAction> actions} reference of {@code Actions}
-     *                                singleton class more than one time.
+     * @throws IllegalAccessException never; declared for source compatibility with earlier versions, where
+     *                                actions could be set only once.
      * @see IAction
      * @see Actions
+     * @see #builder(String)
      */
     public Wit(String token, Map<String, IAction> actions) throws IllegalAccessException {
-        Wit.token = token;
-        Actions.setActions(actions);
+        this(builder(token).actions(actions).properties(
+                ResourceBundle.getBundle(ResourceBundleEnum.MAIN_APP_PROPERTIES.getFileName())));
+    }
+
+    private Wit(Builder builder) {
+        ResourceBundle bundle = builder.bundle;
+
+        this.token = builder.token;
+        this.baseUrl = builder.baseUrl != null ? builder.baseUrl : property(bundle, "base_url", DEFAULT_BASE_URL);
+        this.version = builder.version != null ? builder.version : property(bundle, "version", DEFAULT_VERSION);
+        this.actions = builder.actions != null ? builder.actions : new Actions();
+        this.instrumentation = builder.instrumentation;
+
+        this.ownsContextStore = builder.contextStore == null;
+        ContextStore sharedContextStore = builder.contextStore;
+        this.contextStore = new Lazy<>(ownsContextStore
+                ? () -> bundle != null ? ContextStore.fromBundle(bundle) : new ContextStore()
+                : () -> sharedContextStore);
+
+        this.ownsTransport = builder.transport == null;
+        HttpTransport sharedTransport = builder.transport;
+        TransportConfig transportConfig = builder.transportConfig;
+        TrafficRecorder recorder = builder.recorder;
+        this.transport = new Lazy<>(() -> {
+            HttpTransport created = ownsTransport ? createTransport(transportConfig, bundle) : sharedTransport;
+            return recorder == null ? created : new RecordingTransport(created, recorder);
+        });
+    }
+
+    private static String property(ResourceBundle bundle, String key, String defaultValue) {
+        return bundle != null && bundle.containsKey(key) ? bundle.getString(key).trim() : defaultValue;
+    }
+
+    private static HttpTransport createTransport(TransportConfig config, ResourceBundle bundle) {
+        if (bundle == null) {
+            return RateLimitedTransport.builder(new PooledHttpTransport(
+                    config != null ? config : TransportConfig.builder().build())).build();
+        }
+        return RateLimitedTransport.fromBundle(new PooledHttpTransport(
+                config != null ? config : TransportConfig.fromBundle(bundle)), bundle);
+    }
+
+    /**
+     * Creates builder of client of the application with {@code token}. Settings that are not set explicitly are
+     * taken from properties given to {@code Builder.properties} or get built-in defaults.
+     *
+     * @param token access token of the application.
+     * @return client builder.
+     */
+    public static Builder builder(String token) {
+        return new Builder(token);
+    }
+
+    /**
+     * Creates communication of {@code httpCommunicationType} that sends requests on behalf of this client.
+     *
+     * @param httpCommunicationType type of communication.
+     * @return new communication.
+     * @see HttpCommunicationFactory
+     */
+    public HttpCommunication createCommunication(HttpCommunicationType httpCommunicationType) {
+        return HttpCommunicationFactory.createHttpCommunication(this, httpCommunicationType);
+    }
+
+    /**
+     * @return new <em>converse</em> communication of this client.
+     */
+    public Converse createConverse() {
+        return (Converse) createCommunication(HttpCommunicationType.CONVERSE);
+    }
+
+    /**
+     * @return new <em>message</em> communication of this client.
+     */
+    public Message createMessage() {
+        return (Message) createCommunication(HttpCommunicationType.MESSAGE);
+    }
+
+    /**
+     * @return new <em>speech</em> communication of this client.
+     */
+    public Speech createSpeech() {
+        return (Speech) createCommunication(HttpCommunicationType.SPEECH);
     }
 
     /**
@@ -73,10 +201,66 @@ public class Wit {
      *
      * @return the application's token.
      */
-    public static String getToken() {
+    public String getToken() {
         return token;
     }
 
+    public String getBaseUrl() {
+        return baseUrl;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    public Actions getActions() {
+        return actions;
+    }
+
+    /**
+     * @return store of session contexts (created on first call unless it was given to the builder).
+     */
+    public ContextStore getContextStore() {
+        return contextStore.get();
+    }
+
+    /**
+     * @return transport of requests (created on first call unless it was given to the builder).
+     */
+    public HttpTransport getTransport() {
+        return transport.get();
+    }
+
+    /**
+     * Prepares the client for traffic: creates its context store and transport, builds serializers of the JSON
+     * mapper and opens {@code connections} connections to <b>Wit.ai HTTP API</b>, so the first requests do not
+     * pay for class loading, connect and TLS handshake.
+     *
+     * @param connections number of connections to open ({@code 0} opens none).
+     * @throws IOException if a connection cannot be opened.
+     */
+    public void prewarm(int connections) throws IOException {
+        getContextStore();
+        HttpCommunication.prewarmJsonMapper();
+        if (connections > 0) {
+            getTransport().prewarm(URI.create(baseUrl), connections);
+        }
+    }
+
+    public Instrumentation getInstrumentation() {
+        return instrumentation;
+    }
+
+    /**
+     * Replaces instrumentation of all communications of this client.
+     *
+     * @param instrumentation new instrumentation ({@code Instrumentation.NOOP} or null disables it).
+     * @see Instrumentation
+     */
+    public void setInstrumentation(Instrumentation instrumentation) {
+        this.instrumentation = instrumentation == null ? Instrumentation.NOOP : instrumentation;
+    }
+
     /**
      * Starts interaction with a user through standard console and its streams
      * ({@code System.in}, {@code System.out}) by creating an instance of {@code Interaction} subclasses using
@@ -91,7 +275,7 @@ public class Wit {
      * @see InteractionFactory
      */
     public void interactByConsole(HttpCommunicationType httpCommunicationType) throws IOException {
-        InteractionFactory.getConsoleInteraction(httpCommunicationType).interact();
+        InteractionFactory.getConsoleInteraction(createCommunication(httpCommunicationType)).interact();
     }
 
     /**
@@ -110,6 +294,153 @@ public class Wit {
      */
     public void interact(InputStream input, OutputStream output, HttpCommunicationType httpCommunicationType)
             throws IOException {
-        InteractionFactory.getCustomInteraction(input, output, httpCommunicationType).interact();
+        InteractionFactory.getCustomInteraction(input, output, createCommunication(httpCommunicationType))
+                .interact();
+    }
+
+    /**
+     * Starts interaction with user over blocking channels (e.g. a {@code SocketChannel} passed as both
+     * {@code input} and {@code output}) with line framing of messages.
+     *
+     * @param input                 channel to get data from user.
+     * @param output                channel to provide user with data.
+     * @param httpCommunicationType type of communication with bot.
+     * @throws IOException if an I/O error occurs.
+     * @see com.liavontsibrechka.wit4j.interaction.CustomInteraction
+     */
+    public void interact(ReadableByteChannel input, WritableByteChannel output,
+                         HttpCommunicationType httpCommunicationType) throws IOException {
+        InteractionFactory.getCustomInteraction(input, output, createCommunication(httpCommunicationType))
+                .interact();
+    }
+
+    /**
+     * Closes the context store and the transport of this client if they were created, unless they were supplied
+     * to the builder (shared resources are closed by their owner).
+     */
+    @Override
+    public void close() {
+        ContextStore createdContextStore = contextStore.getIfCreated();
+        if (ownsContextStore && createdContextStore != null) {
+            createdContextStore.close();
+        }
+        HttpTransport createdTransport = transport.getIfCreated();
+        if (ownsTransport && createdTransport != null) {
+            createdTransport.close();
+        }
+    }
+
+    /**
+     * Builder for {@code Wit}.
+     */
+    public static final class Builder {
+        private final String token;
+        private String baseUrl;
+        private String version;
+        private Actions actions;
+        private ContextStore contextStore;
+        private HttpTransport transport;
+        private TransportConfig transportConfig;
+        private TrafficRecorder recorder;
+        private Instrumentation instrumentation = Instrumentation.NOOP;
+        private ResourceBundle bundle;
+
+        private Builder(String token) {
+            if (token == null) {
+                throw new IllegalArgumentException("Access token must not be null");
+            }
+            this.token = token;
+        }
+
+        public Builder baseUrl(String baseUrl) {
+            this.baseUrl = baseUrl;
+            return this;
+        }
+
+        public Builder version(String version) {
+            this.version = version;
+            return this;
+        }
+
+        /**
+         * @param actions registry of actions; may be shared by clients of bots with the same actions.
+         * @return this builder.
+         */
+        public Builder actions(Actions actions) {
+            this.actions = actions;
+            return this;
+        }
+
+        /**
+         * @param actions actions map copied into a new registry of the client.
+         * @return this builder.
+         */
+        public Builder actions(Map<String, IAction> actions) {
+            this.actions = new Actions(actions);
+            return this;
+        }
+
+        /**
+         * @param contextStore store of session contexts; it is not closed by the client. Clients sharing a store
+         *                     must not use the same session ids.
+         * @return this builder.
+         */
+        public Builder contextStore(ContextStore contextStore) {
+            this.contextStore = contextStore;
+            return this;
+        }
+
+        /**
+         * @param transport transport for sending requests; it is not closed by the client, so one transport and
+         *                  its connection pool may be shared by many clients.
+         * @return this builder.
+         */
+        public Builder transport(HttpTransport transport) {
+            this.transport = transport;
+            return this;
+        }
+
+        /**
+         * @param transportConfig connection pool settings of the transport created by the client; ignored when
+         *                        {@code transport} is set.
+         * @return this builder.
+         */
+        public Builder transportConfig(TransportConfig transportConfig) {
+            this.transportConfig = transportConfig;
+            return this;
+        }
+
+        /**
+         * @param recorder log that captures requests of sampled sessions of this client (none by default); it is
+         *                 not closed by the client, so one log may capture traffic of many clients.
+         * @return this builder.
+         * @see RecordingTransport
+         */
+        public Builder recorder(TrafficRecorder recorder) {
+            this.recorder = recorder;
+            return this;
+        }
+
+        /**
+         * Sets application properties ({@code base_url}, {@code version}, {@code transport.*},
+         * {@code rate_limit.*}, {@code retry.*} and {@code context.*} keys) used for settings that are not set
+         * explicitly. Without properties such settings get built-in defaults.
+         *
+         * @param bundle application properties.
+         * @return this builder.
+         */
+        public Builder properties(ResourceBundle bundle) {
+            this.bundle = bundle;
+            return this;
+        }
+
+        public Builder instrumentation(Instrumentation instrumentation) {
+            this.instrumentation = instrumentation == null ? Instrumentation.NOOP : instrumentation;
+            return this;
+        }
+
+        public Wit build() {
+            return new Wit(this);
+        }
     }
 }
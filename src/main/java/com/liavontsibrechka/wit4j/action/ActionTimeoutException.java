@@ -0,0 +1,33 @@
+/*
+ * Copyright 2016 Liavontsi Brechka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.liavontsibrechka.wit4j.action;
+
+/**
+ * Signals that an action did not complete within the time given to it by {@code AsyncActions.withTimeout}.
+ *
+ * @author Liavontsi Brechka
+ * @see AsyncActions
+ * @since 1.0-SNAPSHOT
+ */
+public class ActionTimeoutException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public ActionTimeoutException(String message) {
+        super(message);
+    }
+}
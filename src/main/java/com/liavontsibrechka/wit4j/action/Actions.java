@@ -17,60 +17,70 @@
 
 package com.liavontsibrechka.wit4j.action;
 
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
- * Singleton class that contains reference to actions map object.
+ * Registry of actions of a bot.
  * <p>
  * Actions map ({@code Map<String, IAction>}) - is the map that contains action name
  * as a {@code String} key and action implementation as an {@code IAction}
  * instance in order to handle appropriate actions triggered by bot.
+ * <p>
+ * The registry keeps its own immutable copy of the map and replaces it atomically on every change, so lookups
+ * are a single read of an unsynchronized map and never see a half-applied change. Action sets can be swapped
+ * while conversations are running: a step looks its action up when it starts, so it runs either the old or the
+ * new action. Any number of registries may exist in one process (e.g. one per bot, see {@code Wit.Builder});
+ * {@code getInstance} returns a process-wide default registry that may be given to clients sharing one action set.
  *
  * @author Liavontsi Brechka
  * @since 1.0-SNAPSHOT
  */
 public class Actions {
-    private static Actions instance;
-    private volatile static boolean instanceCreated = false;
+    private static final Actions DEFAULT = new Actions();
 
     /**
      * Actions map of specific application.
      */
-    private final Map<String, IAction> actions;
+    private final AtomicReference<Map<String, IAction>> actions;
 
-    private Actions(Map<String, IAction> actions) {
-        this.actions = actions;
+    /**
+     * Creates empty registry.
+     */
+    public Actions() {
+        this(Collections.<String, IAction>emptyMap());
     }
 
-    // TODO: 2016-06-25 review this approach of creating and setting actions
-    public static Actions setActions(Map<String, IAction> actions) throws IllegalAccessException {
-        boolean flag = false;
-
-        if (!instanceCreated) {
-            synchronized (Actions.class) {
-                if (!instanceCreated) {
-                    instance = new Actions(actions);
-                    instanceCreated = true;
-                    flag = true;
-                }
-            }
-        }
+    /**
+     * Creates registry with a copy of {@code actions}.
+     *
+     * @param actions actions map.
+     */
+    public Actions(Map<String, IAction> actions) {
+        this.actions = new AtomicReference<>(copyOf(actions));
+    }
 
-        if (!flag) {
-            throw new IllegalAccessException("Actions Map can be set only once.");
-        }
-        return instance;
+    /**
+     * Replaces actions of the default registry. Unlike earlier versions, the actions may be replaced any number
+     * of times; the exception is declared for source compatibility only and is never thrown.
+     *
+     * @param actions actions map.
+     * @return the default registry.
+     * @throws IllegalAccessException never.
+     */
+    public static Actions setActions(Map<String, IAction> actions) throws IllegalAccessException {
+        DEFAULT.replaceAll(actions);
+        return DEFAULT;
     }
 
+    /**
+     * @return the default registry.
+     */
     public static Actions getInstance() {
-        if (!instanceCreated) {
-            synchronized (Actions.class) {
-                if (!instanceCreated) {
-                    throw new IllegalStateException("Actions Map must be set before getting an instance.");
-                }
-            }
-        }
-        return instance;
+        return DEFAULT;
     }
 
     /**
@@ -80,9 +90,84 @@ public class Actions {
      * @return reference to the action.
      */
     public IAction getAction(String actionName) {
-        if (!actions.containsKey(actionName)) {
+        IAction action = actions.get().get(actionName);
+        if (action == null) {
             throw new IllegalArgumentException("IAction with name " + actionName + " was not fount in actions Map");
         }
-        return actions.get(actionName);
+        return action;
+    }
+
+    /**
+     * Atomically replaces all actions.
+     *
+     * @param newActions new actions map.
+     * @return previous actions map.
+     */
+    public Map<String, IAction> replaceAll(Map<String, IAction> newActions) {
+        return actions.getAndSet(copyOf(newActions));
+    }
+
+    /**
+     * Adds action or replaces action with the same name.
+     *
+     * @param actionName name of the action.
+     * @param action     action implementation.
+     * @return previous action with this name or null.
+     */
+    public IAction register(String actionName, IAction action) {
+        if (actionName == null || action == null) {
+            throw new IllegalArgumentException("Action name and action must not be null");
+        }
+
+        Map<String, IAction> current;
+        Map<String, IAction> updated;
+        do {
+            current = actions.get();
+            updated = new HashMap<>(current);
+            updated.put(actionName, action);
+        } while (!actions.compareAndSet(current, Collections.unmodifiableMap(updated)));
+        return current.get(actionName);
+    }
+
+    /**
+     * Removes action.
+     *
+     * @param actionName name of the action.
+     * @return removed action or null if there was no action with this name.
+     */
+    public IAction unregister(String actionName) {
+        Map<String, IAction> current;
+        Map<String, IAction> updated;
+        do {
+            current = actions.get();
+            if (!current.containsKey(actionName)) {
+                return null;
+            }
+            updated = new HashMap<>(current);
+            updated.remove(actionName);
+        } while (!actions.compareAndSet(current, Collections.unmodifiableMap(updated)));
+        return current.get(actionName);
+    }
+
+    /**
+     * @return immutable snapshot of registered actions.
+     */
+    public Map<String, IAction> getActions() {
+        return actions.get();
+    }
+
+    public Set<String> getActionNames() {
+        return actions.get().keySet();
+    }
+
+    private static Map<String, IAction> copyOf(Map<String, IAction> actions) {
+        if (actions == null) {
+            throw new IllegalArgumentException("Actions map must not be null");
+        }
+        Map<String, IAction> copy = new HashMap<>(actions);
+        if (copy.containsKey(null) || copy.containsValue(null)) {
+            throw new IllegalArgumentException("Actions map must not contain null names or actions");
+        }
+        return Collections.unmodifiableMap(copy);
     }
 }
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2016 Liavontsi Brechka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.liavontsibrechka.wit4j.action;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.liavontsibrechka.wit4j.Context;
+import com.liavontsibrechka.wit4j.communication.ConverseResponse;
+import com.liavontsibrechka.wit4j.util.Futures;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Functional interface for actions that complete asynchronously, e.g. after a database or service call, without
+ * blocking the thread that handles bot responses. The next <em>converse</em> step is sent when the returned stage
+ * completes; a failed stage fails the turn.
+ * <p>
+ * When the action is called through a blocking method ({@code execute}), the calling thread waits for the stage.
+ *
+ * @author Liavontsi Brechka
+ * @see IAction
+ * @see AsyncActions
+ * @since 1.0-SNAPSHOT
+ */
+@FunctionalInterface
+public interface AsyncAction extends IAction {
+    @Override
+    CompletionStage<Void> executeAsync(String sessionId, Context context, ConverseResponse response);
+
+    /**
+     * Starts the action and waits until it is done.
+     */
+    @Override
+    default void execute(String sessionId, Context context, ConverseResponse response) {
+        Futures.join(executeAsync(sessionId, context, response).toCompletableFuture());
+    }
+
+    /**
+     * Reads dispatch fields and entities from {@code httpResponse}, starts the action and waits until it is done.
+     */
+    @Override
+    default void execute(String sessionId, Context context, JsonNode httpResponse) {
+        try {
+            execute(sessionId, context, ConverseResponse.fromTree(httpResponse));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
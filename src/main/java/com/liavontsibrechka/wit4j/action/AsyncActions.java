@@ -0,0 +1,163 @@
+/*
+ * Copyright 2016 Liavontsi Brechka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.liavontsibrechka.wit4j.action;
+
+import com.liavontsibrechka.wit4j.Context;
+import com.liavontsibrechka.wit4j.util.Futures;
+import com.liavontsibrechka.wit4j.util.ThreadPools;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Wrappers that turn blocking {@code IAction} implementations into {@code AsyncAction}:
+ * <ul>
+ * <li>{@code onExecutor} runs the action on its own executor (e.g. a pool sized for a database), so the thread
+ * that handles bot responses is free while the action runs;</li>
+ * <li>{@code withTimeout} fails the turn with {@code ActionTimeoutException} if the action takes too long;</li>
+ * <li>{@code background} runs a side effect (logging, analytics) off the critical path: the next
+ * <em>converse</em> step is sent right away, while the action is still running.</li>
+ * </ul>
+ * Wrappers may be combined, e.g. {@code withTimeout(onExecutor(action, dbPool), 2, TimeUnit.SECONDS)}.
+ *
+ * @author Liavontsi Brechka
+ * @see AsyncAction
+ * @since 1.0-SNAPSHOT
+ */
+public final class AsyncActions {
+    private AsyncActions() {
+    }
+
+    /**
+     * @param action   action to run.
+     * @param executor executor to run the action on.
+     * @return action that runs {@code action} on {@code executor} and completes when it returns.
+     */
+    public static AsyncAction onExecutor(IAction action, Executor executor) {
+        return (sessionId, context, response) -> {
+            CompletableFuture<Void> result = new CompletableFuture<>();
+            try {
+                executor.execute(() -> {
+                    try {
+                        action.execute(sessionId, context, response);
+                        result.complete(null);
+                    } catch (RuntimeException | Error e) {
+                        result.completeExceptionally(e);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                result.completeExceptionally(e);
+            }
+            return result;
+        };
+    }
+
+    /**
+     * Limits time given to an asynchronous action. The action itself is not interrupted. A blocking action must
+     * be wrapped with {@code onExecutor} first, otherwise it runs to the end before the timeout can fire.
+     * <p>
+     * The action works on a copy of the context that is written back only if the action completes in time, so
+     * an action that keeps running after its timeout cannot change the context while the session goes on.
+     *
+     * @param action  action to limit.
+     * @param timeout maximum time to wait for the action.
+     * @param unit    unit of {@code timeout}.
+     * @return action that fails with {@code ActionTimeoutException} when {@code action} does not complete in time.
+     */
+    public static AsyncAction withTimeout(IAction action, long timeout, TimeUnit unit) {
+        return (sessionId, context, response) -> {
+            CompletableFuture<Void> result = new CompletableFuture<>();
+            // whoever flips it first (the action or the timer) completes the result
+            AtomicBoolean done = new AtomicBoolean();
+            Context snapshot = context.copy();
+            ScheduledFuture<?> timer = TimeoutTimer.INSTANCE.schedule(() -> {
+                if (done.compareAndSet(false, true)) {
+                    result.completeExceptionally(new ActionTimeoutException("Action of session " + sessionId
+                            + " did not complete within " + unit.toMillis(timeout) + " ms"));
+                }
+            }, timeout, unit);
+
+            CompletionStage<Void> execution;
+            try {
+                execution = action.executeAsync(sessionId, snapshot, response);
+            } catch (RuntimeException | Error e) {
+                timer.cancel(false);
+                if (done.compareAndSet(false, true)) {
+                    result.completeExceptionally(e);
+                }
+                return result;
+            }
+            execution.whenComplete((ignored, error) -> {
+                timer.cancel(false);
+                if (!done.compareAndSet(false, true)) {
+                    return;
+                }
+                if (error != null) {
+                    result.completeExceptionally(Futures.unwrap(error));
+                } else {
+                    // the turn waits for the result, so nothing else works with the context now
+                    context.replaceWith(snapshot);
+                    result.complete(null);
+                }
+            });
+            return result;
+        };
+    }
+
+    /**
+     * Runs {@code action} without making the conversation wait for it. The action gets a copy of the context taken
+     * when the step starts, since the next steps keep changing the context of the session while the action runs;
+     * changes made by the action are not written back.
+     *
+     * @param action   side effect to run.
+     * @param executor executor to run the action on.
+     * @param onError  receiver of failures of the action (the turn itself never fails because of them).
+     * @return action that completes immediately.
+     */
+    public static AsyncAction background(IAction action, Executor executor, Consumer<Throwable> onError) {
+        AsyncAction onExecutor = onExecutor(action, executor);
+        return (sessionId, context, response) -> {
+            onExecutor.executeAsync(sessionId, context.copy(), response).whenComplete((ignored, error) -> {
+                if (error != null) {
+                    onError.accept(Futures.unwrap(error));
+                }
+            });
+            return CompletableFuture.completedFuture(null);
+        };
+    }
+
+    /**
+     * Timer of {@code withTimeout}, created on first use.
+     */
+    private static final class TimeoutTimer {
+        private static final ScheduledThreadPoolExecutor INSTANCE = new ScheduledThreadPoolExecutor(1,
+                ThreadPools.daemonThreadFactory("wit4j-action-timeout"));
+
+        static {
+            // most actions complete in time, cancelled timeouts must not pile up in the queue
+            INSTANCE.setRemoveOnCancelPolicy(true);
+        }
+    }
+}
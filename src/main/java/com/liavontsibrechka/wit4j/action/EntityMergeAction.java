@@ -0,0 +1,275 @@
+/*
+ * Copyright 2016 Liavontsi Brechka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.liavontsibrechka.wit4j.action;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.liavontsibrechka.wit4j.Context;
+import com.liavontsibrechka.wit4j.communication.ConverseResponse;
+import com.liavontsibrechka.wit4j.communication.EntityValue;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Declarative <em>merge</em> action that copies extracted entities into the session context, so applications do
+ * not have to walk the {@code entities} tree by hand.
+ * <p>
+ * Every declared entity is mapped to a context key and a {@code Strategy} that picks its value. The mappings are
+ * compiled by {@code build} into an array of bindings, so a call only looks up each declared entity once and
+ * writes the selected value; an entity the response does not contain leaves its key as is (or removes it, see
+ * {@code Builder.clearMissing}). Nested {@code value} objects (e.g. of <em>datetime</em> intervals) are
+ * unwrapped, and a value equal to the one already in the context is not written again, so the cached serialized
+ * context stays valid.
+ * <p>
+ * The action works both with JSON responses (<em>message</em>, <em>speech</em>) and with converse responses
+ * read by streaming parser, e.g.
+ * <pre>{@code
+ * actions.put("merge", EntityMergeAction.builder()
+ *         .entity("location")
+ *         .entity("datetime", EntityMergeAction.Strategy.HIGHEST_CONFIDENCE, "when")
+ *         .build());
+ * }</pre>
+ *
+ * @author Liavontsi Brechka
+ * @see IAction
+ * @see EntityValue
+ * @since 1.0-SNAPSHOT
+ */
+public final class EntityMergeAction implements IAction {
+    private final Binding[] bindings;
+    private final boolean clearMissing;
+
+    private EntityMergeAction(Builder builder) {
+        this.bindings = builder.bindings.values().toArray(new Binding[0]);
+        this.clearMissing = builder.clearMissing;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    @Override
+    public void execute(String sessionId, Context context, JsonNode httpResponse) {
+        JsonNode entities = httpResponse == null ? null : httpResponse.get("entities");
+        for (Binding binding : bindings) {
+            JsonNode values = entities == null ? null : entities.get(binding.entity);
+            JsonNode value = values != null && values.isArray() && values.size() > 0
+                    ? binding.strategy.select(values) : null;
+            merge(context, binding.key, value);
+        }
+    }
+
+    @Override
+    public void execute(String sessionId, Context context, ConverseResponse response) {
+        for (Binding binding : bindings) {
+            List<EntityValue> values = response.getEntity(binding.entity);
+            merge(context, binding.key, values.isEmpty() ? null : binding.strategy.select(values));
+        }
+    }
+
+    private void merge(Context context, String key, JsonNode value) {
+        if (value == null || value.isNull()) {
+            if (clearMissing) {
+                context.remove(key);
+            }
+        } else if (!value.equals(context.get(key))) {
+            context.put(key, value);
+        }
+    }
+
+    /**
+     * Value of an entity {@code values} element with nested {@code value} object unwrapped (May be null).
+     */
+    private static JsonNode resolve(JsonNode element) {
+        JsonNode value = element.get("value");
+        if (value != null && value.isObject() && value.has("value")) {
+            return value.get("value");
+        }
+        return value;
+    }
+
+    private static double confidence(JsonNode element) {
+        JsonNode confidence = element.get("confidence");
+        return confidence != null && confidence.isNumber() ? confidence.doubleValue() : Double.NEGATIVE_INFINITY;
+    }
+
+    private static double confidence(EntityValue value) {
+        double confidence = value.getConfidence();
+        return Double.isNaN(confidence) ? Double.NEGATIVE_INFINITY : confidence;
+    }
+
+    /**
+     * Picks the value of an entity from its non-empty list of extracted values.
+     */
+    public enum Strategy {
+        /**
+         * The first value, as ranked by <b>Wit.ai</b>.
+         */
+        FIRST {
+            @Override
+            JsonNode select(JsonNode values) {
+                return resolve(values.get(0));
+            }
+
+            @Override
+            JsonNode select(List<EntityValue> values) {
+                return values.get(0).getResolvedValue();
+            }
+        },
+        /**
+         * The value with the highest confidence (the first one of equally confident values).
+         */
+        HIGHEST_CONFIDENCE {
+            @Override
+            JsonNode select(JsonNode values) {
+                JsonNode best = values.get(0);
+                for (int i = 1; i < values.size(); i++) {
+                    if (confidence(values.get(i)) > confidence(best)) {
+                        best = values.get(i);
+                    }
+                }
+                return resolve(best);
+            }
+
+            @Override
+            JsonNode select(List<EntityValue> values) {
+                EntityValue best = values.get(0);
+                for (int i = 1; i < values.size(); i++) {
+                    if (confidence(values.get(i)) > confidence(best)) {
+                        best = values.get(i);
+                    }
+                }
+                return best.getResolvedValue();
+            }
+        },
+        /**
+         * Array of all values.
+         */
+        ALL {
+            @Override
+            JsonNode select(JsonNode values) {
+                ArrayNode all = JsonNodeFactory.instance.arrayNode();
+                for (int i = 0; i < values.size(); i++) {
+                    JsonNode value = resolve(values.get(i));
+                    if (value != null) {
+                        all.add(value);
+                    }
+                }
+                return all;
+            }
+
+            @Override
+            JsonNode select(List<EntityValue> values) {
+                ArrayNode all = JsonNodeFactory.instance.arrayNode();
+                for (int i = 0; i < values.size(); i++) {
+                    JsonNode value = values.get(i).getResolvedValue();
+                    if (value != null) {
+                        all.add(value);
+                    }
+                }
+                return all;
+            }
+        };
+
+        abstract JsonNode select(JsonNode values);
+
+        abstract JsonNode select(List<EntityValue> values);
+    }
+
+    private static final class Binding {
+        private final String entity;
+        private final Strategy strategy;
+        private final String key;
+
+        private Binding(String entity, Strategy strategy, String key) {
+            this.entity = entity;
+            this.strategy = strategy;
+            this.key = key;
+        }
+    }
+
+    /**
+     * Builder for {@code EntityMergeAction}.
+     */
+    public static final class Builder {
+        private final Map<String, Binding> bindings = new LinkedHashMap<>();
+        private boolean clearMissing;
+
+        private Builder() {
+        }
+
+        /**
+         * Copies the first value of the entity to the context key of the same name.
+         *
+         * @param entity entity name.
+         * @return this builder.
+         */
+        public Builder entity(String entity) {
+            return entity(entity, Strategy.FIRST, entity);
+        }
+
+        /**
+         * @param entity   entity name.
+         * @param strategy strategy that picks the value.
+         * @param key      context key the value is copied to (an entity may be copied to several keys, a key
+         *                 declared again is replaced).
+         * @return this builder.
+         */
+        public Builder entity(String entity, Strategy strategy, String key) {
+            if (entity == null || strategy == null || key == null) {
+                throw new IllegalArgumentException("Entity, strategy and key must not be null");
+            }
+            bindings.put(key, new Binding(entity, strategy, key));
+            return this;
+        }
+
+        /**
+         * Copies the first value of every entity to the context keys of the same names.
+         *
+         * @param entities entity names.
+         * @return this builder.
+         */
+        public Builder entities(String... entities) {
+            for (String entity : entities) {
+                entity(entity);
+            }
+            return this;
+        }
+
+        /**
+         * Removes context key of a declared entity that the response does not contain (by default the key is
+         * left as is, so entities of earlier turns are kept).
+         *
+         * @return this builder.
+         */
+        public Builder clearMissing() {
+            this.clearMissing = true;
+            return this;
+        }
+
+        public EntityMergeAction build() {
+            if (bindings.isEmpty()) {
+                throw new IllegalStateException("At least one entity must be declared");
+            }
+            return new EntityMergeAction(this);
+        }
+    }
+}
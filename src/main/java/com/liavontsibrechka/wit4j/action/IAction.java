@@ -19,6 +19,11 @@ package com.liavontsibrechka.wit4j.action;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.liavontsibrechka.wit4j.Context;
+import com.liavontsibrechka.wit4j.communication.ConverseResponse;
+import com.liavontsibrechka.wit4j.util.Futures;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 
 /**
  * Functional interface that must be implemented by every action in {@code Map<String, IAction>} (actions map
@@ -31,5 +36,48 @@ import com.liavontsibrechka.wit4j.Context;
  * @since 1.0-SNAPSHOT
  */
 public interface IAction {
+    /**
+     * Executes the action.
+     *
+     * @param sessionId    identifier of the session that triggered the action.
+     * @param context      context of that session (see {@code ContextStore}).
+     * @param httpResponse JSON response of the bot.
+     */
     void execute(String sessionId, Context context, JsonNode httpResponse);
+
+    /**
+     * Executes the action for a response read by streaming parser. The default implementation builds the JSON
+     * tree of the response and delegates to {@code execute(String, Context, JsonNode)}; actions that only need
+     * dispatch fields and entities should implement {@code ResponseAction} instead.
+     *
+     * @param sessionId identifier of the session that triggered the action.
+     * @param context   context of that session (see {@code ContextStore}).
+     * @param response  parsed response of the bot.
+     * @see ResponseAction
+     */
+    default void execute(String sessionId, Context context, ConverseResponse response) {
+        execute(sessionId, context, response.asTree());
+    }
+
+    /**
+     * Starts the action and returns a stage that completes when it is done; the next <em>converse</em> step is
+     * sent only after that. The default implementation executes the action on the calling thread and returns a
+     * completed stage; actions that call slow services should implement {@code AsyncAction} instead (or be
+     * wrapped with {@code AsyncActions}), so they do not occupy the thread that handles bot responses.
+     *
+     * @param sessionId identifier of the session that triggered the action.
+     * @param context   context of that session (see {@code ContextStore}).
+     * @param response  parsed response of the bot.
+     * @return stage that is completed when the action finished or failed.
+     * @see AsyncAction
+     * @see AsyncActions
+     */
+    default CompletionStage<Void> executeAsync(String sessionId, Context context, ConverseResponse response) {
+        try {
+            execute(sessionId, context, response);
+            return CompletableFuture.completedFuture(null);
+        } catch (RuntimeException e) {
+            return Futures.failed(e);
+        }
+    }
 }
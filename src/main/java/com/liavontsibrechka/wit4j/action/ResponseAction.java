@@ -0,0 +1,53 @@
+/*
+ * Copyright 2016 Liavontsi Brechka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.liavontsibrechka.wit4j.action;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.liavontsibrechka.wit4j.Context;
+import com.liavontsibrechka.wit4j.communication.ConverseResponse;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Functional interface for actions that work with the response read by streaming parser
+ * ({@code ConverseResponse}) rather than with the full JSON tree, so no tree is built for them.
+ *
+ * @author Liavontsi Brechka
+ * @see IAction
+ * @see ConverseResponse
+ * @since 1.0-SNAPSHOT
+ */
+@FunctionalInterface
+public interface ResponseAction extends IAction {
+    @Override
+    void execute(String sessionId, Context context, ConverseResponse response);
+
+    /**
+     * Reads dispatch fields and entities from {@code httpResponse} and delegates to
+     * {@code execute(String, Context, ConverseResponse)}.
+     */
+    @Override
+    default void execute(String sessionId, Context context, JsonNode httpResponse) {
+        try {
+            execute(sessionId, context, ConverseResponse.fromTree(httpResponse));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2016 Liavontsi Brechka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.liavontsibrechka.wit4j.capture;
+
+/**
+ * One request to <b>Wit.ai HTTP API</b> and its outcome as captured by {@code RecordingTransport}: for a
+ * <em>converse</em> session, one step of a turn. The access token is never captured.
+ *
+ * @author Liavontsi Brechka
+ * @see TrafficRecorder
+ * @see TrafficReplayer
+ * @since 1.0-SNAPSHOT
+ */
+public final class CapturedExchange {
+    private final long timestampMicros;
+    private final String sessionId;
+    private final String method;
+    private final String uri;
+    private final String requestBody;
+    private final int statusCode;
+    private final String responseBody;
+    private final long durationMicros;
+    private final String error;
+
+    /**
+     * @param timestampMicros time the request was sent, in microseconds since the epoch.
+     * @param sessionId       session identifier (May be null for requests without session).
+     * @param method          http method name.
+     * @param uri             path and query string of the request.
+     * @param requestBody     request body, i.e. the context of a <em>converse</em> request (May be null).
+     * @param statusCode      response status code ({@code 0} if the request failed without response).
+     * @param responseBody    response body (May be null).
+     * @param durationMicros  time from sending the request until the whole response was received or it failed.
+     * @param error           failure of the request (May be null).
+     */
+    public CapturedExchange(long timestampMicros, String sessionId, String method, String uri, String requestBody,
+                            int statusCode, String responseBody, long durationMicros, String error) {
+        this.timestampMicros = timestampMicros;
+        this.sessionId = sessionId;
+        this.method = method;
+        this.uri = uri;
+        this.requestBody = requestBody;
+        this.statusCode = statusCode;
+        this.responseBody = responseBody;
+        this.durationMicros = durationMicros;
+        this.error = error;
+    }
+
+    public long getTimestampMicros() {
+        return timestampMicros;
+    }
+
+    public String getSessionId() {
+        return sessionId;
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public String getUri() {
+        return uri;
+    }
+
+    public String getRequestBody() {
+        return requestBody;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    public String getResponseBody() {
+        return responseBody;
+    }
+
+    public long getDurationMicros() {
+        return durationMicros;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    @Override
+    public String toString() {
+        return "CapturedExchange{sessionId=" + sessionId + ", " + method + " " + uri + ", statusCode=" + statusCode
+                + ", durationMicros=" + durationMicros + "}";
+    }
+}
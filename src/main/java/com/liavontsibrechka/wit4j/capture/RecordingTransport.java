@@ -0,0 +1,135 @@
+/*
+ * Copyright 2016 Liavontsi Brechka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.liavontsibrechka.wit4j.capture;
+
+import com.liavontsibrechka.wit4j.communication.transport.HttpRequest;
+import com.liavontsibrechka.wit4j.communication.transport.HttpResponse;
+import com.liavontsibrechka.wit4j.communication.transport.HttpTransport;
+import com.liavontsibrechka.wit4j.util.Futures;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * {@code HttpTransport} decorator that captures requests of sampled sessions and their responses into
+ * {@code TrafficRecorder}. Requests of other sessions pass through without any work beyond the sampling
+ * decision. Usually installed with {@code Wit.Builder.recorder}.
+ * <p>
+ * Request bodies are copied, because callers may reuse their buffers once the request completed.
+ *
+ * @author Liavontsi Brechka
+ * @see TrafficRecorder
+ * @since 1.0-SNAPSHOT
+ */
+public class RecordingTransport implements HttpTransport {
+    private static final String SESSION_PARAMETER = "session_id=";
+
+    private final HttpTransport delegate;
+    private final TrafficRecorder recorder;
+
+    /**
+     * @param delegate transport that sends requests; it is closed with this transport.
+     * @param recorder log of captured requests; it is not closed with this transport.
+     */
+    public RecordingTransport(HttpTransport delegate, TrafficRecorder recorder) {
+        this.delegate = delegate;
+        this.recorder = recorder;
+    }
+
+    @Override
+    public HttpResponse execute(HttpRequest request) throws IOException {
+        String sessionId = sessionId(request.getUri());
+        if (!recorder.isSampled(sessionId)) {
+            return delegate.execute(request);
+        }
+
+        byte[] body = copyBody(request);
+        long startNanos = System.nanoTime();
+        try {
+            HttpResponse response = delegate.execute(request);
+            recorder.record(sessionId, request, body, response, startNanos, System.nanoTime(), null);
+            return response;
+        } catch (IOException | RuntimeException e) {
+            recorder.record(sessionId, request, body, null, startNanos, System.nanoTime(), e);
+            throw e;
+        }
+    }
+
+    @Override
+    public CompletableFuture<HttpResponse> executeAsync(HttpRequest request) {
+        String sessionId = sessionId(request.getUri());
+        if (!recorder.isSampled(sessionId)) {
+            return delegate.executeAsync(request);
+        }
+
+        byte[] body = copyBody(request);
+        long startNanos = System.nanoTime();
+        return delegate.executeAsync(request).whenComplete((response, error) -> recorder.record(sessionId, request,
+                body, response, startNanos, System.nanoTime(), error == null ? null : Futures.unwrap(error)));
+    }
+
+    @Override
+    public int prewarm(URI uri, int connections) throws IOException {
+        return delegate.prewarm(uri, connections);
+    }
+
+    public HttpTransport getDelegate() {
+        return delegate;
+    }
+
+    public TrafficRecorder getRecorder() {
+        return recorder;
+    }
+
+    @Override
+    public void close() {
+        delegate.close();
+    }
+
+    private static byte[] copyBody(HttpRequest request) {
+        byte[] body = request.getBody();
+        return body == null ? null : Arrays.copyOf(body, request.getBodyLength());
+    }
+
+    static String sessionId(URI uri) {
+        String query = uri.getRawQuery();
+        if (query == null) {
+            return null;
+        }
+        int start;
+        if (query.startsWith(SESSION_PARAMETER)) {
+            start = SESSION_PARAMETER.length();
+        } else {
+            int separator = query.indexOf("&" + SESSION_PARAMETER);
+            if (separator < 0) {
+                return null;
+            }
+            start = separator + 1 + SESSION_PARAMETER.length();
+        }
+        int end = query.indexOf('&', start);
+        try {
+            return URLDecoder.decode(end < 0 ? query.substring(start) : query.substring(start, end), "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2016 Liavontsi Brechka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.liavontsibrechka.wit4j.capture;
+
+import com.liavontsibrechka.wit4j.metrics.LatencyHistogram;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measurements of a {@code TrafficReplayer} run.
+ *
+ * @author Liavontsi Brechka
+ * @see TrafficReplayer
+ * @since 1.0-SNAPSHOT
+ */
+public final class ReplayReport {
+    private final long requests;
+    private final long failedRequests;
+    private final long statusMismatches;
+    private final long elapsedNanos;
+    private final LatencyHistogram latency;
+
+    ReplayReport(long requests, long failedRequests, long statusMismatches, long elapsedNanos,
+                 LatencyHistogram latency) {
+        this.requests = requests;
+        this.failedRequests = failedRequests;
+        this.statusMismatches = statusMismatches;
+        this.elapsedNanos = elapsedNanos;
+        this.latency = latency;
+    }
+
+    public long getRequests() {
+        return requests;
+    }
+
+    /**
+     * @return number of requests that failed without response.
+     */
+    public long getFailedRequests() {
+        return failedRequests;
+    }
+
+    /**
+     * @return number of responses whose status code differs from the captured one.
+     */
+    public long getStatusMismatches() {
+        return statusMismatches;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * @return requests per second.
+     */
+    public double getThroughput() {
+        return elapsedNanos == 0 ? 0 : requests * 1e9 / elapsedNanos;
+    }
+
+    /**
+     * @return latency of replayed requests in nanoseconds.
+     */
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ReplayReport{requests=%d, failedRequests=%d, statusMismatches=%d, elapsed=%d ms, "
+                        + "throughput=%.1f requests/s, p50=%.2f ms, p99=%.2f ms, max=%.2f ms}",
+                requests, failedRequests, statusMismatches, TimeUnit.NANOSECONDS.toMillis(elapsedNanos),
+                getThroughput(), latency.getValueAtPercentile(50) / 1e6, latency.getValueAtPercentile(99) / 1e6,
+                latency.getMax() / 1e6);
+    }
+}
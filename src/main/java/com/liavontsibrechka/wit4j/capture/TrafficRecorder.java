@@ -0,0 +1,321 @@
+/*
+ * Copyright 2016 Liavontsi Brechka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.liavontsibrechka.wit4j.capture;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.util.MinimalPrettyPrinter;
+import com.liavontsibrechka.wit4j.communication.transport.HttpRequest;
+import com.liavontsibrechka.wit4j.communication.transport.HttpResponse;
+import com.liavontsibrechka.wit4j.util.ThreadPools;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Append-only log of requests to <b>Wit.ai HTTP API</b> captured by {@code RecordingTransport}, written as
+ * newline-delimited JSON (one {@code CapturedExchange} per line) for capacity planning and replay with
+ * {@code TrafficReplayer}.
+ * <p>
+ * Capture is cheap enough to stay on in production: the request thread only decides whether the session is
+ * sampled and offers the captured bytes to a bounded queue; a background thread encodes and writes them and
+ * flushes the file when the queue is drained. Captures that do not fit into the queue are dropped and counted
+ * instead of slowing requests down. Sessions are sampled by a hash of the session identifier, so a sampled
+ * session is captured with all its steps.
+ *
+ * @author Liavontsi Brechka
+ * @see RecordingTransport
+ * @see TrafficReplayer
+ * @since 1.0-SNAPSHOT
+ */
+public class TrafficRecorder implements Closeable {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final long IDLE_POLL_MILLIS = 100;
+
+    private final Path path;
+    private final double sampleRate;
+    private final long sampleThreshold;
+    private final BlockingQueue<Capture> queue;
+    private final OutputStream out;
+    private final JsonGenerator generator;
+    private final Thread writer;
+    /**
+     * Wall clock and monotonic time at creation; timestamps are derived from both, so they are precise and do
+     * not jump with the wall clock.
+     */
+    private final long startEpochMicros;
+    private final long startNanos;
+
+    private final AtomicLong recorded = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private volatile boolean closed;
+
+    private TrafficRecorder(Builder builder) throws IOException {
+        this.path = builder.path;
+        this.sampleRate = builder.sampleRate;
+        this.sampleThreshold = (long) (builder.sampleRate * (1L << 32));
+        this.queue = new ArrayBlockingQueue<>(builder.queueCapacity);
+        this.startEpochMicros = TimeUnit.MILLISECONDS.toMicros(System.currentTimeMillis());
+        this.startNanos = System.nanoTime();
+
+        this.out = new BufferedOutputStream(Channels.newOutputStream(FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)), BUFFER_SIZE);
+        this.generator = new JsonFactory().createGenerator(out);
+        generator.setPrettyPrinter(new MinimalPrettyPrinter(""));
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+
+        this.writer = ThreadPools.daemonThreadFactory("wit4j-recorder").newThread(this::drain);
+        writer.start();
+    }
+
+    /**
+     * @param path log file; captures are appended to it if it exists.
+     * @return builder of recorder writing to {@code path}.
+     */
+    public static Builder builder(Path path) {
+        return new Builder(path);
+    }
+
+    /**
+     * @param sessionId session identifier (May be null for requests without session).
+     * @return true if requests of the session must be captured.
+     */
+    public boolean isSampled(String sessionId) {
+        if (sampleRate >= 1) {
+            return true;
+        }
+        if (sampleRate <= 0) {
+            return false;
+        }
+        if (sessionId == null) {
+            return ThreadLocalRandom.current().nextDouble() < sampleRate;
+        }
+        return (mix(sessionId.hashCode()) & 0xffffffffL) < sampleThreshold;
+    }
+
+    /**
+     * Queues an exchange for writing without blocking; it is dropped if the queue is full or the recorder is
+     * closed.
+     *
+     * @param sessionId    session identifier (May be null).
+     * @param request      the request; its body is not read.
+     * @param requestBody  copy of the request body (May be null).
+     * @param response     the response (May be null if the request failed).
+     * @param startNanos   {@code System.nanoTime()} when the request was sent.
+     * @param endNanos     {@code System.nanoTime()} when the request completed.
+     * @param error        failure of the request (May be null).
+     */
+    void record(String sessionId, HttpRequest request, byte[] requestBody, HttpResponse response, long startNanos,
+                long endNanos, Throwable error) {
+        if (closed || !queue.offer(new Capture(sessionId, request, requestBody, response, startNanos, endNanos,
+                error))) {
+            dropped.incrementAndGet();
+        }
+    }
+
+    private void drain() {
+        try {
+            while (!closed || !queue.isEmpty()) {
+                Capture capture = queue.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (capture == null) {
+                    generator.flush();
+                    continue;
+                }
+                write(capture);
+                recorded.incrementAndGet();
+                if (queue.isEmpty()) {
+                    generator.flush();
+                }
+            }
+            generator.flush();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            // the log is unusable, further captures are dropped
+            closed = true;
+            dropped.addAndGet(queue.size() + 1);
+            queue.clear();
+        }
+    }
+
+    private void write(Capture capture) throws IOException {
+        HttpRequest request = capture.request;
+        String query = request.getUri().getRawQuery();
+
+        generator.writeStartObject();
+        generator.writeNumberField("timestamp_us", startEpochMicros + (capture.startNanos - startNanos) / 1000);
+        if (capture.sessionId != null) {
+            generator.writeStringField("session_id", capture.sessionId);
+        }
+        generator.writeStringField("method", request.getMethod());
+        generator.writeStringField("uri", query == null ? request.getUri().getRawPath()
+                : request.getUri().getRawPath() + "?" + query);
+        if (capture.requestBody != null) {
+            generator.writeFieldName("request");
+            generator.writeUTF8String(capture.requestBody, 0, capture.requestBody.length);
+        }
+        if (capture.response != null) {
+            byte[] body = capture.response.getBody();
+            generator.writeNumberField("status", capture.response.getStatusCode());
+            generator.writeFieldName("response");
+            generator.writeUTF8String(body, 0, body.length);
+        }
+        generator.writeNumberField("duration_us", (capture.endNanos - capture.startNanos) / 1000);
+        if (capture.error != null) {
+            generator.writeStringField("error", String.valueOf(capture.error));
+        }
+        generator.writeEndObject();
+        generator.writeRaw('\n');
+    }
+
+    /**
+     * Finalizer of {@code MurmurHash3}, so similar session identifiers are sampled independently.
+     */
+    private static int mix(int hash) {
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        hash *= 0xc2b2ae35;
+        hash ^= hash >>> 16;
+        return hash;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public double getSampleRate() {
+        return sampleRate;
+    }
+
+    /**
+     * @return number of exchanges written to the log.
+     */
+    public long getRecorded() {
+        return recorded.get();
+    }
+
+    /**
+     * @return number of sampled exchanges dropped because the queue was full or the log could not be written.
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * Writes queued captures and closes the log. Exchanges completed afterwards are dropped.
+     *
+     * @throws IOException if the log cannot be written or closed.
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            generator.close();
+        } finally {
+            out.close();
+        }
+    }
+
+    private static final class Capture {
+        private final String sessionId;
+        private final HttpRequest request;
+        private final byte[] requestBody;
+        private final HttpResponse response;
+        private final long startNanos;
+        private final long endNanos;
+        private final Throwable error;
+
+        private Capture(String sessionId, HttpRequest request, byte[] requestBody, HttpResponse response,
+                        long startNanos, long endNanos, Throwable error) {
+            this.sessionId = sessionId;
+            this.request = request;
+            this.requestBody = requestBody;
+            this.response = response;
+            this.startNanos = startNanos;
+            this.endNanos = endNanos;
+            this.error = error;
+        }
+    }
+
+    /**
+     * Builder for {@code TrafficRecorder}.
+     */
+    public static final class Builder {
+        private final Path path;
+        private double sampleRate = 1;
+        private int queueCapacity = 8192;
+
+        private Builder(Path path) {
+            if (path == null) {
+                throw new IllegalArgumentException("Log path must not be null");
+            }
+            this.path = path;
+        }
+
+        /**
+         * @param sampleRate share of sessions captured, from {@code 0} to {@code 1} (all sessions by default).
+         * @return this builder.
+         */
+        public Builder sampleRate(double sampleRate) {
+            if (sampleRate < 0 || sampleRate > 1) {
+                throw new IllegalArgumentException("Sample rate must be between 0 and 1: " + sampleRate);
+            }
+            this.sampleRate = sampleRate;
+            return this;
+        }
+
+        /**
+         * @param queueCapacity maximum number of captures waiting to be written (8192 by default).
+         * @return this builder.
+         */
+        public Builder queueCapacity(int queueCapacity) {
+            if (queueCapacity < 1) {
+                throw new IllegalArgumentException("queueCapacity must be positive: " + queueCapacity);
+            }
+            this.queueCapacity = queueCapacity;
+            return this;
+        }
+
+        /**
+         * Opens the log and starts the writer thread.
+         *
+         * @return recorder.
+         * @throws IOException if the log cannot be opened.
+         */
+        public TrafficRecorder build() throws IOException {
+            return new TrafficRecorder(this);
+        }
+    }
+}
@@ -0,0 +1,294 @@
+/*
+ * Copyright 2016 Liavontsi Brechka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.liavontsibrechka.wit4j.capture;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.liavontsibrechka.wit4j.Wit;
+import com.liavontsibrechka.wit4j.communication.transport.HttpRequest;
+import com.liavontsibrechka.wit4j.communication.transport.HttpTransport;
+import com.liavontsibrechka.wit4j.metrics.LatencyHistogram;
+import com.liavontsibrechka.wit4j.util.ThreadPools;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Sends captured traffic again, against {@code WitSimulator} or the real <b>Wit.ai HTTP API</b>, keeping its
+ * timing: every request is sent at its captured offset from the first one, divided by {@code speed}. Requests
+ * of one session are sent in captured order, each after the previous one completed, so a session that is slower
+ * than captured falls behind instead of overtaking itself.
+ * <p>
+ * To multiply the load the log may be replayed several times at once ({@code copies}); every copy gets its own
+ * session identifiers.
+ *
+ * @author Liavontsi Brechka
+ * @see TrafficRecorder
+ * @see ReplayReport
+ * @since 1.0-SNAPSHOT
+ */
+public class TrafficReplayer {
+    private static final ObjectMapper JSON_MAPPER = new ObjectMapper();
+
+    private final List<CapturedExchange> exchanges;
+    private final HttpTransport transport;
+    private final String baseUrl;
+    private final String authorization;
+    private final double speed;
+    private final int copies;
+
+    private TrafficReplayer(Builder builder) {
+        this.exchanges = builder.exchanges;
+        this.transport = builder.transport;
+        this.baseUrl = builder.baseUrl;
+        this.authorization = builder.token == null ? null : "Bearer " + builder.token;
+        this.speed = builder.speed;
+        this.copies = builder.copies;
+    }
+
+    /**
+     * @param exchanges captured exchanges in the order they were sent.
+     * @param transport transport to send them with; it is not closed by the replayer.
+     * @return builder of replayer.
+     */
+    public static Builder builder(List<CapturedExchange> exchanges, HttpTransport transport) {
+        return new Builder(exchanges, transport);
+    }
+
+    /**
+     * Reads log written by {@code TrafficRecorder}.
+     *
+     * @param path log file.
+     * @return captured exchanges in the order they were written.
+     * @throws IOException if the log cannot be read or a line is not a captured exchange.
+     */
+    public static List<CapturedExchange> read(Path path) throws IOException {
+        List<CapturedExchange> exchanges = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+                JsonNode node = JSON_MAPPER.readTree(line);
+                if (node == null || !node.path("uri").isTextual()) {
+                    throw new IOException("Not a captured exchange: " + line);
+                }
+                exchanges.add(new CapturedExchange(node.path("timestamp_us").asLong(),
+                        text(node, "session_id"), node.path("method").asText("GET"), node.get("uri").asText(),
+                        text(node, "request"), node.path("status").asInt(), text(node, "response"),
+                        node.path("duration_us").asLong(), text(node, "error")));
+            }
+        }
+        return exchanges;
+    }
+
+    private static String text(JsonNode node, String field) {
+        JsonNode value = node.get(field);
+        return value == null || value.isNull() ? null : value.asText();
+    }
+
+    /**
+     * Replays the exchanges and waits until all of them completed.
+     *
+     * @return measurements of the replay.
+     * @throws InterruptedException if interrupted while waiting for the replay.
+     */
+    public ReplayReport run() throws InterruptedException {
+        Map<String, List<CapturedExchange>> sessions = new LinkedHashMap<>();
+        List<List<CapturedExchange>> sequences = new ArrayList<>();
+        long firstTimestampMicros = Long.MAX_VALUE;
+        for (CapturedExchange exchange : exchanges) {
+            firstTimestampMicros = Math.min(firstTimestampMicros, exchange.getTimestampMicros());
+            if (exchange.getSessionId() == null) {
+                sequences.add(Collections.singletonList(exchange));
+            } else {
+                sessions.computeIfAbsent(exchange.getSessionId(), id -> new ArrayList<>()).add(exchange);
+            }
+        }
+        sequences.addAll(sessions.values());
+
+        Replay replay = new Replay(sequences.size() * copies, firstTimestampMicros);
+        for (int copy = 0; copy < copies; copy++) {
+            String suffix = copies == 1 ? "" : "-replay-" + copy;
+            for (List<CapturedExchange> sequence : sequences) {
+                replay.next(sequence, 0, suffix);
+            }
+        }
+        replay.done.await();
+        return new ReplayReport(replay.sent.sum(), replay.failed.sum(), replay.mismatched.sum(),
+                System.nanoTime() - replay.startNanos, replay.latency);
+    }
+
+    private final class Replay {
+        private final CountDownLatch done;
+        private final long firstTimestampMicros;
+        private final long startNanos = System.nanoTime();
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LongAdder sent = new LongAdder();
+        private final LongAdder failed = new LongAdder();
+        private final LongAdder mismatched = new LongAdder();
+
+        private Replay(int sequences, long firstTimestampMicros) {
+            this.done = new CountDownLatch(sequences);
+            this.firstTimestampMicros = firstTimestampMicros;
+        }
+
+        private void next(List<CapturedExchange> sequence, int index, String suffix) {
+            if (index == sequence.size()) {
+                done.countDown();
+                return;
+            }
+            CapturedExchange exchange = sequence.get(index);
+            long offsetNanos = (long) (TimeUnit.MICROSECONDS.toNanos(exchange.getTimestampMicros()
+                    - firstTimestampMicros) / speed);
+            long delayNanos = startNanos + offsetNanos - System.nanoTime();
+            // the timer only fires, requests are sent from the pool
+            Runnable send = () -> ForkJoinPool.commonPool().execute(() -> send(sequence, index, suffix));
+            if (delayNanos <= 0) {
+                send.run();
+            } else {
+                ThreadPools.sharedScheduler().schedule(send, delayNanos, TimeUnit.NANOSECONDS);
+            }
+        }
+
+        private void send(List<CapturedExchange> sequence, int index, String suffix) {
+            CapturedExchange exchange = sequence.get(index);
+            long sendNanos = System.nanoTime();
+            sent.increment();
+            transport.executeAsync(request(exchange, suffix)).whenComplete((response, error) -> {
+                latency.record(System.nanoTime() - sendNanos);
+                if (error != null) {
+                    failed.increment();
+                } else if (response.getStatusCode() != exchange.getStatusCode()) {
+                    mismatched.increment();
+                }
+                next(sequence, index + 1, suffix);
+            });
+        }
+    }
+
+    private HttpRequest request(CapturedExchange exchange, String suffix) {
+        String uri = exchange.getUri();
+        if (!suffix.isEmpty() && exchange.getSessionId() != null) {
+            uri = uri.replace("session_id=" + encode(exchange.getSessionId()),
+                    "session_id=" + encode(exchange.getSessionId() + suffix));
+        }
+
+        Map<String, String> headers = new LinkedHashMap<>();
+        headers.put("Accept", "application/json");
+        if (authorization != null) {
+            headers.put("Authorization", authorization);
+        }
+        byte[] body = null;
+        if (exchange.getRequestBody() != null) {
+            headers.put("Content-Type", "application/json");
+            body = exchange.getRequestBody().getBytes(StandardCharsets.UTF_8);
+        }
+        return new HttpRequest(exchange.getMethod(), URI.create(baseUrl + uri), headers, body);
+    }
+
+    private static String encode(String value) {
+        try {
+            return URLEncoder.encode(value, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Builder for {@code TrafficReplayer}.
+     */
+    public static final class Builder {
+        private final List<CapturedExchange> exchanges;
+        private final HttpTransport transport;
+        private String baseUrl = Wit.DEFAULT_BASE_URL;
+        private String token;
+        private double speed = 1;
+        private int copies = 1;
+
+        private Builder(List<CapturedExchange> exchanges, HttpTransport transport) {
+            if (exchanges == null || transport == null) {
+                throw new IllegalArgumentException("Exchanges and transport must not be null");
+            }
+            this.exchanges = new ArrayList<>(exchanges);
+            this.transport = transport;
+        }
+
+        /**
+         * @param baseUrl server requests are sent to (<b>Wit.ai HTTP API</b> by default).
+         * @return this builder.
+         */
+        public Builder baseUrl(String baseUrl) {
+            this.baseUrl = baseUrl;
+            return this;
+        }
+
+        /**
+         * @param token access token sent with requests (none by default, since tokens are not captured).
+         * @return this builder.
+         */
+        public Builder token(String token) {
+            this.token = token;
+            return this;
+        }
+
+        /**
+         * @param speed how many times faster than captured requests are sent (1 by default).
+         * @return this builder.
+         */
+        public Builder speed(double speed) {
+            if (!(speed > 0)) {
+                throw new IllegalArgumentException("Speed must be positive: " + speed);
+            }
+            this.speed = speed;
+            return this;
+        }
+
+        /**
+         * @param copies number of copies of the traffic replayed at the same time (1 by default).
+         * @return this builder.
+         */
+        public Builder copies(int copies) {
+            if (copies < 1) {
+                throw new IllegalArgumentException("copies must be positive: " + copies);
+            }
+            this.copies = copies;
+            return this;
+        }
+
+        public TrafficReplayer build() {
+            return new TrafficReplayer(this);
+        }
+    }
+}
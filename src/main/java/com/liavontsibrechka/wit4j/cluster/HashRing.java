@@ -0,0 +1,142 @@
+/*
+ * Copyright 2016 Liavontsi Brechka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.liavontsibrechka.wit4j.cluster;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Consistent hash ring that maps keys (session identifiers) to nodes.
+ * <p>
+ * Every node is placed on the ring at {@code virtualNodes} points, so keys are spread evenly and a node that
+ * joins or leaves moves only its own share of keys. Lookups read an immutable snapshot of the ring and never
+ * block; membership changes copy the ring and are expected to be rare.
+ *
+ * @param <N> type of node identifiers.
+ * @author Liavontsi Brechka
+ * @see SessionRouter
+ * @since 1.0-SNAPSHOT
+ */
+public class HashRing<N> {
+    public static final int DEFAULT_VIRTUAL_NODES = 128;
+
+    private final int virtualNodes;
+    private volatile NavigableMap<Long, N> ring = Collections.emptyNavigableMap();
+    private volatile Set<N> nodes = Collections.emptySet();
+
+    public HashRing() {
+        this(DEFAULT_VIRTUAL_NODES);
+    }
+
+    /**
+     * @param virtualNodes number of points of every node on the ring.
+     */
+    public HashRing(int virtualNodes) {
+        if (virtualNodes < 1) {
+            throw new IllegalArgumentException("virtualNodes must be positive: " + virtualNodes);
+        }
+        this.virtualNodes = virtualNodes;
+    }
+
+    /**
+     * @param node node to add; its identifier's {@code toString} determines its points on the ring.
+     * @return false if the node is on the ring already.
+     */
+    public synchronized boolean add(N node) {
+        if (nodes.contains(node)) {
+            return false;
+        }
+        NavigableMap<Long, N> copy = new TreeMap<>(ring);
+        for (int i = 0; i < virtualNodes; i++) {
+            copy.putIfAbsent(hash(node + "#" + i), node);
+        }
+        Set<N> nodesCopy = new LinkedHashSet<>(nodes);
+        nodesCopy.add(node);
+        publish(copy, nodesCopy);
+        return true;
+    }
+
+    /**
+     * @param node node to remove.
+     * @return false if the node is not on the ring.
+     */
+    public synchronized boolean remove(N node) {
+        if (!nodes.contains(node)) {
+            return false;
+        }
+        NavigableMap<Long, N> copy = new TreeMap<>(ring);
+        copy.values().removeIf(node::equals);
+        Set<N> nodesCopy = new LinkedHashSet<>(nodes);
+        nodesCopy.remove(node);
+        publish(copy, nodesCopy);
+        return true;
+    }
+
+    private void publish(NavigableMap<Long, N> newRing, Set<N> newNodes) {
+        ring = Collections.unmodifiableNavigableMap(newRing);
+        nodes = Collections.unmodifiableSet(newNodes);
+    }
+
+    /**
+     * @param key key to look up.
+     * @return node owning the key: the first node clockwise from the hash of the key, or null if the ring is
+     * empty.
+     */
+    public N nodeFor(String key) {
+        NavigableMap<Long, N> current = ring;
+        if (current.isEmpty()) {
+            return null;
+        }
+        Map.Entry<Long, N> owner = current.ceilingEntry(hash(key));
+        return owner != null ? owner.getValue() : current.firstEntry().getValue();
+    }
+
+    /**
+     * @return nodes on the ring in the order they were added.
+     */
+    public Set<N> getNodes() {
+        return nodes;
+    }
+
+    public int getVirtualNodes() {
+        return virtualNodes;
+    }
+
+    /**
+     * 64-bit FNV-1a hash of the UTF-8 bytes of {@code key} followed by the {@code MurmurHash3} finalizer, so
+     * keys and virtual nodes that differ in a single character land far apart.
+     */
+    static long hash(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte next : key.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= next & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2016 Liavontsi Brechka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.liavontsibrechka.wit4j.cluster;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.liavontsibrechka.wit4j.communication.ConverseResult;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Connection of {@code SessionRouter} to another node, used to forward messages of the sessions the other node
+ * owns and to hand sessions over when the ring changes.
+ *
+ * @author Liavontsi Brechka
+ * @see SessionRouter#localPeer()
+ * @see SocketPeer
+ * @since 1.0-SNAPSHOT
+ */
+public interface RouterPeer extends Closeable {
+    /**
+     * Processes {@code message} on the node, which runs the turn regardless of who owns the session there.
+     *
+     * @param sessionId session identifier.
+     * @param message   message provided by user input.
+     * @return future that is completed with the outcome of the turn.
+     */
+    CompletableFuture<ConverseResult> converse(String sessionId, String message);
+
+    /**
+     * Gives context of the session to the node, which becomes its owner.
+     *
+     * @param sessionId session identifier.
+     * @param context   context of the session.
+     * @throws IOException if the context cannot be delivered; the session then stays with the sender.
+     */
+    void handoff(String sessionId, ObjectNode context) throws IOException;
+
+    /**
+     * Releases connections to the node; the node itself keeps running.
+     */
+    @Override
+    void close();
+}
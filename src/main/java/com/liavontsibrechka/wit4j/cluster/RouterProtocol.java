@@ -0,0 +1,92 @@
+/*
+ * Copyright 2016 Liavontsi Brechka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.liavontsibrechka.wit4j.cluster;
+
+import com.liavontsibrechka.wit4j.communication.ConverseResult;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Wire format between {@code SocketPeer} and the server of {@code SessionRouter}: every request is an operation
+ * byte, the session identifier and a payload (message or context JSON); every response is a status byte followed
+ * by the result or an error message. Strings are UTF-8 bytes prefixed with their length.
+ *
+ * @author Liavontsi Brechka
+ * @since 1.0-SNAPSHOT
+ */
+final class RouterProtocol {
+    static final byte CONVERSE = 1;
+    static final byte HANDOFF = 2;
+
+    static final byte OK = 0;
+    static final byte ERROR = 1;
+
+    private static final int MAX_STRING_BYTES = 16 * 1024 * 1024;
+
+    private RouterProtocol() {
+    }
+
+    static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > MAX_STRING_BYTES) {
+            throw new IOException("Invalid string length: " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static void writeResult(DataOutputStream out, ConverseResult result) throws IOException {
+        writeString(out, result.getSessionId());
+        out.writeByte(result.getStatus().ordinal());
+        out.writeInt(result.getSteps());
+        out.writeInt(result.getMessages().size());
+        for (String message : result.getMessages()) {
+            writeString(out, message);
+        }
+    }
+
+    static ConverseResult readResult(DataInputStream in) throws IOException {
+        String sessionId = readString(in);
+        int status = in.readUnsignedByte();
+        if (status >= ConverseResult.Status.values().length) {
+            throw new IOException("Unknown turn status: " + status);
+        }
+        int steps = in.readInt();
+        int count = in.readInt();
+        if (count < 0) {
+            throw new IOException("Invalid number of messages: " + count);
+        }
+        List<String> messages = new ArrayList<>(Math.min(count, 64));
+        for (int i = 0; i < count; i++) {
+            messages.add(readString(in));
+        }
+        return new ConverseResult(sessionId, ConverseResult.Status.values()[status], steps, messages);
+    }
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright 2016 Liavontsi Brechka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.liavontsibrechka.wit4j.cluster;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.liavontsibrechka.wit4j.communication.ConverseResult;
+import com.liavontsibrechka.wit4j.util.ThreadPools;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Server side of {@code SocketPeer}: accepts connections of other nodes and passes their requests to the local
+ * {@code SessionRouter}. Every connection is served by its own (virtual where available) thread.
+ * <p>
+ * Failures of connections and of accepting them are passed to the error handler of the router. Accepting is
+ * retried with growing delay while it keeps failing (e.g. when the process is out of file descriptors).
+ *
+ * @author Liavontsi Brechka
+ * @since 1.0-SNAPSHOT
+ */
+final class RouterServer implements Closeable {
+    private static final ObjectMapper JSON_MAPPER = new ObjectMapper();
+    private static final int FALLBACK_THREADS = 256;
+    private static final long MIN_ACCEPT_BACKOFF_MILLIS = 10;
+    private static final long MAX_ACCEPT_BACKOFF_MILLIS = 1000;
+
+    private final SessionRouter router;
+    private final Consumer<Throwable> errorHandler;
+    private final ServerSocketChannel serverChannel;
+    private final ExecutorService executor;
+    private final Set<SocketChannel> connections = ConcurrentHashMap.newKeySet();
+    private final Thread acceptor;
+
+    private volatile boolean closed;
+
+    RouterServer(SessionRouter router, InetSocketAddress address, Consumer<Throwable> errorHandler)
+            throws IOException {
+        this.router = router;
+        this.errorHandler = errorHandler;
+        this.executor = ThreadPools.newVirtualThreadPerTaskExecutor("wit4j-router", FALLBACK_THREADS);
+        this.serverChannel = ServerSocketChannel.open();
+        try {
+            serverChannel.bind(address);
+        } catch (IOException e) {
+            serverChannel.close();
+            executor.shutdown();
+            throw e;
+        }
+
+        this.acceptor = ThreadPools.daemonThreadFactory("wit4j-router-acceptor").newThread(this::acceptConnections);
+        this.acceptor.start();
+    }
+
+    private void acceptConnections() {
+        long backoffMillis = 0;
+        while (!closed) {
+            SocketChannel connection = null;
+            try {
+                connection = serverChannel.accept();
+                backoffMillis = 0;
+                connections.add(connection);
+                connection.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                SocketChannel accepted = connection;
+                executor.execute(() -> serve(accepted));
+            } catch (ClosedChannelException e) {
+                return;
+            } catch (IOException | RejectedExecutionException e) {
+                if (closed) {
+                    return;
+                }
+                errorHandler.accept(e);
+                if (connection != null) {
+                    release(connection);
+                    continue;
+                }
+                // accept itself failed and is likely to fail again right away
+                backoffMillis = Math.min(Math.max(backoffMillis * 2, MIN_ACCEPT_BACKOFF_MILLIS),
+                        MAX_ACCEPT_BACKOFF_MILLIS);
+                try {
+                    TimeUnit.MILLISECONDS.sleep(backoffMillis);
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private void serve(SocketChannel connection) {
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(connection.socket().getInputStream()));
+            DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(connection.socket().getOutputStream()));
+            while (!closed) {
+                int operation = in.read();
+                if (operation < 0) {
+                    return;
+                }
+                String sessionId = RouterProtocol.readString(in);
+                String payload = RouterProtocol.readString(in);
+                try {
+                    ConverseResult result = handle((byte) operation, sessionId, payload);
+                    out.writeByte(RouterProtocol.OK);
+                    if (result != null) {
+                        RouterProtocol.writeResult(out, result);
+                    }
+                } catch (IOException | RuntimeException e) {
+                    out.writeByte(RouterProtocol.ERROR);
+                    RouterProtocol.writeString(out, String.valueOf(e));
+                }
+                out.flush();
+            }
+        } catch (EOFException e) {
+            // the peer closed the connection
+        } catch (IOException e) {
+            // the connection is broken, the peer reconnects
+            if (!closed) {
+                errorHandler.accept(e);
+            }
+        } finally {
+            release(connection);
+        }
+    }
+
+    private ConverseResult handle(byte operation, String sessionId, String payload) throws IOException {
+        switch (operation) {
+            case RouterProtocol.CONVERSE:
+                return router.converseLocally(sessionId, payload);
+            case RouterProtocol.HANDOFF:
+                JsonNode context = JSON_MAPPER.readTree(payload);
+                if (context == null || !context.isObject()) {
+                    throw new IOException("Context of session " + sessionId + " is not an object");
+                }
+                router.acceptHandoff(sessionId, (ObjectNode) context);
+                return null;
+            default:
+                throw new IOException("Unknown operation: " + operation);
+        }
+    }
+
+    private void release(SocketChannel connection) {
+        connections.remove(connection);
+        try {
+            connection.close();
+        } catch (IOException ignored) {
+            // the connection is being discarded anyway
+        }
+    }
+
+    InetSocketAddress getAddress() throws IOException {
+        return (InetSocketAddress) serverChannel.getLocalAddress();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            serverChannel.close();
+        } catch (IOException ignored) {
+            // nothing can be done about it
+        }
+        acceptor.interrupt();
+        for (SocketChannel connection : connections) {
+            release(connection);
+        }
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,352 @@
+/*
+ * Copyright 2016 Liavontsi Brechka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.liavontsibrechka.wit4j.cluster;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.liavontsibrechka.wit4j.Context;
+import com.liavontsibrechka.wit4j.ContextStore;
+import com.liavontsibrechka.wit4j.Wit;
+import com.liavontsibrechka.wit4j.communication.Converse;
+import com.liavontsibrechka.wit4j.communication.ConverseResult;
+import com.liavontsibrechka.wit4j.util.Futures;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.InetSocketAddress;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Routing layer that lets several wit4j nodes share conversations while every session context stays local to
+ * one node.
+ * <p>
+ * Session identifiers are mapped to nodes by a {@code HashRing}. A message of a session owned by this node is
+ * processed by the local {@code Converse}; a message of a foreign session is forwarded to its owner through the
+ * {@code RouterPeer} of that node, which runs the turn with its own context store. Membership is managed by
+ * the application on every node with {@code join} and {@code leave}; after each change the node hands the
+ * sessions it no longer owns over to their new owners, so a joining node takes its share of sessions and a
+ * leaving node (which removes itself too) gives all of its sessions away. Turns of a session should not run
+ * while the session is being handed over.
+ * <p>
+ * Nodes in one JVM may be connected with {@code localPeer()}; nodes in different processes listen with
+ * {@code Builder.listen} and connect with {@code SocketPeer}.
+ *
+ * @author Liavontsi Brechka
+ * @see HashRing
+ * @see RouterPeer
+ * @since 1.0-SNAPSHOT
+ */
+public class SessionRouter implements Closeable {
+    private final String nodeId;
+    private final Converse converse;
+    private final ContextStore contextStore;
+    private final HashRing<String> ring;
+    private final Map<String, RouterPeer> peers = new ConcurrentHashMap<>();
+    private final RouterServer server;
+
+    private final AtomicLong forwarded = new AtomicLong();
+    private final AtomicLong handedOff = new AtomicLong();
+    private final AtomicLong received = new AtomicLong();
+
+    private SessionRouter(Builder builder) throws IOException {
+        this.nodeId = builder.nodeId;
+        this.converse = builder.wit.createConverse();
+        this.contextStore = builder.wit.getContextStore();
+        this.ring = new HashRing<>(builder.virtualNodes);
+        this.ring.add(nodeId);
+        this.server = builder.address != null ? new RouterServer(this, builder.address, builder.errorHandler) : null;
+    }
+
+    /**
+     * @param nodeId identifier of this node, the same on every node of the cluster.
+     * @param wit    client whose bot and context store serve the sessions of this node.
+     * @return builder of router.
+     */
+    public static Builder builder(String nodeId, Wit wit) {
+        return new Builder(nodeId, wit);
+    }
+
+    /**
+     * Processes {@code message} on the node that owns the session.
+     *
+     * @param sessionId session identifier.
+     * @param message   message provided by user input.
+     * @return future that is completed with the outcome of the turn.
+     */
+    public CompletableFuture<ConverseResult> converseAsync(String sessionId, String message) {
+        String owner = ring.nodeFor(sessionId);
+        RouterPeer peer = owner == null || owner.equals(nodeId) ? null : peers.get(owner);
+        if (peer == null) {
+            return converse.converseAsync(sessionId, message);
+        }
+        forwarded.incrementAndGet();
+        return peer.converse(sessionId, message);
+    }
+
+    /**
+     * Blocking counterpart of {@code converseAsync}.
+     *
+     * @param sessionId session identifier.
+     * @param message   message provided by user input.
+     * @return outcome of the turn.
+     * @throws IOException if the turn failed locally or on the owner node.
+     */
+    public ConverseResult converse(String sessionId, String message) throws IOException {
+        try {
+            return converseAsync(sessionId, message).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the turn");
+        } catch (ExecutionException e) {
+            Throwable cause = Futures.unwrap(e);
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Runs a turn forwarded by another node on this node.
+     */
+    ConverseResult converseLocally(String sessionId, String message) throws IOException {
+        return converse.converse(sessionId, message);
+    }
+
+    /**
+     * Takes over context of a session handed over by another node.
+     */
+    void acceptHandoff(String sessionId, ObjectNode context) {
+        contextStore.getContext(sessionId).updateContext(context);
+        received.incrementAndGet();
+    }
+
+    /**
+     * Adds node to the ring and hands over the sessions it now owns.
+     *
+     * @param nodeId identifier of the node.
+     * @param peer   connection to the node; it is closed when the node leaves or this router is closed.
+     * @return number of sessions handed over.
+     */
+    public synchronized int join(String nodeId, RouterPeer peer) {
+        if (this.nodeId.equals(nodeId)) {
+            throw new IllegalArgumentException("Node " + nodeId + " is this node");
+        }
+        RouterPeer previous = peers.put(nodeId, peer);
+        if (previous != null) {
+            previous.close();
+        }
+        ring.add(nodeId);
+        return rebalance();
+    }
+
+    /**
+     * Removes node from the ring. When this node leaves, all its sessions are handed over to the remaining nodes
+     * and further messages are forwarded to them.
+     *
+     * @param nodeId identifier of the node (may be the identifier of this node).
+     * @return number of sessions handed over by this node.
+     */
+    public synchronized int leave(String nodeId) {
+        ring.remove(nodeId);
+        int moved = rebalance();
+        RouterPeer peer = peers.remove(nodeId);
+        if (peer != null) {
+            peer.close();
+        }
+        return moved;
+    }
+
+    /**
+     * Hands sessions owned by other nodes over to their owners. Sessions whose owner cannot be reached stay here
+     * until the next call.
+     *
+     * @return number of sessions handed over.
+     */
+    public synchronized int rebalance() {
+        int moved = 0;
+        for (String sessionId : contextStore.sessionIds()) {
+            String owner = ring.nodeFor(sessionId);
+            RouterPeer peer = owner == null ? null : peers.get(owner);
+            if (peer == null) {
+                continue;
+            }
+            Context context = contextStore.findContext(sessionId);
+            if (context == null) {
+                continue;
+            }
+            try {
+                peer.handoff(sessionId, context.getContext());
+            } catch (IOException e) {
+                continue;
+            }
+            contextStore.remove(sessionId);
+            moved++;
+        }
+        handedOff.addAndGet(moved);
+        return moved;
+    }
+
+    /**
+     * @param sessionId session identifier.
+     * @return identifier of the node that owns the session.
+     */
+    public String ownerOf(String sessionId) {
+        return ring.nodeFor(sessionId);
+    }
+
+    /**
+     * @return peer that passes requests to this router directly, for nodes running in the same JVM.
+     */
+    public RouterPeer localPeer() {
+        return new RouterPeer() {
+            @Override
+            public CompletableFuture<ConverseResult> converse(String sessionId, String message) {
+                return converse.converseAsync(sessionId, message);
+            }
+
+            @Override
+            public void handoff(String sessionId, ObjectNode context) {
+                acceptHandoff(sessionId, context);
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    public HashRing<String> getRing() {
+        return ring;
+    }
+
+    /**
+     * @return address the router listens on for other nodes or null if it does not listen.
+     * @throws IOException if the address cannot be read.
+     */
+    public InetSocketAddress getAddress() throws IOException {
+        return server == null ? null : server.getAddress();
+    }
+
+    /**
+     * @return number of messages forwarded to other nodes.
+     */
+    public long getForwarded() {
+        return forwarded.get();
+    }
+
+    /**
+     * @return number of sessions handed over to other nodes.
+     */
+    public long getHandedOff() {
+        return handedOff.get();
+    }
+
+    /**
+     * @return number of sessions taken over from other nodes.
+     */
+    public long getReceived() {
+        return received.get();
+    }
+
+    /**
+     * Stops listening and closes connections to other nodes. The client is not closed.
+     */
+    @Override
+    public void close() {
+        if (server != null) {
+            server.close();
+        }
+        for (RouterPeer peer : peers.values()) {
+            peer.close();
+        }
+        peers.clear();
+    }
+
+    /**
+     * Builder for {@code SessionRouter}.
+     */
+    public static final class Builder {
+        private final String nodeId;
+        private final Wit wit;
+        private int virtualNodes = HashRing.DEFAULT_VIRTUAL_NODES;
+        private InetSocketAddress address;
+        private Consumer<Throwable> errorHandler = error -> {
+        };
+
+        private Builder(String nodeId, Wit wit) {
+            if (nodeId == null || wit == null) {
+                throw new IllegalArgumentException("Node id and Wit client must not be null");
+            }
+            this.nodeId = nodeId;
+            this.wit = wit;
+        }
+
+        /**
+         * @param virtualNodes points of every node on the ring (128 by default); must be the same on all nodes.
+         * @return this builder.
+         */
+        public Builder virtualNodes(int virtualNodes) {
+            this.virtualNodes = virtualNodes;
+            return this;
+        }
+
+        /**
+         * @param address address to accept requests of other nodes on (for {@code SocketPeer}); the router does
+         *                not listen by default.
+         * @return this builder.
+         */
+        public Builder listen(InetSocketAddress address) {
+            this.address = address;
+            return this;
+        }
+
+        /**
+         * @param errorHandler receiver of failures of the server that accepts requests of other nodes (e.g.
+         *                     failed accepts or broken connections); they are ignored by default.
+         * @return this builder.
+         */
+        public Builder errorHandler(Consumer<Throwable> errorHandler) {
+            if (errorHandler == null) {
+                throw new IllegalArgumentException("Error handler must not be null");
+            }
+            this.errorHandler = errorHandler;
+            return this;
+        }
+
+        /**
+         * @return router; it listens if an address was set.
+         * @throws IOException if the address cannot be bound.
+         */
+        public SessionRouter build() throws IOException {
+            return new SessionRouter(this);
+        }
+    }
+}
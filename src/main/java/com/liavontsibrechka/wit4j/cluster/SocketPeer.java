@@ -0,0 +1,209 @@
+/*
+ * Copyright 2016 Liavontsi Brechka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.liavontsibrechka.wit4j.cluster;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.liavontsibrechka.wit4j.communication.ConverseResult;
+import com.liavontsibrechka.wit4j.util.Futures;
+import com.liavontsibrechka.wit4j.util.ThreadPools;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * {@code RouterPeer} that talks to the server of a {@code SessionRouter} in another process (or the same one)
+ * over TCP. Connections are kept open and reused; every request holds one connection until its response
+ * arrives, and forwarded turns wait for their response on virtual threads where available.
+ * <p>
+ * A node that does not answer within the read timeout fails the call. A request that fails on a reused
+ * connection before any response byte arrived (the other node closed the idle connection) is sent once more on
+ * a fresh connection.
+ *
+ * @author Liavontsi Brechka
+ * @see SessionRouter.Builder#listen(InetSocketAddress)
+ * @since 1.0-SNAPSHOT
+ */
+public class SocketPeer implements RouterPeer {
+    /**
+     * Default time to wait for the response of the other node; a forwarded turn may take several requests to
+     * <b>Wit.ai HTTP API</b>.
+     */
+    public static final int DEFAULT_READ_TIMEOUT_MILLIS = 120_000;
+
+    private static final ObjectMapper JSON_MAPPER = new ObjectMapper();
+    private static final int CONNECT_TIMEOUT_MILLIS = 5000;
+    private static final int FALLBACK_THREADS = 64;
+
+    private final InetSocketAddress address;
+    private final int readTimeoutMillis;
+    private final Queue<Connection> idleConnections = new ConcurrentLinkedQueue<>();
+    private final ExecutorService executor;
+
+    private volatile boolean closed;
+
+    /**
+     * @param address address the server of the other node listens on.
+     */
+    public SocketPeer(InetSocketAddress address) {
+        this(address, DEFAULT_READ_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * @param address           address the server of the other node listens on.
+     * @param readTimeoutMillis maximum time to wait for the response of the other node ({@code 0} means no
+     *                          timeout).
+     */
+    public SocketPeer(InetSocketAddress address, int readTimeoutMillis) {
+        if (readTimeoutMillis < 0) {
+            throw new IllegalArgumentException("readTimeoutMillis must not be negative: " + readTimeoutMillis);
+        }
+        this.address = address;
+        this.readTimeoutMillis = readTimeoutMillis;
+        this.executor = ThreadPools.newVirtualThreadPerTaskExecutor("wit4j-peer", FALLBACK_THREADS);
+    }
+
+    @Override
+    public CompletableFuture<ConverseResult> converse(String sessionId, String message) {
+        CompletableFuture<ConverseResult> result = new CompletableFuture<>();
+        try {
+            executor.execute(() -> {
+                try {
+                    result.complete(call(RouterProtocol.CONVERSE, sessionId, message, true));
+                } catch (IOException | RuntimeException e) {
+                    result.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            return Futures.failed(new IOException("Peer " + address + " is closed"));
+        }
+        return result;
+    }
+
+    @Override
+    public void handoff(String sessionId, ObjectNode context) throws IOException {
+        call(RouterProtocol.HANDOFF, sessionId, JSON_MAPPER.writeValueAsString(context), false);
+    }
+
+    private ConverseResult call(byte operation, String sessionId, String payload, boolean hasResult)
+            throws IOException {
+        if (closed) {
+            throw new IOException("Peer " + address + " is closed");
+        }
+
+        Connection connection = idleConnections.poll();
+        if (connection == null) {
+            return call(new Connection(address, readTimeoutMillis), operation, sessionId, payload, hasResult);
+        }
+        try {
+            return call(connection, operation, sessionId, payload, hasResult);
+        } catch (IOException e) {
+            if (connection.responseStarted || e instanceof SocketTimeoutException || closed) {
+                throw e;
+            }
+            // the other node closed the idle connection, the request never reached it, so retry on a fresh one
+            return call(new Connection(address, readTimeoutMillis), operation, sessionId, payload, hasResult);
+        }
+    }
+
+    private ConverseResult call(Connection connection, byte operation, String sessionId, String payload,
+                                boolean hasResult) throws IOException {
+        connection.responseStarted = false;
+        boolean reusable = false;
+        try {
+            connection.out.writeByte(operation);
+            RouterProtocol.writeString(connection.out, sessionId);
+            RouterProtocol.writeString(connection.out, payload);
+            connection.out.flush();
+
+            byte status = connection.in.readByte();
+            connection.responseStarted = true;
+            if (status == RouterProtocol.ERROR) {
+                String error = RouterProtocol.readString(connection.in);
+                reusable = true;
+                throw new IOException("Node " + address + " failed to process session " + sessionId + ": " + error);
+            }
+            ConverseResult result = hasResult ? RouterProtocol.readResult(connection.in) : null;
+            reusable = true;
+            return result;
+        } finally {
+            if (reusable && !closed) {
+                idleConnections.offer(connection);
+            } else {
+                connection.close();
+            }
+        }
+    }
+
+    public InetSocketAddress getAddress() {
+        return address;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        executor.shutdown();
+        Connection connection;
+        while ((connection = idleConnections.poll()) != null) {
+            connection.close();
+        }
+    }
+
+    private static final class Connection {
+        private final Socket socket;
+        private final DataInputStream in;
+        private final DataOutputStream out;
+        /**
+         * Whether a response byte of the current request arrived, after which the request must not be retried.
+         */
+        private boolean responseStarted;
+
+        private Connection(InetSocketAddress address, int readTimeoutMillis) throws IOException {
+            socket = new Socket();
+            try {
+                socket.setTcpNoDelay(true);
+                socket.setSoTimeout(readTimeoutMillis);
+                socket.connect(address, CONNECT_TIMEOUT_MILLIS);
+                in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            } catch (IOException e) {
+                socket.close();
+                throw e;
+            }
+        }
+
+        private void close() {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+                // the connection is being discarded anyway
+            }
+        }
+    }
+}
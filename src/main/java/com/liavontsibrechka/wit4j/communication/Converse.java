@@ -19,117 +19,603 @@ package com.liavontsibrechka.wit4j.communication;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.liavontsibrechka.wit4j.Context;
+import com.liavontsibrechka.wit4j.ContextStore;
 import com.liavontsibrechka.wit4j.Wit;
 import com.liavontsibrechka.wit4j.action.Actions;
+import com.liavontsibrechka.wit4j.action.IAction;
+import com.liavontsibrechka.wit4j.communication.transport.HttpRequest;
+import com.liavontsibrechka.wit4j.communication.transport.HttpResponse;
+import com.liavontsibrechka.wit4j.metrics.Instrumentation;
+import com.liavontsibrechka.wit4j.util.ByteArrayBuffer;
+import com.liavontsibrechka.wit4j.util.Futures;
 
 import java.io.IOException;
-import java.net.HttpURLConnection;
-import java.net.URL;
-import java.net.URLEncoder;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 /**
  * Class for communication with <b>Wit.ai</b> bot through <em>converse</em> request type of <b>Wit.ai HTTP API</b>.
+ * <p>
+ * Every conversation is identified by a session id and has its own {@code Context} taken from the
+ * {@code ContextStore} of the client, so one instance may serve many users. Methods without {@code sessionId}
+ * parameter work with a default session that is replaced by a new one (with an empty context) each time the bot
+ * stops.
+ * <p>
+ * A turn (user message and all bot steps that follow it) is processed by a loop rather than by recursion: it ends
+ * when the bot responds with <em>stop</em>, when {@code maxSteps} requests were sent or when the bot does not
+ * respond within {@code stepTimeoutMillis}. The outcome is reported as {@code ConverseResult}.
  *
  * @author Liavontsi Brechka
  * @see HttpCommunication
  * @see HttpCommunicationType
+ * @see ContextStore
+ * @see ConverseResult
  * @since 1.0-SNAPSHOT
  */
 public class Converse extends HttpCommunication {
+    public static final int DEFAULT_MAX_STEPS = 20;
+
     /**
-     * Unique session identifier to group messages from the same user request/conversation.
+     * Unique session identifier of the default session used by methods without {@code sessionId} parameter.
      */
-    private String sessionId;
+    private volatile String sessionId;
     /**
-     * Reference to instance of {@code Context} singleton class that represents current context of application
-     * (the object that represents the session state).
-     *
-     * @see Context
-     */
-    private Context context;
-    /**
-     * Reference to instance of {@code Actions} singleton class that contains link to actions map object.
+     * Registry of actions triggered by bot responses (the registry of the client unless replaced with
+     * {@code setActions}).
      * <p>
      * See {@code Actions} class description for more information about actions map.
      *
      * @see Wit
      * @see Actions
      */
-    private Actions actions;
+    private volatile Actions actions;
+    /**
+     * Maximum number of requests sent during one turn.
+     */
+    private volatile int maxSteps = DEFAULT_MAX_STEPS;
+    /**
+     * Maximum time to wait for a single bot response ({@code 0} means transport read timeout).
+     */
+    private volatile int stepTimeoutMillis;
+    private final RequestEncoder requestEncoder;
 
     /**
      * Creates instance of {@code Converse} class and instantiate variables described above.
+     *
+     * @param wit client the communication belongs to.
      */
-    protected Converse() {
-        super();
+    protected Converse(Wit wit) {
+        super(wit);
 
         sessionId = UUID.randomUUID().toString();
-        context = Context.getInstance();
-        actions = Actions.getInstance();
+        actions = wit.getActions();
+        requestEncoder = new RequestEncoder(baseUrl, version, authorization);
     }
 
     /**
-     * Creates query string, final URL for request and proper http connection to make a request to
-     * <b>Wit.ai HTTP API</b>. As a result, provides resources for reading JSON response.
+     * Sends {@code message} within the default session.
      *
      * @param message message provided by user input (May be null).
      * @return JSON response object that is represented as {@code JsonNode}.
-     * @throws IOException if an I/O error occurs.
+     * @throws IOException if an I/O error occurs or <b>Wit.ai HTTP API</b> responds with an error status.
+     * @see #sendHttpRequest(String, String)
      */
     @Override
     public JsonNode sendHttpRequest(String message) throws IOException {
-        String queryString = baseUrl + "/converse?v=" + version + "&session_id=" + sessionId;
-        if (message != null) {
-            queryString += ("&q=" + URLEncoder.encode(message, "UTF-8"));
+        return sendHttpRequest(sessionId, message);
+    }
+
+    /**
+     * Creates query string and final URL for request and sends it together with the session context through
+     * the {@code HttpTransport} of the client to <b>Wit.ai HTTP API</b>. As a result, provides resources for reading
+     * JSON response.
+     *
+     * @param sessionId session identifier.
+     * @param message   message provided by user input (May be null).
+     * @return JSON response object that is represented as {@code JsonNode}.
+     * @throws IOException if an I/O error occurs or <b>Wit.ai HTTP API</b> responds with an error status.
+     */
+    public JsonNode sendHttpRequest(String sessionId, String message) throws IOException {
+        Turn turn = new Turn(sessionId);
+        try {
+            return send(turn, message).asTree();
+        } finally {
+            turn.release();
         }
+    }
+
+    /**
+     * Sends {@code message} within the default session without blocking the calling thread.
+     *
+     * @param message message provided by user input (May be null).
+     * @return future that is completed with JSON response object that is represented as {@code JsonNode}.
+     * @see #sendAsync(String, String)
+     */
+    @Override
+    public CompletableFuture<JsonNode> sendAsync(String message) {
+        return sendAsync(sessionId, message);
+    }
 
-        finalUrl = new URL(queryString);
-        httpConnection = (HttpURLConnection) finalUrl.openConnection();
-        httpConnection.setRequestProperty("Content-Type", "application/json");
-        httpConnection.setRequestProperty("Accept", "application/json");
-        httpConnection.setRequestProperty("Authorization", "Bearer " + Wit.getToken());
-        httpConnection.setDoOutput(true);
+    /**
+     * Creates the same request as {@code sendHttpRequest} and sends it through
+     * {@code HttpTransport.executeAsync}.
+     *
+     * @param sessionId session identifier.
+     * @param message   message provided by user input (May be null).
+     * @return future that is completed with JSON response object that is represented as {@code JsonNode}.
+     */
+    public CompletableFuture<JsonNode> sendAsync(String sessionId, String message) {
+        Turn turn = new Turn(sessionId);
+        return sendAsync(turn, message).whenComplete((response, error) -> turn.release())
+                .thenApply(ConverseResponse::asTree);
+    }
 
-        jsonMapper.writeValue(httpConnection.getOutputStream(), context.getContext());
-        return jsonMapper.readTree(httpConnection.getInputStream());
+    /**
+     * Handles JSON response within the default session. When the turn ends, the default session is replaced
+     * by a new one that takes over the context of the old one.
+     *
+     * @param httpResponse {@code JsonNode} object that represents JSON response of {@code sendHttpRequest} call.
+     * @throws IOException if an I/O error occurs.
+     * @see #handleHttpResponse(String, JsonNode)
+     */
+    @Override
+    public void handleHttpResponse(JsonNode httpResponse) throws IOException {
+        handleHttpResponse(sessionId, httpResponse);
+        startNewSession();
     }
 
     /**
      * Handles JSON response according to type of bot response (<em>merge</em> - first bot action after a user message,
      * <em>msg</em> - the bot has something to say, <em>action</em> - the bot has something to do
-     * or <em>stop</em> - the bot is waiting to proceed).
+     * or <em>stop</em> - the bot is waiting to proceed) and sends follow-up requests until the turn ends.
      *
+     * @param sessionId    session identifier.
      * @param httpResponse {@code JsonNode} object that represents JSON response of {@code sendHttpRequest} call.
+     * @return outcome of the turn.
      * @throws IOException if an I/O error occurs.
      */
+    public ConverseResult handleHttpResponse(String sessionId, JsonNode httpResponse) throws IOException {
+        Turn turn = new Turn(sessionId);
+        turn.steps = 1;
+        try {
+            return continueTurn(turn, ConverseResponse.fromTree(jsonMapper, httpResponse));
+        } finally {
+            turn.release();
+        }
+    }
+
+    /**
+     * Sends {@code message} within the given session and processes the whole turn.
+     *
+     * @param sessionId session identifier.
+     * @param message   message provided by user input (May be null).
+     * @return outcome of the turn.
+     * @throws IOException if an I/O error occurs or <b>Wit.ai HTTP API</b> responds with an error status.
+     */
+    public ConverseResult converse(String sessionId, String message) throws IOException {
+        Turn turn = new Turn(sessionId);
+        try {
+            ConverseResponse httpResponse;
+            try {
+                httpResponse = send(turn, message);
+            } catch (SocketTimeoutException e) {
+                return turn.result(ConverseResult.Status.TIMED_OUT);
+            }
+            return continueTurn(turn, httpResponse);
+        } finally {
+            turn.release();
+        }
+    }
+
+    private ConverseResult continueTurn(Turn turn, ConverseResponse httpResponse) throws IOException {
+        ConverseResponse response = httpResponse;
+        CompletableFuture<Void> step;
+        while ((step = executeStep(turn, response)) != null) {
+            Futures.join(step);
+            if (turn.steps >= maxSteps) {
+                return turn.result(ConverseResult.Status.STEP_LIMIT_EXCEEDED);
+            }
+            try {
+                //follow-up request
+                response = send(turn, null);
+            } catch (SocketTimeoutException e) {
+                return turn.result(ConverseResult.Status.TIMED_OUT);
+            }
+        }
+        return turn.result(ConverseResult.Status.STOPPED);
+    }
+
+    /**
+     * Asynchronously handles JSON response within the default session. When the turn ends, the default session
+     * is replaced by a new one that takes over the context of the old one.
+     *
+     * @param httpResponse {@code JsonNode} object that represents JSON response of {@code sendAsync} call.
+     * @return future that is completed when the turn ends.
+     * @see #handleHttpResponseAsync(String, JsonNode)
+     */
     @Override
-    public void handleHttpResponse(JsonNode httpResponse) throws IOException {
-        switch (ConverseResponseType.valueOf(httpResponse.get("type").asText().toUpperCase())) {
+    public CompletableFuture<Void> handleHttpResponseAsync(JsonNode httpResponse) {
+        return handleHttpResponseAsync(sessionId, httpResponse).thenRun(this::startNewSession);
+    }
+
+    /**
+     * Handles JSON response the same way as {@code handleHttpResponse} does, but sends follow-up requests
+     * with {@code sendAsync}.
+     *
+     * @param sessionId    session identifier.
+     * @param httpResponse {@code JsonNode} object that represents JSON response of {@code sendAsync} call.
+     * @return future that is completed with outcome of the turn.
+     */
+    public CompletableFuture<ConverseResult> handleHttpResponseAsync(String sessionId, JsonNode httpResponse) {
+        Turn turn = new Turn(sessionId);
+        turn.steps = 1;
+        CompletableFuture<ConverseResult> result = new CompletableFuture<>();
+        result.whenComplete((ignored, error) -> turn.release());
+        try {
+            continueTurnAsync(turn, ConverseResponse.fromTree(jsonMapper, httpResponse), result);
+        } catch (IOException e) {
+            result.completeExceptionally(e);
+        }
+        return result;
+    }
+
+    /**
+     * Sends {@code message} within the given session and processes the whole turn without blocking the calling
+     * thread.
+     *
+     * @param sessionId session identifier.
+     * @param message   message provided by user input (May be null).
+     * @return future that is completed with outcome of the turn.
+     */
+    public CompletableFuture<ConverseResult> converseAsync(String sessionId, String message) {
+        Turn turn = new Turn(sessionId);
+        CompletableFuture<ConverseResult> result = new CompletableFuture<>();
+        result.whenComplete((ignored, error) -> turn.release());
+        sendAsync(turn, message).whenComplete((httpResponse, error) -> {
+            if (error != null) {
+                fail(turn, error, result);
+            } else {
+                continueTurnAsync(turn, httpResponse, result);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Asynchronous version of the turn loop. Actions and responses that are already completed are handled in
+     * place, so the stack does not grow with the number of steps; otherwise the loop continues in a callback.
+     */
+    private void continueTurnAsync(Turn turn, ConverseResponse httpResponse,
+                                   CompletableFuture<ConverseResult> result) {
+        ConverseResponse response = httpResponse;
+        while (true) {
+            CompletableFuture<Void> step;
+            try {
+                step = executeStep(turn, response);
+            } catch (RuntimeException e) {
+                result.completeExceptionally(e);
+                return;
+            }
+            if (step == null) {
+                result.complete(turn.result(ConverseResult.Status.STOPPED));
+                return;
+            }
+
+            if (!step.isDone()) {
+                step.whenComplete((ignored, error) -> {
+                    if (error != null) {
+                        result.completeExceptionally(Futures.unwrap(error));
+                        return;
+                    }
+                    CompletableFuture<ConverseResponse> next = followUpAsync(turn, result);
+                    if (next != null) {
+                        next.whenComplete((nextResponse, nextError) -> {
+                            if (nextError != null) {
+                                fail(turn, nextError, result);
+                            } else {
+                                continueTurnAsync(turn, nextResponse, result);
+                            }
+                        });
+                    }
+                });
+                return;
+            }
+            try {
+                step.join();
+            } catch (RuntimeException e) {
+                result.completeExceptionally(Futures.unwrap(e));
+                return;
+            }
+
+            CompletableFuture<ConverseResponse> next = followUpAsync(turn, result);
+            if (next == null) {
+                return;
+            }
+            if (!next.isDone()) {
+                next.whenComplete((nextResponse, error) -> {
+                    if (error != null) {
+                        fail(turn, error, result);
+                    } else {
+                        continueTurnAsync(turn, nextResponse, result);
+                    }
+                });
+                return;
+            }
+            try {
+                response = next.join();
+            } catch (RuntimeException e) {
+                fail(turn, e, result);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Sends follow-up request of {@code turn} unless the turn is out of steps.
+     *
+     * @return future response or null if {@code result} was completed instead.
+     */
+    private CompletableFuture<ConverseResponse> followUpAsync(Turn turn, CompletableFuture<ConverseResult> result) {
+        if (turn.steps >= maxSteps) {
+            result.complete(turn.result(ConverseResult.Status.STEP_LIMIT_EXCEEDED));
+            return null;
+        }
+        try {
+            return sendAsync(turn, null);
+        } catch (RuntimeException e) {
+            result.completeExceptionally(e);
+            return null;
+        }
+    }
+
+    private void fail(Turn turn, Throwable error, CompletableFuture<ConverseResult> result) {
+        Throwable cause = Futures.unwrap(error);
+        if (cause instanceof SocketTimeoutException) {
+            result.complete(turn.result(ConverseResult.Status.TIMED_OUT));
+        } else {
+            result.completeExceptionally(cause);
+        }
+    }
+
+    private ConverseResponse send(Turn turn, String message) throws IOException {
+        HttpRequest request = createRequest(turn, message);
+        Instrumentation metrics = wit.getInstrumentation();
+        if (!metrics.isEnabled()) {
+            return readResponse(getTransport().execute(request));
+        }
+
+        metrics.requestStarted(turn.sessionId, request.getBodyLength());
+        long startNanos = System.nanoTime();
+        try {
+            return readResponse(turn.sessionId, getTransport().execute(request), metrics, startNanos);
+        } catch (IOException | RuntimeException e) {
+            metrics.requestFailed(turn.sessionId, e, System.nanoTime() - startNanos);
+            throw e;
+        }
+    }
+
+    private CompletableFuture<ConverseResponse> sendAsync(Turn turn, String message) {
+        HttpRequest request;
+        try {
+            request = createRequest(turn, message);
+        } catch (IOException e) {
+            return Futures.failed(e);
+        }
+
+        Instrumentation metrics = wit.getInstrumentation();
+        if (!metrics.isEnabled()) {
+            return getTransport().executeAsync(request).thenApply(response -> {
+                try {
+                    return readResponse(response);
+                } catch (IOException e) {
+                    throw new CompletionException(e);
+                }
+            });
+        }
+
+        metrics.requestStarted(turn.sessionId, request.getBodyLength());
+        long startNanos = System.nanoTime();
+        CompletableFuture<ConverseResponse> result = new CompletableFuture<>();
+        getTransport().executeAsync(request).whenComplete((response, error) -> {
+            if (error == null) {
+                try {
+                    result.complete(readResponse(turn.sessionId, response, metrics, startNanos));
+                    return;
+                } catch (IOException | RuntimeException e) {
+                    error = e;
+                }
+            }
+            Throwable cause = Futures.unwrap(error);
+            metrics.requestFailed(turn.sessionId, cause, System.nanoTime() - startNanos);
+            result.completeExceptionally(cause);
+        });
+        return result;
+    }
+
+    /**
+     * Creates request of the next step of {@code turn}. The serialized context cached by {@code Context} is used
+     * as request body, so the context is serialized again only when it was modified since the previous request
+     * of the session. The URI of follow-up steps is encoded once per turn and the headers once per
+     * communication, so a follow-up request allocates nothing but itself.
+     */
+    private HttpRequest createRequest(Turn turn, String message) throws IOException {
+        URI uri;
+        if (message != null) {
+            uri = requestEncoder.uri(turn.sessionId, message);
+        } else {
+            if (turn.followUpUri == null) {
+                turn.followUpUri = requestEncoder.uri(turn.sessionId, null);
+            }
+            uri = turn.followUpUri;
+        }
+
+        ByteArrayBuffer body = turn.context.getSerializedContext(jsonMapper);
+        turn.steps++;
+        return new HttpRequest("POST", uri, requestEncoder.getHeaders(), body.getBuffer(), body.size(),
+                stepTimeoutMillis);
+    }
+
+    /**
+     * Reads dispatch fields and entities of the response with streaming parser; the JSON tree is built only
+     * if some action asks for it.
+     */
+    private ConverseResponse readResponse(HttpResponse response) throws IOException {
+        if (!response.isSuccessful()) {
+            throw WitHttpException.of(response);
+        }
+        return ConverseResponse.parse(jsonMapper, response.getBody());
+    }
+
+    /**
+     * Reads response and reports its request and parse time to {@code metrics}.
+     */
+    private ConverseResponse readResponse(String sessionId, HttpResponse response, Instrumentation metrics,
+                                          long startNanos) throws IOException {
+        long receivedNanos = System.nanoTime();
+        ConverseResponse httpResponse = readResponse(response);
+        metrics.responseReceived(sessionId, httpResponse.getType(), response.getBody().length,
+                receivedNanos - startNanos, System.nanoTime() - receivedNanos);
+        return httpResponse;
+    }
+
+    /**
+     * Starts the action requested by a single bot response with the context of the session.
+     *
+     * @param turn         current turn.
+     * @param httpResponse parsed response of the bot.
+     * @return future that is completed when the action is done or null if the bot does not expect a follow-up
+     * request.
+     */
+    private CompletableFuture<Void> executeStep(Turn turn, ConverseResponse httpResponse) {
+        String actionName;
+        switch (httpResponse.getType()) {
             case MERGE:
-                actions.getAction("merge")
-                        .execute(sessionId, Context.getInstance(), httpResponse);
-                //follow-up request
-                handleHttpResponse(sendHttpRequest(null));
+                actionName = "merge";
                 break;
             case MSG:
-                actions.getAction("say")
-                        .execute(sessionId, Context.getInstance(), httpResponse);
-                //follow-up request
-                handleHttpResponse(sendHttpRequest(null));
+                turn.messages.add(httpResponse.getMessage());
+                actionName = "say";
                 break;
             case ACTION:
-                actions.getAction(httpResponse.get("action").asText())
-                        .execute(sessionId, Context.getInstance(), httpResponse);
-                //follow-up request
-                handleHttpResponse(sendHttpRequest(null));
+                actionName = httpResponse.getAction();
                 break;
             case STOP:
-                sessionId = UUID.randomUUID().toString();
-                break;
+                return null;
             default:
                 // TODO: 2016-06-25 error response
-                break;
+                return null;
+        }
+
+        IAction action = actions.getAction(actionName);
+        Instrumentation metrics = wit.getInstrumentation();
+        if (!metrics.isEnabled()) {
+            return action.executeAsync(turn.sessionId, turn.context, httpResponse).toCompletableFuture();
+        }
+
+        long startNanos = System.nanoTime();
+        CompletableFuture<Void> step;
+        try {
+            step = action.executeAsync(turn.sessionId, turn.context, httpResponse).toCompletableFuture();
+        } catch (RuntimeException e) {
+            metrics.actionExecuted(turn.sessionId, actionName, httpResponse.getType(), System.nanoTime() - startNanos);
+            throw e;
+        }
+        step.whenComplete((ignored, error) -> metrics.actionExecuted(turn.sessionId, actionName,
+                httpResponse.getType(), System.nanoTime() - startNanos));
+        return step;
+    }
+
+    private void startNewSession() {
+        String previousSessionId = sessionId;
+        sessionId = UUID.randomUUID().toString();
+        // the conversation goes on in the new session, so it keeps what the actions stored in the context
+        Context previous = getContextStore().remove(previousSessionId);
+        if (previous != null) {
+            getContextStore().getContext(sessionId).replaceWith(previous);
+        }
+    }
+
+    public Actions getActions() {
+        return actions;
+    }
+
+    /**
+     * Replaces registry of actions, e.g. to serve a bot with its own actions.
+     *
+     * @param actions registry of actions.
+     */
+    public void setActions(Actions actions) {
+        if (actions == null) {
+            throw new IllegalArgumentException("Actions must not be null");
+        }
+        this.actions = actions;
+    }
+
+    public int getMaxSteps() {
+        return maxSteps;
+    }
+
+    /**
+     * Sets the maximum number of requests sent during one turn. A bot that does not stop within this budget
+     * ends the turn with {@code STEP_LIMIT_EXCEEDED} status.
+     *
+     * @param maxSteps positive number of steps.
+     */
+    public void setMaxSteps(int maxSteps) {
+        if (maxSteps < 1) {
+            throw new IllegalArgumentException("maxSteps must be positive: " + maxSteps);
+        }
+        this.maxSteps = maxSteps;
+    }
+
+    public int getStepTimeoutMillis() {
+        return stepTimeoutMillis;
+    }
+
+    /**
+     * Sets the maximum time to wait for a single bot response. A bot that does not respond in time ends the turn
+     * with {@code TIMED_OUT} status.
+     *
+     * @param stepTimeoutMillis timeout in milliseconds ({@code 0} means transport read timeout).
+     */
+    public void setStepTimeoutMillis(int stepTimeoutMillis) {
+        this.stepTimeoutMillis = stepTimeoutMillis;
+    }
+
+    /**
+     * State of one conversation turn shared by all its steps. The session is pinned in the context store (see
+     * {@code ContextStore.acquire}) from the start of the turn to its {@code release}.
+     */
+    private final class Turn {
+        private final String sessionId;
+        private final Context context;
+        private final List<String> messages = new ArrayList<>();
+        private final Instrumentation metrics = wit.getInstrumentation();
+        private final long startNanos;
+        private int steps;
+        private URI followUpUri;
+
+        private Turn(String sessionId) {
+            this.sessionId = sessionId;
+            this.context = getContextStore().acquire(sessionId);
+            this.startNanos = metrics.isEnabled() ? System.nanoTime() : 0;
+        }
+
+        private ConverseResult result(ConverseResult.Status status) {
+            ConverseResult result = new ConverseResult(sessionId, status, steps, messages);
+            if (metrics.isEnabled()) {
+                metrics.turnCompleted(result, System.nanoTime() - startNanos);
+            }
+            return result;
+        }
+
+        private void release() {
+            getContextStore().release(sessionId, context);
         }
     }
 }
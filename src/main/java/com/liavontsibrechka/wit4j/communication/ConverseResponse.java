@@ -0,0 +1,265 @@
+/*
+ * Copyright 2016 Liavontsi Brechka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.liavontsibrechka.wit4j.communication;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Converse response of <b>Wit.ai HTTP API</b> read with streaming parser.
+ * <p>
+ * Only the fields needed to dispatch the response ({@code type}, {@code action}, {@code msg},
+ * {@code confidence}) and the {@code entities} are bound while parsing. The full JSON tree is built lazily, on the
+ * first call of {@code asTree} (e.g. by an {@code IAction} that needs the whole response).
+ *
+ * @author Liavontsi Brechka
+ * @see Converse
+ * @see EntityValue
+ * @since 1.0-SNAPSHOT
+ */
+public final class ConverseResponse {
+    private static final ObjectMapper TREE_READER = new ObjectMapper();
+
+    private final ConverseResponseType type;
+    private final String action;
+    private final String message;
+    private final double confidence;
+    private final Map<String, List<EntityValue>> entities;
+
+    private final ObjectMapper jsonMapper;
+    private final byte[] body;
+    private volatile JsonNode tree;
+
+    private ConverseResponse(ConverseResponseType type, String action, String message, double confidence,
+                             Map<String, List<EntityValue>> entities, ObjectMapper jsonMapper, byte[] body,
+                             JsonNode tree) {
+        this.type = type;
+        this.action = action;
+        this.message = message;
+        this.confidence = confidence;
+        this.entities = entities;
+        this.jsonMapper = jsonMapper;
+        this.body = body;
+        this.tree = tree;
+    }
+
+    /**
+     * Parses raw JSON response.
+     *
+     * @param jsonMapper mapper used for parsing and for building the tree on demand.
+     * @param body       JSON response body.
+     * @return parsed response.
+     * @throws IOException if the body is not a valid converse response.
+     */
+    public static ConverseResponse parse(ObjectMapper jsonMapper, byte[] body) throws IOException {
+        try (JsonParser parser = jsonMapper.getFactory().createParser(body)) {
+            return parse(parser, jsonMapper, body, null);
+        }
+    }
+
+    /**
+     * Creates response from already built JSON tree.
+     *
+     * @param tree JSON response.
+     * @return parsed response.
+     * @throws IOException if the tree is not a valid converse response.
+     */
+    public static ConverseResponse fromTree(JsonNode tree) throws IOException {
+        return fromTree(TREE_READER, tree);
+    }
+
+    /**
+     * Creates response from already built JSON tree.
+     *
+     * @param jsonMapper mapper used for reading the tree.
+     * @param tree       JSON response.
+     * @return parsed response.
+     * @throws IOException if the tree is not a valid converse response.
+     */
+    public static ConverseResponse fromTree(ObjectMapper jsonMapper, JsonNode tree) throws IOException {
+        try (JsonParser parser = jsonMapper.treeAsTokens(tree)) {
+            return parse(parser, jsonMapper, null, tree);
+        }
+    }
+
+    private static ConverseResponse parse(JsonParser parser, ObjectMapper jsonMapper, byte[] body, JsonNode tree)
+            throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            throw new IOException("Converse response must be a JSON object");
+        }
+
+        String type = null;
+        String action = null;
+        String message = null;
+        double confidence = Double.NaN;
+        Map<String, List<EntityValue>> entities = Collections.emptyMap();
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+            switch (field) {
+                case "type":
+                    type = parser.getValueAsString();
+                    break;
+                case "action":
+                    action = parser.getValueAsString();
+                    break;
+                case "msg":
+                    message = parser.getValueAsString();
+                    break;
+                case "confidence":
+                    confidence = parser.getValueAsDouble(Double.NaN);
+                    break;
+                case "entities":
+                    if (value == JsonToken.START_OBJECT) {
+                        entities = parseEntities(parser);
+                    } else {
+                        parser.skipChildren();
+                    }
+                    break;
+                default:
+                    parser.skipChildren();
+                    break;
+            }
+        }
+
+        if (type == null) {
+            throw new IOException("Converse response has no 'type' field");
+        }
+        return new ConverseResponse(ConverseResponseType.valueOf(type.toUpperCase()), action, message, confidence,
+                entities, jsonMapper, body, tree);
+    }
+
+    private static Map<String, List<EntityValue>> parseEntities(JsonParser parser) throws IOException {
+        Map<String, List<EntityValue>> entities = new LinkedHashMap<>();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.getCurrentName();
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                parser.skipChildren();
+                continue;
+            }
+
+            List<EntityValue> values = new ArrayList<>(2);
+            JsonToken token;
+            while ((token = parser.nextToken()) != JsonToken.END_ARRAY && token != null) {
+                if (token == JsonToken.START_OBJECT) {
+                    values.add(parseEntityValue(parser));
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            entities.put(name, Collections.unmodifiableList(values));
+        }
+        return Collections.unmodifiableMap(entities);
+    }
+
+    private static EntityValue parseEntityValue(JsonParser parser) throws IOException {
+        JsonNode value = null;
+        double confidence = Double.NaN;
+        String type = null;
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            switch (field) {
+                case "value":
+                    value = parser.readValueAsTree();
+                    break;
+                case "confidence":
+                    confidence = parser.getValueAsDouble(Double.NaN);
+                    break;
+                case "type":
+                    type = parser.getValueAsString();
+                    break;
+                default:
+                    parser.skipChildren();
+                    break;
+            }
+        }
+        return new EntityValue(value, confidence, type);
+    }
+
+    public ConverseResponseType getType() {
+        return type;
+    }
+
+    /**
+     * @return name of the action to execute (for <em>action</em> responses), otherwise null.
+     */
+    public String getAction() {
+        return action;
+    }
+
+    /**
+     * @return text the bot has to say (for <em>msg</em> responses), otherwise null.
+     */
+    public String getMessage() {
+        return message;
+    }
+
+    /**
+     * @return confidence of the bot in this step or {@code NaN} if not provided.
+     */
+    public double getConfidence() {
+        return confidence;
+    }
+
+    /**
+     * @return entities extracted from the user message by entity name (empty if none).
+     */
+    public Map<String, List<EntityValue>> getEntities() {
+        return entities;
+    }
+
+    /**
+     * @param name entity name.
+     * @return values of the entity (empty if the entity was not extracted).
+     */
+    public List<EntityValue> getEntity(String name) {
+        List<EntityValue> values = entities.get(name);
+        return values == null ? Collections.<EntityValue>emptyList() : values;
+    }
+
+    /**
+     * Builds (once) and returns the whole response as JSON tree.
+     *
+     * @return JSON response object that is represented as {@code JsonNode}.
+     */
+    public JsonNode asTree() {
+        JsonNode result = tree;
+        if (result == null) {
+            try {
+                result = jsonMapper.readTree(body);
+            } catch (IOException e) {
+                // the body was already parsed successfully, so this may happen only on a broken mapper
+                throw new IllegalStateException("Unable to build JSON tree of converse response", e);
+            }
+            tree = result;
+        }
+        return result;
+    }
+}
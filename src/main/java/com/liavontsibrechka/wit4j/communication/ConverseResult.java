@@ -0,0 +1,89 @@
+/*
+ * Copyright 2016 Liavontsi Brechka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.liavontsibrechka.wit4j.communication;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Outcome of a single conversation turn (a user message and all bot steps that followed it) processed by
+ * {@code Converse}.
+ *
+ * @author Liavontsi Brechka
+ * @see Converse
+ * @since 1.0-SNAPSHOT
+ */
+public final class ConverseResult {
+    /**
+     * The way a conversation turn ended.
+     */
+    public enum Status {
+        /**
+         * The bot responded with <em>stop</em> and waits for the next user message.
+         */
+        STOPPED,
+        /**
+         * The bot did not stop within the maximum number of steps allowed for a turn.
+         */
+        STEP_LIMIT_EXCEEDED,
+        /**
+         * The bot did not respond to a step within the step timeout.
+         */
+        TIMED_OUT
+    }
+
+    private final String sessionId;
+    private final Status status;
+    private final int steps;
+    private final List<String> messages;
+
+    public ConverseResult(String sessionId, Status status, int steps, List<String> messages) {
+        this.sessionId = sessionId;
+        this.status = status;
+        this.steps = steps;
+        this.messages = Collections.unmodifiableList(messages);
+    }
+
+    public String getSessionId() {
+        return sessionId;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    /**
+     * @return number of requests sent to <b>Wit.ai HTTP API</b> during the turn.
+     */
+    public int getSteps() {
+        return steps;
+    }
+
+    /**
+     * @return texts of all <em>msg</em> responses of the bot in the order they were received.
+     */
+    public List<String> getMessages() {
+        return messages;
+    }
+
+    @Override
+    public String toString() {
+        return "ConverseResult{sessionId=" + sessionId + ", status=" + status + ", steps=" + steps
+                + ", messages=" + messages + "}";
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2016 Liavontsi Brechka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.liavontsibrechka.wit4j.communication;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * Single value of an entity extracted by <b>Wit.ai</b> from a user message
+ * (one element of {@code entities.<name>} array of a converse response).
+ *
+ * @author Liavontsi Brechka
+ * @see ConverseResponse
+ * @since 1.0-SNAPSHOT
+ */
+public final class EntityValue {
+    private final JsonNode value;
+    private final double confidence;
+    private final String type;
+
+    public EntityValue(JsonNode value, double confidence, String type) {
+        this.value = value;
+        this.confidence = confidence;
+        this.type = type;
+    }
+
+    /**
+     * @return raw value node; for some entities (e.g. <em>datetime</em> intervals) it is an object that contains
+     * nested {@code value} field.
+     */
+    public JsonNode getValue() {
+        return value;
+    }
+
+    /**
+     * @return value node with nested {@code value} object unwrapped (May be null).
+     */
+    public JsonNode getResolvedValue() {
+        if (value != null && value.isObject() && value.has("value")) {
+            return value.get("value");
+        }
+        return value;
+    }
+
+    public double getConfidence() {
+        return confidence;
+    }
+
+    /**
+     * @return type of the value (e.g. <em>value</em>, <em>interval</em>) or null if not provided.
+     */
+    public String getType() {
+        return type;
+    }
+
+    @Override
+    public String toString() {
+        return "EntityValue{value=" + value + ", confidence=" + confidence + ", type=" + type + "}";
+    }
+}
@@ -19,60 +19,103 @@ package com.liavontsibrechka.wit4j.communication;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.liavontsibrechka.wit4j.util.ResourceBundleEnum;
+import com.liavontsibrechka.wit4j.Context;
+import com.liavontsibrechka.wit4j.ContextStore;
+import com.liavontsibrechka.wit4j.Wit;
+import com.liavontsibrechka.wit4j.communication.transport.HttpTransport;
 
 import java.io.IOException;
-import java.net.HttpURLConnection;
-import java.net.URL;
-import java.util.ResourceBundle;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * This class is responsible for defining an abstract structure of making http requests and handling http responses
  * (json files) using <b>Wit.ai HTTP API</b> in order to communicate with bot.
+ * <p>
+ * A communication belongs to a single {@code Wit} client and sends requests with its token, base url and version
+ * over its transport, keeping session contexts in its {@code ContextStore}. Communications of different clients
+ * are independent, so bots of many applications may be served by one process.
  *
  * @author Liavontsi Brechka
+ * @see Wit
  * @since 1.0-SNAPSHOT
  */
 public abstract class HttpCommunication {
+    /**
+     * Object for handling JSON files in java using <b>Jackson API</b>. It is thread-safe and shared by all
+     * communications.
+     *
+     * @see ObjectMapper
+     */
+    protected static final ObjectMapper jsonMapper = new ObjectMapper();
+
+    private static final byte[] PREWARM_RESPONSE = ("{\"type\":\"merge\",\"confidence\":1.0,\"entities\":{"
+            + "\"location\":[{\"confidence\":1.0,\"type\":\"value\",\"value\":\"Minsk\"}]}}")
+            .getBytes(StandardCharsets.UTF_8);
+
+    /**
+     * Client this communication belongs to.
+     */
+    protected final Wit wit;
     /**
      * Base url of <b>Wit.ai HTTP API</b>.
      */
-    protected static String baseUrl;
+    protected final String baseUrl;
     /**
      * <b>Wit.ai HTTP API</b> versioning parameter.
      */
-    protected static String version;
+    protected final String version;
     /**
-     * Object for handling JSON files in java using <b>Jackson API</b>.
-     *
-     * @see ObjectMapper
+     * Value of <em>Authorization</em> header of requests (bearer access token of the client).
      */
-    protected static ObjectMapper jsonMapper;
+    protected final String authorization;
 
     /**
-     * Instantiating static fields described above using {@code ResourceBundle}.
+     * Creates communication that sends requests on behalf of {@code wit} client.
      *
-     * @see ResourceBundleEnum
+     * @param wit client the communication belongs to.
      */
-    static {
-        ResourceBundle bundle = ResourceBundle.getBundle(ResourceBundleEnum.MAIN_APP_PROPERTIES.getFileName());
-        baseUrl = bundle.getString("base_url");
-        version = bundle.getString("version");
-        jsonMapper = new ObjectMapper();
+    protected HttpCommunication(Wit wit) {
+        this.wit = wit;
+        this.baseUrl = wit.getBaseUrl();
+        this.version = wit.getVersion();
+        this.authorization = "Bearer " + wit.getToken();
+    }
+
+    public Wit getWit() {
+        return wit;
     }
 
     /**
-     * URL for actual request ({@code baseUrl} + all necessary parameters)
-     *
-     * @see URL
+     * @return transport of the client for sending requests over pooled keep-alive connections (created on first
+     * use).
+     * @see HttpTransport
      */
-    protected URL finalUrl;
+    public HttpTransport getTransport() {
+        return wit.getTransport();
+    }
+
+    /**
+     * @return store of per-session contexts of the client (created on first use).
+     * @see ContextStore
+     */
+    public ContextStore getContextStore() {
+        return wit.getContextStore();
+    }
+
     /**
-     * Http connection that is responsible for setting request headers and body as well as reading response.
+     * Builds serializers and deserializers of the shared JSON mapper by serializing a context and parsing sample
+     * responses, so they are not built while the first requests are processed.
      *
-     * @see HttpURLConnection
+     * @throws IOException never in practice; declared by the mapper.
      */
-    protected HttpURLConnection httpConnection;
+    public static void prewarmJsonMapper() throws IOException {
+        Context context = new Context();
+        context.put("location", "Minsk");
+        context.getSerializedContext(jsonMapper);
+        ConverseResponse.parse(jsonMapper, PREWARM_RESPONSE).asTree();
+        jsonMapper.readTree(PREWARM_RESPONSE);
+    }
 
     /**
      * Prepares and sends http request to bot API.
@@ -93,4 +136,35 @@ public abstract class HttpCommunication {
      * @see JsonNode
      */
     public abstract void handleHttpResponse(JsonNode httpResponse) throws IOException;
+
+    /**
+     * Asynchronous counterpart of {@code sendHttpRequest}. The calling thread is not blocked while the request
+     * is in flight.
+     *
+     * @param message message provided by user input (May be null).
+     * @return future that is completed with JSON response from <b>Wit.ai HTTP API</b> or with the
+     * {@code IOException} that occurred.
+     * @see JsonNode
+     */
+    public abstract CompletableFuture<JsonNode> sendAsync(String message);
+
+    /**
+     * Asynchronous counterpart of {@code handleHttpResponse}. Follow-up requests (if any) are sent with
+     * {@code sendAsync}, so no thread is parked while waiting for bot responses.
+     *
+     * @param httpResponse {@code JsonNode} object that represents JSON response of {@code sendAsync} call.
+     * @return future that is completed when the response and all its follow-ups are handled.
+     * @see JsonNode
+     */
+    public abstract CompletableFuture<Void> handleHttpResponseAsync(JsonNode httpResponse);
+
+    /**
+     * Sends {@code message} and handles the response without blocking the calling thread.
+     *
+     * @param message message provided by user input (May be null).
+     * @return future that is completed when the bot finished processing {@code message}.
+     */
+    public CompletableFuture<Void> communicateAsync(String message) {
+        return sendAsync(message).thenCompose(this::handleHttpResponseAsync);
+    }
 }
@@ -17,6 +17,8 @@
 
 package com.liavontsibrechka.wit4j.communication;
 
+import com.liavontsibrechka.wit4j.Wit;
+
 /**
  * Factory class for creating instances of concrete {@code HttpCommunication} subclasses using
  * {@code HttpCommunicationType} enumeration.
@@ -27,7 +29,14 @@ package com.liavontsibrechka.wit4j.communication;
  * @since 1.0-SNAPSHOT
  */
 public class HttpCommunicationFactory {
-    public static HttpCommunication createHttpCommunication(HttpCommunicationType communicationType) {
-        return communicationType.getCommunication();
+    /**
+     * Creates communication of {@code communicationType} that sends requests on behalf of {@code wit} client.
+     *
+     * @param wit               client the communication belongs to.
+     * @param communicationType type of communication.
+     * @return new communication.
+     */
+    public static HttpCommunication createHttpCommunication(Wit wit, HttpCommunicationType communicationType) {
+        return communicationType.createCommunication(wit);
     }
 }
@@ -17,6 +17,10 @@
 
 package com.liavontsibrechka.wit4j.communication;
 
+import com.liavontsibrechka.wit4j.Wit;
+
+import java.util.function.Function;
+
 /**
  * Enum for defining type and instantiating concrete implementation (by {@code HttpCommunicationFactory})
  * of {@code HttpCommunication} subclasses.
@@ -26,20 +30,33 @@ package com.liavontsibrechka.wit4j.communication;
  * @see HttpCommunicationFactory
  * @since 1.0-SNAPSHOT
  */
-// TODO: 2016-06-28 other communication types (message, speech)
 public enum HttpCommunicationType {
     /**
      * @see Converse
      */
-    CONVERSE(new Converse());
+    CONVERSE(Converse::new),
+    /**
+     * @see Message
+     */
+    MESSAGE(Message::new),
+    /**
+     * @see Speech
+     */
+    SPEECH(Speech::new);
 
-    private HttpCommunication communication;
+    private final Function<Wit, HttpCommunication> constructor;
 
-    HttpCommunicationType(HttpCommunication communication) {
-        this.communication = communication;
+    HttpCommunicationType(Function<Wit, HttpCommunication> constructor) {
+        this.constructor = constructor;
     }
 
-    public HttpCommunication getCommunication() {
-        return communication;
+    /**
+     * Creates communication of this type.
+     *
+     * @param wit client the communication belongs to.
+     * @return new communication.
+     */
+    public HttpCommunication createCommunication(Wit wit) {
+        return constructor.apply(wit);
     }
 }
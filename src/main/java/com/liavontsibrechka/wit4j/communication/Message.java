@@ -0,0 +1,332 @@
+/*
+ * Copyright 2016 Liavontsi Brechka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.liavontsibrechka.wit4j.communication;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.liavontsibrechka.wit4j.Context;
+import com.liavontsibrechka.wit4j.Wit;
+import com.liavontsibrechka.wit4j.action.Actions;
+import com.liavontsibrechka.wit4j.communication.transport.HttpRequest;
+import com.liavontsibrechka.wit4j.communication.transport.HttpResponse;
+import com.liavontsibrechka.wit4j.metrics.Instrumentation;
+import com.liavontsibrechka.wit4j.util.ByteArrayBuffer;
+import com.liavontsibrechka.wit4j.util.Futures;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Class for extracting meaning (intents and entities) from a user message through <em>message</em> request type of
+ * <b>Wit.ai HTTP API</b>.
+ * <p>
+ * Unlike {@code Converse}, a message request is a single idempotent lookup, so its responses may be cached with
+ * {@code MessageCache} (disabled by default, see {@code setCache}). {@code handleHttpResponse} passes the response
+ * to the <em>merge</em> action of the application, so extracted entities can be merged into the session context.
+ *
+ * @author Liavontsi Brechka
+ * @see HttpCommunication
+ * @see HttpCommunicationType
+ * @see MessageCache
+ * @since 1.0-SNAPSHOT
+ */
+public class Message extends HttpCommunication {
+    /**
+     * Unique session identifier of the default session used by methods without {@code sessionId} parameter.
+     */
+    private final String sessionId;
+    /**
+     * Registry of actions (the registry of the client unless replaced with {@code setActions}).
+     *
+     * @see Actions
+     */
+    private volatile Actions actions;
+    /**
+     * Cache of responses (May be null).
+     */
+    private volatile MessageCache cache;
+    /**
+     * Identity of the application in keys of the cache, so responses of other applications are never returned.
+     */
+    private final String cacheApplication;
+
+    /**
+     * Creates instance of {@code Message} class and instantiate variables described above.
+     *
+     * @param wit client the communication belongs to.
+     */
+    protected Message(Wit wit) {
+        super(wit);
+
+        sessionId = UUID.randomUUID().toString();
+        cacheApplication = baseUrl + ' ' + authorization;
+        actions = wit.getActions();
+    }
+
+    /**
+     * Sends {@code message} with the context of the default session.
+     *
+     * @param message message provided by user input.
+     * @return JSON response object that is represented as {@code JsonNode}.
+     * @throws IOException if an I/O error occurs or <b>Wit.ai HTTP API</b> responds with an error status.
+     * @see #sendHttpRequest(String, String)
+     */
+    @Override
+    public JsonNode sendHttpRequest(String message) throws IOException {
+        return sendHttpRequest(sessionId, message);
+    }
+
+    /**
+     * Sends {@code message} together with the session context or returns cached response of the same request.
+     *
+     * @param sessionId session identifier.
+     * @param message   message provided by user input.
+     * @return JSON response object that is represented as {@code JsonNode}; cached responses must not be modified.
+     * @throws IOException if an I/O error occurs or <b>Wit.ai HTTP API</b> responds with an error status.
+     */
+    public JsonNode sendHttpRequest(String sessionId, String message) throws IOException {
+        try {
+            return send(sessionId, message, false).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for message response");
+        } catch (ExecutionException e) {
+            Throwable cause = Futures.unwrap(e);
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Sends {@code message} with the context of the default session without blocking the calling thread.
+     *
+     * @param message message provided by user input.
+     * @return future that is completed with JSON response object that is represented as {@code JsonNode}.
+     * @see #sendAsync(String, String)
+     */
+    @Override
+    public CompletableFuture<JsonNode> sendAsync(String message) {
+        return sendAsync(sessionId, message);
+    }
+
+    /**
+     * Asynchronous counterpart of {@code sendHttpRequest(String, String)}.
+     *
+     * @param sessionId session identifier.
+     * @param message   message provided by user input.
+     * @return future that is completed with JSON response object that is represented as {@code JsonNode}.
+     */
+    public CompletableFuture<JsonNode> sendAsync(String sessionId, String message) {
+        return send(sessionId, message, true);
+    }
+
+    private CompletableFuture<JsonNode> send(String sessionId, String message, boolean async) {
+        if (message == null) {
+            return Futures.failed(new IllegalArgumentException("Message request requires message text"));
+        }
+
+        HttpRequest request;
+        ByteArrayBuffer serializedContext;
+        try {
+            serializedContext = getContextStore().getContext(sessionId).getSerializedContext(jsonMapper);
+            request = createRequest(message, serializedContext);
+        } catch (IOException e) {
+            return Futures.failed(e);
+        }
+
+        MessageCache currentCache = cache;
+        if (currentCache == null) {
+            return execute(sessionId, request, async);
+        }
+
+        MessageCache.Key key = new MessageCache.Key(cacheApplication, MessageCache.normalize(message), version,
+                hash(serializedContext.getBuffer(), serializedContext.size()));
+        return currentCache.get(key, () -> execute(sessionId, request, async));
+    }
+
+    private CompletableFuture<JsonNode> execute(String sessionId, HttpRequest request, boolean async) {
+        Instrumentation metrics = wit.getInstrumentation();
+        if (metrics.isEnabled()) {
+            return executeInstrumented(sessionId, request, async, metrics);
+        }
+
+        if (async) {
+            return getTransport().executeAsync(request).thenApply(response -> {
+                try {
+                    return readResponse(response);
+                } catch (IOException e) {
+                    throw new CompletionException(e);
+                }
+            });
+        }
+
+        try {
+            return CompletableFuture.completedFuture(readResponse(getTransport().execute(request)));
+        } catch (IOException e) {
+            return Futures.failed(e);
+        }
+    }
+
+    private CompletableFuture<JsonNode> executeInstrumented(String sessionId, HttpRequest request, boolean async,
+                                                            Instrumentation metrics) {
+        metrics.requestStarted(sessionId, 0);
+        long startNanos = System.nanoTime();
+        CompletableFuture<HttpResponse> response;
+        if (async) {
+            response = getTransport().executeAsync(request);
+        } else {
+            try {
+                response = CompletableFuture.completedFuture(getTransport().execute(request));
+            } catch (IOException e) {
+                response = Futures.failed(e);
+            }
+        }
+
+        CompletableFuture<JsonNode> result = new CompletableFuture<>();
+        response.whenComplete((httpResponse, error) -> {
+            if (error == null) {
+                try {
+                    long receivedNanos = System.nanoTime();
+                    JsonNode jsonResponse = readResponse(httpResponse);
+                    metrics.responseReceived(sessionId, null, httpResponse.getBody().length,
+                            receivedNanos - startNanos, System.nanoTime() - receivedNanos);
+                    result.complete(jsonResponse);
+                    return;
+                } catch (IOException | RuntimeException e) {
+                    error = e;
+                }
+            }
+            Throwable cause = Futures.unwrap(error);
+            metrics.requestFailed(sessionId, cause, System.nanoTime() - startNanos);
+            result.completeExceptionally(cause);
+        });
+        return result;
+    }
+
+    private HttpRequest createRequest(String message, ByteArrayBuffer serializedContext) throws IOException {
+        String queryString = baseUrl + "/message?v=" + version + "&q=" + URLEncoder.encode(message, "UTF-8");
+        String contextJson = serializedContext.toString("UTF-8");
+        if (!"{}".equals(contextJson)) {
+            queryString += "&context=" + URLEncoder.encode(contextJson, "UTF-8");
+        }
+
+        Map<String, String> headers = new LinkedHashMap<>();
+        headers.put("Accept", "application/json");
+        headers.put("Authorization", authorization);
+
+        return new HttpRequest("GET", URI.create(queryString), headers, null);
+    }
+
+    private JsonNode readResponse(HttpResponse response) throws IOException {
+        if (!response.isSuccessful()) {
+            throw WitHttpException.of(response);
+        }
+        return jsonMapper.readTree(response.getBody());
+    }
+
+    /**
+     * Passes response to the <em>merge</em> action with the context of the default session.
+     *
+     * @param httpResponse {@code JsonNode} object that represents JSON response of {@code sendHttpRequest} call.
+     * @throws IOException if an I/O error occurs.
+     */
+    @Override
+    public void handleHttpResponse(JsonNode httpResponse) throws IOException {
+        handleHttpResponse(sessionId, httpResponse);
+    }
+
+    /**
+     * Passes response to the <em>merge</em> action with the context of the session.
+     *
+     * @param sessionId    session identifier.
+     * @param httpResponse {@code JsonNode} object that represents JSON response of {@code sendHttpRequest} call.
+     */
+    public void handleHttpResponse(String sessionId, JsonNode httpResponse) {
+        Context context = getContextStore().getContext(sessionId);
+        actions.getAction("merge").execute(sessionId, context, httpResponse);
+    }
+
+    /**
+     * Handles response on the calling thread, because a message response has no follow-up requests.
+     *
+     * @param httpResponse {@code JsonNode} object that represents JSON response of {@code sendAsync} call.
+     * @return completed future.
+     */
+    @Override
+    public CompletableFuture<Void> handleHttpResponseAsync(JsonNode httpResponse) {
+        try {
+            handleHttpResponse(sessionId, httpResponse);
+            return CompletableFuture.completedFuture(null);
+        } catch (RuntimeException e) {
+            return Futures.failed(e);
+        }
+    }
+
+    public Actions getActions() {
+        return actions;
+    }
+
+    /**
+     * Replaces registry of actions, e.g. to serve a bot with its own actions.
+     *
+     * @param actions registry of actions.
+     */
+    public void setActions(Actions actions) {
+        if (actions == null) {
+            throw new IllegalArgumentException("Actions must not be null");
+        }
+        this.actions = actions;
+    }
+
+    public MessageCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Enables caching of responses.
+     *
+     * @param cache response cache (null disables caching).
+     */
+    public void setCache(MessageCache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * 64-bit FNV-1a hash of serialized context.
+     */
+    private static long hash(byte[] bytes, int length) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < length; i++) {
+            hash ^= bytes[i] & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,278 @@
+/*
+ * Copyright 2016 Liavontsi Brechka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.liavontsibrechka.wit4j.communication;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Bounded cache of <em>message</em> responses of <b>Wit.ai HTTP API</b>.
+ * <p>
+ * Responses are keyed by the application (base URL and authorization of the client), normalized message
+ * text (trimmed, lower case, single spaces), API version and hash of the context sent with the message, so one
+ * cache may be shared by clients of different applications. The least recently used response is dropped when the
+ * cache is full and responses older than {@code ttlMillis} are not returned. Concurrent lookups of the same key that
+ * miss the cache share one request to the API.
+ * <p>
+ * Cached responses are shared between callers and must not be modified.
+ *
+ * @author Liavontsi Brechka
+ * @see Message
+ * @since 1.0-SNAPSHOT
+ */
+public class MessageCache {
+    private final int maxEntries;
+    private final long ttlMillis;
+    private final Map<Key, CachedResponse> entries;
+    private final Map<Key, CompletableFuture<JsonNode>> inFlight = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * Creates cache of message responses.
+     *
+     * @param maxEntries maximum number of cached responses.
+     * @param ttlMillis  time a response stays valid ({@code 0} means responses never expire).
+     */
+    public MessageCache(int maxEntries, long ttlMillis) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("maxEntries must be positive: " + maxEntries);
+        }
+
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttlMillis;
+        this.entries = new LinkedHashMap<Key, CachedResponse>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, CachedResponse> eldest) {
+                if (size() > MessageCache.this.maxEntries) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns cached response for the key or loads it. If a response for the same key is being loaded already,
+     * the caller gets the same future instead of starting another request.
+     *
+     * @param key    cache key.
+     * @param loader sends the request when the response is neither cached nor being loaded.
+     * @return future that is completed with the response.
+     */
+    public CompletableFuture<JsonNode> get(Key key, Supplier<CompletableFuture<JsonNode>> loader) {
+        JsonNode cached = lookup(key);
+        if (cached != null) {
+            hits.incrementAndGet();
+            return CompletableFuture.completedFuture(cached);
+        }
+
+        CompletableFuture<JsonNode> load = new CompletableFuture<>();
+        CompletableFuture<JsonNode> existing = inFlight.putIfAbsent(key, load);
+        if (existing != null) {
+            coalesced.incrementAndGet();
+            return existing;
+        }
+
+        misses.incrementAndGet();
+        CompletableFuture<JsonNode> request;
+        try {
+            request = loader.get();
+        } catch (RuntimeException e) {
+            inFlight.remove(key, load);
+            load.completeExceptionally(e);
+            return load;
+        }
+
+        request.whenComplete((response, error) -> {
+            if (error == null) {
+                put(key, response);
+            }
+            inFlight.remove(key, load);
+            if (error != null) {
+                load.completeExceptionally(error);
+            } else {
+                load.complete(response);
+            }
+        });
+        return load;
+    }
+
+    private JsonNode lookup(Key key) {
+        synchronized (entries) {
+            CachedResponse entry = entries.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (ttlMillis > 0 && System.currentTimeMillis() - entry.createdMillis >= ttlMillis) {
+                entries.remove(key);
+                evictions.incrementAndGet();
+                return null;
+            }
+            return entry.response;
+        }
+    }
+
+    private void put(Key key, JsonNode response) {
+        synchronized (entries) {
+            entries.put(key, new CachedResponse(response, System.currentTimeMillis()));
+        }
+    }
+
+    /**
+     * Removes all cached responses.
+     */
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * @return number of lookups answered from the cache.
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * @return number of lookups that sent a request to the API.
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * @return number of lookups that joined a request already sent for the same key.
+     */
+    public long getCoalesced() {
+        return coalesced.get();
+    }
+
+    /**
+     * @return number of responses dropped because the cache was full or the response expired.
+     */
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    /**
+     * @return share of lookups that did not send a request to the API.
+     */
+    public double getHitRatio() {
+        long served = hits.get() + coalesced.get();
+        long total = served + misses.get();
+        return total == 0 ? 0 : (double) served / total;
+    }
+
+    /**
+     * Normalizes message text for use in a cache key.
+     *
+     * @param message message text.
+     * @return trimmed lower case text with whitespace runs replaced by a single space.
+     */
+    public static String normalize(String message) {
+        StringBuilder normalized = new StringBuilder(message.length());
+        boolean space = false;
+        for (int i = 0; i < message.length(); i++) {
+            char next = message.charAt(i);
+            if (Character.isWhitespace(next)) {
+                space = normalized.length() > 0;
+            } else {
+                if (space) {
+                    normalized.append(' ');
+                    space = false;
+                }
+                normalized.append(next);
+            }
+        }
+        return normalized.toString().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Cache key of a message request.
+     */
+    public static final class Key {
+        private final String application;
+        private final String text;
+        private final String version;
+        private final long contextHash;
+
+        /**
+         * @param application identity of the application the message is sent to (e.g. base URL and authorization).
+         * @param text        normalized message text (see {@code normalize}).
+         * @param version     <b>Wit.ai HTTP API</b> version.
+         * @param contextHash hash of the context sent with the message.
+         */
+        public Key(String application, String text, String version, long contextHash) {
+            this.application = application;
+            this.text = text;
+            this.version = version;
+            this.contextHash = contextHash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return contextHash == key.contextHash && text.equals(key.text) && version.equals(key.version)
+                    && application.equals(key.application);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = application.hashCode();
+            result = 31 * result + text.hashCode();
+            result = 31 * result + version.hashCode();
+            result = 31 * result + (int) (contextHash ^ (contextHash >>> 32));
+            return result;
+        }
+    }
+
+    private static final class CachedResponse {
+        private final JsonNode response;
+        private final long createdMillis;
+
+        private CachedResponse(JsonNode response, long createdMillis) {
+            this.response = response;
+            this.createdMillis = createdMillis;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2016 Liavontsi Brechka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.liavontsibrechka.wit4j.communication;
+
+import com.liavontsibrechka.wit4j.communication.transport.HttpRequest;
+import com.liavontsibrechka.wit4j.util.PercentEncoder;
+
+import java.net.URI;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Encoder of <em>converse</em> request URIs and headers of a single communication.
+ * <p>
+ * The part of the URI that is the same for every request (base url, endpoint and version) and the headers are
+ * prepared once, so a request only appends the percent-encoded session identifier and message to a builder
+ * reused by the calling thread. URIs of follow-up steps of a turn do not depend on the step and are cached by
+ * {@code Converse}.
+ *
+ * @author Liavontsi Brechka
+ * @see Converse
+ * @see PercentEncoder
+ * @since 1.0-SNAPSHOT
+ */
+final class RequestEncoder {
+    /**
+     * Builders larger than this are not kept by their threads, so one long message does not pin memory.
+     */
+    private static final int MAX_RETAINED_CAPACITY = 4096;
+    private static final ThreadLocal<StringBuilder> URI_BUILDER = ThreadLocal.withInitial(() ->
+            new StringBuilder(256));
+
+    private final String prefix;
+    private final Map<String, String> headers;
+
+    /**
+     * @param baseUrl       base url of <b>Wit.ai HTTP API</b>.
+     * @param version       <b>Wit.ai HTTP API</b> version.
+     * @param authorization value of {@code Authorization} header.
+     */
+    RequestEncoder(String baseUrl, String version, String authorization) {
+        StringBuilder prefix = new StringBuilder(baseUrl).append("/converse?v=");
+        this.prefix = PercentEncoder.encode(version, prefix).append("&session_id=").toString();
+
+        Map<String, String> headers = new LinkedHashMap<>();
+        headers.put("Content-Type", "application/json");
+        headers.put("Accept", "application/json");
+        headers.put("Authorization", authorization);
+        this.headers = HttpRequest.sharedHeaders(headers);
+    }
+
+    /**
+     * @param sessionId session identifier.
+     * @param message   message provided by user input (May be null).
+     * @return URI of converse request.
+     */
+    URI uri(String sessionId, String message) {
+        StringBuilder uri = URI_BUILDER.get();
+        uri.setLength(0);
+        uri.append(prefix);
+        PercentEncoder.encode(sessionId, uri);
+        if (message != null) {
+            PercentEncoder.encode(message, uri.append("&q="));
+        }
+
+        URI result = URI.create(uri.toString());
+        if (uri.capacity() > MAX_RETAINED_CAPACITY) {
+            URI_BUILDER.remove();
+        }
+        return result;
+    }
+
+    /**
+     * @return immutable headers of converse requests, encoded once.
+     */
+    Map<String, String> getHeaders() {
+        return headers;
+    }
+}
@@ -0,0 +1,386 @@
+/*
+ * Copyright 2016 Liavontsi Brechka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.liavontsibrechka.wit4j.communication;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.liavontsibrechka.wit4j.Context;
+import com.liavontsibrechka.wit4j.Wit;
+import com.liavontsibrechka.wit4j.action.Actions;
+import com.liavontsibrechka.wit4j.communication.transport.HttpRequest;
+import com.liavontsibrechka.wit4j.communication.transport.HttpResponse;
+import com.liavontsibrechka.wit4j.metrics.Instrumentation;
+import com.liavontsibrechka.wit4j.util.Futures;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Class for extracting meaning from spoken user input through <em>speech</em> request type of
+ * <b>Wit.ai HTTP API</b>.
+ * <p>
+ * Audio is streamed to the API with chunked transfer encoding straight from its source (a file, a stream or a
+ * buffer), so a clip is never held in memory as a whole, and audio that is still being recorded is sent as it
+ * arrives: recognition starts while the user is talking and the response comes soon after the source ends.
+ * Like {@code Message}, the response is passed to the <em>merge</em> action of the application.
+ * <p>
+ * Methods inherited from {@code HttpCommunication} take the path of an audio file as the message, so speech may
+ * be used by interactions too.
+ *
+ * @author Liavontsi Brechka
+ * @see HttpCommunication
+ * @see HttpCommunicationType
+ * @since 1.0-SNAPSHOT
+ */
+public class Speech extends HttpCommunication {
+    /**
+     * Content type of audio sent unless changed with {@code setContentType}.
+     */
+    public static final String DEFAULT_CONTENT_TYPE = "audio/wav";
+
+    /**
+     * Unique session identifier of the default session used by methods without {@code sessionId} parameter.
+     */
+    private final String sessionId;
+    /**
+     * Registry of actions (the registry of the client unless replaced with {@code setActions}).
+     *
+     * @see Actions
+     */
+    private volatile Actions actions;
+    private volatile String contentType = DEFAULT_CONTENT_TYPE;
+
+    /**
+     * Creates instance of {@code Speech} class and instantiate variables described above.
+     *
+     * @param wit client the communication belongs to.
+     */
+    protected Speech(Wit wit) {
+        super(wit);
+
+        sessionId = UUID.randomUUID().toString();
+        actions = wit.getActions();
+    }
+
+    /**
+     * Recognizes audio file with the context of the default session.
+     *
+     * @param audioFile path of the audio file.
+     * @return JSON response object that is represented as {@code JsonNode}.
+     * @throws IOException if the file cannot be read, an I/O error occurs or <b>Wit.ai HTTP API</b> responds with
+     *                     an error status.
+     */
+    @Override
+    public JsonNode sendHttpRequest(String audioFile) throws IOException {
+        return recognize(sessionId, Paths.get(audioFile));
+    }
+
+    /**
+     * Recognizes audio file with the context of the default session without blocking the calling thread.
+     *
+     * @param audioFile path of the audio file.
+     * @return future that is completed with JSON response object that is represented as {@code JsonNode}.
+     */
+    @Override
+    public CompletableFuture<JsonNode> sendAsync(String audioFile) {
+        FileChannel audio;
+        try {
+            audio = FileChannel.open(Paths.get(audioFile), StandardOpenOption.READ);
+        } catch (IOException | RuntimeException e) {
+            return Futures.failed(e);
+        }
+        return recognizeAsync(sessionId, audio).whenComplete((response, error) -> closeQuietly(audio));
+    }
+
+    /**
+     * Streams audio file.
+     *
+     * @param sessionId session identifier.
+     * @param audioFile audio file.
+     * @return JSON response object that is represented as {@code JsonNode}.
+     * @throws IOException if the file cannot be read, an I/O error occurs or <b>Wit.ai HTTP API</b> responds with
+     *                     an error status.
+     */
+    public JsonNode recognize(String sessionId, Path audioFile) throws IOException {
+        try (FileChannel audio = FileChannel.open(audioFile, StandardOpenOption.READ)) {
+            return recognize(sessionId, audio);
+        }
+    }
+
+    /**
+     * Streams audio until the end of {@code audio}; the stream is not closed.
+     *
+     * @param sessionId session identifier.
+     * @param audio     audio stream, e.g. of audio being recorded.
+     * @return JSON response object that is represented as {@code JsonNode}.
+     * @throws IOException if the stream cannot be read, an I/O error occurs or <b>Wit.ai HTTP API</b> responds
+     *                     with an error status.
+     */
+    public JsonNode recognize(String sessionId, InputStream audio) throws IOException {
+        return recognize(sessionId, Channels.newChannel(audio));
+    }
+
+    /**
+     * Streams remaining bytes of {@code audio} without copying them; the position of the buffer is not changed.
+     *
+     * @param sessionId session identifier.
+     * @param audio     audio clip.
+     * @return JSON response object that is represented as {@code JsonNode}.
+     * @throws IOException if an I/O error occurs or <b>Wit.ai HTTP API</b> responds with an error status.
+     */
+    public JsonNode recognize(String sessionId, ByteBuffer audio) throws IOException {
+        return recognize(sessionId, new ByteBufferChannel(audio.duplicate()));
+    }
+
+    /**
+     * Streams audio until the end of {@code audio}; the channel is not closed.
+     *
+     * @param sessionId session identifier.
+     * @param audio     blocking channel of audio, e.g. {@code FileChannel} or a {@code Pipe} fed by a recorder.
+     * @return JSON response object that is represented as {@code JsonNode}.
+     * @throws IOException if the channel cannot be read, an I/O error occurs or <b>Wit.ai HTTP API</b> responds
+     *                     with an error status.
+     */
+    public JsonNode recognize(String sessionId, ReadableByteChannel audio) throws IOException {
+        try {
+            return send(sessionId, audio, false).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for speech response");
+        } catch (ExecutionException e) {
+            Throwable cause = Futures.unwrap(e);
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Asynchronous counterpart of {@code recognize(String, ReadableByteChannel)}. The audio is read by a thread
+     * of the transport.
+     *
+     * @param sessionId session identifier.
+     * @param audio     blocking channel of audio; it must not be closed before the future is completed.
+     * @return future that is completed with JSON response object that is represented as {@code JsonNode}.
+     */
+    public CompletableFuture<JsonNode> recognizeAsync(String sessionId, ReadableByteChannel audio) {
+        return send(sessionId, audio, true);
+    }
+
+    private CompletableFuture<JsonNode> send(String sessionId, ReadableByteChannel audio, boolean async) {
+        HttpRequest request;
+        try {
+            request = createRequest(sessionId, audio);
+        } catch (IOException e) {
+            return Futures.failed(e);
+        }
+
+        Instrumentation metrics = wit.getInstrumentation();
+        boolean instrumented = metrics.isEnabled();
+        if (instrumented) {
+            metrics.requestStarted(sessionId, 0);
+        }
+        long startNanos = System.nanoTime();
+
+        CompletableFuture<HttpResponse> response;
+        if (async) {
+            response = getTransport().executeAsync(request);
+        } else {
+            try {
+                response = CompletableFuture.completedFuture(getTransport().execute(request));
+            } catch (IOException e) {
+                response = Futures.failed(e);
+            }
+        }
+
+        return response.handle((httpResponse, error) -> {
+            Throwable failure = error;
+            if (failure == null) {
+                try {
+                    long receivedNanos = System.nanoTime();
+                    JsonNode jsonResponse = readResponse(httpResponse);
+                    if (instrumented) {
+                        metrics.responseReceived(sessionId, null, httpResponse.getBody().length,
+                                receivedNanos - startNanos, System.nanoTime() - receivedNanos);
+                    }
+                    return jsonResponse;
+                } catch (IOException | RuntimeException e) {
+                    failure = e;
+                }
+            }
+            Throwable cause = Futures.unwrap(failure);
+            if (instrumented) {
+                metrics.requestFailed(sessionId, cause, System.nanoTime() - startNanos);
+            }
+            throw new CompletionException(cause);
+        });
+    }
+
+    private HttpRequest createRequest(String sessionId, ReadableByteChannel audio) throws IOException {
+        String queryString = baseUrl + "/speech?v=" + version;
+        String contextJson = getContextStore().getContext(sessionId).getSerializedContext(jsonMapper)
+                .toString("UTF-8");
+        if (!"{}".equals(contextJson)) {
+            queryString += "&context=" + URLEncoder.encode(contextJson, "UTF-8");
+        }
+
+        Map<String, String> headers = new LinkedHashMap<>();
+        headers.put("Accept", "application/json");
+        headers.put("Authorization", authorization);
+        headers.put("Content-Type", contentType);
+
+        return new HttpRequest("POST", URI.create(queryString), headers, audio, 0);
+    }
+
+    private JsonNode readResponse(HttpResponse response) throws IOException {
+        if (!response.isSuccessful()) {
+            throw WitHttpException.of(response);
+        }
+        return jsonMapper.readTree(response.getBody());
+    }
+
+    /**
+     * Passes response to the <em>merge</em> action with the context of the default session.
+     *
+     * @param httpResponse {@code JsonNode} object that represents JSON response of {@code sendHttpRequest} call.
+     */
+    @Override
+    public void handleHttpResponse(JsonNode httpResponse) {
+        handleHttpResponse(sessionId, httpResponse);
+    }
+
+    /**
+     * Passes response to the <em>merge</em> action with the context of the session.
+     *
+     * @param sessionId    session identifier.
+     * @param httpResponse {@code JsonNode} object that represents JSON response of {@code recognize} call.
+     */
+    public void handleHttpResponse(String sessionId, JsonNode httpResponse) {
+        Context context = getContextStore().getContext(sessionId);
+        actions.getAction("merge").execute(sessionId, context, httpResponse);
+    }
+
+    /**
+     * Handles response on the calling thread, because a speech response has no follow-up requests.
+     *
+     * @param httpResponse {@code JsonNode} object that represents JSON response of {@code sendAsync} call.
+     * @return completed future.
+     */
+    @Override
+    public CompletableFuture<Void> handleHttpResponseAsync(JsonNode httpResponse) {
+        try {
+            handleHttpResponse(sessionId, httpResponse);
+            return CompletableFuture.completedFuture(null);
+        } catch (RuntimeException e) {
+            return Futures.failed(e);
+        }
+    }
+
+    public Actions getActions() {
+        return actions;
+    }
+
+    /**
+     * Replaces registry of actions, e.g. to serve a bot with its own actions.
+     *
+     * @param actions registry of actions.
+     */
+    public void setActions(Actions actions) {
+        if (actions == null) {
+            throw new IllegalArgumentException("Actions must not be null");
+        }
+        this.actions = actions;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    /**
+     * @param contentType content type of audio, e.g. {@code audio/mpeg3} or
+     *                    {@code audio/raw;encoding=signed-integer;bits=16;rate=16000;endian=little}.
+     */
+    public void setContentType(String contentType) {
+        if (contentType == null) {
+            throw new IllegalArgumentException("Content type must not be null");
+        }
+        this.contentType = contentType;
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+            // the file was only read
+        }
+    }
+
+    /**
+     * Channel over a buffer, so an in-memory clip is streamed without copying it into another array first.
+     */
+    private static final class ByteBufferChannel implements ReadableByteChannel {
+        private final ByteBuffer source;
+        private boolean open = true;
+
+        private ByteBufferChannel(ByteBuffer source) {
+            this.source = source;
+        }
+
+        @Override
+        public int read(ByteBuffer target) {
+            if (!source.hasRemaining()) {
+                return -1;
+            }
+            int length = Math.min(source.remaining(), target.remaining());
+            ByteBuffer slice = source.slice();
+            slice.limit(length);
+            target.put(slice);
+            source.position(source.position() + length);
+            return length;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return open;
+        }
+
+        @Override
+        public void close() {
+            open = false;
+        }
+    }
+}
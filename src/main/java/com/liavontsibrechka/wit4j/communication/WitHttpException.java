@@ -0,0 +1,63 @@
+/*
+ * Copyright 2016 Liavontsi Brechka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.liavontsibrechka.wit4j.communication;
+
+import com.liavontsibrechka.wit4j.communication.transport.HttpResponse;
+
+import java.io.IOException;
+
+/**
+ * Signals that <b>Wit.ai HTTP API</b> responded with an error status, after retries (if any) were exhausted.
+ * Callers may check {@code getStatusCode} to tell rate limiting (<em>429</em>) and server errors (<em>5xx</em>)
+ * from errors of the request itself.
+ *
+ * @author Liavontsi Brechka
+ * @see com.liavontsibrechka.wit4j.communication.transport.RateLimitedTransport
+ * @since 1.0-SNAPSHOT
+ */
+public class WitHttpException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    private final int statusCode;
+    private final String responseBody;
+
+    public WitHttpException(int statusCode, String responseBody) {
+        super("Server returned HTTP response code: " + statusCode + ", body: " + responseBody);
+        this.statusCode = statusCode;
+        this.responseBody = responseBody;
+    }
+
+    static WitHttpException of(HttpResponse response) {
+        return new WitHttpException(response.getStatusCode(), response.getBodyAsString());
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    public String getResponseBody() {
+        return responseBody;
+    }
+
+    /**
+     * @return true if the request was rejected because of rate limits.
+     */
+    public boolean isRateLimited() {
+        return statusCode == 429;
+    }
+}
@@ -0,0 +1,211 @@
+/*
+ * Copyright 2016 Liavontsi Brechka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.liavontsibrechka.wit4j.communication.transport;
+
+import java.io.ByteArrayOutputStream;
+import java.net.URI;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractMap;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable description of a single http request sent through {@code HttpTransport}.
+ * <p>
+ * The body is either an array sent with {@code Content-Length}, or a channel streamed with chunked transfer
+ * encoding as it is read. A streamed body can be read only once, so transports do not retry such requests.
+ * <p>
+ * Headers are copied by the constructor, unless they were created by {@code sharedHeaders}: such headers are
+ * immutable and encoded once, so a client that sends the same headers with every request neither copies nor
+ * encodes them again.
+ *
+ * @author Liavontsi Brechka
+ * @see HttpTransport
+ * @since 1.0-SNAPSHOT
+ */
+public final class HttpRequest {
+    private final String method;
+    private final URI uri;
+    private final Map<String, String> headers;
+    private final byte[] body;
+    private final int bodyLength;
+    private final ReadableByteChannel bodyStream;
+    private final int timeoutMillis;
+
+    /**
+     * Creates http request.
+     *
+     * @param method  http method name (e.g. <em>GET</em>, <em>POST</em>).
+     * @param uri     absolute request URI (scheme, host, path and query string).
+     * @param headers request headers (May be empty). {@code Host} and {@code Content-Length} headers are
+     *                added by transport.
+     * @param body    request body (May be null).
+     */
+    public HttpRequest(String method, URI uri, Map<String, String> headers, byte[] body) {
+        this(method, uri, headers, body, body == null ? 0 : body.length, 0);
+    }
+
+    /**
+     * Creates http request whose body occupies only the beginning of {@code body} array, so reusable buffers
+     * may be sent without copying.
+     *
+     * @param method        http method name (e.g. <em>GET</em>, <em>POST</em>).
+     * @param uri           absolute request URI (scheme, host, path and query string).
+     * @param headers       request headers (May be empty). {@code Host} and {@code Content-Length} headers are
+     *                      added by transport.
+     * @param body          array that contains request body (May be null).
+     * @param bodyLength    number of bytes at the beginning of {@code body} to send.
+     * @param timeoutMillis maximum time to wait for response data ({@code 0} means transport default).
+     */
+    public HttpRequest(String method, URI uri, Map<String, String> headers, byte[] body, int bodyLength,
+                       int timeoutMillis) {
+        this(method, uri, headers, body, bodyLength, null, timeoutMillis);
+    }
+
+    /**
+     * Creates http request whose body is streamed from {@code bodyStream} with chunked transfer encoding, so the
+     * body is sent while it is produced (e.g. audio being recorded) and never held in memory as a whole.
+     *
+     * @param method        http method name (e.g. <em>POST</em>).
+     * @param uri           absolute request URI (scheme, host, path and query string).
+     * @param headers       request headers (May be empty). {@code Host} and {@code Transfer-Encoding} headers
+     *                      are added by transport.
+     * @param bodyStream    blocking channel the body is read from until its end; it is not closed by transport.
+     * @param timeoutMillis maximum time to wait for response data ({@code 0} means transport default).
+     */
+    public HttpRequest(String method, URI uri, Map<String, String> headers, ReadableByteChannel bodyStream,
+                       int timeoutMillis) {
+        this(method, uri, headers, null, 0, bodyStream, timeoutMillis);
+    }
+
+    private HttpRequest(String method, URI uri, Map<String, String> headers, byte[] body, int bodyLength,
+                        ReadableByteChannel bodyStream, int timeoutMillis) {
+        if (uri.getHost() == null) {
+            throw new IllegalArgumentException("Request URI must be absolute: " + uri);
+        }
+
+        this.method = method;
+        this.uri = uri;
+        this.headers = headers instanceof SharedHeaders ? headers
+                : Collections.unmodifiableMap(new LinkedHashMap<>(headers));
+        this.body = body;
+        this.bodyLength = bodyLength;
+        this.bodyStream = bodyStream;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public URI getUri() {
+        return uri;
+    }
+
+    public Map<String, String> getHeaders() {
+        return headers;
+    }
+
+    /**
+     * @return array that contains request body; only the first {@code getBodyLength()} bytes belong to it.
+     */
+    public byte[] getBody() {
+        return body;
+    }
+
+    public int getBodyLength() {
+        return bodyLength;
+    }
+
+    /**
+     * @return channel the body is streamed from or null if the body (if any) is an array.
+     */
+    public ReadableByteChannel getBodyStream() {
+        return bodyStream;
+    }
+
+    /**
+     * @return true if the body is streamed and the request therefore cannot be sent again.
+     */
+    public boolean isStreamed() {
+        return bodyStream != null;
+    }
+
+    public int getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
+    /**
+     * @return header lines ({@code "Name: value\r\n"} each) encoded by {@code sharedHeaders} or null if the
+     * headers were not shared.
+     */
+    byte[] getEncodedHeaders() {
+        return headers instanceof SharedHeaders ? ((SharedHeaders) headers).encoded : null;
+    }
+
+    /**
+     * Creates immutable headers that may be given to any number of requests without being copied or encoded
+     * again.
+     *
+     * @param headers request headers (May be empty).
+     * @return immutable copy of {@code headers}.
+     */
+    public static Map<String, String> sharedHeaders(Map<String, String> headers) {
+        return new SharedHeaders(headers);
+    }
+
+    private static final class SharedHeaders extends AbstractMap<String, String> {
+        private final Map<String, String> headers;
+        private final byte[] encoded;
+
+        private SharedHeaders(Map<String, String> headers) {
+            this.headers = Collections.unmodifiableMap(new LinkedHashMap<>(headers));
+
+            ByteArrayOutputStream lines = new ByteArrayOutputStream();
+            for (Map.Entry<String, String> header : this.headers.entrySet()) {
+                byte[] line = (header.getKey() + ": " + header.getValue() + "\r\n")
+                        .getBytes(StandardCharsets.ISO_8859_1);
+                lines.write(line, 0, line.length);
+            }
+            this.encoded = lines.toByteArray();
+        }
+
+        @Override
+        public String get(Object key) {
+            return headers.get(key);
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return headers.containsKey(key);
+        }
+
+        @Override
+        public int size() {
+            return headers.size();
+        }
+
+        @Override
+        public Set<Entry<String, String>> entrySet() {
+            return headers.entrySet();
+        }
+    }
+}
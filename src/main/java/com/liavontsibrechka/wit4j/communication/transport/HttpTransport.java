@@ -0,0 +1,84 @@
+/*
+ * Copyright 2016 Liavontsi Brechka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.liavontsibrechka.wit4j.communication.transport;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.URI;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Service provider interface for the component that actually moves bytes between {@code HttpCommunication}
+ * subclasses and <b>Wit.ai HTTP API</b>.
+ * <p>
+ * Implementations are expected to be thread-safe and to reuse connections between calls, so one transport
+ * may be shared by every conversation of an application.
+ *
+ * @author Liavontsi Brechka
+ * @see PooledHttpTransport
+ * @see com.liavontsibrechka.wit4j.communication.HttpCommunication
+ * @since 1.0-SNAPSHOT
+ */
+public interface HttpTransport extends Closeable {
+    /**
+     * Sends {@code request} and reads the whole response.
+     *
+     * @param request request to send.
+     * @return fully read response.
+     * @throws IOException if an I/O error occurs.
+     */
+    HttpResponse execute(HttpRequest request) throws IOException;
+
+    /**
+     * Sends {@code request} without blocking the calling thread.
+     * <p>
+     * The default implementation executes the request on the calling thread and exists only for
+     * simple transports; pooled implementations are expected to override it.
+     *
+     * @param request request to send.
+     * @return future that is completed with fully read response or with the {@code IOException} that occurred.
+     */
+    default CompletableFuture<HttpResponse> executeAsync(HttpRequest request) {
+        CompletableFuture<HttpResponse> future = new CompletableFuture<>();
+        try {
+            future.complete(execute(request));
+        } catch (IOException | RuntimeException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /**
+     * Opens connections to the server of {@code uri} ahead of time, so the first requests do not pay for connect
+     * and TLS handshake. The default implementation does nothing.
+     *
+     * @param uri         any url of the server.
+     * @param connections number of connections that should be ready.
+     * @return number of connections opened.
+     * @throws IOException if a connection cannot be opened.
+     */
+    default int prewarm(URI uri, int connections) throws IOException {
+        return 0;
+    }
+
+    /**
+     * Releases all connections held by this transport.
+     */
+    @Override
+    void close();
+}
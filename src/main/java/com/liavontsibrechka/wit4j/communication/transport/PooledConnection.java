@@ -0,0 +1,352 @@
+/*
+ * Copyright 2016 Liavontsi Brechka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.liavontsibrechka.wit4j.communication.transport;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Single persistent HTTP/1.1 connection owned by {@code PooledHttpTransport}. Not thread-safe: a connection is
+ * used by exactly one request at a time and then either returned to its route or closed.
+ *
+ * @author Liavontsi Brechka
+ * @see PooledHttpTransport
+ * @since 1.0-SNAPSHOT
+ */
+class PooledConnection {
+    private static final byte[] CRLF = {'\r', '\n'};
+    private static final byte[] HTTP_VERSION = " HTTP/1.1\r\n".getBytes(StandardCharsets.ISO_8859_1);
+    private static final byte[] CONTENT_LENGTH = "Content-Length: ".getBytes(StandardCharsets.ISO_8859_1);
+    private static final byte[] CHUNKED = "Transfer-Encoding: chunked\r\n".getBytes(StandardCharsets.ISO_8859_1);
+    private static final byte[] LAST_CHUNK = "0\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1);
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    private static final int BUFFER_SIZE = 8192;
+    private static final int CHUNK_SIZE = 16 * 1024;
+
+    private final Socket socket;
+    private final InputStream in;
+    private final OutputStream out;
+    private final byte[] hostLine;
+    /**
+     * Digits of the number being written (see {@code writeNumber}).
+     */
+    private final byte[] digits = new byte[10];
+    /**
+     * Buffer chunks of streamed bodies are read into, created by the first streamed request of the connection.
+     */
+    private byte[] chunk;
+
+    private long lastUsedMillis;
+    private boolean reusable;
+    private boolean responseStarted;
+
+    PooledConnection(Socket socket, String hostHeader) throws IOException {
+        this.socket = socket;
+        this.in = new BufferedInputStream(socket.getInputStream(), BUFFER_SIZE);
+        this.out = new BufferedOutputStream(socket.getOutputStream(), BUFFER_SIZE);
+        this.hostLine = ("Host: " + hostHeader + "\r\n").getBytes(StandardCharsets.ISO_8859_1);
+        this.lastUsedMillis = System.currentTimeMillis();
+    }
+
+    /**
+     * Writes {@code request} and reads the whole response, leaving the connection ready for the next request
+     * if the server allows it.
+     */
+    HttpResponse exchange(HttpRequest request, int readTimeoutMillis) throws IOException {
+        reusable = false;
+        responseStarted = false;
+        socket.setSoTimeout(readTimeoutMillis);
+
+        writeRequest(request);
+        HttpResponse response = readResponse(request.getMethod());
+        lastUsedMillis = System.currentTimeMillis();
+        return response;
+    }
+
+    /**
+     * Writes request head straight from the parts of the request, without building strings: the host line is
+     * encoded once per connection and shared headers (see {@code HttpRequest.sharedHeaders}) once per client.
+     */
+    private void writeRequest(HttpRequest request) throws IOException {
+        URI uri = request.getUri();
+        String path = uri.getRawPath();
+        String query = uri.getRawQuery();
+        writeChars(request.getMethod());
+        out.write(' ');
+        writeChars(path == null || path.isEmpty() ? "/" : path);
+        if (query != null) {
+            out.write('?');
+            writeChars(query);
+        }
+        out.write(HTTP_VERSION);
+        out.write(hostLine);
+
+        byte[] encodedHeaders = request.getEncodedHeaders();
+        if (encodedHeaders != null) {
+            out.write(encodedHeaders);
+        } else {
+            for (Map.Entry<String, String> header : request.getHeaders().entrySet()) {
+                writeChars(header.getKey());
+                out.write(':');
+                out.write(' ');
+                writeChars(header.getValue());
+                out.write(CRLF);
+            }
+        }
+        byte[] body = request.getBody();
+        if (request.isStreamed()) {
+            out.write(CHUNKED);
+        } else if (body != null) {
+            out.write(CONTENT_LENGTH);
+            writeNumber(request.getBodyLength(), 10);
+            out.write(CRLF);
+        }
+        out.write(CRLF);
+        if (request.isStreamed()) {
+            writeChunks(request.getBodyStream());
+        } else if (body != null) {
+            out.write(body, 0, request.getBodyLength());
+        }
+        out.flush();
+    }
+
+    /**
+     * Writes every read of {@code source} as a chunk and flushes it, so the server gets the body while it is
+     * produced.
+     */
+    private void writeChunks(ReadableByteChannel source) throws IOException {
+        if (chunk == null) {
+            chunk = new byte[CHUNK_SIZE];
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(chunk);
+        int read;
+        while ((read = source.read(buffer)) >= 0) {
+            if (read > 0) {
+                writeNumber(read, 16);
+                out.write(CRLF);
+                out.write(chunk, 0, read);
+                out.write(CRLF);
+                out.flush();
+            }
+            buffer.clear();
+        }
+        out.write(LAST_CHUNK);
+    }
+
+    /**
+     * Writes characters of {@code value} as ISO-8859-1 bytes.
+     */
+    private void writeChars(String value) throws IOException {
+        for (int i = 0; i < value.length(); i++) {
+            out.write(value.charAt(i));
+        }
+    }
+
+    private void writeNumber(int value, int radix) throws IOException {
+        int start = digits.length;
+        do {
+            digits[--start] = (byte) HEX[value % radix];
+            value /= radix;
+        } while (value > 0);
+        out.write(digits, start, digits.length - start);
+    }
+
+    private HttpResponse readResponse(String method) throws IOException {
+        String statusLine;
+        Map<String, String> headers;
+        int statusCode;
+        do {
+            statusLine = readLine();
+            responseStarted = true;
+            statusCode = parseStatusCode(statusLine);
+            headers = readHeaders();
+        } while (statusCode == 100);
+
+        boolean http11 = statusLine.startsWith("HTTP/1.1");
+        String connectionHeader = headers.get("connection");
+        boolean keepAlive = connectionHeader == null ? http11 : "keep-alive".equalsIgnoreCase(connectionHeader);
+
+        byte[] body;
+        String transferEncoding = headers.get("transfer-encoding");
+        String contentLength = headers.get("content-length");
+        if ("HEAD".equals(method) || (statusCode >= 100 && statusCode < 200) || statusCode == 204
+                || statusCode == 304) {
+            body = new byte[0];
+        } else if (transferEncoding != null && transferEncoding.toLowerCase().contains("chunked")) {
+            body = readChunkedBody();
+        } else if (contentLength != null) {
+            body = readFully(Integer.parseInt(contentLength.trim()));
+        } else {
+            body = readUntilEof();
+            keepAlive = false;
+        }
+
+        reusable = keepAlive;
+        return new HttpResponse(statusCode, headers, body);
+    }
+
+    private int parseStatusCode(String statusLine) throws IOException {
+        int firstSpace = statusLine.indexOf(' ');
+        if (!statusLine.startsWith("HTTP/") || firstSpace < 0 || statusLine.length() < firstSpace + 4) {
+            throw new IOException("Malformed http status line: " + statusLine);
+        }
+        try {
+            return Integer.parseInt(statusLine.substring(firstSpace + 1, firstSpace + 4));
+        } catch (NumberFormatException e) {
+            throw new IOException("Malformed http status line: " + statusLine, e);
+        }
+    }
+
+    private Map<String, String> readHeaders() throws IOException {
+        Map<String, String> headers = new HashMap<>();
+        String line;
+        while (!(line = readLine()).isEmpty()) {
+            int colon = line.indexOf(':');
+            if (colon <= 0) {
+                throw new IOException("Malformed http header: " + line);
+            }
+            String name = line.substring(0, colon).trim().toLowerCase();
+            String value = line.substring(colon + 1).trim();
+            headers.merge(name, value, (previous, next) -> previous + ", " + next);
+        }
+        return headers;
+    }
+
+    private byte[] readChunkedBody() throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        while (true) {
+            String sizeLine = readLine();
+            int extension = sizeLine.indexOf(';');
+            int size = Integer.parseInt((extension < 0 ? sizeLine : sizeLine.substring(0, extension)).trim(), 16);
+            if (size == 0) {
+                // trailers are not used by Wit.ai, skip them
+                String trailer;
+                do {
+                    trailer = readLine();
+                } while (!trailer.isEmpty());
+                return body.toByteArray();
+            }
+            body.write(readFully(size));
+            readLine();
+        }
+    }
+
+    private byte[] readFully(int length) throws IOException {
+        byte[] buffer = new byte[length];
+        int offset = 0;
+        while (offset < length) {
+            int read = in.read(buffer, offset, length - offset);
+            if (read < 0) {
+                throw new EOFException("Connection closed after " + offset + " of " + length + " body bytes");
+            }
+            offset += read;
+        }
+        return buffer;
+    }
+
+    private byte[] readUntilEof() throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int read;
+        while ((read = in.read(buffer)) >= 0) {
+            body.write(buffer, 0, read);
+        }
+        return body.toByteArray();
+    }
+
+    private String readLine() throws IOException {
+        StringBuilder line = new StringBuilder(64);
+        int next;
+        while ((next = in.read()) != '\n') {
+            if (next < 0) {
+                throw new EOFException("Connection closed by server");
+            }
+            if (next != '\r') {
+                line.append((char) next);
+            }
+        }
+        return line.toString();
+    }
+
+    /**
+     * Checks whether the server closed the idle connection, waiting for at most a millisecond. Used before
+     * requests that cannot be retried on a fresh connection.
+     *
+     * @return true if the connection must not be used.
+     */
+    boolean isStale() {
+        try {
+            if (in.available() > 0) {
+                // nothing is expected between responses
+                return true;
+            }
+            socket.setSoTimeout(1);
+            // returns only at the end of stream or with unexpected data
+            in.read();
+            return true;
+        } catch (SocketTimeoutException e) {
+            return false;
+        } catch (IOException e) {
+            return true;
+        }
+    }
+
+    /**
+     * @return true if the server agreed to keep the connection open after the last exchange.
+     */
+    boolean isReusable() {
+        return reusable && !socket.isClosed();
+    }
+
+    /**
+     * @return true if at least a status line was received during the last exchange. Used to tell a stale pooled
+     * connection (closed by server while idle) from a failure in the middle of a response.
+     */
+    boolean isResponseStarted() {
+        return responseStarted;
+    }
+
+    boolean isExpired(long nowMillis, long idleTimeoutMillis) {
+        return idleTimeoutMillis > 0 && nowMillis - lastUsedMillis >= idleTimeoutMillis;
+    }
+
+    boolean isClosed() {
+        return socket.isClosed();
+    }
+
+    void close() {
+        try {
+            socket.close();
+        } catch (IOException ignored) {
+            // nothing to do with a connection that is being thrown away
+        }
+    }
+}
@@ -0,0 +1,365 @@
+/*
+ * Copyright 2016 Liavontsi Brechka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.liavontsibrechka.wit4j.communication.transport;
+
+import com.liavontsibrechka.wit4j.util.ThreadPools;
+
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@code HttpTransport} implementation that keeps a bounded pool of persistent HTTP/1.1 connections.
+ * <p>
+ * Connections are grouped by route ({@code scheme://host:port}). The number of connections used at the same time
+ * is limited both globally ({@code maxConnections}) and per route ({@code maxConnectionsPerRoute}); requests that
+ * exceed the limits wait for a free connection up to {@code acquireTimeoutMillis}. Connections that stayed unused
+ * longer than {@code idleTimeoutMillis} are closed by a background evictor.
+ * <p>
+ * Asynchronous requests are queued to an internal executor with one thread per pooled connection, so the
+ * number of threads never exceeds {@code maxConnections} no matter how many conversations are in flight. Their
+ * futures are completed on separate threads (virtual ones on Java 21 or newer), so dependent stages, e.g.
+ * blocking actions of a conversation, never hold the threads that perform I/O.
+ * <p>
+ * Requests with streamed bodies get a connection that passed a stale check and are not retried on a fresh
+ * connection, since their body cannot be read again.
+ *
+ * @author Liavontsi Brechka
+ * @see TransportConfig
+ * @since 1.0-SNAPSHOT
+ */
+public class PooledHttpTransport implements HttpTransport {
+    private final TransportConfig config;
+    private final Semaphore globalPermits;
+    private final Map<String, Route> routes = new ConcurrentHashMap<>();
+    private final AtomicInteger openConnections = new AtomicInteger();
+    private final ScheduledFuture<?> evictor;
+    private final ThreadPoolExecutor ioExecutor;
+    private final ExecutorService completionExecutor;
+
+    private volatile boolean closed;
+
+    public PooledHttpTransport(TransportConfig config) {
+        this.config = config;
+        this.globalPermits = new Semaphore(config.getMaxConnections(), true);
+        AtomicInteger ioThreads = new AtomicInteger();
+        this.ioExecutor = new ThreadPoolExecutor(config.getMaxConnections(), config.getMaxConnections(),
+                60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "wit4j-io-" + ioThreads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.ioExecutor.allowCoreThreadTimeOut(true);
+        this.completionExecutor = Executors.newCachedThreadPool(ThreadPools.virtualThreadFactory("wit4j-completion"));
+
+        long period = config.getIdleTimeoutMillis() > 0 ? Math.max(config.getIdleTimeoutMillis() / 2, 100) : 0;
+        this.evictor = period > 0 ? ThreadPools.sharedScheduler().scheduleWithFixedDelay(this::evictIdleConnections,
+                period, period, TimeUnit.MILLISECONDS) : null;
+    }
+
+    @Override
+    public HttpResponse execute(HttpRequest request) throws IOException {
+        if (closed) {
+            throw new IOException("Transport is closed");
+        }
+
+        Route route = route(request.getUri());
+
+        acquire(globalPermits, "Connection pool is exhausted");
+        try {
+            acquire(route.permits, "Connection pool is exhausted for route " + route.key);
+            try {
+                return execute(route, request);
+            } finally {
+                route.permits.release();
+            }
+        } finally {
+            globalPermits.release();
+        }
+    }
+
+    @Override
+    public CompletableFuture<HttpResponse> executeAsync(HttpRequest request) {
+        CompletableFuture<HttpResponse> future = new CompletableFuture<>();
+        try {
+            ioExecutor.execute(() -> {
+                try {
+                    HttpResponse response = execute(request);
+                    complete(() -> future.complete(response));
+                } catch (IOException | RuntimeException e) {
+                    complete(() -> future.completeExceptionally(e));
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(new IOException("Transport is closed", e));
+        }
+        return future;
+    }
+
+    private void complete(Runnable completion) {
+        try {
+            completionExecutor.execute(completion);
+        } catch (RejectedExecutionException e) {
+            // the transport was closed while the request was in flight
+            completion.run();
+        }
+    }
+
+    /**
+     * Opens connections to the route of {@code uri} until it has {@code connections} idle ones, within the
+     * limits of the pool.
+     */
+    @Override
+    public int prewarm(URI uri, int connections) throws IOException {
+        if (closed) {
+            throw new IOException("Transport is closed");
+        }
+
+        Route route = route(uri);
+        int target = Math.min(connections, config.getMaxConnectionsPerRoute());
+        int opened = 0;
+        while (route.idle.size() < target && openConnections.get() < config.getMaxConnections()) {
+            route.idle.offerLast(connect(route));
+            opened++;
+        }
+        return opened;
+    }
+
+    private Route route(URI uri) {
+        return routes.computeIfAbsent(routeKey(uri), key -> new Route(uri, config.getMaxConnectionsPerRoute()));
+    }
+
+    private HttpResponse execute(Route route, HttpRequest request) throws IOException {
+        PooledConnection connection = pollIdle(route);
+        // a streamed body cannot be sent again, so it gets a connection that is known to be alive
+        while (connection != null && request.isStreamed() && connection.isStale()) {
+            discard(connection);
+            connection = pollIdle(route);
+        }
+        boolean reused = connection != null;
+        if (!reused) {
+            connection = connect(route);
+        }
+
+        int readTimeoutMillis = request.getTimeoutMillis() > 0
+                ? request.getTimeoutMillis() : config.getReadTimeoutMillis();
+        HttpResponse response;
+        try {
+            response = connection.exchange(request, readTimeoutMillis);
+        } catch (IOException | RuntimeException e) {
+            discard(connection);
+            if (!reused || request.isStreamed() || connection.isResponseStarted() || e instanceof RuntimeException
+                    || e instanceof SocketTimeoutException) {
+                throw e;
+            }
+            // server closed the idle connection, the request never reached it, so retry on a fresh one
+            connection = connect(route);
+            try {
+                response = connection.exchange(request, readTimeoutMillis);
+            } catch (IOException | RuntimeException retryException) {
+                discard(connection);
+                throw retryException;
+            }
+        }
+
+        if (connection.isReusable() && !closed) {
+            route.idle.offerFirst(connection);
+        } else {
+            discard(connection);
+        }
+        return response;
+    }
+
+    private PooledConnection pollIdle(Route route) {
+        long now = System.currentTimeMillis();
+        PooledConnection connection;
+        while ((connection = route.idle.pollFirst()) != null) {
+            if (!connection.isClosed() && !connection.isExpired(now, config.getIdleTimeoutMillis())) {
+                return connection;
+            }
+            discard(connection);
+        }
+        return null;
+    }
+
+    private PooledConnection connect(Route route) throws IOException {
+        // idle connections of other routes still hold sockets, close the oldest ones to stay within the pool size
+        boolean closedIdle = true;
+        while (closedIdle && openConnections.get() >= config.getMaxConnections()) {
+            closedIdle = closeAnyIdle();
+        }
+
+        Socket socket = new Socket();
+        try {
+            socket.setTcpNoDelay(true);
+            socket.setKeepAlive(true);
+            socket.setSoTimeout(config.getReadTimeoutMillis());
+            socket.connect(new InetSocketAddress(route.host, route.port), config.getConnectTimeoutMillis());
+
+            if (route.secure) {
+                SSLSocket sslSocket = (SSLSocket) ((SSLSocketFactory) SSLSocketFactory.getDefault())
+                        .createSocket(socket, route.host, route.port, true);
+                SSLParameters parameters = sslSocket.getSSLParameters();
+                parameters.setEndpointIdentificationAlgorithm("HTTPS");
+                sslSocket.setSSLParameters(parameters);
+                sslSocket.startHandshake();
+                socket = sslSocket;
+            }
+
+            PooledConnection connection = new PooledConnection(socket, route.hostHeader);
+            openConnections.incrementAndGet();
+            return connection;
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+    }
+
+    private boolean closeAnyIdle() {
+        for (Route route : routes.values()) {
+            PooledConnection connection = route.idle.pollLast();
+            if (connection != null) {
+                discard(connection);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void discard(PooledConnection connection) {
+        connection.close();
+        openConnections.decrementAndGet();
+    }
+
+    private void acquire(Semaphore permits, String timeoutMessage) throws IOException {
+        try {
+            if (!permits.tryAcquire(config.getAcquireTimeoutMillis(), TimeUnit.MILLISECONDS)) {
+                throw new IOException(timeoutMessage);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a connection");
+        }
+    }
+
+    /**
+     * Closes every pooled connection that stayed unused longer than {@code idleTimeoutMillis}.
+     */
+    public void evictIdleConnections() {
+        long now = System.currentTimeMillis();
+        for (Route route : routes.values()) {
+            for (PooledConnection connection : route.idle) {
+                if ((connection.isClosed() || connection.isExpired(now, config.getIdleTimeoutMillis()))
+                        && route.idle.remove(connection)) {
+                    discard(connection);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return number of currently open connections (both idle and in use).
+     */
+    public int getOpenConnections() {
+        return openConnections.get();
+    }
+
+    /**
+     * @return number of connections that are open and waiting in the pool for the next request.
+     */
+    public int getIdleConnections() {
+        int idle = 0;
+        for (Route route : routes.values()) {
+            idle += route.idle.size();
+        }
+        return idle;
+    }
+
+    public TransportConfig getConfig() {
+        return config;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        if (evictor != null) {
+            evictor.cancel(false);
+        }
+        ioExecutor.shutdown();
+        completionExecutor.shutdown();
+        for (Route route : routes.values()) {
+            PooledConnection connection;
+            while ((connection = route.idle.pollFirst()) != null) {
+                discard(connection);
+            }
+        }
+    }
+
+    private static String routeKey(URI uri) {
+        return uri.getScheme() + "://" + uri.getHost() + ":" + port(uri);
+    }
+
+    private static int port(URI uri) {
+        if (uri.getPort() != -1) {
+            return uri.getPort();
+        }
+        return "https".equalsIgnoreCase(uri.getScheme()) ? 443 : 80;
+    }
+
+    /**
+     * Connections and limits of a single {@code scheme://host:port} destination.
+     */
+    private static final class Route {
+        private final String key;
+        private final String host;
+        private final int port;
+        private final boolean secure;
+        private final String hostHeader;
+        private final Semaphore permits;
+        private final Deque<PooledConnection> idle = new ConcurrentLinkedDeque<>();
+
+        private Route(URI uri, int maxConnections) {
+            this.key = routeKey(uri);
+            this.host = uri.getHost();
+            this.port = port(uri);
+            this.secure = "https".equalsIgnoreCase(uri.getScheme());
+            this.hostHeader = uri.getPort() == -1 ? host : host + ":" + port;
+            this.permits = new Semaphore(maxConnections, true);
+        }
+    }
+}
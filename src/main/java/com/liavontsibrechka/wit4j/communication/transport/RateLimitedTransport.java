@@ -0,0 +1,295 @@
+/*
+ * Copyright 2016 Liavontsi Brechka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.liavontsibrechka.wit4j.communication.transport;
+
+import com.liavontsibrechka.wit4j.util.ThreadPools;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.util.Map;
+import java.util.ResourceBundle;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@code HttpTransport} decorator that keeps request rate under <b>Wit.ai</b> quotas and retries responses that
+ * ask the client to come back later.
+ * <p>
+ * Every request takes a permit from the global {@code TokenBucket} (if a global rate is set) and from the bucket
+ * of its access token, identified by the {@code Authorization} header (if a per-token rate is set). Responses
+ * are retried according to {@code RetryPolicy}; a <em>429</em> response also pauses the bucket of its token for
+ * the retry delay, so other requests with the same token back off too instead of adding to the overload. The last
+ * response is returned when retries are exhausted. I/O errors and requests with streamed bodies are not retried.
+ * <p>
+ * Asynchronous requests wait for permits and retries on a timer, no thread is blocked while they wait.
+ *
+ * @author Liavontsi Brechka
+ * @see TokenBucket
+ * @see RetryPolicy
+ * @since 1.0-SNAPSHOT
+ */
+public class RateLimitedTransport implements HttpTransport {
+    private final HttpTransport delegate;
+    private final TokenBucket globalBucket;
+    private final double perTokenRate;
+    private final int burst;
+    private final RetryPolicy retryPolicy;
+    private final Map<String, TokenBucket> tokenBuckets = new ConcurrentHashMap<>();
+
+    private volatile boolean closed;
+
+    private RateLimitedTransport(Builder builder) {
+        this.delegate = builder.delegate;
+        this.globalBucket = builder.globalRate > 0 ? new TokenBucket(builder.globalRate, builder.burst) : null;
+        this.perTokenRate = builder.perTokenRate;
+        this.burst = builder.burst;
+        this.retryPolicy = builder.retryPolicy;
+    }
+
+    /**
+     * @param delegate transport that sends requests.
+     * @return builder of transport that limits requests sent by {@code delegate}.
+     */
+    public static Builder builder(HttpTransport delegate) {
+        return new Builder(delegate);
+    }
+
+    /**
+     * Creates transport configured by {@code rate_limit.*} and {@code retry.*} keys of {@code bundle}. Missing
+     * keys fall back to {@code Builder} defaults.
+     *
+     * @param delegate transport that sends requests.
+     * @param bundle   application properties.
+     * @return rate limited transport.
+     */
+    public static RateLimitedTransport fromBundle(HttpTransport delegate, ResourceBundle bundle) {
+        Builder builder = builder(delegate);
+        if (bundle.containsKey("rate_limit.global_per_second")) {
+            builder.globalRate(Double.parseDouble(bundle.getString("rate_limit.global_per_second")));
+        }
+        if (bundle.containsKey("rate_limit.per_token_per_second")) {
+            builder.perTokenRate(Double.parseDouble(bundle.getString("rate_limit.per_token_per_second")));
+        }
+        if (bundle.containsKey("rate_limit.burst")) {
+            builder.burst(Integer.parseInt(bundle.getString("rate_limit.burst")));
+        }
+        RetryPolicy defaults = builder.retryPolicy;
+        int maxRetries = bundle.containsKey("retry.max_retries")
+                ? Integer.parseInt(bundle.getString("retry.max_retries")) : defaults.getMaxRetries();
+        long baseDelayMillis = bundle.containsKey("retry.base_delay_millis")
+                ? Long.parseLong(bundle.getString("retry.base_delay_millis")) : defaults.getBaseDelayMillis();
+        long maxDelayMillis = bundle.containsKey("retry.max_delay_millis")
+                ? Long.parseLong(bundle.getString("retry.max_delay_millis")) : defaults.getMaxDelayMillis();
+        return builder.retryPolicy(new RetryPolicy(maxRetries, baseDelayMillis, maxDelayMillis)).build();
+    }
+
+    @Override
+    public HttpResponse execute(HttpRequest request) throws IOException {
+        for (int retry = 0; ; retry++) {
+            sleep(reserve(request));
+            HttpResponse response = delegate.execute(request);
+
+            long delayMillis = retryDelayMillis(request, retry, response);
+            if (delayMillis < 0) {
+                return response;
+            }
+            sleep(TimeUnit.MILLISECONDS.toNanos(delayMillis));
+        }
+    }
+
+    @Override
+    public CompletableFuture<HttpResponse> executeAsync(HttpRequest request) {
+        CompletableFuture<HttpResponse> result = new CompletableFuture<>();
+        attempt(request, 0, result);
+        return result;
+    }
+
+    private void attempt(HttpRequest request, int retry, CompletableFuture<HttpResponse> result) {
+        long waitNanos = reserve(request);
+        if (waitNanos <= 0) {
+            send(request, retry, result);
+        } else {
+            schedule(() -> send(request, retry, result), waitNanos, result);
+        }
+    }
+
+    private void send(HttpRequest request, int retry, CompletableFuture<HttpResponse> result) {
+        delegate.executeAsync(request).whenComplete((response, error) -> {
+            if (error != null) {
+                result.completeExceptionally(error);
+                return;
+            }
+            long delayMillis = retryDelayMillis(request, retry, response);
+            if (delayMillis < 0) {
+                result.complete(response);
+            } else {
+                schedule(() -> attempt(request, retry + 1, result), TimeUnit.MILLISECONDS.toNanos(delayMillis),
+                        result);
+            }
+        });
+    }
+
+    /**
+     * Runs {@code task} after the delay. The shared scheduler only hands the task over to the common pool, because
+     * the delegate may send the request on the calling thread.
+     */
+    private void schedule(Runnable task, long delayNanos, CompletableFuture<HttpResponse> result) {
+        Runnable resume = () -> {
+            if (closed) {
+                result.completeExceptionally(new IOException("Transport is closed"));
+                return;
+            }
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                result.completeExceptionally(e);
+            }
+        };
+        try {
+            ThreadPools.sharedScheduler().schedule(() -> ForkJoinPool.commonPool().execute(resume), delayNanos,
+                    TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException e) {
+            result.completeExceptionally(new IOException("Transport is closed", e));
+        }
+    }
+
+    private long reserve(HttpRequest request) {
+        long waitNanos = globalBucket == null ? 0 : globalBucket.reserve();
+        TokenBucket tokenBucket = tokenBucket(request);
+        if (tokenBucket != null) {
+            waitNanos = Math.max(waitNanos, tokenBucket.reserve());
+        }
+        return waitNanos;
+    }
+
+    private long retryDelayMillis(HttpRequest request, int retry, HttpResponse response) {
+        if (request.isStreamed()) {
+            return -1;
+        }
+        long delayMillis = retryPolicy.retryDelayMillis(retry, response);
+        if (delayMillis > 0 && response.getStatusCode() == 429) {
+            TokenBucket tokenBucket = tokenBucket(request);
+            if (tokenBucket != null) {
+                tokenBucket.pause(TimeUnit.MILLISECONDS.toNanos(delayMillis));
+            }
+        }
+        return delayMillis;
+    }
+
+    private TokenBucket tokenBucket(HttpRequest request) {
+        if (perTokenRate <= 0) {
+            return null;
+        }
+        String token = request.getHeaders().get("Authorization");
+        return tokenBuckets.computeIfAbsent(token == null ? "" : token,
+                key -> new TokenBucket(perTokenRate, burst));
+    }
+
+    private static void sleep(long nanos) throws InterruptedIOException {
+        if (nanos <= 0) {
+            return;
+        }
+        try {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for rate limit");
+        }
+    }
+
+    /**
+     * Opens connections of the delegate transport; no permits are taken.
+     */
+    @Override
+    public int prewarm(URI uri, int connections) throws IOException {
+        return delegate.prewarm(uri, connections);
+    }
+
+    /**
+     * Closes the delegate transport. Asynchronous requests that wait for a permit or a retry fail.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        delegate.close();
+    }
+
+    /**
+     * Builder for {@code RateLimitedTransport}.
+     */
+    public static final class Builder {
+        private final HttpTransport delegate;
+        private double globalRate;
+        private double perTokenRate;
+        private int burst = 10;
+        private RetryPolicy retryPolicy = new RetryPolicy(3, 200, 10_000);
+
+        private Builder(HttpTransport delegate) {
+            this.delegate = delegate;
+        }
+
+        /**
+         * @param globalRate maximum average number of requests per second of all tokens ({@code 0} - unlimited).
+         * @return this builder.
+         */
+        public Builder globalRate(double globalRate) {
+            this.globalRate = globalRate;
+            return this;
+        }
+
+        /**
+         * @param perTokenRate maximum average number of requests per second of a single access token
+         *                     ({@code 0} - unlimited).
+         * @return this builder.
+         */
+        public Builder perTokenRate(double perTokenRate) {
+            this.perTokenRate = perTokenRate;
+            return this;
+        }
+
+        /**
+         * @param burst number of requests that may be sent at once after a quiet period.
+         * @return this builder.
+         */
+        public Builder burst(int burst) {
+            if (burst < 1) {
+                throw new IllegalArgumentException("burst must be positive: " + burst);
+            }
+            this.burst = burst;
+            return this;
+        }
+
+        /**
+         * @param retryPolicy policy of retrying <em>429</em> and <em>5xx</em> responses ({@code RetryPolicy.NONE}
+         *                    disables retries).
+         * @return this builder.
+         */
+        public Builder retryPolicy(RetryPolicy retryPolicy) {
+            this.retryPolicy = retryPolicy;
+            return this;
+        }
+
+        public RateLimitedTransport build() {
+            return new RateLimitedTransport(this);
+        }
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2016 Liavontsi Brechka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.liavontsibrechka.wit4j.communication.transport;
+
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Immutable policy of retrying responses that ask the client to come back later: <em>429 Too Many Requests</em>
+ * and <em>5xx</em> server errors.
+ * <p>
+ * The delay before a retry is the {@code Retry-After} header of the response when present. Otherwise it grows
+ * exponentially from {@code baseDelayMillis} and is jittered (half fixed, half random), so clients that failed
+ * together do not retry together. A response is not retried when the delay would exceed {@code maxDelayMillis}.
+ *
+ * @author Liavontsi Brechka
+ * @see RateLimitedTransport
+ * @since 1.0-SNAPSHOT
+ */
+public final class RetryPolicy {
+    /**
+     * Policy that never retries.
+     */
+    public static final RetryPolicy NONE = new RetryPolicy(0, 0, 0);
+
+    private final int maxRetries;
+    private final long baseDelayMillis;
+    private final long maxDelayMillis;
+
+    /**
+     * @param maxRetries      maximum number of retries of a single request.
+     * @param baseDelayMillis delay before the first retry (before jitter).
+     * @param maxDelayMillis  maximum delay before a retry.
+     */
+    public RetryPolicy(int maxRetries, long baseDelayMillis, long maxDelayMillis) {
+        if (maxRetries < 0 || baseDelayMillis < 0 || maxDelayMillis < baseDelayMillis) {
+            throw new IllegalArgumentException("Invalid retry policy: maxRetries=" + maxRetries
+                    + ", baseDelayMillis=" + baseDelayMillis + ", maxDelayMillis=" + maxDelayMillis);
+        }
+        this.maxRetries = maxRetries;
+        this.baseDelayMillis = baseDelayMillis;
+        this.maxDelayMillis = maxDelayMillis;
+    }
+
+    /**
+     * @param statusCode http status code of a response.
+     * @return true if responses with this status may be retried.
+     */
+    public boolean isRetryable(int statusCode) {
+        return statusCode == 429 || (statusCode >= 500 && statusCode < 600);
+    }
+
+    /**
+     * Computes delay before retrying {@code response}.
+     *
+     * @param retry    number of the retry, starting from {@code 0}.
+     * @param response response to retry.
+     * @return delay in milliseconds or {@code -1} if the response must not be retried.
+     */
+    public long retryDelayMillis(int retry, HttpResponse response) {
+        if (retry >= maxRetries || !isRetryable(response.getStatusCode())) {
+            return -1;
+        }
+
+        long delayMillis = retryAfterMillis(response.getHeader("Retry-After"));
+        if (delayMillis < 0) {
+            long exponential = baseDelayMillis << Math.min(retry, 30);
+            long capped = Math.min(maxDelayMillis, exponential < 0 ? Long.MAX_VALUE : exponential);
+            delayMillis = capped / 2 + ThreadLocalRandom.current().nextLong(capped / 2 + 1);
+        }
+        return delayMillis <= maxDelayMillis ? delayMillis : -1;
+    }
+
+    /**
+     * Parses {@code Retry-After} header given either in seconds or as an http date.
+     *
+     * @return delay in milliseconds or {@code -1} if the header is missing or malformed.
+     */
+    static long retryAfterMillis(String retryAfter) {
+        if (retryAfter == null || retryAfter.isEmpty()) {
+            return -1;
+        }
+        try {
+            return Math.max(0, Long.parseLong(retryAfter.trim()) * 1000);
+        } catch (NumberFormatException e) {
+            try {
+                Instant date = ZonedDateTime.parse(retryAfter.trim(), DateTimeFormatter.RFC_1123_DATE_TIME)
+                        .toInstant();
+                return Math.max(0, date.toEpochMilli() - System.currentTimeMillis());
+            } catch (DateTimeParseException ignored) {
+                return -1;
+            }
+        }
+    }
+
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    public long getBaseDelayMillis() {
+        return baseDelayMillis;
+    }
+
+    public long getMaxDelayMillis() {
+        return maxDelayMillis;
+    }
+}
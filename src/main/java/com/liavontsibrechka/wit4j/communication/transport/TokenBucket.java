@@ -0,0 +1,97 @@
+/*
+ * Copyright 2016 Liavontsi Brechka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.liavontsibrechka.wit4j.communication.transport;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token bucket that lets through {@code permitsPerSecond} requests on average and up to {@code burst} requests at
+ * once after a quiet period.
+ * <p>
+ * Permits are reserved rather than waited for: {@code reserve} returns how long the caller has to wait before
+ * using its permit, so both blocking and scheduled (asynchronous) callers can share one bucket.
+ *
+ * @author Liavontsi Brechka
+ * @see RateLimitedTransport
+ * @since 1.0-SNAPSHOT
+ */
+public class TokenBucket {
+    private final double intervalNanos;
+    private final double burst;
+    private double storedPermits;
+    /**
+     * Time when the next permit that is not taken from stored permits becomes available.
+     */
+    private long nextFreeNanos;
+
+    /**
+     * @param permitsPerSecond average rate.
+     * @param burst            maximum number of permits stored while the bucket is not used.
+     */
+    public TokenBucket(double permitsPerSecond, int burst) {
+        if (permitsPerSecond <= 0) {
+            throw new IllegalArgumentException("permitsPerSecond must be positive: " + permitsPerSecond);
+        }
+        if (burst < 1) {
+            throw new IllegalArgumentException("burst must be positive: " + burst);
+        }
+        this.intervalNanos = TimeUnit.SECONDS.toNanos(1) / permitsPerSecond;
+        this.burst = burst;
+        this.storedPermits = burst;
+        this.nextFreeNanos = System.nanoTime();
+    }
+
+    /**
+     * Reserves one permit.
+     *
+     * @return time in nanoseconds the caller must wait before using the permit ({@code 0} if it is available now).
+     */
+    public synchronized long reserve() {
+        long now = System.nanoTime();
+        refill(now);
+        long waitNanos = Math.max(0, nextFreeNanos - now);
+
+        double fromStored = Math.min(1, storedPermits);
+        storedPermits -= fromStored;
+        nextFreeNanos += (long) ((1 - fromStored) * intervalNanos);
+        return waitNanos;
+    }
+
+    /**
+     * Stops handing out permits for {@code pauseNanos}, e.g. after the server asked to slow down. Permits
+     * reserved afterwards are spread out at the regular rate from the end of the pause.
+     *
+     * @param pauseNanos pause duration in nanoseconds.
+     */
+    public synchronized void pause(long pauseNanos) {
+        long now = System.nanoTime();
+        refill(now);
+        long resumeNanos = now + pauseNanos;
+        if (resumeNanos - nextFreeNanos > 0) {
+            nextFreeNanos = resumeNanos;
+            storedPermits = 0;
+        }
+    }
+
+    private void refill(long now) {
+        if (now - nextFreeNanos > 0) {
+            storedPermits = Math.min(burst, storedPermits + (now - nextFreeNanos) / intervalNanos);
+            nextFreeNanos = now;
+        }
+    }
+}
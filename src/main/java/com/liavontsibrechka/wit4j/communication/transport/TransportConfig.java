@@ -0,0 +1,171 @@
+/*
+ * Copyright 2016 Liavontsi Brechka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.liavontsibrechka.wit4j.communication.transport;
+
+import java.util.ResourceBundle;
+
+/**
+ * Immutable settings of {@code PooledHttpTransport} connection pool.
+ *
+ * @author Liavontsi Brechka
+ * @see PooledHttpTransport
+ * @since 1.0-SNAPSHOT
+ */
+public final class TransportConfig {
+    private final int maxConnections;
+    private final int maxConnectionsPerRoute;
+    private final long idleTimeoutMillis;
+    private final int connectTimeoutMillis;
+    private final int readTimeoutMillis;
+    private final long acquireTimeoutMillis;
+
+    private TransportConfig(Builder builder) {
+        this.maxConnections = builder.maxConnections;
+        this.maxConnectionsPerRoute = builder.maxConnectionsPerRoute;
+        this.idleTimeoutMillis = builder.idleTimeoutMillis;
+        this.connectTimeoutMillis = builder.connectTimeoutMillis;
+        this.readTimeoutMillis = builder.readTimeoutMillis;
+        this.acquireTimeoutMillis = builder.acquireTimeoutMillis;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Creates configuration from {@code transport.*} keys of {@code bundle}. Missing keys fall back to
+     * {@code Builder} defaults.
+     *
+     * @param bundle application properties.
+     * @return transport configuration.
+     */
+    public static TransportConfig fromBundle(ResourceBundle bundle) {
+        Builder builder = builder();
+        if (bundle.containsKey("transport.max_connections")) {
+            builder.maxConnections(Integer.parseInt(bundle.getString("transport.max_connections")));
+        }
+        if (bundle.containsKey("transport.max_connections_per_route")) {
+            builder.maxConnectionsPerRoute(Integer.parseInt(bundle.getString("transport.max_connections_per_route")));
+        }
+        if (bundle.containsKey("transport.idle_timeout_millis")) {
+            builder.idleTimeoutMillis(Long.parseLong(bundle.getString("transport.idle_timeout_millis")));
+        }
+        if (bundle.containsKey("transport.connect_timeout_millis")) {
+            builder.connectTimeoutMillis(Integer.parseInt(bundle.getString("transport.connect_timeout_millis")));
+        }
+        if (bundle.containsKey("transport.read_timeout_millis")) {
+            builder.readTimeoutMillis(Integer.parseInt(bundle.getString("transport.read_timeout_millis")));
+        }
+        if (bundle.containsKey("transport.acquire_timeout_millis")) {
+            builder.acquireTimeoutMillis(Long.parseLong(bundle.getString("transport.acquire_timeout_millis")));
+        }
+        return builder.build();
+    }
+
+    /**
+     * @return maximum number of open connections for all routes together.
+     */
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    /**
+     * @return maximum number of open connections to a single {@code scheme://host:port} route.
+     */
+    public int getMaxConnectionsPerRoute() {
+        return maxConnectionsPerRoute;
+    }
+
+    /**
+     * @return time after which an unused pooled connection is closed.
+     */
+    public long getIdleTimeoutMillis() {
+        return idleTimeoutMillis;
+    }
+
+    public int getConnectTimeoutMillis() {
+        return connectTimeoutMillis;
+    }
+
+    public int getReadTimeoutMillis() {
+        return readTimeoutMillis;
+    }
+
+    /**
+     * @return time a request waits for a free connection before failing when the pool is exhausted.
+     */
+    public long getAcquireTimeoutMillis() {
+        return acquireTimeoutMillis;
+    }
+
+    /**
+     * Builder for {@code TransportConfig}.
+     */
+    public static final class Builder {
+        private int maxConnections = 20;
+        private int maxConnectionsPerRoute = 10;
+        private long idleTimeoutMillis = 60_000;
+        private int connectTimeoutMillis = 10_000;
+        private int readTimeoutMillis = 30_000;
+        private long acquireTimeoutMillis = 30_000;
+
+        private Builder() {
+        }
+
+        public Builder maxConnections(int maxConnections) {
+            if (maxConnections < 1) {
+                throw new IllegalArgumentException("maxConnections must be positive: " + maxConnections);
+            }
+            this.maxConnections = maxConnections;
+            return this;
+        }
+
+        public Builder maxConnectionsPerRoute(int maxConnectionsPerRoute) {
+            if (maxConnectionsPerRoute < 1) {
+                throw new IllegalArgumentException("maxConnectionsPerRoute must be positive: "
+                        + maxConnectionsPerRoute);
+            }
+            this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+            return this;
+        }
+
+        public Builder idleTimeoutMillis(long idleTimeoutMillis) {
+            this.idleTimeoutMillis = idleTimeoutMillis;
+            return this;
+        }
+
+        public Builder connectTimeoutMillis(int connectTimeoutMillis) {
+            this.connectTimeoutMillis = connectTimeoutMillis;
+            return this;
+        }
+
+        public Builder readTimeoutMillis(int readTimeoutMillis) {
+            this.readTimeoutMillis = readTimeoutMillis;
+            return this;
+        }
+
+        public Builder acquireTimeoutMillis(long acquireTimeoutMillis) {
+            this.acquireTimeoutMillis = acquireTimeoutMillis;
+            return this;
+        }
+
+        public TransportConfig build() {
+            return new TransportConfig(this);
+        }
+    }
+}
@@ -0,0 +1,222 @@
+/*
+ * Copyright 2016 Liavontsi Brechka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.liavontsibrechka.wit4j.engine;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.liavontsibrechka.wit4j.Wit;
+import com.liavontsibrechka.wit4j.communication.Message;
+import com.liavontsibrechka.wit4j.util.Futures;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Extracts meaning of many messages (e.g. replayed chat logs) by pipelining them through concurrent requests.
+ * <p>
+ * At most {@code maxConcurrency} lookups are in flight at the same time; messages are taken from the source only
+ * when a lookup slot is free and fewer than {@code maxPending} results wait to be delivered, so arbitrarily large
+ * sources are processed in bounded memory. Results are delivered to the consumer on the calling thread in source
+ * order. A failed message produces a failed {@code BatchResult} and does not stop the batch.
+ * <p>
+ * Requests share the {@code HttpTransport} of the Wit client, so with the default pooled transport
+ * {@code maxConcurrency} above {@code transport.max_connections_per_route} only makes lookups wait for connections.
+ *
+ * @author Liavontsi Brechka
+ * @see BatchResult
+ * @see MessageLookup
+ * @see Message
+ * @since 1.0-SNAPSHOT
+ */
+public class BatchProcessor {
+    public static final int DEFAULT_MAX_CONCURRENCY = 8;
+
+    private final MessageLookup lookup;
+    private final int maxConcurrency;
+    private final int maxPending;
+
+    private BatchProcessor(Builder builder) {
+        this.lookup = builder.lookup;
+        this.maxConcurrency = builder.maxConcurrency;
+        this.maxPending = builder.maxPending > 0 ? builder.maxPending : 4 * builder.maxConcurrency;
+    }
+
+    /**
+     * @param wit client of the bot.
+     * @return builder of processor that sends messages with {@code Message} communication of {@code wit}.
+     */
+    public static Builder builder(Wit wit) {
+        Message message = wit.createMessage();
+        return new Builder(message::sendAsync);
+    }
+
+    /**
+     * @param lookup asynchronous lookup of a single message.
+     * @return builder of processor that sends messages with {@code lookup}.
+     */
+    public static Builder builder(MessageLookup lookup) {
+        return new Builder(lookup);
+    }
+
+    /**
+     * Processes all messages of {@code messages} and passes results to {@code consumer} in source order. The
+     * method returns when the last result was delivered.
+     *
+     * @param messages source of messages; read on the calling thread.
+     * @param consumer receiver of results; called on the calling thread.
+     * @throws InterruptedException if the calling thread was interrupted while waiting for lookups. Lookups in
+     *                              flight are not cancelled.
+     */
+    public void process(Iterator<String> messages, Consumer<BatchResult> consumer) throws InterruptedException {
+        Semaphore slots = new Semaphore(maxConcurrency);
+        Semaphore completions = new Semaphore(0);
+        Deque<Pending> pending = new ArrayDeque<>(maxPending);
+        long nextIndex = 0;
+
+        while (true) {
+            while (pending.size() < maxPending && messages.hasNext() && slots.tryAcquire()) {
+                pending.addLast(start(nextIndex++, messages.next(), slots, completions));
+            }
+            if (pending.isEmpty()) {
+                return;
+            }
+
+            Pending head = pending.peekFirst();
+            if (head.future.isDone()) {
+                pending.removeFirst();
+                consumer.accept(head.result());
+            } else {
+                // wait until any lookup completes, then deliver and refill
+                completions.acquire();
+            }
+        }
+    }
+
+    /**
+     * @see #process(Iterator, Consumer)
+     */
+    public void process(Iterable<String> messages, Consumer<BatchResult> consumer) throws InterruptedException {
+        process(messages.iterator(), consumer);
+    }
+
+    /**
+     * @see #process(Iterator, Consumer)
+     */
+    public void process(Stream<String> messages, Consumer<BatchResult> consumer) throws InterruptedException {
+        process(messages.iterator(), consumer);
+    }
+
+    /**
+     * Processes all messages and collects results. Intended for batches that fit into memory; use
+     * {@code process} for large sources.
+     *
+     * @param messages messages to process.
+     * @return results in source order.
+     * @throws InterruptedException if the calling thread was interrupted while waiting for lookups.
+     */
+    public List<BatchResult> processAll(Iterable<String> messages) throws InterruptedException {
+        List<BatchResult> results = new ArrayList<>();
+        process(messages.iterator(), results::add);
+        return results;
+    }
+
+    private Pending start(long index, String message, Semaphore slots, Semaphore completions) {
+        CompletableFuture<JsonNode> future;
+        try {
+            future = lookup.lookup(message);
+        } catch (RuntimeException e) {
+            future = Futures.failed(e);
+        }
+
+        future.whenComplete((response, error) -> {
+            slots.release();
+            completions.release();
+        });
+        return new Pending(index, message, future);
+    }
+
+    private static final class Pending {
+        private final long index;
+        private final String message;
+        private final CompletableFuture<JsonNode> future;
+
+        private Pending(long index, String message, CompletableFuture<JsonNode> future) {
+            this.index = index;
+            this.message = message;
+            this.future = future;
+        }
+
+        private BatchResult result() {
+            try {
+                return new BatchResult(index, message, future.join(), null);
+            } catch (RuntimeException e) {
+                return new BatchResult(index, message, null, Futures.unwrap(e));
+            }
+        }
+    }
+
+    /**
+     * Builder for {@code BatchProcessor}.
+     */
+    public static final class Builder {
+        private final MessageLookup lookup;
+        private int maxConcurrency = DEFAULT_MAX_CONCURRENCY;
+        private int maxPending;
+
+        private Builder(MessageLookup lookup) {
+            this.lookup = lookup;
+        }
+
+        /**
+         * @param maxConcurrency maximum number of lookups in flight.
+         * @return this builder.
+         */
+        public Builder maxConcurrency(int maxConcurrency) {
+            if (maxConcurrency < 1) {
+                throw new IllegalArgumentException("maxConcurrency must be positive: " + maxConcurrency);
+            }
+            this.maxConcurrency = maxConcurrency;
+            return this;
+        }
+
+        /**
+         * Limits number of results that are in flight or wait for earlier results to be delivered. Defaults to
+         * four times {@code maxConcurrency}; a slow message delays delivery (not processing) of this many results.
+         *
+         * @param maxPending maximum number of started but not delivered messages.
+         * @return this builder.
+         */
+        public Builder maxPending(int maxPending) {
+            if (maxPending < 1) {
+                throw new IllegalArgumentException("maxPending must be positive: " + maxPending);
+            }
+            this.maxPending = maxPending;
+            return this;
+        }
+
+        public BatchProcessor build() {
+            return new BatchProcessor(this);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2016 Liavontsi Brechka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.liavontsibrechka.wit4j.engine;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * Outcome of a single message of a batch processed by {@code BatchProcessor}: either the JSON response or the
+ * failure of that message.
+ *
+ * @author Liavontsi Brechka
+ * @see BatchProcessor
+ * @since 1.0-SNAPSHOT
+ */
+public final class BatchResult {
+    private final long index;
+    private final String message;
+    private final JsonNode response;
+    private final Throwable error;
+
+    BatchResult(long index, String message, JsonNode response, Throwable error) {
+        this.index = index;
+        this.message = message;
+        this.response = response;
+        this.error = error;
+    }
+
+    /**
+     * @return position of the message in the batch, starting from {@code 0}.
+     */
+    public long getIndex() {
+        return index;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    /**
+     * @return JSON response or null if the message failed.
+     */
+    public JsonNode getResponse() {
+        return response;
+    }
+
+    /**
+     * @return failure of the message or null if it succeeded.
+     */
+    public Throwable getError() {
+        return error;
+    }
+
+    public boolean isSuccessful() {
+        return error == null;
+    }
+
+    @Override
+    public String toString() {
+        return "BatchResult{index=" + index + ", message=" + message
+                + (error == null ? ", response=" + response : ", error=" + error) + "}";
+    }
+}
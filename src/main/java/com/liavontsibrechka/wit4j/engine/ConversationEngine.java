@@ -0,0 +1,202 @@
+/*
+ * Copyright 2016 Liavontsi Brechka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.liavontsibrechka.wit4j.engine;
+
+import com.liavontsibrechka.wit4j.Wit;
+import com.liavontsibrechka.wit4j.communication.Converse;
+import com.liavontsibrechka.wit4j.communication.ConverseResult;
+import com.liavontsibrechka.wit4j.util.ThreadPools;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Runs conversations of many users concurrently.
+ * <p>
+ * Messages are submitted together with a session id. Turns of the same session are processed strictly one after
+ * another in submission order, while turns of different sessions run in parallel on the engine executor (virtual
+ * threads by default when the runtime supports them). The number of turns processed at the same time is limited by
+ * {@code maxConcurrentTurns}.
+ *
+ * @author Liavontsi Brechka
+ * @see TurnHandler
+ * @see Converse
+ * @since 1.0-SNAPSHOT
+ */
+public class ConversationEngine implements Closeable {
+    public static final int DEFAULT_MAX_CONCURRENT_TURNS = 256;
+
+    private final TurnHandler handler;
+    private final Executor executor;
+    private final boolean ownsExecutor;
+    private final Semaphore turnPermits;
+    /**
+     * Last submitted turn of every session with turns in progress; the next turn of a session starts after it.
+     */
+    private final Map<String, CompletableFuture<ConverseResult>> lastTurns = new ConcurrentHashMap<>();
+
+    private ConversationEngine(Builder builder) {
+        this.handler = builder.handler;
+        this.turnPermits = new Semaphore(builder.maxConcurrentTurns);
+        if (builder.executor != null) {
+            this.executor = builder.executor;
+            this.ownsExecutor = false;
+        } else {
+            this.executor = ThreadPools.newVirtualThreadPerTaskExecutor("wit4j-conversation",
+                    builder.maxConcurrentTurns);
+            this.ownsExecutor = true;
+        }
+    }
+
+    /**
+     * @param wit client of the bot.
+     * @return builder of engine that processes turns with {@code Converse} communication of {@code wit}.
+     */
+    public static Builder builder(Wit wit) {
+        Converse converse = wit.createConverse();
+        return new Builder(converse::converse);
+    }
+
+    /**
+     * @param handler processor of conversation turns.
+     * @return builder of engine that processes turns with {@code handler}.
+     */
+    public static Builder builder(TurnHandler handler) {
+        return new Builder(handler);
+    }
+
+    /**
+     * Submits {@code message} of the session. The turn starts after all previously submitted turns of the same
+     * session are finished.
+     *
+     * @param sessionId session identifier.
+     * @param message   message provided by user input.
+     * @return future that is completed with outcome of the turn.
+     */
+    public CompletableFuture<ConverseResult> submit(String sessionId, String message) {
+        CompletableFuture<ConverseResult> turn = new CompletableFuture<>();
+        CompletableFuture<ConverseResult> previous = lastTurns.put(sessionId, turn);
+
+        if (previous == null) {
+            start(sessionId, message, turn);
+        } else {
+            previous.whenComplete((result, error) -> start(sessionId, message, turn));
+        }
+        return turn;
+    }
+
+    private void start(String sessionId, String message, CompletableFuture<ConverseResult> turn) {
+        try {
+            executor.execute(() -> run(sessionId, message, turn));
+        } catch (RejectedExecutionException e) {
+            lastTurns.remove(sessionId, turn);
+            turn.completeExceptionally(e);
+        }
+    }
+
+    private void run(String sessionId, String message, CompletableFuture<ConverseResult> turn) {
+        ConverseResult result = null;
+        Throwable error = null;
+        try {
+            turnPermits.acquire();
+            try {
+                result = handler.converse(sessionId, message);
+            } finally {
+                turnPermits.release();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            error = e;
+        } catch (IOException | RuntimeException e) {
+            error = e;
+        }
+
+        // the session is forgotten before the turn completes, so no finished turn is ever waited for
+        lastTurns.remove(sessionId, turn);
+        if (error != null) {
+            turn.completeExceptionally(error);
+        } else {
+            turn.complete(result);
+        }
+    }
+
+    /**
+     * @return number of sessions that have turns in progress or waiting.
+     */
+    public int getActiveSessions() {
+        return lastTurns.size();
+    }
+
+    /**
+     * Stops the engine executor if it was created by the engine. Turns in progress are allowed to finish.
+     */
+    @Override
+    public void close() {
+        if (ownsExecutor) {
+            ((ExecutorService) executor).shutdown();
+        }
+    }
+
+    /**
+     * Builder for {@code ConversationEngine}.
+     */
+    public static final class Builder {
+        private final TurnHandler handler;
+        private Executor executor;
+        private int maxConcurrentTurns = DEFAULT_MAX_CONCURRENT_TURNS;
+
+        private Builder(TurnHandler handler) {
+            this.handler = handler;
+        }
+
+        /**
+         * Sets executor that runs turns. By default the engine creates a virtual-thread-per-task executor
+         * (or a fixed pool of {@code maxConcurrentTurns} threads before Java 21) and shuts it down on close.
+         *
+         * @param executor executor for turns.
+         * @return this builder.
+         */
+        public Builder executor(Executor executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        /**
+         * @param maxConcurrentTurns maximum number of turns processed at the same time.
+         * @return this builder.
+         */
+        public Builder maxConcurrentTurns(int maxConcurrentTurns) {
+            if (maxConcurrentTurns < 1) {
+                throw new IllegalArgumentException("maxConcurrentTurns must be positive: " + maxConcurrentTurns);
+            }
+            this.maxConcurrentTurns = maxConcurrentTurns;
+            return this;
+        }
+
+        public ConversationEngine build() {
+            return new ConversationEngine(this);
+        }
+    }
+}
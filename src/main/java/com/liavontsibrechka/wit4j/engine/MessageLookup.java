@@ -0,0 +1,42 @@
+/*
+ * Copyright 2016 Liavontsi Brechka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.liavontsibrechka.wit4j.engine;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Functional interface of asynchronous meaning extraction of a single message used by {@code BatchProcessor}.
+ * {@code Message.sendAsync} is the default implementation.
+ *
+ * @author Liavontsi Brechka
+ * @see BatchProcessor
+ * @see com.liavontsibrechka.wit4j.communication.Message
+ * @since 1.0-SNAPSHOT
+ */
+@FunctionalInterface
+public interface MessageLookup {
+    /**
+     * Starts lookup of {@code message} without blocking the calling thread.
+     *
+     * @param message message text.
+     * @return future that is completed with JSON response or with the failure of the lookup.
+     */
+    CompletableFuture<JsonNode> lookup(String message);
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2016 Liavontsi Brechka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.liavontsibrechka.wit4j.engine;
+
+import com.liavontsibrechka.wit4j.communication.ConverseResult;
+
+import java.io.IOException;
+
+/**
+ * Functional interface for the blocking processing of a single conversation turn. {@code Converse::converse}
+ * is the usual implementation.
+ *
+ * @author Liavontsi Brechka
+ * @see ConversationEngine
+ * @see com.liavontsibrechka.wit4j.communication.Converse
+ * @since 1.0-SNAPSHOT
+ */
+@FunctionalInterface
+public interface TurnHandler {
+    /**
+     * Processes {@code message} of the session and all bot steps that follow it.
+     *
+     * @param sessionId session identifier.
+     * @param message   message provided by user input (May be null).
+     * @return outcome of the turn.
+     * @throws IOException if an I/O error occurs.
+     */
+    ConverseResult converse(String sessionId, String message) throws IOException;
+}
@@ -17,7 +17,7 @@
 
 package com.liavontsibrechka.wit4j.interaction;
 
-import com.liavontsibrechka.wit4j.communication.HttpCommunicationType;
+import com.liavontsibrechka.wit4j.communication.HttpCommunication;
 
 import java.io.BufferedReader;
 import java.io.IOException;
@@ -52,16 +52,13 @@ public class ConsoleInteraction extends Interaction {
     /**
      * Creates concrete implementation of {@code Interaction} class via standard console ({@code System.in}
      * and {@code System.out} are encapsulated by {@code BufferedReader} and {@code PrintWriter} respectively)
-     * by using specified {@code HttpCommunicationType}.
+     * by using specified {@code HttpCommunication}.
      *
-     * @param httpCommunicationType enum type of {@code HttpCommunicationType} for dynamic instantiation of
-     *                              {@code HttpCommunication} subclasses through {@code HttpCommunicationFactory}.
+     * @param httpCommunication communication with bot.
      * @see com.liavontsibrechka.wit4j.communication.HttpCommunication
-     * @see HttpCommunicationType
-     * @see com.liavontsibrechka.wit4j.communication.HttpCommunicationFactory
      */
-    protected ConsoleInteraction(HttpCommunicationType httpCommunicationType) {
-        super(System.in, System.out, httpCommunicationType);
+    protected ConsoleInteraction(HttpCommunication httpCommunication) {
+        super(System.in, System.out, httpCommunication);
 
         reader = new BufferedReader(new InputStreamReader(this.input));
         writer = new PrintWriter(this.output);
@@ -17,19 +17,229 @@
 
 package com.liavontsibrechka.wit4j.interaction;
 
-import com.liavontsibrechka.wit4j.communication.HttpCommunicationType;
+import com.liavontsibrechka.wit4j.communication.Converse;
+import com.liavontsibrechka.wit4j.communication.ConverseResult;
+import com.liavontsibrechka.wit4j.communication.HttpCommunication;
+import com.liavontsibrechka.wit4j.util.Futures;
+import com.liavontsibrechka.wit4j.util.ThreadPools;
 
+import java.io.Flushable;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
-// TODO: 2016-06-28 write class description and implement it
+/**
+ * Concrete class that provides {@code interact} method implementation of abstract {@code Interaction} class
+ * in order to bridge a stream of user messages (e.g. a chat transport or a socket) to a bot.
+ * <p>
+ * Messages are read from {@code input} with the configured {@code Framing} until the stream ends, and replies
+ * are written to {@code output} with the same framing, in the order of the messages. For {@code Converse}
+ * communication the replies of a message are the bot messages of its turn (one frame each) and all messages
+ * belong to one session; for other communications the reply is the JSON response.
+ * <p>
+ * Reading and writing are pipelined: the calling thread reads the next messages and sends them while replies
+ * of earlier ones are written by a writer thread (a virtual thread on Java 21 or newer). Messages of the
+ * interaction are processed one after another, because they share a session context; at most
+ * {@code maxPendingMessages} messages are read ahead. Replies that are ready together are flushed with a single
+ * write. Both sides use blocking channels with reused buffers.
+ *
+ * @author Liavontsi Brechka
+ * @see Interaction
+ * @see Framing
+ * @since 1.0-SNAPSHOT
+ */
 public class CustomInteraction extends Interaction {
-    protected CustomInteraction(InputStream input, OutputStream output, HttpCommunicationType communicationType) {
-        super(input, output, communicationType);
+    public static final int DEFAULT_MAX_FRAME_LENGTH = 64 * 1024;
+    public static final int DEFAULT_MAX_PENDING_MESSAGES = 16;
+
+    private static final CompletableFuture<List<String>> END = new CompletableFuture<>();
+    private static final ThreadFactory WRITER_THREADS = ThreadPools.virtualThreadFactory("wit4j-interaction-writer");
+
+    private final ReadableByteChannel inputChannel;
+    private final WritableByteChannel outputChannel;
+    private final Flushable flushable;
+    private final String sessionId = UUID.randomUUID().toString();
+
+    private volatile Framing framing = Framing.LINE;
+    private volatile int maxFrameLength = DEFAULT_MAX_FRAME_LENGTH;
+    private volatile int maxPendingMessages = DEFAULT_MAX_PENDING_MESSAGES;
+
+    /**
+     * Creates interaction over streams.
+     *
+     * @param input         stream for reading user messages.
+     * @param output        stream for writing replies; flushed after every batch of replies.
+     * @param communication communication with bot.
+     */
+    protected CustomInteraction(InputStream input, OutputStream output, HttpCommunication communication) {
+        super(input, output, communication);
+        this.inputChannel = Channels.newChannel(input);
+        this.outputChannel = Channels.newChannel(output);
+        this.flushable = output;
+    }
+
+    /**
+     * Creates interaction over blocking channels (e.g. a {@code SocketChannel} used for both directions).
+     *
+     * @param input         channel for reading user messages.
+     * @param output        channel for writing replies.
+     * @param communication communication with bot.
+     */
+    protected CustomInteraction(ReadableByteChannel input, WritableByteChannel output,
+                                HttpCommunication communication) {
+        super(Channels.newInputStream(input), Channels.newOutputStream(output), communication);
+        this.inputChannel = input;
+        this.outputChannel = output;
+        this.flushable = null;
     }
 
+    /**
+     * Processes messages until the input ends and all replies are written. Streams are not closed.
+     *
+     * @throws IOException if an I/O error occurs, a frame is malformed or processing of a message failed; messages
+     *                     after the failed one are not processed.
+     */
     @Override
-    public void interact() {
-        // TODO: 2016-06-25 method implementation
+    public void interact() throws IOException {
+        FrameReader reader = new FrameReader(inputChannel, framing, maxFrameLength);
+        FrameWriter writer = new FrameWriter(outputChannel, flushable, framing);
+        BlockingQueue<CompletableFuture<List<String>>> pending = new ArrayBlockingQueue<>(maxPendingMessages);
+        CompletableFuture<Void> written = new CompletableFuture<>();
+
+        Thread writerThread = WRITER_THREADS.newThread(() -> writeReplies(pending, writer, written));
+        writerThread.start();
+
+        try {
+            CompletableFuture<List<String>> previous = CompletableFuture.completedFuture(null);
+            String message;
+            while (!written.isDone() && (message = reader.read()) != null) {
+                if (message.trim().isEmpty()) {
+                    continue;
+                }
+                String nextMessage = message;
+                CompletableFuture<List<String>> replies = previous.thenCompose(ignored -> process(nextMessage));
+                enqueue(pending, replies, written);
+                previous = replies;
+            }
+            enqueue(pending, END, written);
+            Futures.join(written);
+        } catch (InterruptedException e) {
+            writerThread.interrupt();
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while processing messages");
+        } catch (RuntimeException e) {
+            writerThread.interrupt();
+            Throwable cause = Futures.unwrap(e);
+            throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
+        }
+    }
+
+    /**
+     * Waits for space in the queue unless the writer has stopped.
+     */
+    private static void enqueue(BlockingQueue<CompletableFuture<List<String>>> pending,
+                                CompletableFuture<List<String>> replies, CompletableFuture<Void> written)
+            throws InterruptedException {
+        while (!pending.offer(replies, 100, TimeUnit.MILLISECONDS)) {
+            if (written.isDone()) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Writes replies in message order; flushes whenever the next reply is not ready yet.
+     */
+    private static void writeReplies(BlockingQueue<CompletableFuture<List<String>>> pending, FrameWriter writer,
+                                     CompletableFuture<Void> written) {
+        try {
+            while (true) {
+                CompletableFuture<List<String>> next = pending.poll();
+                if (next == null || !next.isDone()) {
+                    writer.flush();
+                    if (next == null) {
+                        next = pending.take();
+                    }
+                }
+                if (next == END) {
+                    writer.flush();
+                    written.complete(null);
+                    return;
+                }
+                for (String reply : Futures.join(next)) {
+                    writer.write(reply);
+                }
+            }
+        } catch (InterruptedException e) {
+            written.completeExceptionally(new InterruptedIOException("Interrupted while writing replies"));
+        } catch (IOException | RuntimeException e) {
+            written.completeExceptionally(Futures.unwrap(e));
+        }
+    }
+
+    private CompletableFuture<List<String>> process(String message) {
+        if (httpCommunication instanceof Converse) {
+            return ((Converse) httpCommunication).converseAsync(sessionId, message)
+                    .thenApply(ConverseResult::getMessages);
+        }
+        return httpCommunication.sendAsync(message).thenCompose(response ->
+                httpCommunication.handleHttpResponseAsync(response)
+                        .thenApply(ignored -> Collections.singletonList(response.toString())));
+    }
+
+    public Framing getFraming() {
+        return framing;
+    }
+
+    /**
+     * Sets framing of messages and replies; applies to the next {@code interact} call.
+     *
+     * @param framing framing of messages.
+     */
+    public void setFraming(Framing framing) {
+        if (framing == null) {
+            throw new IllegalArgumentException("Framing must not be null");
+        }
+        this.framing = framing;
+    }
+
+    public int getMaxFrameLength() {
+        return maxFrameLength;
+    }
+
+    /**
+     * @param maxFrameLength maximum length of a message in bytes; longer messages fail the interaction.
+     */
+    public void setMaxFrameLength(int maxFrameLength) {
+        if (maxFrameLength < 1) {
+            throw new IllegalArgumentException("maxFrameLength must be positive: " + maxFrameLength);
+        }
+        this.maxFrameLength = maxFrameLength;
+    }
+
+    public int getMaxPendingMessages() {
+        return maxPendingMessages;
+    }
+
+    /**
+     * @param maxPendingMessages maximum number of messages read ahead of the reply being written.
+     */
+    public void setMaxPendingMessages(int maxPendingMessages) {
+        if (maxPendingMessages < 1) {
+            throw new IllegalArgumentException("maxPendingMessages must be positive: " + maxPendingMessages);
+        }
+        this.maxPendingMessages = maxPendingMessages;
     }
 }
@@ -0,0 +1,172 @@
+/*
+ * Copyright 2016 Liavontsi Brechka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.liavontsibrechka.wit4j.interaction;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads framed messages from a blocking channel. The byte and char buffers are reused between messages, so
+ * the only allocation per message is the resulting string.
+ *
+ * @author Liavontsi Brechka
+ * @see Framing
+ * @since 1.0-SNAPSHOT
+ */
+final class FrameReader {
+    private static final int INITIAL_CAPACITY = 8192;
+
+    private final ReadableByteChannel channel;
+    private final Framing framing;
+    private final int maxFrameLength;
+    private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    /**
+     * Bytes read from the channel; unread bytes are between position and limit.
+     */
+    private ByteBuffer buffer;
+    private CharBuffer chars = CharBuffer.allocate(256);
+
+    FrameReader(ReadableByteChannel channel, Framing framing, int maxFrameLength) {
+        this.channel = channel;
+        this.framing = framing;
+        this.maxFrameLength = maxFrameLength;
+        this.buffer = ByteBuffer.allocate(Math.min(INITIAL_CAPACITY, maxFrameLength + 4));
+        this.buffer.flip();
+    }
+
+    /**
+     * @return next message or null if the stream ended.
+     * @throws IOException if an I/O error occurs, a frame is longer than {@code maxFrameLength} or the stream
+     *                     ended inside a length-prefixed frame.
+     */
+    String read() throws IOException {
+        return framing == Framing.LINE ? readLine() : readLengthPrefixed();
+    }
+
+    private String readLine() throws IOException {
+        int scanned = buffer.position();
+        while (true) {
+            for (int i = scanned; i < buffer.limit(); i++) {
+                if (buffer.get(i) == '\n') {
+                    int end = i > buffer.position() && buffer.get(i - 1) == '\r' ? i - 1 : i;
+                    String line = decode(buffer.position(), end);
+                    buffer.position(i + 1);
+                    return line;
+                }
+            }
+
+            int unread = buffer.remaining();
+            if (!fill()) {
+                if (!buffer.hasRemaining()) {
+                    return null;
+                }
+                // the last line is not terminated
+                String line = decode(buffer.position(), buffer.limit());
+                buffer.position(buffer.limit());
+                return line;
+            }
+            scanned = buffer.position() + unread;
+        }
+    }
+
+    private String readLengthPrefixed() throws IOException {
+        if (!require(4)) {
+            return null;
+        }
+        int length = buffer.getInt(buffer.position());
+        if (length < 0 || length > maxFrameLength) {
+            throw new IOException("Invalid frame length: " + length);
+        }
+        if (!require(4 + length)) {
+            throw new EOFException("Stream ended inside a frame");
+        }
+
+        int start = buffer.position() + 4;
+        String message = decode(start, start + length);
+        buffer.position(start + length);
+        return message;
+    }
+
+    /**
+     * Reads until {@code bytes} unread bytes are buffered.
+     *
+     * @return false if the stream ended before any of them was read.
+     */
+    private boolean require(int bytes) throws IOException {
+        while (buffer.remaining() < bytes) {
+            boolean started = buffer.hasRemaining();
+            if (!fill()) {
+                if (started) {
+                    throw new EOFException("Stream ended inside a frame");
+                }
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Moves unread bytes to the start of the buffer (growing it up to the frame limit if it is full) and reads
+     * more bytes from the channel.
+     *
+     * @return false if the stream ended.
+     */
+    private boolean fill() throws IOException {
+        buffer.compact();
+        if (!buffer.hasRemaining()) {
+            int maxCapacity = maxFrameLength + 4;
+            if (buffer.capacity() >= maxCapacity) {
+                throw new IOException("Frame is longer than " + maxFrameLength + " bytes");
+            }
+            ByteBuffer larger = ByteBuffer.allocate((int) Math.min((long) buffer.capacity() * 2, maxCapacity));
+            buffer.flip();
+            larger.put(buffer);
+            buffer = larger;
+        }
+
+        int read = channel.read(buffer);
+        buffer.flip();
+        return read >= 0;
+    }
+
+    private String decode(int start, int end) {
+        int length = end - start;
+        if (chars.capacity() < length) {
+            chars = CharBuffer.allocate(Math.max(length, chars.capacity() * 2));
+        }
+        chars.clear();
+
+        int limit = buffer.limit();
+        buffer.limit(end).position(start);
+        decoder.reset();
+        decoder.decode(buffer, chars, true);
+        decoder.flush(chars);
+        buffer.limit(limit);
+
+        chars.flip();
+        return chars.toString();
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2016 Liavontsi Brechka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.liavontsibrechka.wit4j.interaction;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes framed messages to a blocking channel. Messages are encoded into a reused buffer that is written to the
+ * channel when it fills up or when {@code flush} is called, so a burst of replies costs a single write.
+ *
+ * @author Liavontsi Brechka
+ * @see Framing
+ * @since 1.0-SNAPSHOT
+ */
+final class FrameWriter {
+    private static final int FLUSH_THRESHOLD = 8192;
+
+    private final WritableByteChannel channel;
+    private final Flushable flushable;
+    private final Framing framing;
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private ByteBuffer buffer = ByteBuffer.allocate(2 * FLUSH_THRESHOLD);
+    private CharBuffer chars = CharBuffer.allocate(256);
+
+    /**
+     * @param channel   channel to write frames to.
+     * @param flushable flushed after the channel was written to (May be null).
+     * @param framing   framing of messages.
+     */
+    FrameWriter(WritableByteChannel channel, Flushable flushable, Framing framing) {
+        this.channel = channel;
+        this.flushable = flushable;
+        this.framing = framing;
+    }
+
+    /**
+     * Buffers {@code message}; it is written to the channel by a later {@code write} or {@code flush} call.
+     *
+     * @param message message to write.
+     * @throws IOException if an I/O error occurs.
+     */
+    void write(String message) throws IOException {
+        if (buffer.position() >= FLUSH_THRESHOLD) {
+            flush();
+        }
+
+        copy(message);
+        int frameStart = buffer.position();
+        if (framing == Framing.LENGTH_PREFIXED) {
+            ensureSpace(4);
+            buffer.position(frameStart + 4);
+        }
+
+        encoder.reset();
+        CoderResult result = encoder.encode(chars, buffer, true);
+        while (result.isOverflow()) {
+            ensureSpace(buffer.capacity());
+            result = encoder.encode(chars, buffer, true);
+        }
+        while (encoder.flush(buffer).isOverflow()) {
+            ensureSpace(buffer.capacity());
+        }
+
+        if (framing == Framing.LENGTH_PREFIXED) {
+            buffer.putInt(frameStart, buffer.position() - frameStart - 4);
+        } else {
+            ensureSpace(1);
+            buffer.put((byte) '\n');
+        }
+    }
+
+    /**
+     * Writes buffered frames to the channel.
+     *
+     * @throws IOException if an I/O error occurs.
+     */
+    void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+        if (flushable != null) {
+            flushable.flush();
+        }
+    }
+
+    /**
+     * Copies {@code message} to the reused char buffer; line breaks are replaced in line framing.
+     */
+    private void copy(String message) {
+        int length = message.length();
+        if (chars.capacity() < length) {
+            chars = CharBuffer.allocate(Math.max(length, chars.capacity() * 2));
+        }
+        chars.clear();
+        boolean line = framing == Framing.LINE;
+        for (int i = 0; i < length; i++) {
+            char next = message.charAt(i);
+            chars.put(line && (next == '\n' || next == '\r') ? ' ' : next);
+        }
+        chars.flip();
+    }
+
+    private void ensureSpace(int bytes) {
+        if (buffer.remaining() < bytes) {
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + bytes));
+            buffer.flip();
+            larger.put(buffer);
+            buffer = larger;
+        }
+    }
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright 2016 Liavontsi Brechka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.liavontsibrechka.wit4j.interaction;
+
+/**
+ * Ways of separating messages in a byte stream of {@code CustomInteraction}. Messages are UTF-8 encoded.
+ *
+ * @author Liavontsi Brechka
+ * @see CustomInteraction
+ * @since 1.0-SNAPSHOT
+ */
+public enum Framing {
+    /**
+     * Every message is a line terminated by <em>\n</em> (or <em>\r\n</em>). Line breaks inside written messages
+     * are replaced by spaces.
+     */
+    LINE,
+    /**
+     * Every message is preceded by its length in bytes as a 4-byte big-endian integer.
+     */
+    LENGTH_PREFIXED
+}
@@ -18,8 +18,6 @@
 package com.liavontsibrechka.wit4j.interaction;
 
 import com.liavontsibrechka.wit4j.communication.HttpCommunication;
-import com.liavontsibrechka.wit4j.communication.HttpCommunicationFactory;
-import com.liavontsibrechka.wit4j.communication.HttpCommunicationType;
 
 import java.io.IOException;
 import java.io.InputStream;
@@ -52,17 +50,15 @@ public abstract class Interaction {
     /**
      * Creates interaction object that make possible for user to communicate with bot.
      *
-     * @param input                 stream for reading user input.
-     * @param output                stream for writing information to user.
-     * @param httpCommunicationType enum type of {@code HttpCommunicationType} for dynamic instantiation of
-     *                              {@code HttpCommunication} subclasses through {@code HttpCommunicationFactory}.
-     * @see HttpCommunicationType
-     * @see HttpCommunicationFactory
+     * @param input             stream for reading user input.
+     * @param output            stream for writing information to user.
+     * @param httpCommunication communication with bot (see {@code Wit.createCommunication}).
+     * @see com.liavontsibrechka.wit4j.Wit
      */
-    protected Interaction(InputStream input, OutputStream output, HttpCommunicationType httpCommunicationType) {
+    protected Interaction(InputStream input, OutputStream output, HttpCommunication httpCommunication) {
         this.input = input;
         this.output = output;
-        this.httpCommunication = HttpCommunicationFactory.createHttpCommunication(httpCommunicationType);
+        this.httpCommunication = httpCommunication;
     }
 
     /**
@@ -17,10 +17,12 @@
 
 package com.liavontsibrechka.wit4j.interaction;
 
-import com.liavontsibrechka.wit4j.communication.HttpCommunicationType;
+import com.liavontsibrechka.wit4j.communication.HttpCommunication;
 
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
 
 /**
  * Factory class for instantiating {@code Interaction} subclasses' objects.
@@ -34,31 +36,42 @@ public class InteractionFactory {
      * Creates an object of {@code ConsoleInteraction} class that lets user to interact with bot via standard console
      * ({@code System.in} and {@code System.out})
      *
-     * @param httpCommunicationType enum type of {@code HttpCommunicationType} for dynamic instantiation of
-     *                              {@code HttpCommunication} subclasses through {@code HttpCommunicationFactory}.
+     * @param httpCommunication communication with bot.
      * @return reference to new instance of concrete {@code ConsoleInteraction} class that is a subclass of
      * {@code Interaction}.
      * @see com.liavontsibrechka.wit4j.communication.HttpCommunication
-     * @see HttpCommunicationType
      * @see ConsoleInteraction
      */
-    public static Interaction getConsoleInteraction(HttpCommunicationType httpCommunicationType) {
-        return new ConsoleInteraction(httpCommunicationType);
+    public static Interaction getConsoleInteraction(HttpCommunication httpCommunication) {
+        return new ConsoleInteraction(httpCommunication);
     }
 
     /**
      * Creates an object of {@code CustomInteraction} class that lets user to interact with bot via custom
      * {@code InputStream} and {@code OutputStream}.
      *
-     * @param input                 stream for reading user input.
-     * @param output                stream for writing information to user.
-     * @param httpCommunicationType enum type of {@code HttpCommunicationType} for dynamic instantiation of
-     *                              {@code HttpCommunication} subclasses through {@code HttpCommunicationFactory}.
+     * @param input             stream for reading user input.
+     * @param output            stream for writing information to user.
+     * @param httpCommunication communication with bot.
      * @return reference to new instance of concrete {@code CustomInteraction} class that is a subclass of
      * {@code Interaction}.
      */
-    public static Interaction getCustomInteraction(InputStream input, OutputStream output,
-                                                   HttpCommunicationType httpCommunicationType) {
-        return new CustomInteraction(input, output, httpCommunicationType);
+    public static CustomInteraction getCustomInteraction(InputStream input, OutputStream output,
+                                                         HttpCommunication httpCommunication) {
+        return new CustomInteraction(input, output, httpCommunication);
+    }
+
+    /**
+     * Creates an object of {@code CustomInteraction} class that lets user to interact with bot via blocking
+     * channels (e.g. a {@code SocketChannel} passed as both {@code input} and {@code output}).
+     *
+     * @param input             channel for reading user input.
+     * @param output            channel for writing information to user.
+     * @param httpCommunication communication with bot.
+     * @return reference to new instance of concrete {@code CustomInteraction} class.
+     */
+    public static CustomInteraction getCustomInteraction(ReadableByteChannel input, WritableByteChannel output,
+                                                         HttpCommunication httpCommunication) {
+        return new CustomInteraction(input, output, httpCommunication);
     }
 }
@@ -0,0 +1,271 @@
+/*
+ * Copyright 2016 Liavontsi Brechka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.liavontsibrechka.wit4j.interaction;
+
+import com.liavontsibrechka.wit4j.Wit;
+import com.liavontsibrechka.wit4j.communication.HttpCommunicationType;
+import com.liavontsibrechka.wit4j.util.ThreadPools;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Embedded server that exposes a bot over a local TCP socket, so other processes may talk to it without
+ * embedding the library.
+ * <p>
+ * Every accepted connection is served by its own {@code CustomInteraction} with a new communication of the
+ * client, so every connection is a separate conversation session. Messages and replies are framed with the
+ * configured {@code Framing}; replies are streamed back as soon as the bot sends them. Connections are served by
+ * virtual threads on Java 21 or newer (a bounded pool of platform threads otherwise); at most
+ * {@code maxConnections} connections are served at the same time, further clients wait in the accept backlog.
+ *
+ * @author Liavontsi Brechka
+ * @see CustomInteraction
+ * @since 1.0-SNAPSHOT
+ */
+public class InteractionServer implements Closeable {
+    public static final int DEFAULT_MAX_CONNECTIONS = 1024;
+
+    private static final long MIN_ACCEPT_BACKOFF_MILLIS = 10;
+    private static final long MAX_ACCEPT_BACKOFF_MILLIS = 1000;
+
+    private final Wit wit;
+    private final HttpCommunicationType communicationType;
+    private final Framing framing;
+    private final Consumer<Throwable> errorHandler;
+    private final Semaphore connectionPermits;
+    private final ServerSocketChannel serverChannel;
+    private final ExecutorService executor;
+    private final Set<SocketChannel> connections = ConcurrentHashMap.newKeySet();
+    private final Thread acceptor;
+
+    private volatile boolean closed;
+
+    private InteractionServer(Builder builder) throws IOException {
+        this.wit = builder.wit;
+        this.communicationType = builder.communicationType;
+        this.framing = builder.framing;
+        this.errorHandler = builder.errorHandler;
+        this.connectionPermits = new Semaphore(builder.maxConnections);
+        this.executor = ThreadPools.newVirtualThreadPerTaskExecutor("wit4j-connection", builder.maxConnections);
+
+        this.serverChannel = ServerSocketChannel.open();
+        try {
+            serverChannel.bind(builder.address, builder.backlog);
+        } catch (IOException e) {
+            serverChannel.close();
+            executor.shutdown();
+            throw e;
+        }
+
+        this.acceptor = ThreadPools.daemonThreadFactory("wit4j-acceptor").newThread(this::acceptConnections);
+        this.acceptor.start();
+    }
+
+    /**
+     * @param wit client of the bot.
+     * @return builder of server that serves conversations with the bot of {@code wit}.
+     */
+    public static Builder builder(Wit wit) {
+        return new Builder(wit);
+    }
+
+    private void acceptConnections() {
+        long backoffMillis = 0;
+        while (!closed) {
+            SocketChannel connection = null;
+            try {
+                connectionPermits.acquire();
+                connection = serverChannel.accept();
+                backoffMillis = 0;
+                // registered before anything else may fail, so release always gives the permit back
+                connections.add(connection);
+                connection.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                SocketChannel accepted = connection;
+                executor.execute(() -> serve(accepted));
+            } catch (InterruptedException | ClosedChannelException e) {
+                return;
+            } catch (IOException | RejectedExecutionException e) {
+                if (connection != null) {
+                    release(connection);
+                } else {
+                    connectionPermits.release();
+                }
+                if (closed) {
+                    return;
+                }
+                errorHandler.accept(e);
+                if (connection != null) {
+                    continue;
+                }
+                // accept itself failed and is likely to fail again right away
+                backoffMillis = Math.min(Math.max(backoffMillis * 2, MIN_ACCEPT_BACKOFF_MILLIS),
+                        MAX_ACCEPT_BACKOFF_MILLIS);
+                try {
+                    TimeUnit.MILLISECONDS.sleep(backoffMillis);
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private void serve(SocketChannel connection) {
+        try {
+            CustomInteraction interaction = new CustomInteraction(connection, connection,
+                    wit.createCommunication(communicationType));
+            interaction.setFraming(framing);
+            interaction.interact();
+        } catch (IOException | RuntimeException e) {
+            if (!closed) {
+                errorHandler.accept(e);
+            }
+        } finally {
+            release(connection);
+        }
+    }
+
+    private void release(SocketChannel connection) {
+        if (connections.remove(connection)) {
+            connectionPermits.release();
+        }
+        try {
+            connection.close();
+        } catch (IOException ignored) {
+            // the connection is being discarded anyway
+        }
+    }
+
+    /**
+     * @return address the server listens on (with the actual port if port {@code 0} was requested).
+     * @throws IOException if the address cannot be read.
+     */
+    public InetSocketAddress getAddress() throws IOException {
+        return (InetSocketAddress) serverChannel.getLocalAddress();
+    }
+
+    /**
+     * @return number of connections being served.
+     */
+    public int getConnectionCount() {
+        return connections.size();
+    }
+
+    /**
+     * Stops accepting connections and closes connections being served. The client is not closed.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            serverChannel.close();
+        } catch (IOException ignored) {
+            // nothing can be done about it
+        }
+        acceptor.interrupt();
+        for (SocketChannel connection : connections) {
+            release(connection);
+        }
+        executor.shutdown();
+    }
+
+    /**
+     * Builder for {@code InteractionServer}.
+     */
+    public static final class Builder {
+        private final Wit wit;
+        private InetSocketAddress address = new InetSocketAddress("127.0.0.1", 0);
+        private int backlog = 128;
+        private int maxConnections = DEFAULT_MAX_CONNECTIONS;
+        private HttpCommunicationType communicationType = HttpCommunicationType.CONVERSE;
+        private Framing framing = Framing.LINE;
+        private Consumer<Throwable> errorHandler = error -> {
+        };
+
+        private Builder(Wit wit) {
+            if (wit == null) {
+                throw new IllegalArgumentException("Wit client must not be null");
+            }
+            this.wit = wit;
+        }
+
+        /**
+         * @param address address to listen on (loopback with a free port by default).
+         * @return this builder.
+         */
+        public Builder address(InetSocketAddress address) {
+            this.address = address;
+            return this;
+        }
+
+        public Builder backlog(int backlog) {
+            this.backlog = backlog;
+            return this;
+        }
+
+        public Builder maxConnections(int maxConnections) {
+            if (maxConnections < 1) {
+                throw new IllegalArgumentException("maxConnections must be positive: " + maxConnections);
+            }
+            this.maxConnections = maxConnections;
+            return this;
+        }
+
+        public Builder communicationType(HttpCommunicationType communicationType) {
+            this.communicationType = communicationType;
+            return this;
+        }
+
+        public Builder framing(Framing framing) {
+            this.framing = framing;
+            return this;
+        }
+
+        /**
+         * @param errorHandler receiver of failures of connections (e.g. malformed frames or failed requests);
+         *                     they are ignored by default.
+         * @return this builder.
+         */
+        public Builder errorHandler(Consumer<Throwable> errorHandler) {
+            this.errorHandler = errorHandler;
+            return this;
+        }
+
+        /**
+         * Binds the server socket and starts accepting connections.
+         *
+         * @return running server.
+         * @throws IOException if the address cannot be bound.
+         */
+        public InteractionServer start() throws IOException {
+            return new InteractionServer(this);
+        }
+    }
+}
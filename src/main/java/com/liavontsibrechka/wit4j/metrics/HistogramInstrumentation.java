@@ -0,0 +1,151 @@
+/*
+ * Copyright 2016 Liavontsi Brechka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.liavontsibrechka.wit4j.metrics;
+
+import com.liavontsibrechka.wit4j.communication.ConverseResponseType;
+import com.liavontsibrechka.wit4j.communication.ConverseResult;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Default {@code Instrumentation} that keeps {@code LatencyHistogram} of request, parse and action times for every
+ * {@code ConverseResponseType}, histograms of time spent in each action and of steps per turn, and counters of
+ * requests and transferred bytes. All values are readable at any time while the instrumentation is in use.
+ * <p>
+ * Latencies are recorded in nanoseconds. Requests that are not <em>converse</em> requests (no response type) are
+ * counted in the totals only.
+ *
+ * @author Liavontsi Brechka
+ * @see Instrumentation
+ * @see LatencyHistogram
+ * @since 1.0-SNAPSHOT
+ */
+public class HistogramInstrumentation implements Instrumentation {
+    private final Map<ConverseResponseType, LatencyHistogram> requestLatency = histograms();
+    private final Map<ConverseResponseType, LatencyHistogram> parseLatency = histograms();
+    private final Map<ConverseResponseType, LatencyHistogram> actionLatency = histograms();
+    private final Map<String, LatencyHistogram> latencyByAction = new ConcurrentHashMap<>();
+    private final LatencyHistogram turnLatency = new LatencyHistogram();
+    private final LatencyHistogram stepsPerTurn = new LatencyHistogram();
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder failedRequests = new LongAdder();
+    private final LongAdder bytesSent = new LongAdder();
+    private final LongAdder bytesReceived = new LongAdder();
+
+    private static Map<ConverseResponseType, LatencyHistogram> histograms() {
+        Map<ConverseResponseType, LatencyHistogram> histograms = new EnumMap<>(ConverseResponseType.class);
+        for (ConverseResponseType type : ConverseResponseType.values()) {
+            histograms.put(type, new LatencyHistogram());
+        }
+        return Collections.unmodifiableMap(histograms);
+    }
+
+    @Override
+    public void requestStarted(String sessionId, int bytesOut) {
+        requests.increment();
+        bytesSent.add(bytesOut);
+    }
+
+    @Override
+    public void responseReceived(String sessionId, ConverseResponseType type, int bytesIn, long durationNanos,
+                                 long parseNanos) {
+        bytesReceived.add(bytesIn);
+        if (type != null) {
+            requestLatency.get(type).record(durationNanos);
+            parseLatency.get(type).record(parseNanos);
+        }
+    }
+
+    @Override
+    public void requestFailed(String sessionId, Throwable error, long durationNanos) {
+        failedRequests.increment();
+    }
+
+    @Override
+    public void actionExecuted(String sessionId, String actionName, ConverseResponseType type, long durationNanos) {
+        actionLatency.get(type).record(durationNanos);
+        latencyByAction.computeIfAbsent(actionName, name -> new LatencyHistogram()).record(durationNanos);
+    }
+
+    @Override
+    public void turnCompleted(ConverseResult result, long durationNanos) {
+        turnLatency.record(durationNanos);
+        stepsPerTurn.record(result.getSteps());
+    }
+
+    /**
+     * @param type response type.
+     * @return time from sending a request until its whole response was received, by type of the response.
+     */
+    public LatencyHistogram getRequestLatency(ConverseResponseType type) {
+        return requestLatency.get(type);
+    }
+
+    /**
+     * @param type response type.
+     * @return time spent parsing responses of the type.
+     */
+    public LatencyHistogram getParseLatency(ConverseResponseType type) {
+        return parseLatency.get(type);
+    }
+
+    /**
+     * @param type response type.
+     * @return time spent in actions triggered by responses of the type.
+     */
+    public LatencyHistogram getActionLatency(ConverseResponseType type) {
+        return actionLatency.get(type);
+    }
+
+    /**
+     * @param actionName name of the action.
+     * @return time spent in the action or null if it was never executed.
+     */
+    public LatencyHistogram getActionLatency(String actionName) {
+        return latencyByAction.get(actionName);
+    }
+
+    public LatencyHistogram getTurnLatency() {
+        return turnLatency;
+    }
+
+    public LatencyHistogram getStepsPerTurn() {
+        return stepsPerTurn;
+    }
+
+    public long getRequests() {
+        return requests.sum();
+    }
+
+    public long getFailedRequests() {
+        return failedRequests.sum();
+    }
+
+    public long getBytesSent() {
+        return bytesSent.sum();
+    }
+
+    public long getBytesReceived() {
+        return bytesReceived.sum();
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2016 Liavontsi Brechka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.liavontsibrechka.wit4j.metrics;
+
+import com.liavontsibrechka.wit4j.communication.ConverseResponseType;
+import com.liavontsibrechka.wit4j.communication.ConverseResult;
+
+/**
+ * Hooks invoked by {@code HttpCommunication} subclasses while a conversation is processed, so applications can see
+ * where time goes: network, JSON parsing or actions, and how many steps turns take.
+ * <p>
+ * Every method has an empty default implementation, so an implementation overrides only the events it needs.
+ * Hooks are called on the threads that process requests and must be cheap and thread safe. When
+ * {@code isEnabled} returns false (as {@code NOOP} does), no hook is called and no time is measured.
+ *
+ * @author Liavontsi Brechka
+ * @see HistogramInstrumentation
+ * @see com.liavontsibrechka.wit4j.Wit#setInstrumentation(Instrumentation)
+ * @since 1.0-SNAPSHOT
+ */
+public interface Instrumentation {
+    /**
+     * Instrumentation that is disabled.
+     */
+    Instrumentation NOOP = new Instrumentation() {
+        @Override
+        public boolean isEnabled() {
+            return false;
+        }
+    };
+
+    /**
+     * @return false if hooks of this instrumentation must not be called at all.
+     */
+    default boolean isEnabled() {
+        return true;
+    }
+
+    /**
+     * Called before a request is sent.
+     *
+     * @param sessionId session identifier (May be null for requests without session).
+     * @param bytesOut  length of request body.
+     */
+    default void requestStarted(String sessionId, int bytesOut) {
+    }
+
+    /**
+     * Called when a successful response was received and parsed.
+     *
+     * @param sessionId     session identifier (May be null for requests without session).
+     * @param type          type of <em>converse</em> response (null for other request types).
+     * @param bytesIn       length of response body.
+     * @param durationNanos time from sending the request until the whole response was received.
+     * @param parseNanos    time spent parsing the response.
+     */
+    default void responseReceived(String sessionId, ConverseResponseType type, int bytesIn, long durationNanos,
+                                  long parseNanos) {
+    }
+
+    /**
+     * Called when a request failed or <b>Wit.ai HTTP API</b> responded with an error status.
+     *
+     * @param sessionId     session identifier (May be null for requests without session).
+     * @param error         the failure.
+     * @param durationNanos time from sending the request until it failed.
+     */
+    default void requestFailed(String sessionId, Throwable error, long durationNanos) {
+    }
+
+    /**
+     * Called after an action completed or failed.
+     *
+     * @param sessionId     session identifier.
+     * @param actionName    name of the action.
+     * @param type          type of the response that triggered the action.
+     * @param durationNanos time from the call of {@code IAction.executeAsync} until its future completed, including
+     *                      waits for executors and timers of asynchronous actions.
+     */
+    default void actionExecuted(String sessionId, String actionName, ConverseResponseType type, long durationNanos) {
+    }
+
+    /**
+     * Called when a turn ended without an error.
+     *
+     * @param result        outcome of the turn, including number of steps.
+     * @param durationNanos time from the first request of the turn until it ended.
+     */
+    default void turnCompleted(ConverseResult result, long durationNanos) {
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright 2016 Liavontsi Brechka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.liavontsibrechka.wit4j.simulator;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Responses the simulated bot sends during one turn, in order: the first one answers the request with the user
+ * message, every next one answers the next follow-up request of the session. A script that does not end with
+ * <em>stop</em> gets one appended.
+ * <p>
+ * Scripts are either built step by step or read from a recorded conversation (JSON array of <em>converse</em>
+ * responses).
+ *
+ * @author Liavontsi Brechka
+ * @see WitSimulator
+ * @since 1.0-SNAPSHOT
+ */
+public final class ConversationScript {
+    private static final ObjectMapper JSON_MAPPER = new ObjectMapper();
+
+    private final byte[][] responses;
+
+    private ConversationScript(List<byte[]> responses) {
+        this.responses = responses.toArray(new byte[responses.size()][]);
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Reads script from a recorded conversation.
+     *
+     * @param json JSON array of <em>converse</em> responses, each with a {@code type} field.
+     * @return script that replays the responses.
+     * @throws IOException if {@code json} is not an array of responses.
+     */
+    public static ConversationScript fromJson(String json) throws IOException {
+        JsonNode steps = JSON_MAPPER.readTree(json);
+        if (steps == null || !steps.isArray()) {
+            throw new IOException("Conversation script must be a JSON array of responses");
+        }
+        Builder builder = builder();
+        for (JsonNode step : steps) {
+            if (!step.isObject() || !step.path("type").isTextual()) {
+                throw new IOException("Response without type in conversation script: " + step);
+            }
+            builder.response((ObjectNode) step);
+        }
+        return builder.build();
+    }
+
+    /**
+     * @return number of responses of the turn (including the final <em>stop</em>).
+     */
+    public int size() {
+        return responses.length;
+    }
+
+    /**
+     * @param step zero-based step of the turn; steps after the end get the final <em>stop</em>.
+     * @return response body of the step.
+     */
+    byte[] response(int step) {
+        return responses[Math.min(step, responses.length - 1)];
+    }
+
+    /**
+     * Builder for {@code ConversationScript}.
+     */
+    public static final class Builder {
+        private final List<byte[]> responses = new ArrayList<>();
+        private boolean stopped;
+
+        private Builder() {
+        }
+
+        /**
+         * Adds <em>merge</em> step with a single value of every entity.
+         *
+         * @param entity name of the first entity.
+         * @param value  value of the first entity.
+         * @param more   further entity names and values, alternating.
+         * @return this builder.
+         */
+        public Builder merge(String entity, String value, String... more) {
+            if (more.length % 2 != 0) {
+                throw new IllegalArgumentException("Entity names and values must alternate");
+            }
+            ObjectNode entities = JsonNodeFactory.instance.objectNode();
+            entity(entities, entity, value);
+            for (int i = 0; i < more.length; i += 2) {
+                entity(entities, more[i], more[i + 1]);
+            }
+            ObjectNode response = step("merge");
+            response.set("entities", entities);
+            return response(response);
+        }
+
+        public Builder msg(String message) {
+            return response(step("msg").put("msg", message));
+        }
+
+        public Builder action(String action) {
+            return response(step("action").put("action", action));
+        }
+
+        public Builder stop() {
+            return response(step("stop"));
+        }
+
+        /**
+         * Adds step with a response as is.
+         *
+         * @param response <em>converse</em> response.
+         * @return this builder.
+         */
+        public Builder response(ObjectNode response) {
+            if (stopped) {
+                throw new IllegalStateException("Script already ends with stop");
+            }
+            responses.add(response.toString().getBytes(StandardCharsets.UTF_8));
+            stopped = "stop".equals(response.path("type").asText());
+            return this;
+        }
+
+        public ConversationScript build() {
+            List<byte[]> steps = new ArrayList<>(responses);
+            if (!stopped) {
+                steps.add(step("stop").toString().getBytes(StandardCharsets.UTF_8));
+            }
+            return new ConversationScript(Collections.unmodifiableList(steps));
+        }
+
+        private static ObjectNode step(String type) {
+            ObjectNode response = JsonNodeFactory.instance.objectNode();
+            response.put("type", type);
+            response.put("confidence", 1.0);
+            return response;
+        }
+
+        private static void entity(ObjectNode entities, String name, String value) {
+            ObjectNode entityValue = entities.putArray(name).addObject();
+            entityValue.put("confidence", 1.0);
+            entityValue.put("type", "value");
+            entityValue.put("value", value);
+        }
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright 2016 Liavontsi Brechka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.liavontsibrechka.wit4j.simulator;
+
+import com.liavontsibrechka.wit4j.communication.Converse;
+import com.liavontsibrechka.wit4j.communication.ConverseResult;
+import com.liavontsibrechka.wit4j.metrics.LatencyHistogram;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Drives concurrent conversation sessions through {@code Converse} and measures how the client copes with them.
+ * Usually run against {@code WitSimulator}, so the measurement is not limited by quotas of <b>Wit.ai HTTP API</b>.
+ * <p>
+ * Every session sends {@code turnsPerSession} messages one after another, taking them from the message list in
+ * turn; sessions run at the same time without a thread of their own, so thousands of them may be driven by
+ * a few threads. A turn fails if its request fails or the bot does not stop; a turn that cannot even be started
+ * (e.g. the client is closed) fails and ends its session.
+ *
+ * @author Liavontsi Brechka
+ * @see LoadReport
+ * @see WitSimulator
+ * @since 1.0-SNAPSHOT
+ */
+public class LoadGenerator {
+    private final Converse converse;
+    private final int sessions;
+    private final int turnsPerSession;
+    private final List<String> messages;
+
+    private LoadGenerator(Builder builder) {
+        this.converse = builder.converse;
+        this.sessions = builder.sessions;
+        this.turnsPerSession = builder.turnsPerSession;
+        this.messages = new ArrayList<>(builder.messages);
+    }
+
+    public static Builder builder(Converse converse) {
+        return new Builder(converse);
+    }
+
+    /**
+     * Runs all sessions and waits until they finish.
+     *
+     * @return measurements of the run.
+     * @throws InterruptedException if interrupted while waiting for the sessions.
+     */
+    public LoadReport run() throws InterruptedException {
+        Run run = new Run();
+        long startNanos = System.nanoTime();
+        for (int i = 0; i < sessions; i++) {
+            run.turn("load-" + UUID.randomUUID() + "-" + i, 0);
+        }
+        run.done.await();
+        return new LoadReport(sessions, run.completed.sum(), run.failed.sum(), System.nanoTime() - startNanos,
+                run.latency);
+    }
+
+    private final class Run {
+        private final CountDownLatch done = new CountDownLatch(sessions);
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LongAdder completed = new LongAdder();
+        private final LongAdder failed = new LongAdder();
+
+        private void turn(String sessionId, int turn) {
+            if (turn == turnsPerSession) {
+                endSession(sessionId);
+                return;
+            }
+
+            long startNanos = System.nanoTime();
+            CompletableFuture<ConverseResult> turnResult;
+            try {
+                turnResult = converse.converseAsync(sessionId, messages.get(turn % messages.size()));
+            } catch (RuntimeException e) {
+                // e.g. the client was closed, the following turns of the session would fail the same way
+                failed.increment();
+                endSession(sessionId);
+                return;
+            }
+            // the next turn is started from the pool, so turns completed synchronously do not nest on the stack
+            turnResult.whenCompleteAsync(
+                    (result, error) -> {
+                        latency.record(System.nanoTime() - startNanos);
+                        if (error == null && result.getStatus() == ConverseResult.Status.STOPPED) {
+                            completed.increment();
+                        } else {
+                            failed.increment();
+                        }
+                        turn(sessionId, turn + 1);
+                    }, ForkJoinPool.commonPool());
+        }
+
+        private void endSession(String sessionId) {
+            try {
+                converse.getContextStore().remove(sessionId);
+            } finally {
+                done.countDown();
+            }
+        }
+    }
+
+    /**
+     * Builder for {@code LoadGenerator}.
+     */
+    public static final class Builder {
+        private final Converse converse;
+        private int sessions = 100;
+        private int turnsPerSession = 10;
+        private List<String> messages = Arrays.asList("Hello");
+
+        private Builder(Converse converse) {
+            this.converse = converse;
+        }
+
+        /**
+         * @param sessions number of concurrent sessions (100 by default).
+         * @return this builder.
+         */
+        public Builder sessions(int sessions) {
+            if (sessions < 1) {
+                throw new IllegalArgumentException("sessions must be positive: " + sessions);
+            }
+            this.sessions = sessions;
+            return this;
+        }
+
+        /**
+         * @param turnsPerSession number of messages sent by every session (10 by default).
+         * @return this builder.
+         */
+        public Builder turnsPerSession(int turnsPerSession) {
+            if (turnsPerSession < 1) {
+                throw new IllegalArgumentException("turnsPerSession must be positive: " + turnsPerSession);
+            }
+            this.turnsPerSession = turnsPerSession;
+            return this;
+        }
+
+        /**
+         * @param messages user messages sent by sessions in turn.
+         * @return this builder.
+         */
+        public Builder messages(String... messages) {
+            if (messages.length == 0) {
+                throw new IllegalArgumentException("At least one message is required");
+            }
+            this.messages = Arrays.asList(messages);
+            return this;
+        }
+
+        public LoadGenerator build() {
+            return new LoadGenerator(this);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2016 Liavontsi Brechka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.liavontsibrechka.wit4j.simulator;
+
+import com.liavontsibrechka.wit4j.metrics.LatencyHistogram;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measurements of a {@code LoadGenerator} run: number of turns, throughput and latency of a whole turn (all
+ * steps of the turn including action execution).
+ *
+ * @author Liavontsi Brechka
+ * @see LoadGenerator
+ * @since 1.0-SNAPSHOT
+ */
+public final class LoadReport {
+    private final int sessions;
+    private final long completedTurns;
+    private final long failedTurns;
+    private final long elapsedNanos;
+    private final LatencyHistogram latency;
+
+    LoadReport(int sessions, long completedTurns, long failedTurns, long elapsedNanos, LatencyHistogram latency) {
+        this.sessions = sessions;
+        this.completedTurns = completedTurns;
+        this.failedTurns = failedTurns;
+        this.elapsedNanos = elapsedNanos;
+        this.latency = latency;
+    }
+
+    public int getSessions() {
+        return sessions;
+    }
+
+    /**
+     * @return number of turns that ended with <em>stop</em>.
+     */
+    public long getCompletedTurns() {
+        return completedTurns;
+    }
+
+    /**
+     * @return number of turns that failed or did not stop.
+     */
+    public long getFailedTurns() {
+        return failedTurns;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * @return turns (completed and failed) per second.
+     */
+    public double getThroughput() {
+        return elapsedNanos == 0 ? 0 : (completedTurns + failedTurns) * 1e9 / elapsedNanos;
+    }
+
+    /**
+     * @param percentile percentile from {@code 0} to {@code 100}.
+     * @return turn latency in nanoseconds below or equal to which {@code percentile} percent of turns fall.
+     */
+    public long getLatencyNanos(double percentile) {
+        return latency.getValueAtPercentile(percentile);
+    }
+
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("LoadReport{sessions=%d, completedTurns=%d, failedTurns=%d, elapsed=%d ms, "
+                        + "throughput=%.1f turns/s, p50=%.2f ms, p90=%.2f ms, p99=%.2f ms, max=%.2f ms}",
+                sessions, completedTurns, failedTurns, TimeUnit.NANOSECONDS.toMillis(elapsedNanos), getThroughput(),
+                millis(getLatencyNanos(50)), millis(getLatencyNanos(90)), millis(getLatencyNanos(99)),
+                millis(latency.getMax()));
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+}
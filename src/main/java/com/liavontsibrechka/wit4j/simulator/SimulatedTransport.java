@@ -0,0 +1,97 @@
+/*
+ * Copyright 2016 Liavontsi Brechka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.liavontsibrechka.wit4j.simulator;
+
+import com.liavontsibrechka.wit4j.communication.transport.HttpRequest;
+import com.liavontsibrechka.wit4j.communication.transport.HttpResponse;
+import com.liavontsibrechka.wit4j.communication.transport.HttpTransport;
+import com.liavontsibrechka.wit4j.util.ThreadPools;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@code HttpTransport} that answers requests with {@code WitSimulator} in-process, without sockets. Give it to
+ * {@code Wit.Builder.transport} to run the library against the simulated bot.
+ * <p>
+ * Synchronous requests sleep for the simulated latency; asynchronous ones are completed by a timer, so
+ * simulated latency costs no thread. A streamed body is read in the common pool, since the caller is still
+ * producing it.
+ *
+ * @author Liavontsi Brechka
+ * @see WitSimulator
+ * @since 1.0-SNAPSHOT
+ */
+public class SimulatedTransport implements HttpTransport {
+    private final WitSimulator simulator;
+    private volatile boolean closed;
+
+    public SimulatedTransport(WitSimulator simulator) {
+        this.simulator = simulator;
+    }
+
+    @Override
+    public HttpResponse execute(HttpRequest request) throws IOException {
+        if (closed) {
+            throw new IOException("Transport is closed");
+        }
+        long latencyNanos = simulator.nextLatencyNanos();
+        if (latencyNanos > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(latencyNanos);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for simulated response");
+            }
+        }
+        return simulator.respond(request);
+    }
+
+    @Override
+    public CompletableFuture<HttpResponse> executeAsync(HttpRequest request) {
+        CompletableFuture<HttpResponse> future = new CompletableFuture<>();
+        if (closed) {
+            future.completeExceptionally(new IOException("Transport is closed"));
+            return future;
+        }
+
+        long latencyNanos = simulator.nextLatencyNanos();
+        if (latencyNanos <= 0 && !request.isStreamed()) {
+            future.complete(simulator.respond(request));
+        } else if (latencyNanos <= 0) {
+            ForkJoinPool.commonPool().execute(() -> future.complete(simulator.respond(request)));
+        } else {
+            // the response is handled in the common pool, the shared scheduler only fires the timer
+            ThreadPools.sharedScheduler().schedule(() -> ForkJoinPool.commonPool().execute(() ->
+                    future.complete(simulator.respond(request))), latencyNanos, TimeUnit.NANOSECONDS);
+        }
+        return future;
+    }
+
+    public WitSimulator getSimulator() {
+        return simulator;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+    }
+}
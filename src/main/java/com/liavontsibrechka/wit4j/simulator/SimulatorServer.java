@@ -0,0 +1,166 @@
+/*
+ * Copyright 2016 Liavontsi Brechka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.liavontsibrechka.wit4j.simulator;
+
+import com.liavontsibrechka.wit4j.communication.transport.HttpRequest;
+import com.liavontsibrechka.wit4j.communication.transport.HttpResponse;
+import com.liavontsibrechka.wit4j.util.ThreadPools;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serves {@code WitSimulator} over HTTP, so the simulated bot can be used by clients with their real transport
+ * (or by clients not written with this library). Point {@code Wit.Builder.baseUrl} to {@code getBaseUrl()}.
+ * <p>
+ * Every request is handled on a thread of its own (a virtual thread when the runtime supports them), which
+ * waits for the simulated latency before responding.
+ *
+ * @author Liavontsi Brechka
+ * @see WitSimulator
+ * @since 1.0-SNAPSHOT
+ */
+public class SimulatorServer implements Closeable {
+    private static final int FALLBACK_THREADS = 256;
+
+    static {
+        // without it the JDK server delays small responses of keep-alive connections by Nagle's algorithm
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    private final WitSimulator simulator;
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    private SimulatorServer(WitSimulator simulator, HttpServer server, ExecutorService executor) {
+        this.simulator = simulator;
+        this.server = server;
+        this.executor = executor;
+    }
+
+    /**
+     * Starts server on a free port of the loopback interface.
+     *
+     * @param simulator simulated bot.
+     * @return started server.
+     * @throws IOException if the server socket cannot be bound.
+     */
+    public static SimulatorServer start(WitSimulator simulator) throws IOException {
+        return start(simulator, new InetSocketAddress("127.0.0.1", 0));
+    }
+
+    /**
+     * Starts server on {@code address}.
+     *
+     * @param simulator simulated bot.
+     * @param address   address to listen on.
+     * @return started server.
+     * @throws IOException if the server socket cannot be bound.
+     */
+    public static SimulatorServer start(WitSimulator simulator, InetSocketAddress address) throws IOException {
+        HttpServer server = HttpServer.create(address, 0);
+        ExecutorService executor = ThreadPools.newVirtualThreadPerTaskExecutor("wit4j-simulator", FALLBACK_THREADS);
+        SimulatorServer simulatorServer = new SimulatorServer(simulator, server, executor);
+        server.createContext("/", simulatorServer::handle);
+        server.setExecutor(executor);
+        server.start();
+        return simulatorServer;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            byte[] body;
+            try (InputStream in = exchange.getRequestBody()) {
+                body = readAll(in);
+            }
+
+            long latencyNanos = simulator.nextLatencyNanos();
+            if (latencyNanos > 0) {
+                TimeUnit.NANOSECONDS.sleep(latencyNanos);
+            }
+
+            Map<String, String> headers = new LinkedHashMap<>();
+            for (Map.Entry<String, List<String>> header : exchange.getRequestHeaders().entrySet()) {
+                headers.put(header.getKey(), header.getValue().get(0));
+            }
+            HttpResponse response = simulator.respond(new HttpRequest(exchange.getRequestMethod(),
+                    URI.create(getBaseUrl() + exchange.getRequestURI()), headers, body));
+            for (Map.Entry<String, String> header : response.getHeaders().entrySet()) {
+                exchange.getResponseHeaders().set(header.getKey(), header.getValue());
+            }
+            byte[] responseBody = response.getBody();
+            exchange.sendResponseHeaders(response.getStatusCode(), responseBody.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(responseBody);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * @return base URL of the server, e.g. {@code http://127.0.0.1:8080}.
+     */
+    public String getBaseUrl() {
+        InetSocketAddress address = server.getAddress();
+        return "http://" + address.getHostString() + ":" + address.getPort();
+    }
+
+    public InetSocketAddress getAddress() {
+        return server.getAddress();
+    }
+
+    public WitSimulator getSimulator() {
+        return simulator;
+    }
+
+    /**
+     * Stops the server; requests in progress are dropped.
+     */
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
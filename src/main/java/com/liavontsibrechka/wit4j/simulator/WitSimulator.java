@@ -0,0 +1,331 @@
+/*
+ * Copyright 2016 Liavontsi Brechka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.liavontsibrechka.wit4j.simulator;
+
+import com.liavontsibrechka.wit4j.communication.transport.HttpRequest;
+import com.liavontsibrechka.wit4j.communication.transport.HttpResponse;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Local stand-in for the <em>converse</em> and <em>speech</em> endpoints of <b>Wit.ai HTTP API</b> that answers from
+ * {@code ConversationScript}s, so bot flows can be tested and load-tested without network and quotas.
+ * <p>
+ * A request with a user message ({@code q} parameter) starts a turn of its session with the script registered
+ * for that message (or the default script); follow-up requests of the session get the next responses of the
+ * script until it stops. Latency of every response is drawn uniformly from the configured range, and a share of
+ * requests may fail with <em>500</em> or <em>429</em> responses; a failed request does not advance the script,
+ * so a retried request gets the response it would have got.
+ * <p>
+ * A <em>speech</em> request is answered with the configured transcript after its whole body has been read, so
+ * streamed uploads can be tested end to end.
+ * <p>
+ * The simulator is served either in-process by {@code SimulatedTransport} or over HTTP by
+ * {@code SimulatorServer}.
+ *
+ * @author Liavontsi Brechka
+ * @see SimulatedTransport
+ * @see SimulatorServer
+ * @since 1.0-SNAPSHOT
+ */
+public class WitSimulator {
+    private static final Map<String, String> JSON_HEADERS = Collections.singletonMap("content-type",
+            "application/json");
+
+    private final ConversationScript defaultScript;
+    private final Map<String, ConversationScript> scripts;
+    private final long minLatencyNanos;
+    private final long maxLatencyNanos;
+    private final double errorRate;
+    private final double rateLimitRate;
+    private final String transcript;
+    private final Map<String, Turn> turns = new ConcurrentHashMap<>();
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong injectedErrors = new AtomicLong();
+    private final AtomicLong speechBytes = new AtomicLong();
+
+    private WitSimulator(Builder builder) {
+        this.defaultScript = builder.defaultScript;
+        this.scripts = new HashMap<>(builder.scripts);
+        this.minLatencyNanos = builder.minLatencyNanos;
+        this.maxLatencyNanos = builder.maxLatencyNanos;
+        this.errorRate = builder.errorRate;
+        this.rateLimitRate = builder.rateLimitRate;
+        this.transcript = builder.transcript;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Answers {@code request} without delay.
+     *
+     * @param request <em>converse</em> or <em>speech</em> request.
+     * @return response of the simulated bot.
+     */
+    public HttpResponse respond(HttpRequest request) {
+        requests.incrementAndGet();
+        String path = request.getUri().getPath();
+        boolean speech = path != null && path.endsWith("/speech");
+        if (!speech && (path == null || !path.endsWith("/converse"))) {
+            return error(404, "Unknown endpoint: " + path);
+        }
+
+        double chance = errorRate + rateLimitRate > 0 ? ThreadLocalRandom.current().nextDouble() : 1;
+        if (chance < errorRate) {
+            injectedErrors.incrementAndGet();
+            return error(500, "Simulated failure");
+        }
+        if (chance < errorRate + rateLimitRate) {
+            injectedErrors.incrementAndGet();
+            return error(429, "Simulated rate limit");
+        }
+
+        if (speech) {
+            return recognize(request);
+        }
+
+        String query = request.getUri().getRawQuery();
+        String sessionId = parameter(query, "session_id");
+        if (sessionId == null) {
+            return error(400, "Missing session_id");
+        }
+
+        String message = parameter(query, "q");
+        Turn turn;
+        if (message != null) {
+            ConversationScript script = scripts.get(message);
+            turn = new Turn(script != null ? script : defaultScript);
+            turns.put(sessionId, turn);
+        } else {
+            turn = turns.get(sessionId);
+            if (turn == null) {
+                return error(400, "No turn in progress for session " + sessionId);
+            }
+        }
+
+        int step = turn.step.getAndIncrement();
+        if (step >= turn.script.size() - 1) {
+            turns.remove(sessionId, turn);
+        }
+        return new HttpResponse(200, JSON_HEADERS, turn.script.response(step));
+    }
+
+    private HttpResponse recognize(HttpRequest request) {
+        long length = request.getBodyLength();
+        ReadableByteChannel audio = request.getBodyStream();
+        if (audio != null) {
+            ByteBuffer buffer = ByteBuffer.allocate(8192);
+            try {
+                for (int read = audio.read(buffer); read >= 0; read = audio.read(buffer)) {
+                    length += read;
+                    buffer.clear();
+                }
+            } catch (IOException e) {
+                return error(400, "Cannot read audio: " + e.getMessage());
+            }
+        }
+        if (length == 0) {
+            return error(400, "Empty audio");
+        }
+        speechBytes.addAndGet(length);
+
+        String body = "{\"msg_id\":\"" + UUID.randomUUID() + "\",\"_text\":\"" + transcript.replace("\"", "'")
+                + "\",\"entities\":{}}";
+        return new HttpResponse(200, JSON_HEADERS, body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return latency of the next response in nanoseconds.
+     */
+    public long nextLatencyNanos() {
+        if (maxLatencyNanos <= minLatencyNanos) {
+            return minLatencyNanos;
+        }
+        return ThreadLocalRandom.current().nextLong(minLatencyNanos, maxLatencyNanos + 1);
+    }
+
+    /**
+     * @return number of requests answered.
+     */
+    public long getRequests() {
+        return requests.get();
+    }
+
+    /**
+     * @return number of requests answered with an injected error.
+     */
+    public long getInjectedErrors() {
+        return injectedErrors.get();
+    }
+
+    /**
+     * @return number of audio bytes received by <em>speech</em> requests.
+     */
+    public long getSpeechBytes() {
+        return speechBytes.get();
+    }
+
+    /**
+     * @return number of sessions with a turn in progress.
+     */
+    public int getActiveTurns() {
+        return turns.size();
+    }
+
+    private static HttpResponse error(int statusCode, String message) {
+        String body = "{\"error\":\"" + message.replace("\"", "'") + "\",\"code\":\"simulated\"}";
+        return new HttpResponse(statusCode, JSON_HEADERS, body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String parameter(String query, String name) {
+        if (query == null) {
+            return null;
+        }
+        for (String pair : query.split("&")) {
+            int separator = pair.indexOf('=');
+            if (separator == name.length() && pair.startsWith(name)) {
+                try {
+                    return URLDecoder.decode(pair.substring(separator + 1), "UTF-8");
+                } catch (UnsupportedEncodingException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        }
+        return null;
+    }
+
+    private static final class Turn {
+        private final ConversationScript script;
+        private final AtomicInteger step = new AtomicInteger();
+
+        private Turn(ConversationScript script) {
+            this.script = script;
+        }
+    }
+
+    /**
+     * Builder for {@code WitSimulator}.
+     */
+    public static final class Builder {
+        private ConversationScript defaultScript = ConversationScript.builder().msg("OK").build();
+        private final Map<String, ConversationScript> scripts = new HashMap<>();
+        private long minLatencyNanos;
+        private long maxLatencyNanos;
+        private double errorRate;
+        private double rateLimitRate;
+        private String transcript = "OK";
+
+        private Builder() {
+        }
+
+        /**
+         * @param script script of turns whose message has no script of its own (a single "OK" message by
+         *               default).
+         * @return this builder.
+         */
+        public Builder script(ConversationScript script) {
+            this.defaultScript = script;
+            return this;
+        }
+
+        /**
+         * @param message user message that starts the turn.
+         * @param script  script of turns started by {@code message}.
+         * @return this builder.
+         */
+        public Builder script(String message, ConversationScript script) {
+            scripts.put(message, script);
+            return this;
+        }
+
+        /**
+         * @param minMillis minimum latency of a response.
+         * @param maxMillis maximum latency of a response.
+         * @return this builder.
+         */
+        public Builder latencyMillis(long minMillis, long maxMillis) {
+            if (minMillis < 0 || maxMillis < minMillis) {
+                throw new IllegalArgumentException("Invalid latency range: " + minMillis + ".." + maxMillis);
+            }
+            this.minLatencyNanos = TimeUnit.MILLISECONDS.toNanos(minMillis);
+            this.maxLatencyNanos = TimeUnit.MILLISECONDS.toNanos(maxMillis);
+            return this;
+        }
+
+        /**
+         * @param errorRate share of requests answered with <em>500</em>.
+         * @return this builder.
+         */
+        public Builder errorRate(double errorRate) {
+            this.errorRate = rate(errorRate);
+            return this;
+        }
+
+        /**
+         * @param rateLimitRate share of requests answered with <em>429</em>.
+         * @return this builder.
+         */
+        public Builder rateLimitRate(double rateLimitRate) {
+            this.rateLimitRate = rate(rateLimitRate);
+            return this;
+        }
+
+        /**
+         * @param transcript text every <em>speech</em> request is recognized as ("OK" by default).
+         * @return this builder.
+         */
+        public Builder transcript(String transcript) {
+            if (transcript == null) {
+                throw new IllegalArgumentException("Transcript must not be null");
+            }
+            this.transcript = transcript;
+            return this;
+        }
+
+        public WitSimulator build() {
+            if (errorRate + rateLimitRate > 1) {
+                throw new IllegalArgumentException("Error rates add up to more than 1");
+            }
+            return new WitSimulator(this);
+        }
+
+        private static double rate(double rate) {
+            if (rate < 0 || rate > 1) {
+                throw new IllegalArgumentException("Rate must be between 0 and 1: " + rate);
+            }
+            return rate;
+        }
+    }
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright 2016 Liavontsi Brechka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.liavontsibrechka.wit4j.util;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * {@code ByteArrayOutputStream} that exposes its internal array, so written bytes can be used without copying
+ * and the same buffer can be refilled after {@code reset}.
+ *
+ * @author Liavontsi Brechka
+ * @since 1.0-SNAPSHOT
+ */
+public class ByteArrayBuffer extends ByteArrayOutputStream {
+    public ByteArrayBuffer(int initialCapacity) {
+        super(initialCapacity);
+    }
+
+    /**
+     * @return internal array; only the first {@code size()} bytes are valid and only until the next write.
+     */
+    public byte[] getBuffer() {
+        return buf;
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2016 Liavontsi Brechka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.liavontsibrechka.wit4j.util;
+
+import java.util.function.Supplier;
+
+/**
+ * Value that is created by the first {@code get} call. Creation is thread-safe: the factory runs at most once
+ * (unless it throws) and every caller sees the same value.
+ *
+ * @param <T> type of the value.
+ * @author Liavontsi Brechka
+ * @since 1.0-SNAPSHOT
+ */
+public final class Lazy<T> implements Supplier<T> {
+    private final Supplier<? extends T> factory;
+    private volatile T value;
+
+    /**
+     * @param factory creates the value; must not return null.
+     */
+    public Lazy(Supplier<? extends T> factory) {
+        this.factory = factory;
+    }
+
+    @Override
+    public T get() {
+        T result = value;
+        if (result == null) {
+            synchronized (this) {
+                result = value;
+                if (result == null) {
+                    result = factory.get();
+                    if (result == null) {
+                        throw new IllegalStateException("Lazy value factory returned null");
+                    }
+                    value = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the value or null if it was not created yet; never creates the value.
+     */
+    public T getIfCreated() {
+        return value;
+    }
+}
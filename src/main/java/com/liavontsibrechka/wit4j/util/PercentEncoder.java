@@ -0,0 +1,82 @@
+/*
+ * Copyright 2016 Liavontsi Brechka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.liavontsibrechka.wit4j.util;
+
+/**
+ * Encoder of query string parameters that produces the same result as {@code URLEncoder.encode(value, "UTF-8")}
+ * (<em>application/x-www-form-urlencoded</em> form) but appends it to a caller's builder, so a reused builder
+ * makes encoding free of allocations.
+ *
+ * @author Liavontsi Brechka
+ * @since 1.0-SNAPSHOT
+ */
+public final class PercentEncoder {
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+    private PercentEncoder() {
+    }
+
+    /**
+     * Appends UTF-8 form of {@code value} with every byte except letters, digits, {@code .-*_} percent-encoded
+     * and spaces replaced by {@code +}. An unpaired surrogate is encoded as {@code ?}, like {@code URLEncoder}
+     * does.
+     *
+     * @param value  text to encode.
+     * @param target builder the encoded text is appended to.
+     * @return {@code target}.
+     */
+    public static StringBuilder encode(CharSequence value, StringBuilder target) {
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            char next = value.charAt(i);
+            if (isUnreserved(next)) {
+                target.append(next);
+            } else if (next == ' ') {
+                target.append('+');
+            } else if (next < 0x80) {
+                appendByte(target, next);
+            } else if (next < 0x800) {
+                appendByte(target, 0xc0 | (next >> 6));
+                appendByte(target, 0x80 | (next & 0x3f));
+            } else if (Character.isHighSurrogate(next) && i + 1 < length
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(next, value.charAt(++i));
+                appendByte(target, 0xf0 | (codePoint >> 18));
+                appendByte(target, 0x80 | ((codePoint >> 12) & 0x3f));
+                appendByte(target, 0x80 | ((codePoint >> 6) & 0x3f));
+                appendByte(target, 0x80 | (codePoint & 0x3f));
+            } else if (Character.isSurrogate(next)) {
+                appendByte(target, '?');
+            } else {
+                appendByte(target, 0xe0 | (next >> 12));
+                appendByte(target, 0x80 | ((next >> 6) & 0x3f));
+                appendByte(target, 0x80 | (next & 0x3f));
+            }
+        }
+        return target;
+    }
+
+    private static boolean isUnreserved(char next) {
+        return (next >= 'a' && next <= 'z') || (next >= 'A' && next <= 'Z') || (next >= '0' && next <= '9')
+                || next == '.' || next == '-' || next == '*' || next == '_';
+    }
+
+    private static void appendByte(StringBuilder target, int value) {
+        target.append('%').append(HEX[(value >> 4) & 0xf]).append(HEX[value & 0xf]);
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2016 Liavontsi Brechka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.liavontsibrechka.wit4j.util;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Factory methods for executors used by the library.
+ *
+ * @author Liavontsi Brechka
+ * @since 1.0-SNAPSHOT
+ */
+public final class ThreadPools {
+    private ThreadPools() {
+    }
+
+    /**
+     * Creates an executor that starts a new virtual thread for each task when the library runs on Java 21 or
+     * newer. On older runtimes falls back to a fixed pool of {@code fallbackThreads} daemon threads.
+     *
+     * @param namePrefix      prefix of thread names of the fallback pool.
+     * @param fallbackThreads number of platform threads used when virtual threads are not available.
+     * @return executor service.
+     */
+    public static ExecutorService newVirtualThreadPerTaskExecutor(String namePrefix, int fallbackThreads) {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newFixedThreadPool(fallbackThreads, daemonThreadFactory(namePrefix));
+        }
+    }
+
+    /**
+     * Creates a factory of virtual threads when the library runs on Java 21 or newer and of daemon platform
+     * threads otherwise.
+     *
+     * @param namePrefix prefix of thread names; threads are numbered starting with 1.
+     * @return thread factory.
+     */
+    public static ThreadFactory virtualThreadFactory(String namePrefix) {
+        try {
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, namePrefix + "-", 1L);
+            return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            return daemonThreadFactory(namePrefix);
+        }
+    }
+
+    /**
+     * @param namePrefix prefix of thread names; threads are numbered starting with 1.
+     * @return factory of daemon threads.
+     */
+    public static ThreadFactory daemonThreadFactory(String namePrefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, namePrefix + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Returns the daemon scheduler shared by housekeeping tasks of all transports and context stores (idle
+     * connection eviction, session expiration, rate limit waits), so the number of such threads does not grow with
+     * the number of {@code Wit} instances. Tasks must be short and must not block. The scheduler is created on first
+     * use and is never shut down; owners cancel their tasks instead.
+     *
+     * @return shared scheduler.
+     */
+    public static ScheduledExecutorService sharedScheduler() {
+        return SchedulerHolder.SCHEDULER;
+    }
+
+    private static final class SchedulerHolder {
+        private static final ScheduledExecutorService SCHEDULER = createScheduler();
+
+        private static ScheduledExecutorService createScheduler() {
+            ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1,
+                    daemonThreadFactory("wit4j-scheduler"));
+            scheduler.setRemoveOnCancelPolicy(true);
+            return scheduler;
+        }
+    }
+}
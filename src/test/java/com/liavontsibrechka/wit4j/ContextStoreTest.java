@@ -0,0 +1,143 @@
+/*
+ * Copyright 2016 Liavontsi Brechka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.liavontsibrechka.wit4j;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests session isolation, eviction and spilling of {@code ContextStore}.
+ *
+ * @author Liavontsi Brechka
+ * @since 1.0-SNAPSHOT
+ */
+public class ContextStoreTest {
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void keepsSeparateContextPerSession() {
+        try (ContextStore store = new ContextStore()) {
+            store.getContext("first").getContext().put("location", "Minsk");
+
+            assertSame(store.getContext("first"), store.getContext("first"));
+            assertEquals("Minsk", store.getContext("first").getContext().get("location").asText());
+            assertFalse(store.getContext("second").getContext().has("location"));
+        }
+    }
+
+    @Test
+    public void boundsNumberOfSessions() {
+        try (ContextStore store = new ContextStore(32, 0)) {
+            for (int i = 0; i < 1000; i++) {
+                store.getContext("session-" + i);
+            }
+
+            assertTrue(store.size() <= 32);
+            assertNull(store.findContext("session-0"));
+        }
+    }
+
+    @Test
+    public void expiresIdleSessions() throws InterruptedException {
+        try (ContextStore store = new ContextStore(100, 50)) {
+            store.getContext("idle").getContext().put("key", "value");
+            Thread.sleep(60);
+            store.evictExpired();
+
+            assertEquals(0, store.size());
+            assertFalse(store.getContext("idle").getContext().has("key"));
+        }
+    }
+
+    @Test
+    public void spillsEvictedSessionsAndRestoresThemAfterRestart() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("contexts.spill");
+        try (ContextStore store = new ContextStore(16, 0, MappedContextSpill.open(file, 1024 * 1024))) {
+            for (int i = 0; i < 100; i++) {
+                store.getContext("session-" + i).put("index", String.valueOf(i));
+            }
+            store.remove("session-1");
+
+            assertTrue(store.size() <= 16);
+            assertEquals("0", store.getContext("session-0").get("index").asText());
+            assertNull(store.findContext("session-1"));
+        }
+
+        try (ContextStore store = new ContextStore(16, 0, MappedContextSpill.open(file, 1024 * 1024))) {
+            assertEquals(99, store.getSpill().size());
+            assertEquals("42", store.findContext("session-42").get("index").asText());
+            assertEquals("99", store.getContext("session-99").get("index").asText());
+            assertNull(store.findContext("session-1"));
+        }
+    }
+
+    @Test
+    public void keepsSessionInTheMiddleOfATurn() throws Exception {
+        Path file = folder.getRoot().toPath().resolve("pinned.spill");
+        try (ContextStore store = new ContextStore(16, 50, MappedContextSpill.open(file, 1024 * 1024))) {
+            Context turn = store.acquire("active");
+            turn.put("step", "1");
+            for (int i = 0; i < 100; i++) {
+                store.getContext("session-" + i);
+            }
+            Thread.sleep(60);
+            store.evictExpired();
+            turn.put("step", "2");
+
+            assertSame(turn, store.getContext("active"));
+            assertFalse(store.getSpill().contains("active"));
+
+            store.release("active", turn);
+            for (int i = 100; i < 200; i++) {
+                store.getContext("session-" + i);
+            }
+            Thread.sleep(60);
+            store.evictExpired();
+
+            assertTrue(store.getSpill().contains("active"));
+            assertEquals("2", store.getContext("active").get("step").asText());
+        }
+    }
+
+    @Test
+    public void compactsReplacedContexts() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("compacted.spill");
+        try (MappedContextSpill spill = MappedContextSpill.open(file, 4096)) {
+            Context context = new Context();
+            for (int i = 0; i < 1000; i++) {
+                context.put("value", "value-" + i);
+                assertTrue(spill.write("session-" + i % 3, context));
+            }
+
+            assertEquals(3, spill.size());
+            assertTrue(spill.getUsedBytes() < 4096);
+            assertEquals("value-999", spill.read("session-0").get("value").asText());
+        }
+    }
+}
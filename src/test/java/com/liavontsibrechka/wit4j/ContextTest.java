@@ -0,0 +1,67 @@
+/*
+ * Copyright 2016 Liavontsi Brechka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.liavontsibrechka.wit4j;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.liavontsibrechka.wit4j.util.ByteArrayBuffer;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests caching of the serialized form of {@code Context}.
+ *
+ * @author Liavontsi Brechka
+ * @since 1.0-SNAPSHOT
+ */
+public class ContextTest {
+    private final ObjectMapper jsonMapper = new ObjectMapper();
+
+    @Test
+    public void reusesSerializedFormUntilModified() throws IOException {
+        Context context = new Context();
+        context.put("location", "Minsk");
+
+        ByteArrayBuffer first = context.getSerializedContext(jsonMapper);
+        assertEquals("{\"location\":\"Minsk\"}", first.toString("UTF-8"));
+        assertFalse(context.isModified());
+
+        context.get("location");
+        assertFalse(context.isModified());
+
+        context.put("forecast", "sunny");
+        assertTrue(context.isModified());
+        assertEquals("{\"location\":\"Minsk\",\"forecast\":\"sunny\"}",
+                context.getSerializedContext(jsonMapper).toString("UTF-8"));
+    }
+
+    @Test
+    public void treatsDirectAccessAsModification() throws IOException {
+        Context context = new Context();
+        context.getSerializedContext(jsonMapper);
+
+        context.getContext().put("forecast", "sunny");
+
+        assertTrue(context.isModified());
+        assertEquals("{\"forecast\":\"sunny\"}", context.getSerializedContext(jsonMapper).toString("UTF-8"));
+    }
+}
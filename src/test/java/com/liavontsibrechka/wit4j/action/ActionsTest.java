@@ -0,0 +1,103 @@
+/*
+ * Copyright 2016 Liavontsi Brechka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.liavontsibrechka.wit4j.action;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests registration and atomic replacement of actions in {@code Actions}.
+ *
+ * @author Liavontsi Brechka
+ * @since 1.0-SNAPSHOT
+ */
+public class ActionsTest {
+    private static final IAction SAY = (sessionId, context, httpResponse) -> {
+    };
+    private static final IAction MERGE = (sessionId, context, httpResponse) -> {
+    };
+
+    @Test
+    public void registersAndReplacesActions() {
+        Map<String, IAction> initial = new HashMap<>();
+        initial.put("say", SAY);
+        Actions actions = new Actions(initial);
+        initial.put("merge", MERGE);
+
+        assertSame(SAY, actions.getAction("say"));
+        assertEquals(Collections.singleton("say"), actions.getActionNames());
+
+        assertNull(actions.register("merge", MERGE));
+        assertSame(MERGE, actions.getAction("merge"));
+        assertSame(MERGE, actions.unregister("merge"));
+
+        Map<String, IAction> previous = actions.replaceAll(Collections.singletonMap("merge", MERGE));
+        assertEquals(Collections.singleton("say"), previous.keySet());
+        assertEquals(Collections.singleton("merge"), actions.getActionNames());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsUnknownAction() {
+        new Actions().getAction("fetchForecast");
+    }
+
+    @Test
+    public void readersAlwaysSeeWholeActionSet() throws Exception {
+        Map<String, IAction> first = new HashMap<>();
+        first.put("say", SAY);
+        first.put("merge", SAY);
+        Map<String, IAction> second = new HashMap<>();
+        second.put("say", MERGE);
+        second.put("merge", MERGE);
+        Actions actions = new Actions(first);
+
+        AtomicBoolean running = new AtomicBoolean(true);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<Boolean> reader = executor.submit(() -> {
+                while (running.get()) {
+                    Map<String, IAction> snapshot = actions.getActions();
+                    if (snapshot.get("say") != snapshot.get("merge")) {
+                        return false;
+                    }
+                }
+                return true;
+            });
+            for (int i = 0; i < 10_000; i++) {
+                actions.replaceAll(i % 2 == 0 ? second : first);
+            }
+            running.set(false);
+            assertTrue(reader.get(10, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
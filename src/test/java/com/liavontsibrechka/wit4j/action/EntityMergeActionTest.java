@@ -0,0 +1,84 @@
+/*
+ * Copyright 2016 Liavontsi Brechka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.liavontsibrechka.wit4j.action;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.liavontsibrechka.wit4j.Context;
+import com.liavontsibrechka.wit4j.communication.ConverseResponse;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Tests value strategies and context updates of {@code EntityMergeAction}.
+ *
+ * @author Liavontsi Brechka
+ * @since 1.0-SNAPSHOT
+ */
+public class EntityMergeActionTest {
+    private static final String RESPONSE = "{\"type\":\"merge\",\"entities\":{"
+            + "\"location\":[{\"value\":\"Minsk\",\"confidence\":0.6},{\"value\":\"Paris\",\"confidence\":0.9}],"
+            + "\"datetime\":[{\"type\":\"interval\",\"value\":{\"value\":\"2016-07-01\"},\"confidence\":0.8}],"
+            + "\"intent\":[]}}";
+
+    private final ObjectMapper jsonMapper = new ObjectMapper();
+    private final EntityMergeAction action = EntityMergeAction.builder()
+            .entities("location", "datetime")
+            .entity("location", EntityMergeAction.Strategy.HIGHEST_CONFIDENCE, "likelyLocation")
+            .entity("intent", EntityMergeAction.Strategy.ALL, "intents")
+            .build();
+
+    @Test
+    public void mergesTreeAndStreamedResponsesAlike() throws IOException {
+        JsonNode tree = jsonMapper.readTree(RESPONSE);
+        Context fromTree = new Context();
+        action.execute("session-1", fromTree, tree);
+        Context fromStream = new Context();
+        action.execute("session-1", fromStream, ConverseResponse.parse(jsonMapper,
+                RESPONSE.getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals("{\"location\":\"Minsk\",\"datetime\":\"2016-07-01\",\"likelyLocation\":\"Paris\"}",
+                fromTree.getSerializedContext(jsonMapper).toString("UTF-8"));
+        assertEquals(fromTree.getSerializedContext(jsonMapper).toString("UTF-8"),
+                fromStream.getSerializedContext(jsonMapper).toString("UTF-8"));
+    }
+
+    @Test
+    public void keepsOrClearsEntitiesMissingFromResponse() throws IOException {
+        JsonNode empty = jsonMapper.readTree("{\"entities\":{}}");
+        EntityMergeAction location = EntityMergeAction.builder().entity("location").build();
+        Context context = new Context();
+        context.put("location", "Minsk");
+        context.getSerializedContext(jsonMapper);
+
+        location.execute("session-1", context, empty);
+        location.execute("session-1", context, jsonMapper.readTree("{\"entities\":{\"location\":[{\"value\":"
+                + "\"Minsk\"}]}}"));
+        assertEquals("Minsk", context.get("location").asText());
+        assertFalse(context.isModified());
+
+        EntityMergeAction.builder().entity("location").clearMissing().build().execute("session-1", context, empty);
+        assertNull(context.get("location"));
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2016 Liavontsi Brechka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.liavontsibrechka.wit4j.capture;
+
+import com.liavontsibrechka.wit4j.Wit;
+import com.liavontsibrechka.wit4j.action.IAction;
+import com.liavontsibrechka.wit4j.communication.Converse;
+import com.liavontsibrechka.wit4j.simulator.ConversationScript;
+import com.liavontsibrechka.wit4j.simulator.SimulatedTransport;
+import com.liavontsibrechka.wit4j.simulator.WitSimulator;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests capture of converse steps by {@code TrafficRecorder} and their replay by {@code TrafficReplayer}.
+ *
+ * @author Liavontsi Brechka
+ * @since 1.0-SNAPSHOT
+ */
+public class TrafficCaptureTest {
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final WitSimulator simulator = WitSimulator.builder()
+            .script("weather", ConversationScript.builder().merge("location", "Minsk").msg("Sunny in Minsk").build())
+            .build();
+
+    @Test
+    public void capturesStepsOfSampledSessionsAndReplaysThem() throws Exception {
+        Path log = folder.getRoot().toPath().resolve("traffic.ndjson");
+        try (TrafficRecorder recorder = TrafficRecorder.builder(log).build();
+             Wit wit = wit(recorder)) {
+            Converse converse = wit.createConverse();
+            converse.converse("session-1", "weather");
+            converse.converse("session-2", "hi");
+        }
+
+        List<CapturedExchange> exchanges = TrafficReplayer.read(log);
+        assertEquals(5, exchanges.size());
+        CapturedExchange first = exchanges.get(0);
+        assertEquals("session-1", first.getSessionId());
+        assertEquals("POST", first.getMethod());
+        assertTrue(first.getUri().startsWith("/converse?"));
+        assertTrue(first.getUri().contains("q=weather"));
+        assertEquals("{}", first.getRequestBody());
+        assertEquals(200, first.getStatusCode());
+        assertTrue(first.getResponseBody().contains("\"merge\""));
+        assertNull(first.getError());
+        // the context merged in the first step is sent with the next one
+        assertTrue(exchanges.get(1).getRequestBody().contains("Minsk"));
+
+        SimulatedTransport target = new SimulatedTransport(WitSimulator.builder()
+                .script("weather", ConversationScript.builder().merge("location", "Minsk").msg("Sunny").build())
+                .build());
+        ReplayReport report = TrafficReplayer.builder(exchanges, target).baseUrl("http://localhost")
+                .speed(100)
+                .copies(3)
+                .build()
+                .run();
+
+        assertEquals(15, report.getRequests());
+        assertEquals(0, report.getFailedRequests());
+        assertEquals(0, report.getStatusMismatches());
+        assertEquals(0, target.getSimulator().getActiveTurns());
+    }
+
+    @Test
+    public void samplesWholeSessions() throws Exception {
+        Path log = folder.getRoot().toPath().resolve("sampled.ndjson");
+        try (TrafficRecorder recorder = TrafficRecorder.builder(log).sampleRate(0.5).build()) {
+            int sampled = 0;
+            for (int i = 0; i < 1000; i++) {
+                boolean first = recorder.isSampled("session-" + i);
+                assertEquals(first, recorder.isSampled("session-" + i));
+                sampled += first ? 1 : 0;
+            }
+            assertTrue("sampled " + sampled, sampled > 400 && sampled < 600);
+
+            try (TrafficRecorder none = TrafficRecorder.builder(log).sampleRate(0).build()) {
+                assertFalse(none.isSampled("session-1"));
+            }
+        }
+        assertEquals(Collections.emptyList(), TrafficReplayer.read(log));
+    }
+
+    private Wit wit(TrafficRecorder recorder) {
+        Map<String, IAction> actions = new HashMap<>();
+        actions.put("merge", (sessionId, context, response) -> context.put("location",
+                response.get("entities").get("location").get(0).get("value")));
+        actions.put("say", (sessionId, context, response) -> {
+        });
+        return Wit.builder("token").transport(new SimulatedTransport(simulator)).recorder(recorder)
+                .actions(actions).build();
+    }
+}
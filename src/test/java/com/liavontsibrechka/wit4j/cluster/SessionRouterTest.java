@@ -0,0 +1,142 @@
+/*
+ * Copyright 2016 Liavontsi Brechka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.liavontsibrechka.wit4j.cluster;
+
+import com.liavontsibrechka.wit4j.ContextStore;
+import com.liavontsibrechka.wit4j.Wit;
+import com.liavontsibrechka.wit4j.action.IAction;
+import com.liavontsibrechka.wit4j.simulator.ConversationScript;
+import com.liavontsibrechka.wit4j.simulator.SimulatedTransport;
+import com.liavontsibrechka.wit4j.simulator.WitSimulator;
+import org.junit.After;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests consistent hashing of sessions and their forwarding and handover between nodes of {@code SessionRouter}.
+ *
+ * @author Liavontsi Brechka
+ * @since 1.0-SNAPSHOT
+ */
+public class SessionRouterTest {
+    private final List<Wit> wits = new ArrayList<>();
+    private final List<SessionRouter> routers = new ArrayList<>();
+
+    @After
+    public void tearDown() {
+        routers.forEach(SessionRouter::close);
+        wits.forEach(Wit::close);
+    }
+
+    @Test
+    public void movesOnlySessionsOfJoiningNode() {
+        HashRing<String> ring = new HashRing<>();
+        Arrays.asList("a", "b", "c").forEach(ring::add);
+        Map<String, String> owners = new HashMap<>();
+        Map<String, Integer> counts = new HashMap<>();
+        for (int i = 0; i < 10_000; i++) {
+            String owner = ring.nodeFor("session-" + i);
+            owners.put("session-" + i, owner);
+            counts.merge(owner, 1, Integer::sum);
+        }
+        for (int count : counts.values()) {
+            assertTrue("unbalanced: " + counts, count > 2500 && count < 4200);
+        }
+
+        ring.add("d");
+        int moved = 0;
+        for (Map.Entry<String, String> entry : owners.entrySet()) {
+            String owner = ring.nodeFor(entry.getKey());
+            if (!owner.equals(entry.getValue())) {
+                assertEquals("d", owner);
+                moved++;
+            }
+        }
+        assertTrue("moved " + moved, moved > 1500 && moved < 3500);
+    }
+
+    @Test
+    public void keepsContextsOnOwnerNodesAcrossMembershipChanges() throws Exception {
+        SessionRouter a = router("a");
+        SessionRouter b = router("b");
+        SessionRouter c = router("c");
+        connect(a, b);
+        connect(a, c);
+        connect(b, c);
+
+        for (int i = 0; i < 30; i++) {
+            assertEquals(Arrays.asList("Sunny in Minsk"), a.converse("session-" + i, "weather").getMessages());
+        }
+        assertTrue(a.getForwarded() > 0);
+        for (SessionRouter router : routers) {
+            for (int i = 0; i < 30; i++) {
+                boolean owner = router.getNodeId().equals(router.ownerOf("session-" + i));
+                assertEquals(owner, store(router).findContext("session-" + i) != null);
+            }
+        }
+
+        for (SessionRouter router : routers) {
+            router.leave("c");
+        }
+        assertEquals(0, store(c).size());
+        for (int i = 0; i < 30; i++) {
+            String sessionId = "session-" + i;
+            SessionRouter owner = a.ownerOf(sessionId).equals("a") ? a : b;
+            assertEquals("Minsk", store(owner).findContext(sessionId).get("location").asText());
+            assertNull(store(owner == a ? b : a).findContext(sessionId));
+        }
+    }
+
+    private SessionRouter router(String nodeId) throws Exception {
+        WitSimulator simulator = WitSimulator.builder()
+                .script("weather", ConversationScript.builder().merge("location", "Minsk").msg("Sunny in Minsk")
+                        .build())
+                .build();
+        Map<String, IAction> actions = new HashMap<>();
+        actions.put("merge", (sessionId, context, response) -> context.put("location",
+                response.get("entities").get("location").get(0).get("value")));
+        actions.put("say", (sessionId, context, response) -> {
+        });
+        Wit wit = Wit.builder("token").transport(new SimulatedTransport(simulator)).actions(actions).build();
+        wits.add(wit);
+        SessionRouter router = SessionRouter.builder(nodeId, wit)
+                .listen(new InetSocketAddress("127.0.0.1", 0))
+                .build();
+        routers.add(router);
+        return router;
+    }
+
+    private static void connect(SessionRouter first, SessionRouter second) throws Exception {
+        first.join(second.getNodeId(), new SocketPeer(second.getAddress()));
+        second.join(first.getNodeId(), new SocketPeer(first.getAddress()));
+    }
+
+    private ContextStore store(SessionRouter router) {
+        return wits.get(routers.indexOf(router)).getContextStore();
+    }
+}
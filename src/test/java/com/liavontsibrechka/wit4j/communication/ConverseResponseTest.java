@@ -0,0 +1,69 @@
+/*
+ * Copyright 2016 Liavontsi Brechka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.liavontsibrechka.wit4j.communication;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests streaming parsing of converse responses by {@code ConverseResponse}.
+ *
+ * @author Liavontsi Brechka
+ * @since 1.0-SNAPSHOT
+ */
+public class ConverseResponseTest {
+    private static final String MERGE_RESPONSE = "{\"type\":\"merge\",\"confidence\":0.98,"
+            + "\"quickreplies\":[\"yes\",\"no\"],"
+            + "\"entities\":{"
+            + "\"location\":[{\"confidence\":0.91,\"type\":\"value\",\"value\":\"Minsk\",\"suggested\":true}],"
+            + "\"datetime\":[{\"confidence\":0.99,\"type\":\"interval\",\"value\":{\"value\":\"2016-07-01\"},"
+            + "\"values\":[{\"value\":\"2016-07-01\"}]}]}}";
+
+    private final ObjectMapper jsonMapper = new ObjectMapper();
+
+    @Test
+    public void readsDispatchFieldsAndEntities() throws IOException {
+        ConverseResponse response = ConverseResponse.parse(jsonMapper, MERGE_RESPONSE.getBytes(StandardCharsets.UTF_8));
+
+        assertEquals(ConverseResponseType.MERGE, response.getType());
+        assertNull(response.getAction());
+        assertEquals(0.98, response.getConfidence(), 1e-9);
+        assertEquals(2, response.getEntities().size());
+        assertEquals("Minsk", response.getEntity("location").get(0).getResolvedValue().asText());
+        assertEquals(0.91, response.getEntity("location").get(0).getConfidence(), 1e-9);
+        assertEquals("2016-07-01", response.getEntity("datetime").get(0).getResolvedValue().asText());
+        assertTrue(response.getEntity("intent").isEmpty());
+    }
+
+    @Test
+    public void buildsSameResponseFromTree() throws IOException {
+        ConverseResponse parsed = ConverseResponse.parse(jsonMapper, MERGE_RESPONSE.getBytes(StandardCharsets.UTF_8));
+        ConverseResponse fromTree = ConverseResponse.fromTree(jsonMapper.readTree(MERGE_RESPONSE));
+
+        assertEquals(jsonMapper.readTree(MERGE_RESPONSE), parsed.asTree());
+        assertEquals(parsed.getType(), fromTree.getType());
+        assertEquals(parsed.getEntities().keySet(), fromTree.getEntities().keySet());
+    }
+}
@@ -0,0 +1,304 @@
+/*
+ * Copyright 2016 Liavontsi Brechka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.liavontsibrechka.wit4j.communication;
+
+import com.liavontsibrechka.wit4j.Context;
+import com.liavontsibrechka.wit4j.Wit;
+import com.liavontsibrechka.wit4j.action.ActionTimeoutException;
+import com.liavontsibrechka.wit4j.action.Actions;
+import com.liavontsibrechka.wit4j.action.AsyncAction;
+import com.liavontsibrechka.wit4j.action.AsyncActions;
+import com.liavontsibrechka.wit4j.action.IAction;
+import com.liavontsibrechka.wit4j.communication.transport.HttpRequest;
+import com.liavontsibrechka.wit4j.communication.transport.HttpResponse;
+import com.liavontsibrechka.wit4j.communication.transport.HttpTransport;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests the turn loop of {@code Converse} with asynchronous actions over a scripted transport.
+ *
+ * @author Liavontsi Brechka
+ * @since 1.0-SNAPSHOT
+ */
+public class ConverseTest {
+    private static final String[] TURN = {
+            "{\"type\":\"merge\",\"entities\":{\"location\":[{\"value\":\"Minsk\"}]}}",
+            "{\"type\":\"action\",\"action\":\"fetchForecast\"}",
+            "{\"type\":\"msg\",\"msg\":\"Sunny in Minsk\"}",
+            "{\"type\":\"stop\"}"};
+
+    private final ExecutorService actionExecutor = Executors.newFixedThreadPool(2);
+    private final Map<String, AtomicInteger> steps = new ConcurrentHashMap<>();
+    private final Map<String, String> authorizations = new ConcurrentHashMap<>();
+    private final Map<String, String> firstBodies = new ConcurrentHashMap<>();
+    private final Map<String, Integer> stallTimeouts = new ConcurrentHashMap<>();
+    private final Map<String, IAction> actionMap = new HashMap<>();
+    private HttpTransport transport;
+    private Wit wit;
+    private Converse converse;
+
+    @Before
+    public void setUp() {
+        transport = new HttpTransport() {
+            @Override
+            public HttpResponse execute(HttpRequest request) throws IOException {
+                String query = request.getUri().getRawQuery();
+                String sessionId = query.substring(query.indexOf("session_id=") + 11).split("&")[0];
+                authorizations.put(sessionId, request.getHeaders().get("Authorization"));
+                firstBodies.putIfAbsent(sessionId,
+                        new String(request.getBody(), 0, request.getBodyLength(), StandardCharsets.UTF_8));
+                int step = steps.computeIfAbsent(sessionId, id -> new AtomicInteger()).getAndIncrement();
+                if (sessionId.startsWith("looping")) {
+                    // a bot that never stops talking
+                    return new HttpResponse(200, Collections.<String, String>emptyMap(),
+                            "{\"type\":\"msg\",\"msg\":\"And another thing\"}".getBytes(StandardCharsets.UTF_8));
+                }
+                if (sessionId.startsWith("stalling") && step > 0) {
+                    // a bot that does not answer the follow-up, the transport gives up after the request timeout
+                    stallTimeouts.put(sessionId, request.getTimeoutMillis());
+                    try {
+                        Thread.sleep(request.getTimeoutMillis());
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    throw new SocketTimeoutException("Read timed out");
+                }
+                return new HttpResponse(200, Collections.<String, String>emptyMap(),
+                        TURN[Math.min(step, TURN.length - 1)].getBytes(StandardCharsets.UTF_8));
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+
+        actionMap.put("merge", AsyncActions.onExecutor((sessionId, context, httpResponse) ->
+                context.put("location", httpResponse.get("entities").get("location").get(0).get("value")),
+                actionExecutor));
+        actionMap.put("say", (sessionId, context, httpResponse) -> {
+        });
+        wit = Wit.builder("token-1").transport(transport).build();
+        converse = wit.createConverse();
+    }
+
+    @After
+    public void tearDown() {
+        wit.close();
+        actionExecutor.shutdownNow();
+    }
+
+    @Test
+    public void waitsForAsyncActionsAndRunsBackgroundActionsOffCriticalPath() throws Exception {
+        CountDownLatch turnEnded = new CountDownLatch(1);
+        List<Throwable> backgroundErrors = new CopyOnWriteArrayList<>();
+        actionMap.put("fetchForecast", AsyncActions.background((sessionId, context, httpResponse) -> {
+            try {
+                // blocks until the turn ended, so the turn must not wait for it
+                assertTrue(turnEnded.await(5, TimeUnit.SECONDS));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, actionExecutor, backgroundErrors::add));
+        converse.setActions(new Actions(actionMap));
+
+        ConverseResult result = converse.converseAsync("session-1", "weather?").get(5, TimeUnit.SECONDS);
+        turnEnded.countDown();
+
+        assertEquals(ConverseResult.Status.STOPPED, result.getStatus());
+        assertEquals(4, result.getSteps());
+        assertEquals(Collections.singletonList("Sunny in Minsk"), result.getMessages());
+        assertEquals("Minsk", wit.getContextStore().getContext("session-1").get("location").asText());
+        assertEquals(ConverseResult.Status.STOPPED, converse.converse("session-2", "weather?").getStatus());
+        assertTrue(backgroundErrors.isEmpty());
+    }
+
+    @Test
+    public void givesBackgroundActionsContextSnapshot() throws Exception {
+        CountDownLatch reading = new CountDownLatch(1);
+        CountDownLatch written = new CountDownLatch(1);
+        List<Throwable> backgroundErrors = new CopyOnWriteArrayList<>();
+        List<Integer> fieldCounts = new CopyOnWriteArrayList<>();
+        actionMap.put("fetchForecast", AsyncActions.background((sessionId, context, httpResponse) -> {
+            reading.countDown();
+            // iterates the context while the session goes on changing it
+            while (written.getCount() > 0) {
+                int fields = 0;
+                for (Iterator<String> names = context.getContext().fieldNames(); names.hasNext(); names.next()) {
+                    fields++;
+                }
+                fieldCounts.add(fields);
+            }
+        }, actionExecutor, backgroundErrors::add));
+        converse.setActions(new Actions(actionMap));
+
+        assertEquals(ConverseResult.Status.STOPPED, converse.converse("session-6", "weather?").getStatus());
+        assertTrue(reading.await(5, TimeUnit.SECONDS));
+        Context live = wit.getContextStore().getContext("session-6");
+        for (int i = 0; i < 10_000; i++) {
+            live.put("field-" + i, "value");
+        }
+        written.countDown();
+        actionExecutor.shutdown();
+        assertTrue(actionExecutor.awaitTermination(5, TimeUnit.SECONDS));
+
+        assertTrue(backgroundErrors.isEmpty());
+        assertTrue(fieldCounts.stream().allMatch(fields -> fields == 1));
+    }
+
+    @Test
+    public void keepsContextOfDefaultSessionAcrossTurns() throws Exception {
+        actionMap.put("fetchForecast", (sessionId, context, httpResponse) -> {
+        });
+        converse.setActions(new Actions(actionMap));
+
+        converse.handleHttpResponse(converse.sendHttpRequest("weather?"));
+        assertEquals("{}", firstBodies.values().iterator().next());
+
+        converse.handleHttpResponseAsync(converse.sendHttpRequest("and tomorrow?")).get(5, TimeUnit.SECONDS);
+        converse.sendHttpRequest("and the day after?");
+
+        assertEquals(3, firstBodies.size());
+        for (String body : firstBodies.values()) {
+            assertTrue(body, body.equals("{}") || body.equals("{\"location\":\"Minsk\"}"));
+        }
+        assertEquals(2, firstBodies.values().stream().filter(body -> body.contains("Minsk")).count());
+    }
+
+    @Test
+    public void endsTurnAfterMaxSteps() throws Exception {
+        converse.setActions(new Actions(actionMap));
+        converse.setMaxSteps(5);
+
+        ConverseResult result = converse.converse("looping-1", "hi");
+        assertEquals(ConverseResult.Status.STEP_LIMIT_EXCEEDED, result.getStatus());
+        assertEquals(5, result.getSteps());
+        assertEquals(5, steps.get("looping-1").get());
+
+        result = converse.converseAsync("looping-2", "hi").get(5, TimeUnit.SECONDS);
+        assertEquals(ConverseResult.Status.STEP_LIMIT_EXCEEDED, result.getStatus());
+        assertEquals(5, result.getSteps());
+        assertEquals(5, steps.get("looping-2").get());
+    }
+
+    @Test
+    public void endsTurnWhenBotStallsPastStepTimeout() throws Exception {
+        actionMap.put("fetchForecast", (sessionId, context, httpResponse) -> {
+        });
+        converse.setActions(new Actions(actionMap));
+        converse.setStepTimeoutMillis(100);
+
+        assertEquals(ConverseResult.Status.TIMED_OUT, converse.converse("stalling-1", "weather?").getStatus());
+        assertEquals(100, stallTimeouts.get("stalling-1").intValue());
+        assertEquals(ConverseResult.Status.TIMED_OUT,
+                converse.converseAsync("stalling-2", "weather?").get(5, TimeUnit.SECONDS).getStatus());
+        assertEquals(100, stallTimeouts.get("stalling-2").intValue());
+    }
+
+    @Test
+    public void failsTurnWhenActionTimesOut() throws Exception {
+        List<Context> lateContexts = new CopyOnWriteArrayList<>();
+        List<CompletableFuture<Void>> lateActions = new CopyOnWriteArrayList<>();
+        actionMap.put("fetchForecast", AsyncActions.withTimeout(
+                (AsyncAction) (sessionId, context, response) -> {
+                    CompletableFuture<Void> late = new CompletableFuture<>();
+                    lateContexts.add(context);
+                    lateActions.add(late);
+                    return late;
+                },
+                50, TimeUnit.MILLISECONDS));
+        converse.setActions(new Actions(actionMap));
+
+        try {
+            converse.converseAsync("session-3", "weather?").get(5, TimeUnit.SECONDS);
+            fail("Turn must fail when an action times out");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof ActionTimeoutException);
+        }
+        // the action finishes after its turn failed, its changes must not reach the session
+        lateContexts.get(0).put("forecast", "late");
+        lateActions.get(0).complete(null);
+        assertNull(wit.getContextStore().getContext("session-3").get("forecast"));
+
+        try {
+            converse.converse("session-4", "weather?");
+            fail("Turn must fail when an action times out");
+        } catch (ActionTimeoutException expected) {
+            // the blocking loop rethrows the failure of the action as is
+        }
+    }
+
+    @Test
+    public void failsTurnWhenTimedActionThrowsSynchronously() throws Exception {
+        actionMap.put("fetchForecast", AsyncActions.withTimeout((AsyncAction) (sessionId, context, response) -> {
+            throw new IllegalStateException("forecast service is down");
+        }, 5, TimeUnit.SECONDS));
+        converse.setActions(new Actions(actionMap));
+
+        try {
+            converse.converseAsync("session-5", "weather?").get(1, TimeUnit.SECONDS);
+            fail("Turn must fail when an action throws");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+    }
+
+    @Test
+    public void servesBotsOfSeveralApplicationsOverSharedTransport() throws Exception {
+        Map<String, IAction> otherActions = new HashMap<>(actionMap);
+        actionMap.put("fetchForecast", (sessionId, context, httpResponse) -> context.put("forecast", "sunny"));
+        otherActions.put("fetchForecast", (sessionId, context, httpResponse) -> context.put("forecast", "rainy"));
+        converse.setActions(new Actions(actionMap));
+
+        try (Wit other = Wit.builder("token-2").actions(otherActions).transport(transport).build()) {
+            Converse otherConverse = other.createConverse();
+            assertEquals(ConverseResult.Status.STOPPED, converse.converse("tenant-1", "weather?").getStatus());
+            assertEquals(ConverseResult.Status.STOPPED, otherConverse.converse("tenant-2", "weather?").getStatus());
+
+            assertEquals("Bearer token-1", authorizations.get("tenant-1"));
+            assertEquals("Bearer token-2", authorizations.get("tenant-2"));
+            assertEquals("sunny", wit.getContextStore().getContext("tenant-1").get("forecast").asText());
+            assertEquals("rainy", other.getContextStore().getContext("tenant-2").get("forecast").asText());
+            assertNull(other.getContextStore().findContext("tenant-1"));
+        }
+    }
+}
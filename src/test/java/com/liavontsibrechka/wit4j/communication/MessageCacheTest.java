@@ -0,0 +1,96 @@
+/*
+ * Copyright 2016 Liavontsi Brechka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.liavontsibrechka.wit4j.communication;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Tests eviction and request coalescing of {@code MessageCache}.
+ *
+ * @author Liavontsi Brechka
+ * @since 1.0-SNAPSHOT
+ */
+public class MessageCacheTest {
+    private static final String APP = "https://api.wit.ai Bearer token-1";
+
+    @Test
+    public void coalescesConcurrentMissesOfSameKey() {
+        MessageCache cache = new MessageCache(10, 0);
+        MessageCache.Key key = new MessageCache.Key(APP, MessageCache.normalize("  What's   the Weather? "), "20160526",
+                0);
+        CompletableFuture<JsonNode> request = new CompletableFuture<>();
+        AtomicInteger requests = new AtomicInteger();
+
+        CompletableFuture<JsonNode> first = cache.get(key, () -> {
+            requests.incrementAndGet();
+            return request;
+        });
+        CompletableFuture<JsonNode> second = cache.get(key, () -> {
+            requests.incrementAndGet();
+            return request;
+        });
+        request.complete(TextNode.valueOf("weather"));
+
+        assertSame(first, second);
+        assertEquals("weather", cache.get(new MessageCache.Key(APP, "what's the weather?", "20160526", 0),
+                CompletableFuture::new).join().asText());
+        assertEquals(1, requests.get());
+        assertEquals(1, cache.getMisses());
+        assertEquals(1, cache.getCoalesced());
+        assertEquals(1, cache.getHits());
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedResponse() {
+        MessageCache cache = new MessageCache(2, 0);
+        MessageCache.Key first = new MessageCache.Key(APP, "first", "20160526", 0);
+        MessageCache.Key second = new MessageCache.Key(APP, "second", "20160526", 0);
+        MessageCache.Key third = new MessageCache.Key(APP, "third", "20160526", 0);
+
+        cache.get(first, () -> CompletableFuture.completedFuture(TextNode.valueOf("1")));
+        cache.get(second, () -> CompletableFuture.completedFuture(TextNode.valueOf("2")));
+        cache.get(first, CompletableFuture::new);
+        cache.get(third, () -> CompletableFuture.completedFuture(TextNode.valueOf("3")));
+
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictions());
+        assertEquals("1", cache.get(first, CompletableFuture::new).join().asText());
+        assertEquals(3, cache.getMisses());
+    }
+
+    @Test
+    public void separatesResponsesOfDifferentApplications() {
+        MessageCache cache = new MessageCache(10, 0);
+        cache.get(new MessageCache.Key(APP, "hello", "20160526", 0),
+                () -> CompletableFuture.completedFuture(TextNode.valueOf("first")));
+
+        MessageCache.Key other = new MessageCache.Key("https://api.wit.ai Bearer token-2", "hello", "20160526", 0);
+        assertEquals("second", cache.get(other,
+                () -> CompletableFuture.completedFuture(TextNode.valueOf("second"))).join().asText());
+        assertEquals(2, cache.getMisses());
+        assertEquals(0, cache.getHits());
+    }
+}
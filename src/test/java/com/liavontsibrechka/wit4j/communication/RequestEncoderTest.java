@@ -0,0 +1,117 @@
+/*
+ * Copyright 2016 Liavontsi Brechka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.liavontsibrechka.wit4j.communication;
+
+import com.liavontsibrechka.wit4j.communication.transport.HttpRequest;
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests that {@code RequestEncoder} encodes converse requests like the plain {@code URLEncoder} path did, with
+ * a fraction of its allocations.
+ *
+ * @author Liavontsi Brechka
+ * @since 1.0-SNAPSHOT
+ */
+public class RequestEncoderTest {
+    private static final String BASE_URL = "https://api.wit.ai";
+    private static final String VERSION = "20160526";
+    private static final String AUTHORIZATION = "Bearer token";
+    private static final String SESSION_ID = "0b3bc2f4-8e2c-4dd4-9f41-5b0d5f6a2a17";
+    private static final String MESSAGE = "What's the weather in Minsk tomorrow?";
+
+    private final RequestEncoder encoder = new RequestEncoder(BASE_URL, VERSION, AUTHORIZATION);
+    private final byte[] body = "{\"location\":\"Minsk\"}".getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    public void encodesLikeUrlEncoder() throws IOException {
+        String[] messages = {MESSAGE, "a+b&c=d/e?f#g%h~i*j.k-l_m", "h\u00e9llo w\u00f6rld \u2211", "smile \uD83D\uDE00",
+                "lone \uD800 surrogate", ""};
+        for (String message : messages) {
+            assertEquals(legacyUri(SESSION_ID, message), encoder.uri(SESSION_ID, message));
+        }
+        assertEquals(legacyUri("session 1", null), encoder.uri("session 1", null));
+        assertEquals("application/json", encoder.getHeaders().get("Content-Type"));
+        assertEquals(AUTHORIZATION, encoder.getHeaders().get("Authorization"));
+
+        HttpRequest request = new HttpRequest("POST", encoder.uri(SESSION_ID, null), encoder.getHeaders(), body);
+        assertSame(encoder.getHeaders(), request.getHeaders());
+    }
+
+    @Test
+    public void allocatesFractionOfPlainEncoding() {
+        Assume.assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean)
+                ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+        int requests = 20_000;
+
+        long[] allocated = new long[2];
+        for (int round = 0; round < 3; round++) {
+            // the first rounds warm the code up, the last one is measured
+            long start = threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+            for (int i = 0; i < requests; i++) {
+                legacyRequest(SESSION_ID, MESSAGE);
+            }
+            long legacyEnd = threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+            for (int i = 0; i < requests; i++) {
+                new HttpRequest("POST", encoder.uri(SESSION_ID, MESSAGE), encoder.getHeaders(), body, body.length, 0);
+            }
+            long messageEnd = threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+
+            allocated[0] = (legacyEnd - start) / requests;
+            allocated[1] = (messageEnd - legacyEnd) / requests;
+        }
+
+        assertTrue("message request allocates " + allocated[1] + " of " + allocated[0] + " bytes",
+                allocated[1] * 2 < allocated[0]);
+    }
+
+    private static HttpRequest legacyRequest(String sessionId, String message) {
+        Map<String, String> headers = new LinkedHashMap<>();
+        headers.put("Content-Type", "application/json");
+        headers.put("Accept", "application/json");
+        headers.put("Authorization", AUTHORIZATION);
+        return new HttpRequest("POST", legacyUri(sessionId, message), headers, null);
+    }
+
+    private static URI legacyUri(String sessionId, String message) {
+        try {
+            String queryString = BASE_URL + "/converse?v=" + VERSION + "&session_id="
+                    + URLEncoder.encode(sessionId, "UTF-8");
+            if (message != null) {
+                queryString += ("&q=" + URLEncoder.encode(message, "UTF-8"));
+            }
+            return URI.create(queryString);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2016 Liavontsi Brechka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.liavontsibrechka.wit4j.communication;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.liavontsibrechka.wit4j.Wit;
+import com.liavontsibrechka.wit4j.action.Actions;
+import com.liavontsibrechka.wit4j.action.IAction;
+import com.liavontsibrechka.wit4j.simulator.SimulatedTransport;
+import com.liavontsibrechka.wit4j.simulator.SimulatorServer;
+import com.liavontsibrechka.wit4j.simulator.WitSimulator;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.Pipe;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/**
+ * Tests streamed upload of audio by {@code Speech} against the local simulator.
+ *
+ * @author Liavontsi Brechka
+ * @since 1.0-SNAPSHOT
+ */
+public class SpeechTest {
+    @Test
+    public void streamsAudioBufferOverHttp() throws Exception {
+        WitSimulator simulator = WitSimulator.builder().transcript("what's the weather").build();
+        ByteBuffer audio = ByteBuffer.allocateDirect(100_000);
+
+        try (SimulatorServer server = SimulatorServer.start(simulator);
+             Wit wit = wit(Wit.builder("token").baseUrl(server.getBaseUrl()))) {
+            Speech speech = wit.createSpeech();
+            JsonNode response = speech.recognize("session-1", audio);
+            speech.handleHttpResponse("session-1", response);
+
+            assertEquals("what's the weather", response.get("_text").asText());
+            assertEquals(100_000, simulator.getSpeechBytes());
+            assertEquals(0, audio.position());
+            assertEquals("what's the weather", wit.getContextStore().getContext("session-1").get("query").asText());
+        }
+    }
+
+    @Test
+    public void recognizesAudioThatIsStillBeingRecorded() throws Exception {
+        WitSimulator simulator = WitSimulator.builder().build();
+        Pipe recorder = Pipe.open();
+
+        try (Wit wit = wit(Wit.builder("token").transport(new SimulatedTransport(simulator)))) {
+            CompletableFuture<JsonNode> response = wit.createSpeech().recognizeAsync("session-1", recorder.source());
+            for (int i = 0; i < 10; i++) {
+                recorder.sink().write(ByteBuffer.allocate(1000));
+            }
+            assertFalse(response.isDone());
+            recorder.sink().close();
+
+            assertEquals("OK", response.get(5, TimeUnit.SECONDS).get("_text").asText());
+            assertEquals(10_000, simulator.getSpeechBytes());
+        } finally {
+            recorder.source().close();
+        }
+    }
+
+    private static Wit wit(Wit.Builder builder) {
+        Map<String, IAction> actions = Collections.singletonMap("merge",
+                (sessionId, context, response) -> context.put("query", response.get("_text").asText()));
+        return builder.actions(new Actions(actions)).build();
+    }
+}
@@ -0,0 +1,254 @@
+/*
+ * Copyright 2016 Liavontsi Brechka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.liavontsibrechka.wit4j.communication.transport;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.Pipe;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests {@code PooledHttpTransport} against a local stub server that echoes request bodies.
+ *
+ * @author Liavontsi Brechka
+ * @since 1.0-SNAPSHOT
+ */
+public class PooledHttpTransportTest {
+    private HttpServer server;
+    private URI uri;
+    private Set<InetSocketAddress> clientAddresses;
+    private AtomicInteger concurrentRequests;
+    private AtomicInteger maxConcurrentRequests;
+    private CountDownLatch firstChunkReceived;
+
+    @Before
+    public void startServer() throws IOException {
+        clientAddresses = ConcurrentHashMap.newKeySet();
+        concurrentRequests = new AtomicInteger();
+        maxConcurrentRequests = new AtomicInteger();
+        firstChunkReceived = new CountDownLatch(1);
+
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/echo", exchange -> {
+            int concurrent = concurrentRequests.incrementAndGet();
+            maxConcurrentRequests.accumulateAndGet(concurrent, Math::max);
+            clientAddresses.add(exchange.getRemoteAddress());
+            byte[] response;
+            try (InputStream body = exchange.getRequestBody()) {
+                response = readAll(body);
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                // the client may send its next request as soon as it has the response
+                concurrentRequests.decrementAndGet();
+            }
+            exchange.sendResponseHeaders(200, response.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(response);
+            }
+        });
+        server.createContext("/stream", exchange -> {
+            ByteArrayOutputStream response = new ByteArrayOutputStream();
+            try (InputStream body = exchange.getRequestBody()) {
+                for (int i = 0; i < 5; i++) {
+                    response.write(body.read());
+                }
+                firstChunkReceived.countDown();
+                response.write(readAll(body));
+            }
+            exchange.sendResponseHeaders(200, response.size());
+            try (OutputStream out = exchange.getResponseBody()) {
+                response.writeTo(out);
+            }
+        });
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+        uri = URI.create("http://127.0.0.1:" + server.getAddress().getPort() + "/echo?v=1");
+    }
+
+    @After
+    public void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    public void reusesKeepAliveConnection() throws IOException {
+        try (PooledHttpTransport transport = new PooledHttpTransport(TransportConfig.builder().build())) {
+            for (int i = 0; i < 5; i++) {
+                HttpResponse response = transport.execute(request("message " + i));
+                assertEquals(200, response.getStatusCode());
+                assertEquals("message " + i, response.getBodyAsString());
+            }
+
+            assertEquals(1, clientAddresses.size());
+            assertEquals(1, transport.getOpenConnections());
+            assertEquals(1, transport.getIdleConnections());
+        }
+    }
+
+    @Test
+    public void limitsConnectionsPerRoute() throws Exception {
+        TransportConfig config = TransportConfig.builder().maxConnections(10).maxConnectionsPerRoute(2).build();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try (PooledHttpTransport transport = new PooledHttpTransport(config)) {
+            CountDownLatch start = new CountDownLatch(1);
+            Future<?>[] results = new Future<?>[16];
+            for (int i = 0; i < results.length; i++) {
+                results[i] = executor.submit(() -> {
+                    start.await();
+                    return transport.execute(request("x"));
+                });
+            }
+            start.countDown();
+            for (Future<?> result : results) {
+                result.get(10, TimeUnit.SECONDS);
+            }
+
+            assertTrue(maxConcurrentRequests.get() <= 2);
+            assertTrue(clientAddresses.size() <= 2);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void executesAsynchronouslyOnPooledConnections() throws Exception {
+        TransportConfig config = TransportConfig.builder().maxConnections(2).build();
+        try (PooledHttpTransport transport = new PooledHttpTransport(config)) {
+            List<CompletableFuture<HttpResponse>> responses = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                responses.add(transport.executeAsync(request("message " + i)));
+            }
+
+            for (int i = 0; i < responses.size(); i++) {
+                assertEquals("message " + i, responses.get(i).get(10, TimeUnit.SECONDS).getBodyAsString());
+            }
+            assertTrue(clientAddresses.size() <= 2);
+        }
+    }
+
+    @Test
+    public void completesAsyncRequestsOffIoThreads() throws Exception {
+        TransportConfig config = TransportConfig.builder().maxConnections(1).build();
+        try (PooledHttpTransport transport = new PooledHttpTransport(config)) {
+            CountDownLatch secondCompleted = new CountDownLatch(1);
+            // a blocking stage of the first request must not keep the only I/O thread from the second one
+            CompletableFuture<Boolean> first = transport.executeAsync(request("first")).thenApply(response -> {
+                try {
+                    return secondCompleted.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            });
+            transport.executeAsync(request("second")).thenRun(secondCompleted::countDown);
+
+            assertTrue(first.get(15, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    public void evictsIdleConnections() throws Exception {
+        TransportConfig config = TransportConfig.builder().idleTimeoutMillis(50).build();
+        try (PooledHttpTransport transport = new PooledHttpTransport(config)) {
+            transport.execute(request("x"));
+            Thread.sleep(60);
+            transport.evictIdleConnections();
+
+            assertEquals(0, transport.getOpenConnections());
+            assertEquals("y", transport.execute(request("y")).getBodyAsString());
+        }
+    }
+
+    @Test
+    public void prewarmsConnectionsWithinRouteLimit() throws IOException {
+        TransportConfig config = TransportConfig.builder().maxConnectionsPerRoute(2).build();
+        try (PooledHttpTransport transport = new PooledHttpTransport(config)) {
+            assertEquals(2, transport.prewarm(uri, 3));
+            assertEquals(2, transport.getIdleConnections());
+            assertEquals(0, transport.prewarm(uri, 2));
+
+            assertEquals("x", transport.execute(request("x")).getBodyAsString());
+            assertEquals(2, transport.getOpenConnections());
+        }
+    }
+
+    @Test
+    public void streamsChunkedBodyWhileItIsProduced() throws Exception {
+        Pipe pipe = Pipe.open();
+        URI streamUri = URI.create("http://127.0.0.1:" + server.getAddress().getPort() + "/stream");
+        try (PooledHttpTransport transport = new PooledHttpTransport(TransportConfig.builder().build())) {
+            CompletableFuture<HttpResponse> response = transport.executeAsync(new HttpRequest("POST", streamUri,
+                    Collections.singletonMap("Content-Type", "audio/wav"), pipe.source(), 0));
+
+            pipe.sink().write(ByteBuffer.wrap("hello".getBytes(StandardCharsets.UTF_8)));
+            // the server has the first bytes before the rest of the body exists
+            assertTrue(firstChunkReceived.await(5, TimeUnit.SECONDS));
+            pipe.sink().write(ByteBuffer.wrap(" world".getBytes(StandardCharsets.UTF_8)));
+            pipe.sink().close();
+
+            assertEquals("hello world", response.get(5, TimeUnit.SECONDS).getBodyAsString());
+            assertEquals("x", transport.execute(request("x")).getBodyAsString());
+            assertEquals(1, transport.getOpenConnections());
+        } finally {
+            pipe.source().close();
+        }
+    }
+
+    private HttpRequest request(String body) {
+        return new HttpRequest("POST", uri, Collections.singletonMap("Content-Type", "text/plain"),
+                body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int read;
+        while ((read = in.read(buffer)) >= 0) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+}
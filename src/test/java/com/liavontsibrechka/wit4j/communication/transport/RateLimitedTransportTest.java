@@ -0,0 +1,116 @@
+/*
+ * Copyright 2016 Liavontsi Brechka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.liavontsibrechka.wit4j.communication.transport;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests retries and rate limiting of {@code RateLimitedTransport} over a scripted transport.
+ *
+ * @author Liavontsi Brechka
+ * @since 1.0-SNAPSHOT
+ */
+public class RateLimitedTransportTest {
+    private static final HttpRequest REQUEST = new HttpRequest("GET", URI.create("http://127.0.0.1/message?q=hi"),
+            Collections.singletonMap("Authorization", "Bearer token"), null);
+
+    private static HttpResponse response(int statusCode, String retryAfter) {
+        Map<String, String> headers = retryAfter == null
+                ? Collections.<String, String>emptyMap() : Collections.singletonMap("retry-after", retryAfter);
+        return new HttpResponse(statusCode, headers, new byte[0]);
+    }
+
+    /**
+     * Transport that returns prepared responses in order and then {@code 200} responses.
+     */
+    private static final class ScriptedTransport implements HttpTransport {
+        private final Deque<HttpResponse> responses = new ArrayDeque<>();
+        private final AtomicInteger requests = new AtomicInteger();
+
+        private ScriptedTransport(HttpResponse... responses) {
+            Collections.addAll(this.responses, responses);
+        }
+
+        @Override
+        public synchronized HttpResponse execute(HttpRequest request) throws IOException {
+            requests.incrementAndGet();
+            HttpResponse response = responses.pollFirst();
+            return response != null ? response : response(200, null);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    @Test
+    public void retriesRateLimitedAndServerErrorResponses() throws Exception {
+        ScriptedTransport scripted = new ScriptedTransport(response(429, "0"), response(503, null));
+        try (RateLimitedTransport transport = RateLimitedTransport.builder(scripted)
+                .retryPolicy(new RetryPolicy(3, 1, 10)).build()) {
+            assertEquals(200, transport.execute(REQUEST).getStatusCode());
+            assertEquals(3, scripted.requests.get());
+        }
+
+        scripted = new ScriptedTransport(response(500, null), response(500, null), response(502, null));
+        try (RateLimitedTransport transport = RateLimitedTransport.builder(scripted)
+                .retryPolicy(new RetryPolicy(2, 1, 10)).build()) {
+            assertEquals(502, transport.executeAsync(REQUEST).get(5, TimeUnit.SECONDS).getStatusCode());
+            assertEquals(3, scripted.requests.get());
+        }
+    }
+
+    @Test
+    public void doesNotRetryWhenServerAsksToWaitTooLong() throws Exception {
+        ScriptedTransport scripted = new ScriptedTransport(response(429, "3600"));
+        try (RateLimitedTransport transport = RateLimitedTransport.builder(scripted).build()) {
+            assertEquals(429, transport.execute(REQUEST).getStatusCode());
+            assertEquals(1, scripted.requests.get());
+        }
+    }
+
+    @Test
+    public void limitsRequestRatePerToken() throws Exception {
+        ScriptedTransport scripted = new ScriptedTransport();
+        try (RateLimitedTransport transport = RateLimitedTransport.builder(scripted)
+                .perTokenRate(200).burst(1).build()) {
+            long start = System.nanoTime();
+            for (int i = 0; i < 20; i++) {
+                transport.executeAsync(REQUEST);
+            }
+            transport.execute(REQUEST);
+            long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+            // 21 requests at 200 per second with a single stored permit take at least 100 ms
+            assertTrue("elapsed " + elapsedMillis + " ms", elapsedMillis >= 95);
+            assertEquals(21, scripted.requests.get());
+        }
+    }
+}
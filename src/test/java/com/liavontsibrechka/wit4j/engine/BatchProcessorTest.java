@@ -0,0 +1,111 @@
+/*
+ * Copyright 2016 Liavontsi Brechka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.liavontsibrechka.wit4j.engine;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests ordering, failure isolation and backpressure of {@code BatchProcessor}.
+ *
+ * @author Liavontsi Brechka
+ * @since 1.0-SNAPSHOT
+ */
+public class BatchProcessorTest {
+    private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(4);
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+
+    @After
+    public void stopScheduler() {
+        scheduler.shutdownNow();
+    }
+
+    private CompletableFuture<JsonNode> lookup(String message) {
+        maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+        CompletableFuture<JsonNode> response = new CompletableFuture<>();
+        scheduler.schedule(() -> {
+            inFlight.decrementAndGet();
+            if (message.endsWith("7")) {
+                response.completeExceptionally(new IOException("Server returned HTTP response code: 500"));
+            } else {
+                response.complete(TextNode.valueOf(message.toUpperCase()));
+            }
+        }, ThreadLocalRandom.current().nextInt(3), TimeUnit.MILLISECONDS);
+        return response;
+    }
+
+    @Test
+    public void deliversResultsInOrderAndIsolatesFailures() throws InterruptedException {
+        BatchProcessor processor = BatchProcessor.builder(this::lookup).maxConcurrency(4).build();
+        List<String> messages = IntStream.range(0, 200).mapToObj(i -> "message " + i).collect(Collectors.toList());
+
+        List<BatchResult> results = processor.processAll(messages);
+
+        assertEquals(200, results.size());
+        for (int i = 0; i < results.size(); i++) {
+            BatchResult result = results.get(i);
+            assertEquals(i, result.getIndex());
+            assertEquals("message " + i, result.getMessage());
+            if (i % 10 == 7) {
+                assertFalse(result.isSuccessful());
+                assertTrue(result.getError() instanceof IOException);
+            } else {
+                assertEquals("MESSAGE " + i, result.getResponse().asText());
+            }
+        }
+        assertTrue(maxInFlight.get() <= 4);
+    }
+
+    @Test
+    public void readsSourceOnlyAsResultsAreDelivered() throws InterruptedException {
+        BatchProcessor processor = BatchProcessor.builder(this::lookup).maxConcurrency(2).maxPending(5).build();
+        AtomicLong read = new AtomicLong();
+        AtomicLong delivered = new AtomicLong();
+        Stream<String> source = Stream.iterate(0, i -> i + 1).limit(1000).map(i -> {
+            read.incrementAndGet();
+            return "message " + i;
+        });
+
+        processor.process(source, result -> {
+            assertTrue(read.get() - delivered.incrementAndGet() < 5);
+        });
+
+        assertEquals(1000, delivered.get());
+        assertTrue(maxInFlight.get() <= 2);
+    }
+}
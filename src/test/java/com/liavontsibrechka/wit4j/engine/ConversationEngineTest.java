@@ -0,0 +1,81 @@
+/*
+ * Copyright 2016 Liavontsi Brechka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.liavontsibrechka.wit4j.engine;
+
+import com.liavontsibrechka.wit4j.communication.ConverseResult;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests per-session ordering and the concurrency cap of {@code ConversationEngine}.
+ *
+ * @author Liavontsi Brechka
+ * @since 1.0-SNAPSHOT
+ */
+public class ConversationEngineTest {
+    private final Map<String, List<String>> handled = new ConcurrentHashMap<>();
+    private final AtomicInteger running = new AtomicInteger();
+    private final AtomicInteger maxRunning = new AtomicInteger();
+
+    private ConverseResult handle(String sessionId, String message) {
+        maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+        try {
+            Thread.sleep(2);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        handled.computeIfAbsent(sessionId, id -> Collections.synchronizedList(new ArrayList<>())).add(message);
+        running.decrementAndGet();
+        return new ConverseResult(sessionId, ConverseResult.Status.STOPPED, 1, Collections.singletonList(message));
+    }
+
+    @Test
+    public void keepsOrderWithinSessionAndLimitsConcurrency() throws Exception {
+        List<CompletableFuture<ConverseResult>> turns = new ArrayList<>();
+        try (ConversationEngine engine = ConversationEngine.builder(this::handle).maxConcurrentTurns(4).build()) {
+            for (int i = 0; i < 50; i++) {
+                for (int session = 0; session < 10; session++) {
+                    turns.add(engine.submit("session-" + session, "message " + i));
+                }
+            }
+            CompletableFuture.allOf(turns.toArray(new CompletableFuture[0])).get(30, TimeUnit.SECONDS);
+
+            assertEquals(0, engine.getActiveSessions());
+        }
+
+        assertTrue(maxRunning.get() <= 4);
+        assertEquals(10, handled.size());
+        for (List<String> messages : handled.values()) {
+            assertEquals(50, messages.size());
+            for (int i = 0; i < messages.size(); i++) {
+                assertEquals("message " + i, messages.get(i));
+            }
+        }
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright 2016 Liavontsi Brechka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.liavontsibrechka.wit4j.interaction;
+
+import com.liavontsibrechka.wit4j.Wit;
+import com.liavontsibrechka.wit4j.action.IAction;
+import com.liavontsibrechka.wit4j.communication.transport.HttpRequest;
+import com.liavontsibrechka.wit4j.communication.transport.HttpResponse;
+import com.liavontsibrechka.wit4j.communication.transport.HttpTransport;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URLDecoder;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Tests framing and message processing of {@code CustomInteraction} and connections of {@code InteractionServer}.
+ *
+ * @author Liavontsi Brechka
+ * @since 1.0-SNAPSHOT
+ */
+public class CustomInteractionTest {
+    @Test
+    public void writesRepliesOfEveryLineInOrder() throws IOException {
+        Map<String, IAction> actions = new HashMap<>();
+        actions.put("say", (sessionId, context, httpResponse) -> {
+        });
+        try (Wit wit = Wit.builder("token").actions(actions).transport(new EchoTransport()).build()) {
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            InteractionFactory.getCustomInteraction(
+                    new ByteArrayInputStream("hello\r\n\n  \nhow are you?\nbye".getBytes(StandardCharsets.UTF_8)),
+                    output, wit.createConverse()).interact();
+
+            assertEquals("echo: hello\necho: how are you?\necho: bye\n",
+                    new String(output.toByteArray(), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    public void readsLengthPrefixedFramesWrittenByFrameWriter() throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        FrameWriter writer = new FrameWriter(Channels.newChannel(output), null, Framing.LENGTH_PREFIXED);
+        StringBuilder large = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            large.append("погода ");
+        }
+        writer.write("first\nline");
+        writer.write(large.toString());
+        writer.write("");
+        writer.flush();
+
+        FrameReader reader = new FrameReader(Channels.newChannel(new ByteArrayInputStream(output.toByteArray())),
+                Framing.LENGTH_PREFIXED, 64 * 1024);
+        assertEquals("first\nline", reader.read());
+        assertEquals(large.toString(), reader.read());
+        assertEquals("", reader.read());
+        assertNull(reader.read());
+    }
+
+    @Test
+    public void servesEveryConnectionAsSeparateSession() throws Exception {
+        Map<String, IAction> actions = new HashMap<>();
+        actions.put("say", (sessionId, context, httpResponse) -> {
+        });
+        EchoTransport transport = new EchoTransport();
+        try (Wit wit = Wit.builder("token").actions(actions).transport(transport).build();
+             InteractionServer server = InteractionServer.builder(wit).start()) {
+            List<Future<String>> replies = new ArrayList<>();
+            ExecutorService clients = Executors.newFixedThreadPool(4);
+            try {
+                for (int i = 0; i < 4; i++) {
+                    String name = "client " + i;
+                    replies.add(clients.submit(() -> talk(server.getAddress(), name)));
+                }
+                for (int i = 0; i < 4; i++) {
+                    assertEquals("echo: hi from client " + i + "\necho: bye\n",
+                            replies.get(i).get(10, TimeUnit.SECONDS));
+                }
+            } finally {
+                clients.shutdownNow();
+            }
+            assertEquals(4, transport.sessions.size());
+        }
+    }
+
+    private static String talk(InetSocketAddress address, String name) throws IOException {
+        try (Socket socket = new Socket(address.getAddress(), address.getPort())) {
+            socket.getOutputStream().write(("hi from " + name + "\nbye\n").getBytes(StandardCharsets.UTF_8));
+            socket.shutdownOutput();
+
+            ByteArrayOutputStream replies = new ByteArrayOutputStream();
+            InputStream input = socket.getInputStream();
+            byte[] buffer = new byte[256];
+            int read;
+            while ((read = input.read(buffer)) >= 0) {
+                replies.write(buffer, 0, read);
+            }
+            return new String(replies.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Answers every message with a <em>msg</em> step that echoes it and then stops.
+     */
+    private static final class EchoTransport implements HttpTransport {
+        private final Set<String> sessions = ConcurrentHashMap.newKeySet();
+
+        @Override
+        public HttpResponse execute(HttpRequest request) throws IOException {
+            String query = request.getUri().getRawQuery();
+            sessions.add(query.substring(query.indexOf("session_id=") + 11).split("&")[0]);
+            int start = query.indexOf("&q=");
+            String body = start < 0 ? "{\"type\":\"stop\"}"
+                    : "{\"type\":\"msg\",\"msg\":\"echo: " + URLDecoder.decode(query.substring(start + 3), "UTF-8")
+                    + "\"}";
+            return new HttpResponse(200, Collections.<String, String>emptyMap(),
+                    body.getBytes(StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
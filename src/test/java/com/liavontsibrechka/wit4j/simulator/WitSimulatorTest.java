@@ -0,0 +1,134 @@
+/*
+ * Copyright 2016 Liavontsi Brechka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.liavontsibrechka.wit4j.simulator;
+
+import com.liavontsibrechka.wit4j.Wit;
+import com.liavontsibrechka.wit4j.action.Actions;
+import com.liavontsibrechka.wit4j.action.IAction;
+import com.liavontsibrechka.wit4j.communication.Converse;
+import com.liavontsibrechka.wit4j.communication.ConverseResult;
+import com.liavontsibrechka.wit4j.communication.WitHttpException;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests scripted turns, error injection and load generation of {@code WitSimulator}.
+ *
+ * @author Liavontsi Brechka
+ * @since 1.0-SNAPSHOT
+ */
+public class WitSimulatorTest {
+    private static final ConversationScript WEATHER = ConversationScript.builder()
+            .merge("location", "Minsk")
+            .action("fetchForecast")
+            .msg("Sunny in Minsk")
+            .build();
+
+    private final AtomicInteger forecasts = new AtomicInteger();
+
+    @Test
+    public void drivesConcurrentSessionsThroughScriptedTurns() throws Exception {
+        WitSimulator simulator = WitSimulator.builder()
+                .script("weather", WEATHER)
+                .latencyMillis(1, 3)
+                .build();
+
+        try (Wit wit = wit(Wit.builder("token").transport(new SimulatedTransport(simulator)))) {
+            LoadReport report = LoadGenerator.builder(wit.createConverse())
+                    .sessions(20)
+                    .turnsPerSession(3)
+                    .messages("weather", "hi")
+                    .build()
+                    .run();
+
+            assertEquals(60, report.getCompletedTurns());
+            assertEquals(0, report.getFailedTurns());
+            assertEquals(60, report.getLatency().getCount());
+            // two weather turns of four steps and one default turn of two steps per session
+            assertEquals(200, simulator.getRequests());
+            assertEquals(40, forecasts.get());
+            assertEquals(0, simulator.getActiveTurns());
+            assertEquals(0, wit.getContextStore().size());
+        }
+    }
+
+    @Test
+    public void countsTurnsThatCannotStartAsFailed() throws Exception {
+        WitSimulator simulator = WitSimulator.builder().script("weather", WEATHER).build();
+
+        try (Wit wit = wit(Wit.builder("token").transport(new SimulatedTransport(simulator)))) {
+            Converse rejecting = new Converse(wit) {
+                @Override
+                public CompletableFuture<ConverseResult> converseAsync(String sessionId, String message) {
+                    throw new RejectedExecutionException("Client is closed");
+                }
+            };
+            LoadReport report = LoadGenerator.builder(rejecting).sessions(5).turnsPerSession(3).build().run();
+
+            assertEquals(0, report.getCompletedTurns());
+            assertEquals(5, report.getFailedTurns());
+            assertEquals(0, simulator.getRequests());
+        }
+    }
+
+    @Test
+    public void servesScriptsAndInjectedErrorsOverHttp() throws Exception {
+        WitSimulator simulator = WitSimulator.builder().script("weather", WEATHER).build();
+        WitSimulator failing = WitSimulator.builder().errorRate(0.5).rateLimitRate(0.5).build();
+
+        try (SimulatorServer server = SimulatorServer.start(simulator);
+             SimulatorServer failingServer = SimulatorServer.start(failing);
+             Wit wit = wit(Wit.builder("token").baseUrl(server.getBaseUrl()));
+             Wit failingWit = wit(Wit.builder("token").baseUrl(failingServer.getBaseUrl()))) {
+            Converse converse = wit.createConverse();
+            assertEquals(Arrays.asList("Sunny in Minsk"), converse.converse("session-1", "weather").getMessages());
+            assertEquals(Arrays.asList("OK"), converse.converse("session-1", "hi").getMessages());
+
+            try {
+                failingWit.createConverse().converse("session-2", "weather");
+                fail("Injected error expected");
+            } catch (WitHttpException e) {
+                assertEquals(true, e.getStatusCode() == 500 || e.isRateLimited());
+            } catch (IOException e) {
+                fail("Error response expected: " + e);
+            }
+            // every attempt of the client, retries included, got an injected error
+            assertEquals(failing.getRequests(), failing.getInjectedErrors());
+        }
+    }
+
+    private Wit wit(Wit.Builder builder) {
+        Map<String, IAction> actions = new HashMap<>();
+        actions.put("merge", (sessionId, context, response) -> context.put("location",
+                response.get("entities").get("location").get(0).get("value")));
+        actions.put("say", (sessionId, context, response) -> {
+        });
+        actions.put("fetchForecast", (sessionId, context, response) -> forecasts.incrementAndGet());
+        return builder.actions(new Actions(actions)).build();
+    }
+}